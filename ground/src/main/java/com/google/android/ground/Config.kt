@@ -25,13 +25,86 @@ object Config {
 
   // Local db settings.
   // TODO(#128): Reset version to 1 before releasing.
-  const val DB_VERSION = 95
+  const val DB_VERSION = 105
   const val DB_NAME = "ground.db"
 
   // Firebase Cloud Firestore settings.
   const val FIRESTORE_PERSISTENCE_ENABLED = false
   const val FIRESTORE_LOGGING_ENABLED = true
 
+  // Remote to local LOI sync. Changes are written in batches once either limit is reached.
+  const val LOI_SYNC_BATCH_WINDOW_MILLIS = 500L
+  const val LOI_SYNC_MAX_BATCH_SIZE = 1_000
+
+  // Local mutation queue compaction. Completed mutations are removed once they're older than the
+  // retention period or outnumber the maximum count.
+  const val COMPLETED_MUTATION_RETENTION_DAYS = 30L
+  const val MAX_COMPLETED_MUTATIONS = 1_000
+  const val MUTATION_COMPACTION_INTERVAL_HOURS = 24L
+
+  // Local to remote mutation sync. Pending mutations are uploaded in batches of up to the Firestore
+  // write batch limit, committing several batches concurrently.
+  const val MUTATION_UPLOAD_BATCH_SIZE = 500
+  const val MUTATION_UPLOAD_PARALLELISM = 4
+
+  // Failed mutations are retried with exponential backoff and jitter, starting at the base delay
+  // and capped at the max delay. Mutations still failing after the max attempts are marked failed.
+  const val MUTATION_RETRY_BASE_DELAY_MILLIS = 30_000L
+  const val MUTATION_RETRY_MAX_DELAY_MILLIS = 6 * 60 * 60 * 1000L
+  const val MAX_MUTATION_SYNC_ATTEMPTS = 10
+
+  // Offline imagery downloads. Up to the concurrency limit tile sets are downloaded at once, and
+  // files of at least the threshold size are split into parallel range requests.
+  const val TILE_DOWNLOAD_CONCURRENCY = 4
+  const val TILE_DOWNLOAD_CHUNKED_THRESHOLD_BYTES = 8L * 1024 * 1024
+  const val TILE_DOWNLOAD_MAX_PARALLEL_CHUNKS = 4
+  const val TILE_DOWNLOAD_PROGRESS_INTERVAL_MILLIS = 1_000L
+  const val TILE_DOWNLOAD_CONNECT_TIMEOUT_MILLIS = 30_000
+  const val TILE_DOWNLOAD_READ_TIMEOUT_MILLIS = 60_000
+
+  // Downloaded tiles are kept in a single deduplicated store, and tiles no longer used by any
+  // offline area are evicted in batches of this size.
+  const val OFFLINE_TILE_STORE_FILE_NAME = "offline_tiles.mbtiles"
+  const val OFFLINE_TILE_EVICTION_BATCH_SIZE = 500
+
+  // Remote map tiles are cached on disk up to the max size, and those served without cache headers
+  // are reused for the default TTL. While on an unmetered network, tiles in the viewport and the
+  // next zoom level are prefetched, up to the max tile count.
+  const val WEB_TILE_CACHE_DIR_NAME = "web_tiles"
+  const val WEB_TILE_CACHE_MAX_BYTES = 100L * 1024 * 1024
+  const val WEB_TILE_DEFAULT_TTL_MILLIS = 24L * 60 * 60 * 1000
+  const val WEB_TILE_PREFETCH_ENABLED = true
+  const val WEB_TILE_PREFETCH_MAX_TILES = 256
+  const val WEB_TILE_PREFETCH_CONCURRENCY = 4
+
+  // Rendered marker icons are cached up to this total bitmap size.
+  const val MARKER_ICON_CACHE_MAX_BYTES = 4 * 1024 * 1024
+
+  // Only polygons within the viewport expanded by this fraction of its size on each side are
+  // rendered, simplified to within the tolerance in pixels at the current zoom level. Below the
+  // min zoom, polygons are shown as markers at their centroids instead. Up to the max pool size of
+  // hidden polygons are kept for reuse.
+  const val POLYGON_VIEWPORT_PADDING = 0.5
+  const val POLYGON_SIMPLIFICATION_TOLERANCE_PIXELS = 1.0
+  const val POLYGON_MIN_ZOOM_LEVEL = 12f
+  const val POLYGON_POOL_MAX_SIZE = 100
+
+  // Once more than this many LOIs are loaded, they're rendered into map tiles instead of as
+  // individual markers and polygons. Rendered tiles are cached up to the max size. Points are drawn
+  // with the specified radius, and taps select LOIs within the tap radius.
+  const val LOI_TILE_RENDERING_MIN_COUNT = 5000
+  const val LOI_TILE_CACHE_MAX_BYTES = 8 * 1024 * 1024
+  const val LOI_TILE_POINT_RADIUS_DP = 6f
+  const val LOI_TILE_TAP_RADIUS_DP = 16f
+
+  // Tile set footprints are written to the local spatial index in batches of this size. Indexed
+  // footprint files are revalidated in the background at most once per interval, and requests for
+  // them time out after the specified connect and read timeouts.
+  const val TILE_SET_FOOTPRINT_INDEX_BATCH_SIZE = 500
+  const val TILE_SET_FOOTPRINT_REVALIDATION_INTERVAL_MILLIS = 24 * 60 * 60 * 1000L
+  const val TILE_SET_FOOTPRINT_CONNECT_TIMEOUT_MILLIS = 15_000
+  const val TILE_SET_FOOTPRINT_READ_TIMEOUT_MILLIS = 30_000
+
   // Photos
   const val PHOTO_EXT = ".jpg"
 }
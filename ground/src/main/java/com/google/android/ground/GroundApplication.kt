@@ -24,7 +24,10 @@ import androidx.multidex.MultiDexApplication
 import androidx.work.Configuration
 import androidx.work.WorkManager
 import com.akaita.java.rxjava2debug.RxJava2Debug
+import com.google.android.ground.persistence.sync.MutationCompactionWorkManager
+import com.google.android.ground.persistence.sync.TileStoreMigrationWorkManager
 import com.google.firebase.crashlytics.FirebaseCrashlytics
+import dagger.Lazy
 import dagger.hilt.android.HiltAndroidApp
 import javax.inject.Inject
 import timber.log.Timber
@@ -34,6 +37,12 @@ class GroundApplication : MultiDexApplication(), Configuration.Provider {
 
   @Inject lateinit var workerFactory: HiltWorkerFactory
 
+  // Work managers are injected lazily since they depend on WorkManager, which may only be
+  // obtained after it's initialized in onCreate().
+  @Inject lateinit var mutationCompactionWorkManager: Lazy<MutationCompactionWorkManager>
+
+  @Inject lateinit var tileStoreMigrationWorkManager: Lazy<TileStoreMigrationWorkManager>
+
   init {
     Timber.plant(if (BuildConfig.DEBUG) Timber.DebugTree() else CrashReportingTree())
   }
@@ -51,6 +60,8 @@ class GroundApplication : MultiDexApplication(), Configuration.Provider {
     RxJava2Debug.enableRxJava2AssemblyTracking(arrayOf(javaClass.getPackage().name))
 
     WorkManager.initialize(applicationContext, workManagerConfiguration)
+    mutationCompactionWorkManager.get().enqueuePeriodicCompactionWorker()
+    tileStoreMigrationWorkManager.get().enqueueMigrationWorker()
   }
 
   override fun getWorkManagerConfiguration(): Configuration {
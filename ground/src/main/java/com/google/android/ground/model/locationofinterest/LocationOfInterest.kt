@@ -58,14 +58,17 @@ data class LocationOfInterest(
    * Converts this LOI to a mutation that can be used to update this LOI in the remote and local
    * database.
    */
-  fun toMutation(type: Mutation.Type, userId: String): LocationOfInterestMutation =
-    LocationOfInterestMutation(
+  fun toMutation(type: Mutation.Type, userId: String): LocationOfInterestMutation {
+    val now = Date()
+    return LocationOfInterestMutation(
       jobId = job.id,
       type = type,
       syncStatus = SyncStatus.PENDING,
       surveyId = surveyId,
       locationOfInterestId = id,
       userId = userId,
-      clientTimestamp = Date()
+      clientTimestamp = now,
+      lastModifiedTimestamp = now
     )
+  }
 }
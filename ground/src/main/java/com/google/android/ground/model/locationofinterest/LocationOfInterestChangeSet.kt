@@ -0,0 +1,77 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.model.locationofinterest
+
+import com.google.android.ground.util.toImmutableList
+import com.google.android.ground.util.toImmutableSet
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSet
+import kotlinx.collections.immutable.PersistentMap
+
+/**
+ * Changes to a collection of [LocationOfInterest]s keyed by id, used to update observers
+ * incrementally rather than re-emitting the full collection each time a single LOI changes.
+ */
+data class LocationOfInterestChangeSet(
+  /** LOIs not previously present in the collection. */
+  val added: ImmutableList<LocationOfInterest> = ImmutableList.of(),
+  /** New values of LOIs already present in the collection. */
+  val modified: ImmutableList<LocationOfInterest> = ImmutableList.of(),
+  /** Ids of LOIs removed from the collection. */
+  val removedIds: ImmutableSet<String> = ImmutableSet.of()
+) {
+  fun isEmpty(): Boolean = added.isEmpty() && modified.isEmpty() && removedIds.isEmpty()
+
+  /** Returns the result of applying these changes to the specified LOIs. */
+  fun applyTo(
+    locationsOfInterest: PersistentMap<String, LocationOfInterest>
+  ): PersistentMap<String, LocationOfInterest> {
+    if (isEmpty()) return locationsOfInterest
+    return locationsOfInterest.mutate { map ->
+      removedIds.forEach { map.remove(it) }
+      added.forEach { map[it.id] = it }
+      modified.forEach { map[it.id] = it }
+    }
+  }
+
+  /** Returns a copy of these changes, keeping only added and modified LOIs matching [predicate]. */
+  fun filter(predicate: (LocationOfInterest) -> Boolean): LocationOfInterestChangeSet =
+    copy(
+      added = added.filter(predicate).toImmutableList(),
+      modified = modified.filter(predicate).toImmutableList()
+    )
+
+  companion object {
+    /** Returns the changes which replace [oldValues] with exactly the LOIs in [newValues]. */
+    fun between(
+      oldValues: Map<String, LocationOfInterest>,
+      newValues: Collection<LocationOfInterest>
+    ): LocationOfInterestChangeSet {
+      val added = ImmutableList.builder<LocationOfInterest>()
+      val modified = ImmutableList.builder<LocationOfInterest>()
+      for (locationOfInterest in newValues) {
+        when (oldValues[locationOfInterest.id]) {
+          null -> added.add(locationOfInterest)
+          locationOfInterest -> continue
+          else -> modified.add(locationOfInterest)
+        }
+      }
+      val newIds = newValues.map { it.id }.toSet()
+      val removedIds = oldValues.keys.filterNot { newIds.contains(it) }.toImmutableSet()
+      return LocationOfInterestChangeSet(added.build(), modified.build(), removedIds)
+    }
+  }
+}
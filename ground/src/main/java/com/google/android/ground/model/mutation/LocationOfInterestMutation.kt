@@ -30,8 +30,10 @@ data class LocationOfInterestMutation(
   override val clientTimestamp: Date = Date(),
   override val retryCount: Long = 0,
   override val lastError: String = "",
+  override val nextAttemptAt: Date = Date(0),
   val jobId: String = "",
   val geometry: Geometry? = null,
+  override val lastModifiedTimestamp: Date,
 ) : Mutation() {
 
   companion object {
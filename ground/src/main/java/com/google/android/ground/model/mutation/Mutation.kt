@@ -32,6 +32,16 @@ sealed class Mutation {
   abstract val retryCount: Long
   abstract val lastError: String
 
+  /** Time before which a failed mutation shouldn't be retried, or the epoch if not yet failed. */
+  abstract val nextAttemptAt: Date
+
+  /**
+   * Time of the latest change included in this mutation. Same as [clientTimestamp] unless later
+   * updates were merged into it before sync. Not derived from [clientTimestamp], so must be set
+   * along with it when mutations are created or copied.
+   */
+  abstract val lastModifiedTimestamp: Date
+
   enum class Type {
     /** Indicates a new entity should be created. */
     CREATE,
@@ -31,9 +31,11 @@ data class SubmissionMutation(
   override val clientTimestamp: Date = Date(),
   override val retryCount: Long = 0,
   override val lastError: String = "",
+  override val nextAttemptAt: Date = Date(0),
   val job: Job? = null,
   var submissionId: String = "",
-  var taskDataDeltas: ImmutableList<TaskDataDelta> = ImmutableList.of()
+  var taskDataDeltas: ImmutableList<TaskDataDelta> = ImmutableList.of(),
+  override val lastModifiedTimestamp: Date
 ) : Mutation() {
 
   override fun toString(): String = super.toString() + "deltas= $taskDataDeltas"
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.model.submission
+
+import com.google.common.collect.ImmutableList
+
+/**
+ * A page of submissions, most recently modified first.
+ *
+ * @property submissions the submissions in this page which could be read. Unreadable ones are
+ * skipped, so pages which aren't the last may hold fewer submissions than requested.
+ * @property next where the following page starts, or null if this is the last page.
+ */
+data class SubmissionPage(val submissions: ImmutableList<Submission>, val next: Cursor?) {
+  /** Position after the last submission read, whether or not it could be converted. */
+  data class Cursor(val clientTimestamp: Long, val id: String)
+}
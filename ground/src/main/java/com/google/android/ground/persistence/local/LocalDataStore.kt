@@ -15,15 +15,18 @@
  */
 package com.google.android.ground.persistence.local
 
+import com.google.android.gms.maps.model.LatLngBounds
 import com.google.android.ground.model.Survey
 import com.google.android.ground.model.User
 import com.google.android.ground.model.basemap.OfflineArea
 import com.google.android.ground.model.basemap.tile.TileSet
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.model.mutation.SubmissionMutation
 import com.google.android.ground.model.submission.Submission
+import com.google.android.ground.model.submission.SubmissionPage
 import com.google.android.ground.persistence.local.room.LocalDataStoreException
 import com.google.android.ground.persistence.local.room.models.MutationEntitySyncStatus
 import com.google.android.ground.rx.annotations.Cold
@@ -93,13 +96,31 @@ interface LocalDataStore {
   ): @Cold(terminates = false) Flowable<ImmutableSet<LocationOfInterest>>
 
   /**
-   * Returns the list of submissions which are not marked for deletion for the specified
-   * locationOfInterest and job.
+   * Returns a long-lived stream that emits the set of LOIs in a survey whose bounding boxes
+   * intersect the specified bounds on subscribe, and continues to return the set each time a LOI
+   * is added/changed/removed.
    */
-  fun getSubmissions(
-    locationOfInterest: LocationOfInterest,
-    jobId: String
-  ): @Cold Single<ImmutableList<Submission>>
+  fun getLocationsOfInterestWithinBoundsOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds
+  ): @Cold(terminates = false) Flowable<ImmutableSet<LocationOfInterest>>
+
+  /** Returns the LOIs in a survey whose bounding boxes intersect the specified bounds. */
+  fun getLocationsOfInterestWithinBounds(
+    survey: Survey,
+    bounds: LatLngBounds
+  ): @Cold Single<ImmutableSet<LocationOfInterest>>
+
+  /**
+   * Returns a long-lived stream of changes to the LOIs in a survey, optionally limited to those
+   * whose bounding boxes intersect the specified bounds. The first change set emitted on subscribe
+   * adds all matching LOIs; subsequent ones contain only LOIs added, changed or removed since the
+   * previous emission, so that unchanged LOIs are neither reloaded nor re-rendered.
+   */
+  fun getLocationOfInterestChangesOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds?
+  ): @Cold(terminates = false) Flowable<LocationOfInterestChangeSet>
 
   /** Returns the LOI with the specified UUID from the local data store, if found. */
   fun getLocationOfInterest(
@@ -107,6 +128,19 @@ interface LocalDataStore {
     locationOfInterestId: String
   ): @Cold Maybe<LocationOfInterest>
 
+  /**
+   * Returns a page of up to [limit] submissions which are not marked for deletion for the specified
+   * LOI and job, most recently modified first, starting at [after] or from the most recent
+   * submission if [after] is null. Only the submissions in the requested page are read and
+   * converted.
+   */
+  fun getSubmissionsPage(
+    locationOfInterest: LocationOfInterest,
+    jobId: String,
+    after: SubmissionPage.Cursor?,
+    limit: Int
+  ): @Cold Single<SubmissionPage>
+
   /** Returns the submission with the specified UUID from the local data store, if found. */
   fun getSubmission(
     locationOfInterest: LocationOfInterest,
@@ -120,11 +154,14 @@ interface LocalDataStore {
   val tileSetsOnceAndStream: @Cold(terminates = false) Flowable<ImmutableSet<TileSet>>
 
   /**
-   * Returns a long-lived stream that emits the full list of mutations for specified survey on
-   * subscribe and a new list on each subsequent change.
+   * Returns a long-lived stream that emits up to [limit] mutations for specified survey, newest
+   * first, starting after [after] or from the most recent mutation if [after] is null, on subscribe
+   * and a new list on each subsequent change.
    */
   fun getMutationsOnceAndStream(
-    survey: Survey
+    survey: Survey,
+    after: Mutation?,
+    limit: Int
   ): @Cold(terminates = false) Flowable<ImmutableList<Mutation>>
 
   /**
@@ -133,6 +170,25 @@ interface LocalDataStore {
    */
   fun getPendingMutations(locationOfInterestId: String): @Cold Single<ImmutableList<Mutation>>
 
+  /**
+   * Returns all LOI and submission mutations in the local mutation queue pending sync whose next
+   * sync attempt is due, excluding those queued after a mutation to the same LOI which isn't yet
+   * due.
+   */
+  fun getPendingMutations(): @Cold Single<ImmutableList<Mutation>>
+
+  /**
+   * Returns the earliest time in milliseconds since epoch at which a pending mutation is due to be
+   * synced, or empty if there are no pending mutations.
+   */
+  fun getNextPendingMutationAttemptTime(): @Cold Maybe<Long>
+
+  /**
+   * Deletes completed mutations older than [retentionMillis] or beyond the [maxCount] most recent
+   * in each mutation table, then reclaims the space freed in the local db.
+   */
+  fun compactMutations(retentionMillis: Long, maxCount: Int): @Cold Single<MutationCompactionResult>
+
   /** Updates the provided list of mutations. */
   fun updateMutations(mutations: ImmutableList<Mutation>): @Cold Completable
 
@@ -149,6 +205,20 @@ interface LocalDataStore {
    */
   fun mergeLocationOfInterest(locationOfInterest: LocationOfInterest): @Cold Completable
 
+  /**
+   * Merges the provided LOIs into the local data store as per [mergeLocationOfInterest], writing
+   * all of them in a single transaction.
+   */
+  fun mergeLocationsOfInterest(
+    locationsOfInterest: ImmutableList<LocationOfInterest>
+  ): @Cold Completable
+
+  /**
+   * Applies the provided changes to the local data store in a single transaction, merging added
+   * and modified LOIs as per [mergeLocationOfInterest] and deleting removed ones.
+   */
+  fun mergeLocationOfInterestChanges(changes: LocationOfInterestChangeSet): @Cold Completable
+
   /** Deletes LOI from local database. */
   fun deleteLocationOfInterest(locationOfInterestId: String): @Cold Completable
 
@@ -168,6 +238,9 @@ interface LocalDataStore {
    */
   fun insertOrUpdateTileSet(tileSet: TileSet): @Cold Completable
 
+  /** Inserts or updates the specified tiles in the local data store in a single batch. */
+  fun insertOrUpdateTileSets(tileSets: ImmutableList<TileSet>): @Cold Completable
+
   /** Returns the tile with the specified URL from the local data store, if found. */
   fun getTileSet(tileUrl: String): @Cold Maybe<TileSet>
 
@@ -77,6 +77,11 @@ abstract class LocalDataStoreModule {
       return localDatabase.submissionMutationDao()
     }
 
+    @Provides
+    fun mutationDao(localDatabase: LocalDatabase): MutationDao {
+      return localDatabase.mutationDao()
+    }
+
     @Provides
     fun tileSetDao(localDatabase: LocalDatabase): TileSetDao {
       return localDatabase.tileSetDao()
@@ -96,5 +101,10 @@ abstract class LocalDataStoreModule {
     fun userDao(localDatabase: LocalDatabase): UserDao {
       return localDatabase.userDao()
     }
+
+    @Provides
+    fun tileSetFootprintDao(localDatabase: LocalDatabase): TileSetFootprintDao {
+      return localDatabase.tileSetFootprintDao()
+    }
   }
 }
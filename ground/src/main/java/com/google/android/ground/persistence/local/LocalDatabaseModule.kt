@@ -18,7 +18,18 @@ package com.google.android.ground.persistence.local
 import android.content.Context
 import androidx.room.Room
 import com.google.android.ground.Config
+import com.google.android.ground.persistence.local.room.GeometryBlobMigration
 import com.google.android.ground.persistence.local.room.LocalDatabase
+import com.google.android.ground.persistence.local.room.LocalDatabaseCallback
+import com.google.android.ground.persistence.local.room.LocationOfInterestBoundsMigration
+import com.google.android.ground.persistence.local.room.LocationOfInterestRowVersionCounterMigration
+import com.google.android.ground.persistence.local.room.LocationOfInterestRowVersionMigration
+import com.google.android.ground.persistence.local.room.MutationNextAttemptIndexMigration
+import com.google.android.ground.persistence.local.room.MutationRetryScheduleMigration
+import com.google.android.ground.persistence.local.room.MutationSurveyIndexMigration
+import com.google.android.ground.persistence.local.room.MutationTimestampIndexMigration
+import com.google.android.ground.persistence.local.room.SubmissionPageIndexMigration
+import com.google.android.ground.persistence.local.room.TileSetFootprintIndexMigration
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.InstallIn
@@ -33,6 +44,19 @@ object LocalDatabaseModule {
   @Singleton
   fun localDatabase(@ApplicationContext context: Context): LocalDatabase {
     return Room.databaseBuilder(context, LocalDatabase::class.java, Config.DB_NAME)
+      .addMigrations(
+        LocationOfInterestBoundsMigration,
+        GeometryBlobMigration,
+        LocationOfInterestRowVersionMigration,
+        MutationSurveyIndexMigration,
+        SubmissionPageIndexMigration,
+        MutationRetryScheduleMigration,
+        TileSetFootprintIndexMigration,
+        MutationTimestampIndexMigration,
+        MutationNextAttemptIndexMigration,
+        LocationOfInterestRowVersionCounterMigration
+      )
+      .addCallback(LocalDatabaseCallback)
       .fallbackToDestructiveMigration() // TODO(#128): Disable before official release.
       .build()
   }
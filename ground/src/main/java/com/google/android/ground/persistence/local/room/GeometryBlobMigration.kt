@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.annotation.VisibleForTesting
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.persistence.local.room.converter.PackedCoordinatesConverter
+import com.google.common.reflect.TypeToken
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import timber.log.Timber
+
+/**
+ * Converts polygon `vertices` and `holes` columns from JSON text to the packed binary encoding
+ * defined by [PackedCoordinatesConverter].
+ *
+ * SQLite can't change the type of an existing column, so each affected table is recreated from its
+ * original definition with the geometry columns declared as BLOBs, its rows are copied over, and
+ * the JSON values are then re-encoded in place.
+ */
+object GeometryBlobMigration : Migration(96, 97) {
+  private val TABLES = listOf("location_of_interest", "location_of_interest_mutation")
+  private val GEOMETRY_COLUMNS = listOf("vertices", "holes")
+
+  private val gson = Gson()
+  private val verticesType = object : TypeToken<List<List<Double>>>() {}.type
+  private val holesType = object : TypeToken<List<List<List<Double>>>>() {}.type
+
+  override fun migrate(database: SupportSQLiteDatabase) {
+    TABLES.forEach { migrateTable(database, it) }
+  }
+
+  private fun migrateTable(database: SupportSQLiteDatabase, table: String) {
+    val tableSql = querySql(database, "type = 'table' AND name = ?", table).single()
+    val indexSql = querySql(database, "type = 'index' AND tbl_name = ? AND sql IS NOT NULL", table)
+    val newTable = "${table}_new"
+    var newTableSql = tableSql.replaceFirst("`$table`", "`$newTable`")
+    GEOMETRY_COLUMNS.forEach { newTableSql = newTableSql.replace("`$it` TEXT", "`$it` BLOB") }
+
+    database.execSQL(newTableSql)
+    database.execSQL("INSERT INTO `$newTable` SELECT * FROM `$table`")
+    database.execSQL("DROP TABLE `$table`")
+    database.execSQL("ALTER TABLE `$newTable` RENAME TO `$table`")
+    indexSql.forEach { database.execSQL(it) }
+    encodeGeometries(database, table)
+  }
+
+  private fun querySql(
+    database: SupportSQLiteDatabase,
+    where: String,
+    table: String
+  ): List<String> =
+    database.query("SELECT sql FROM sqlite_master WHERE $where", arrayOf(table)).use { cursor ->
+      generateSequence { if (cursor.moveToNext()) cursor.getString(0) else null }.toList()
+    }
+
+  private fun encodeGeometries(database: SupportSQLiteDatabase, table: String) {
+    // Rows are read up front so that updates don't invalidate the open cursor.
+    val rows =
+      database
+        .query("SELECT rowid, vertices, holes FROM `$table` WHERE vertices IS NOT NULL")
+        .use { cursor ->
+          generateSequence {
+              if (cursor.moveToNext()) {
+                Triple(cursor.getLong(0), cursor.getString(1), cursor.getString(2))
+              } else null
+            }
+            .toList()
+        }
+    for ((rowId, vertices, holes) in rows) {
+      val encoded =
+        try {
+          arrayOf<Any?>(encodeVertices(vertices), holes?.let { encodeHoles(it) }, rowId)
+        } catch (e: JsonParseException) {
+          Timber.e(e, "Dropping unreadable geometry in $table row $rowId")
+          arrayOf<Any?>(null, null, rowId)
+        } catch (e: IndexOutOfBoundsException) {
+          Timber.e(e, "Dropping unreadable geometry in $table row $rowId")
+          arrayOf<Any?>(null, null, rowId)
+        }
+      database.execSQL("UPDATE `$table` SET vertices = ?, holes = ? WHERE rowid = ?", encoded)
+    }
+  }
+
+  @VisibleForTesting
+  fun encodeVertices(json: String): ByteArray? {
+    val vertices = gson.fromJson<List<List<Double>>>(json, verticesType) ?: return null
+    if (vertices.isEmpty()) return null
+    return PackedCoordinatesConverter.toByteArray(listOf(vertices.map { it.toCoordinate() }))
+  }
+
+  @VisibleForTesting
+  fun encodeHoles(json: String): ByteArray? {
+    val holes = gson.fromJson<List<List<List<Double>>>>(json, holesType) ?: return null
+    if (holes.isEmpty()) return null
+    return PackedCoordinatesConverter.toByteArray(
+      holes.map { hole -> hole.map { it.toCoordinate() } }
+    )
+  }
+
+  private fun List<Double>.toCoordinate() = Coordinate(this[0], this[1])
+}
@@ -48,7 +48,9 @@ import com.google.android.ground.persistence.local.room.models.*
       SubmissionMutationEntity::class,
       TileSetEntity::class,
       OfflineAreaEntity::class,
-      UserEntity::class
+      UserEntity::class,
+      TileSetFootprintEntity::class,
+      TileSetFootprintSourceEntity::class
     ],
   version = Config.DB_VERSION,
   exportSchema = false
@@ -76,7 +78,9 @@ abstract class LocalDatabase : RoomDatabase() {
   abstract fun baseMapDao(): BaseMapDao
   abstract fun submissionDao(): SubmissionDao
   abstract fun submissionMutationDao(): SubmissionMutationDao
+  abstract fun mutationDao(): MutationDao
   abstract fun tileSetDao(): TileSetDao
   abstract fun offlineAreaDao(): OfflineAreaDao
   abstract fun userDao(): UserDao
+  abstract fun tileSetFootprintDao(): TileSetFootprintDao
 }
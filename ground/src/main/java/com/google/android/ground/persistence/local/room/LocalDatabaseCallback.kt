@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.RoomDatabase
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Creates triggers which can't be declared on Room entities. Triggers are created along with new
+ * dbs, by [LocationOfInterestRowVersionCounterMigration] in existing ones, and again after
+ * destructive migrations, which drop them along with their tables.
+ */
+object LocalDatabaseCallback : RoomDatabase.Callback() {
+  /**
+   * Holds the last `row_version` assigned to an LOI. Versions are drawn from this counter rather
+   * than incremented per row, so that they aren't reused when an LOI is deleted and reinserted. The
+   * counter starts after the largest version in dbs created before it was introduced.
+   */
+  private const val CREATE_ROW_VERSION_COUNTER =
+    "CREATE TABLE IF NOT EXISTS location_of_interest_row_version_counter " +
+      "(id INTEGER PRIMARY KEY CHECK (id = 0), value INTEGER NOT NULL)"
+
+  private const val INIT_ROW_VERSION_COUNTER =
+    "INSERT OR IGNORE INTO location_of_interest_row_version_counter (id, value) " +
+      "SELECT 0, COALESCE(MAX(row_version), 0) FROM location_of_interest"
+
+  /** Assigns the next version to the new or updated LOI. */
+  private const val ASSIGN_ROW_VERSION =
+    "UPDATE location_of_interest_row_version_counter SET value = value + 1; " +
+      "UPDATE location_of_interest SET row_version = " +
+      "(SELECT value FROM location_of_interest_row_version_counter) WHERE id = NEW.id; "
+
+  private const val LOCATION_OF_INTEREST_INSERT_TRIGGER =
+    "CREATE TRIGGER IF NOT EXISTS location_of_interest_insert_row_version " +
+      "AFTER INSERT ON location_of_interest BEGIN " +
+      ASSIGN_ROW_VERSION +
+      "END"
+
+  /**
+   * Assigns a new version each time an LOI is updated, regardless of the value written. Writes of a
+   * newer version are skipped, which is only done by the insert trigger above.
+   */
+  private const val LOCATION_OF_INTEREST_UPDATE_TRIGGER =
+    "CREATE TRIGGER IF NOT EXISTS location_of_interest_update_row_version " +
+      "AFTER UPDATE ON location_of_interest WHEN NEW.row_version <= OLD.row_version BEGIN " +
+      ASSIGN_ROW_VERSION +
+      "END"
+
+  /** Set when tables were dropped by a destructive migration, to be recreated once reopened. */
+  @Volatile private var triggersDropped = false
+
+  /** Creates the LOI row version counter and the triggers which assign versions from it. */
+  fun createRowVersionTriggers(db: SupportSQLiteDatabase) {
+    db.execSQL(CREATE_ROW_VERSION_COUNTER)
+    db.execSQL(INIT_ROW_VERSION_COUNTER)
+    db.execSQL(LOCATION_OF_INTEREST_INSERT_TRIGGER)
+    db.execSQL(LOCATION_OF_INTEREST_UPDATE_TRIGGER)
+  }
+
+  override fun onCreate(db: SupportSQLiteDatabase) {
+    createRowVersionTriggers(db)
+  }
+
+  override fun onDestructiveMigration(db: SupportSQLiteDatabase) {
+    // Called before tables are recreated, so triggers can only be restored once the db is open.
+    triggersDropped = true
+  }
+
+  override fun onOpen(db: SupportSQLiteDatabase) {
+    if (!triggersDropped) return
+    triggersDropped = false
+    createRowVersionTriggers(db)
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import android.util.LruCache
+import androidx.room.InvalidationTracker
+import com.google.android.ground.model.Survey
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.persistence.local.room.entity.LocationOfInterestEntity
+import io.reactivex.Maybe
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+import timber.log.Timber
+
+/**
+ * Bounded in-memory LRU caches of [Survey] and [LocationOfInterest] instances converted from local
+ * db entities, used to avoid rebuilding the same model objects on repeated reads.
+ *
+ * Entries are keyed by entity id and a generation which is incremented whenever survey
+ * definitions change, as reported by Room's [InvalidationTracker]. LOIs are additionally keyed by
+ * their row version and the id of the survey they were converted with, since they reference the
+ * [Survey]'s jobs. Stale entries are never returned, and are eventually evicted as least recently
+ * used.
+ */
+@Singleton
+class LocalModelCache @Inject constructor(localDatabase: LocalDatabase) {
+  private val generation = AtomicLong()
+  private val surveys = LruCache<SurveyKey, Survey>(MAX_SURVEYS)
+  private val locationsOfInterest =
+    LruCache<LocationOfInterestKey, LocationOfInterest>(MAX_LOCATIONS_OF_INTEREST)
+
+  init {
+    localDatabase.invalidationTracker.addObserver(
+      object : InvalidationTracker.Observer(SURVEY_TABLES) {
+        override fun onInvalidated(tables: Set<String>) = invalidate()
+      }
+    )
+  }
+
+  /**
+   * Returns the survey with the specified id from the cache if present, otherwise subscribes to
+   * [loader] and caches its result.
+   */
+  fun getSurvey(id: String, loader: Maybe<Survey>): Maybe<Survey> =
+    Maybe.defer {
+      // Captured before loading so that results loaded concurrently with a change aren't reused.
+      val key = SurveyKey(id, generation.get())
+      surveys[key]?.let { Maybe.just(it) } ?: loader.doOnSuccess { surveys.put(key, it) }
+    }
+
+  /**
+   * Returns the LOI converted from [entity] with [survey] from the cache if present, otherwise
+   * converts and caches it using [converter].
+   */
+  fun getLocationOfInterest(
+    survey: Survey,
+    entity: LocationOfInterestEntity,
+    converter: () -> LocationOfInterest
+  ): LocationOfInterest {
+    val key = LocationOfInterestKey(survey.id, entity.id, entity.rowVersion, generation.get())
+    return locationsOfInterest[key] ?: converter().also { locationsOfInterest.put(key, it) }
+  }
+
+  /** Discards all cached objects. Called on survey changes. */
+  fun invalidate() {
+    // Logged so that the effectiveness of the caches can be checked in debug logs.
+    Timber.d("Invalidating $this")
+    generation.incrementAndGet()
+  }
+
+  val surveyHitCount: Int
+    get() = surveys.hitCount()
+
+  val surveyMissCount: Int
+    get() = surveys.missCount()
+
+  val locationOfInterestHitCount: Int
+    get() = locationsOfInterest.hitCount()
+
+  val locationOfInterestMissCount: Int
+    get() = locationsOfInterest.missCount()
+
+  override fun toString(): String =
+    "LocalModelCache(surveys: $surveyHitCount hits, $surveyMissCount misses, " +
+      "LOIs: $locationOfInterestHitCount hits, $locationOfInterestMissCount misses)"
+
+  private data class SurveyKey(val id: String, val generation: Long)
+
+  private data class LocationOfInterestKey(
+    val surveyId: String,
+    val id: String,
+    val rowVersion: Long,
+    val generation: Long
+  )
+
+  companion object {
+    private const val MAX_SURVEYS = 8
+    private const val MAX_LOCATIONS_OF_INTEREST = 5_000
+
+    private val SURVEY_TABLES =
+      arrayOf("survey", "job", "task", "multiple_choice", "option", "offline_base_map_source")
+  }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.google.common.reflect.TypeToken
+import com.google.gson.Gson
+import com.google.gson.JsonParseException
+import timber.log.Timber
+
+/**
+ * Adds the LOI bounding box columns used for viewport queries and their index, and fills them in
+ * from the stored point locations and polygon vertices. Polygon vertices are stored as JSON text
+ * at this version.
+ */
+object LocationOfInterestBoundsMigration : Migration(95, 96) {
+  private val BOUNDS_COLUMNS = listOf("min_lat", "min_lng", "max_lat", "max_lng")
+
+  private val gson = Gson()
+  private val verticesType = object : TypeToken<List<List<Double>>>() {}.type
+
+  override fun migrate(database: SupportSQLiteDatabase) {
+    BOUNDS_COLUMNS.forEach {
+      database.execSQL("ALTER TABLE `location_of_interest` ADD COLUMN `$it` REAL")
+    }
+    database.execSQL(
+      "CREATE INDEX IF NOT EXISTS `index_location_of_interest_survey_id_state_min_lat_max_lat` " +
+        "ON `location_of_interest` (`survey_id`, `state`, `min_lat`, `max_lat`)"
+    )
+    database.execSQL(
+      "UPDATE `location_of_interest` SET min_lat = lat, min_lng = lng, max_lat = lat, " +
+        "max_lng = lng WHERE vertices IS NULL AND lat IS NOT NULL AND lng IS NOT NULL"
+    )
+    fillPolygonBounds(database)
+  }
+
+  private fun fillPolygonBounds(database: SupportSQLiteDatabase) {
+    // Rows are read up front so that updates don't invalidate the open cursor.
+    val rows =
+      database
+        .query("SELECT rowid, vertices FROM `location_of_interest` WHERE vertices IS NOT NULL")
+        .use { cursor ->
+          generateSequence {
+              if (cursor.moveToNext()) Pair(cursor.getLong(0), cursor.getString(1)) else null
+            }
+            .toList()
+        }
+    for ((rowId, vertices) in rows) {
+      val bounds =
+        try {
+          toBounds(vertices)
+        } catch (e: JsonParseException) {
+          Timber.e(e, "Unreadable geometry in location_of_interest row $rowId")
+          null
+        } catch (e: IndexOutOfBoundsException) {
+          Timber.e(e, "Unreadable geometry in location_of_interest row $rowId")
+          null
+        } ?: continue
+      database.execSQL(
+        "UPDATE `location_of_interest` SET min_lat = ?, min_lng = ?, max_lat = ?, max_lng = ? " +
+          "WHERE rowid = ?",
+        arrayOf<Any?>(*bounds, rowId)
+      )
+    }
+  }
+
+  /** Returns the min lat, min lng, max lat and max lng of [json] vertices, or null if empty. */
+  private fun toBounds(json: String): Array<Double>? {
+    val vertices = gson.fromJson<List<List<Double>>>(json, verticesType)
+    if (vertices.isNullOrEmpty()) return null
+    return arrayOf(
+      vertices.minOf { it[0] },
+      vertices.minOf { it[1] },
+      vertices.maxOf { it[0] },
+      vertices.maxOf { it[1] }
+    )
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/** Adds the `row_version` column used to detect changed LOIs. See [LocalDatabaseCallback]. */
+object LocationOfInterestRowVersionMigration : Migration(97, 98) {
+  override fun migrate(database: SupportSQLiteDatabase) {
+    database.execSQL(
+      "ALTER TABLE location_of_interest ADD COLUMN row_version INTEGER NOT NULL DEFAULT 0"
+    )
+  }
+}
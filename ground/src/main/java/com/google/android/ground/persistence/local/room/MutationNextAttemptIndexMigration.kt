@@ -0,0 +1,35 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Adds indices of mutations by state and next attempt time, which the earliest pending retry is
+ * looked up by.
+ */
+object MutationNextAttemptIndexMigration : Migration(103, 104) {
+  override fun migrate(database: SupportSQLiteDatabase) {
+    listOf("location_of_interest_mutation", "submission_mutation").forEach {
+      database.execSQL(
+        "CREATE INDEX IF NOT EXISTS index_${it}_state_next_attempt_at " +
+          "ON $it (state, next_attempt_at)"
+      )
+    }
+  }
+}
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/** Adds the time of the next sync attempt to mutations so failed ones can be retried later. */
+object MutationRetryScheduleMigration : Migration(100, 101) {
+  override fun migrate(database: SupportSQLiteDatabase) {
+    for (table in listOf("location_of_interest_mutation", "submission_mutation")) {
+      database.execSQL("ALTER TABLE $table ADD COLUMN next_attempt_at INTEGER NOT NULL DEFAULT 0")
+    }
+  }
+}
@@ -16,6 +16,8 @@
 package com.google.android.ground.persistence.local.room
 
 import androidx.room.Transaction
+import androidx.sqlite.db.SupportSQLiteDatabase
+import com.google.android.gms.maps.model.LatLngBounds
 import com.google.android.ground.model.AuditInfo
 import com.google.android.ground.model.Survey
 import com.google.android.ground.model.User
@@ -23,25 +25,29 @@ import com.google.android.ground.model.basemap.OfflineArea
 import com.google.android.ground.model.basemap.tile.TileSet
 import com.google.android.ground.model.job.Job
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
-import com.google.android.ground.model.mutation.Mutation.Companion.byDescendingClientTimestamp
 import com.google.android.ground.model.mutation.Mutation.SyncStatus
 import com.google.android.ground.model.mutation.Mutation.Type.*
 import com.google.android.ground.model.mutation.SubmissionMutation
 import com.google.android.ground.model.submission.Submission
+import com.google.android.ground.model.submission.SubmissionPage
 import com.google.android.ground.model.submission.TaskDataDelta
 import com.google.android.ground.model.submission.TaskDataMap
 import com.google.android.ground.model.task.MultipleChoice
 import com.google.android.ground.model.task.Option
 import com.google.android.ground.model.task.Task
 import com.google.android.ground.persistence.local.LocalDataStore
+import com.google.android.ground.persistence.local.MutationCompactionResult
 import com.google.android.ground.persistence.local.room.converter.*
 import com.google.android.ground.persistence.local.room.converter.ResponseMapConverter.toString
 import com.google.android.ground.persistence.local.room.dao.*
 import com.google.android.ground.persistence.local.room.entity.*
 import com.google.android.ground.persistence.local.room.models.EntityState
+import com.google.android.ground.persistence.local.room.models.EntityVersion
 import com.google.android.ground.persistence.local.room.models.MutationEntitySyncStatus
+import com.google.android.ground.persistence.local.room.models.MutationKey
 import com.google.android.ground.persistence.local.room.models.TileSetEntityState
 import com.google.android.ground.persistence.local.room.models.UserDetails
 import com.google.android.ground.persistence.local.room.relations.SurveyEntityAndRelations
@@ -51,11 +57,11 @@ import com.google.android.ground.ui.util.FileUtil
 import com.google.android.ground.util.toImmutableList
 import com.google.android.ground.util.toImmutableSet
 import com.google.common.base.Preconditions
-import com.google.common.collect.ImmutableCollection
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableSet
 import com.google.firebase.crashlytics.FirebaseCrashlytics
 import io.reactivex.*
+import java.util.concurrent.Callable
 import java8.util.function.Supplier
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -69,6 +75,8 @@ import timber.log.Timber
  */
 @Singleton
 class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
+  @Inject lateinit var localDatabase: LocalDatabase
+
   @Inject lateinit var optionDao: OptionDao
 
   @Inject lateinit var multipleChoiceDao: MultipleChoiceDao
@@ -87,6 +95,8 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
 
   @Inject lateinit var submissionMutationDao: SubmissionMutationDao
 
+  @Inject lateinit var mutationDao: MutationDao
+
   @Inject lateinit var tileSetDao: TileSetDao
 
   @Inject lateinit var userDao: UserDao
@@ -99,65 +109,43 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
 
   @Inject lateinit var fileUtil: FileUtil
 
-  private fun insertOrUpdateOption(taskId: String, option: Option): Completable =
-    optionDao.insertOrUpdate(option.toLocalDataStoreObject(taskId)).subscribeOn(schedulers.io())
-
-  private fun insertOrUpdateOptions(
-    taskId: String,
-    options: kotlinx.collections.immutable.ImmutableList<Option>
-  ): Completable =
-    Observable.fromIterable(options)
-      .flatMapCompletable { insertOrUpdateOption(taskId, it) }
-      .subscribeOn(schedulers.io())
-
-  private fun insertOrUpdateMultipleChoice(
-    taskId: String,
-    multipleChoice: MultipleChoice
-  ): Completable =
-    multipleChoiceDao
-      .insertOrUpdate(multipleChoice.toLocalDataStoreObject(taskId))
-      .andThen(insertOrUpdateOptions(taskId, multipleChoice.options))
-      .subscribeOn(schedulers.io())
-
-  private fun insertOrUpdateTask(jobId: String, task: Task): Completable =
-    taskDao
-      .insertOrUpdate(task.toLocalDataStoreObject(jobId))
-      .andThen(
-        Observable.just(task)
-          .filter { task.multipleChoice != null }
-          .flatMapCompletable { insertOrUpdateMultipleChoice(task.id, task.multipleChoice!!) }
-      )
-      .subscribeOn(schedulers.io())
-
-  private fun insertOrUpdateTasks(jobId: String, tasks: ImmutableCollection<Task>): Completable =
-    Observable.fromIterable(tasks).flatMapCompletable { insertOrUpdateTask(jobId, it) }
-
-  private fun insertOrUpdateJob(surveyId: String, job: Job): Completable =
-    jobDao
-      .insertOrUpdate(job.toLocalDataStoreObject(surveyId))
-      .andThen(insertOrUpdateTasks(job.id, job.tasks.values))
-      .subscribeOn(schedulers.io())
-
-  private fun insertOrUpdateJobs(surveyId: String, jobs: List<Job>): Completable =
-    Observable.fromIterable(jobs).flatMapCompletable { insertOrUpdateJob(surveyId, it) }
+  @Inject lateinit var modelCache: LocalModelCache
 
-  private fun insertOfflineBaseMapSources(survey: Survey): Completable =
-    Observable.fromIterable(survey.baseMaps).flatMapCompletable {
-      baseMapDao.insert(it.toLocalDataStoreObject(surveyId = survey.id))
-    }
+  /**
+   * Replaces the survey and its full job, task, multiple choice and option graph using batched
+   * inserts. Jobs (and, via cascading deletes, their tasks) and base maps previously associated
+   * with the survey are removed first. Must be called from within a transaction.
+   */
+  private fun insertOrUpdateSurveyGraph(survey: Survey) {
+    val tasksByJobId = survey.jobs.flatMap { job -> job.tasks.values.map { job.id to it } }
+    val multipleChoiceTasks = tasksByJobId.map { it.second }.filter { it.multipleChoice != null }
+
+    surveyDao.insertOrReplace(survey.toLocalDataStoreObject())
+    jobDao.deleteBySurveyId(survey.id)
+    jobDao.insertOrReplaceAll(survey.jobs.map { it.toLocalDataStoreObject(survey.id) })
+    taskDao.insertOrReplaceAll(
+      tasksByJobId.map { (jobId, task) -> task.toLocalDataStoreObject(jobId) }
+    )
+    multipleChoiceDao.insertOrReplaceAll(
+      multipleChoiceTasks.map { it.multipleChoice!!.toLocalDataStoreObject(it.id) }
+    )
+    optionDao.insertOrReplaceAll(
+      multipleChoiceTasks.flatMap { task ->
+        task.multipleChoice!!.options.map { it.toLocalDataStoreObject(task.id) }
+      }
+    )
+    baseMapDao.deleteBySurveyId(survey.id)
+    baseMapDao.insertAll(survey.baseMaps.map { it.toLocalDataStoreObject(surveyId = survey.id) })
+  }
 
-  @Transaction
   override fun insertOrUpdateSurvey(survey: Survey): Completable =
-    surveyDao
-      .insertOrUpdate(survey.toLocalDataStoreObject())
-      .andThen(jobDao.deleteBySurveyId(survey.id))
-      .andThen(insertOrUpdateJobs(survey.id, survey.jobs))
-      .andThen(baseMapDao.deleteBySurveyId(survey.id))
-      .andThen(insertOfflineBaseMapSources(survey))
+    Completable.fromAction { localDatabase.runInTransaction { insertOrUpdateSurveyGraph(survey) } }
+      // Invalidation tracker callbacks are async, so stale surveys are evicted eagerly here too.
+      .doOnComplete { modelCache.invalidate() }
       .subscribeOn(schedulers.io())
 
   override fun insertOrUpdateUser(user: User): Completable =
-    userDao.insertOrUpdate(user.toLocalDataStoreObject()).subscribeOn(schedulers.io())
+    userDao.insertOrReplace(user.toLocalDataStoreObject()).subscribeOn(schedulers.io())
 
   override fun getUser(id: String): Single<User> =
     userDao
@@ -179,10 +167,15 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
         .subscribeOn(schedulers.io())
 
   override fun getSurveyById(id: String): Maybe<Survey> =
-    surveyDao.getSurveyById(id).map { it.toModelObject() }.subscribeOn(schedulers.io())
+    modelCache
+      .getSurvey(id, surveyDao.getSurveyById(id).map { it.toModelObject() })
+      .subscribeOn(schedulers.io())
 
   override fun deleteSurvey(survey: Survey): Completable =
-    surveyDao.delete(survey.toLocalDataStoreObject()).subscribeOn(schedulers.io())
+    surveyDao
+      .delete(survey.toLocalDataStoreObject())
+      .doOnComplete { modelCache.invalidate() }
+      .subscribeOn(schedulers.io())
 
   @Transaction
   override fun applyAndEnqueue(mutation: LocationOfInterestMutation): Completable {
@@ -206,11 +199,107 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
       .map { toLocationsOfInterest(survey, it) }
       .subscribeOn(schedulers.io())
 
+  override fun getLocationsOfInterestWithinBoundsOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds
+  ): Flowable<ImmutableSet<LocationOfInterest>> =
+    locationOfInterestDao
+      .findWithinBoundsOnceAndStream(
+        survey.id,
+        EntityState.DEFAULT,
+        bounds.southwest.latitude,
+        bounds.southwest.longitude,
+        bounds.northeast.latitude,
+        bounds.northeast.longitude
+      )
+      .map { toLocationsOfInterest(survey, it) }
+      .subscribeOn(schedulers.io())
+
+  override fun getLocationsOfInterestWithinBounds(
+    survey: Survey,
+    bounds: LatLngBounds
+  ): Single<ImmutableSet<LocationOfInterest>> =
+    locationOfInterestDao
+      .findWithinBounds(
+        survey.id,
+        EntityState.DEFAULT,
+        bounds.southwest.latitude,
+        bounds.southwest.longitude,
+        bounds.northeast.latitude,
+        bounds.northeast.longitude
+      )
+      .map { toLocationsOfInterest(survey, it) }
+      .subscribeOn(schedulers.io())
+
   private fun toLocationsOfInterest(
     survey: Survey,
     locationOfInterestEntities: List<LocationOfInterestEntity>
   ): ImmutableSet<LocationOfInterest> =
-    locationOfInterestEntities.flatMap { logAndSkip { it.toModelObject(survey) } }.toImmutableSet()
+    locationOfInterestEntities
+      .flatMap { logAndSkip { toLocationOfInterest(survey, it) } }
+      .toImmutableSet()
+
+  private fun toLocationOfInterest(
+    survey: Survey,
+    entity: LocationOfInterestEntity
+  ): LocationOfInterest =
+    modelCache.getLocationOfInterest(survey, entity) { entity.toModelObject(survey) }
+
+  override fun getLocationOfInterestChangesOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds?
+  ): Flowable<LocationOfInterestChangeSet> =
+    Flowable.defer {
+        // Row versions of the LOIs included in the last emitted change set.
+        var lastVersions = mapOf<String, Long>()
+        var isFirst = true
+        findLocationOfInterestVersionsOnceAndStream(survey, bounds)
+          .map { versions -> versions.associate { it.id to it.rowVersion } }
+          .concatMapSingle { versions ->
+            val previousVersions = lastVersions
+            lastVersions = versions
+            val changedIds = versions.filter { (id, version) -> previousVersions[id] != version }
+            val removedIds = previousVersions.keys.filterNot { versions.containsKey(it) }
+            findLocationsOfInterest(survey, changedIds.keys).map { changed ->
+              val (modified, added) = changed.partition { previousVersions.containsKey(it.id) }
+              LocationOfInterestChangeSet(
+                added.toImmutableList(),
+                modified.toImmutableList(),
+                removedIds.toImmutableSet()
+              )
+            }
+          }
+          .filter { changes -> (isFirst || !changes.isEmpty()).also { isFirst = false } }
+      }
+      .subscribeOn(schedulers.io())
+
+  private fun findLocationOfInterestVersionsOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds?
+  ): Flowable<List<EntityVersion>> =
+    if (bounds == null) {
+      locationOfInterestDao.findVersionsOnceAndStream(survey.id, EntityState.DEFAULT)
+    } else {
+      locationOfInterestDao.findVersionsWithinBoundsOnceAndStream(
+        survey.id,
+        EntityState.DEFAULT,
+        bounds.southwest.latitude,
+        bounds.southwest.longitude,
+        bounds.northeast.latitude,
+        bounds.northeast.longitude
+      )
+    }
+
+  /** Loads the LOIs with the specified ids, querying in chunks to stay within SQLite limits. */
+  private fun findLocationsOfInterest(
+    survey: Survey,
+    ids: Collection<String>
+  ): Single<ImmutableSet<LocationOfInterest>> =
+    Flowable.fromIterable(ids.chunked(MAX_QUERY_ARGS))
+      .concatMapSingle { locationOfInterestDao.findByIds(it) }
+      .flatMapIterable { it }
+      .toList()
+      .map { toLocationsOfInterest(survey, it) }
 
   override fun getLocationOfInterest(
     survey: Survey,
@@ -218,7 +307,7 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
   ): Maybe<LocationOfInterest> =
     locationOfInterestDao
       .findById(locationOfInterestId)
-      .map { it.toModelObject(survey) }
+      .map { toLocationOfInterest(survey, it) }
       .doOnError { Timber.e(it) }
       .onErrorComplete()
       .subscribeOn(schedulers.io())
@@ -234,13 +323,28 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
       .onErrorComplete()
       .subscribeOn(schedulers.io())
 
-  override fun getSubmissions(
+  override fun getSubmissionsPage(
     locationOfInterest: LocationOfInterest,
-    jobId: String
-  ): Single<ImmutableList<Submission>> =
+    jobId: String,
+    after: SubmissionPage.Cursor?,
+    limit: Int
+  ): Single<SubmissionPage> =
     submissionDao
-      .findByLocationOfInterestId(locationOfInterest.id, jobId, EntityState.DEFAULT)
-      .map { toSubmissions(locationOfInterest, it) }
+      .findPageByLocationOfInterestId(
+        locationOfInterest.id,
+        jobId,
+        EntityState.DEFAULT,
+        after?.clientTimestamp ?: Long.MAX_VALUE,
+        after?.id ?: "",
+        limit
+      )
+      .map { entities ->
+        // Whether there are more pages depends on the rows read, since unreadable ones are skipped.
+        val next =
+          if (entities.size < limit) null
+          else entities.last().let { SubmissionPage.Cursor(it.lastModified.clientTimestamp, it.id) }
+        SubmissionPage(toSubmissions(locationOfInterest, entities), next)
+      }
       .subscribeOn(schedulers.io())
 
   private fun toSubmissions(
@@ -259,54 +363,96 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
         .subscribeOn(schedulers.io())
 
   override fun getMutationsOnceAndStream(
-    survey: Survey
-  ): @Cold(terminates = false) Flowable<ImmutableList<Mutation>> {
+    survey: Survey,
+    after: Mutation?,
+    limit: Int
+  ): @Cold(terminates = false) Flowable<ImmutableList<Mutation>> =
     // TODO: Show mutations for all surveys, not just current one.
-    val locationOfInterestMutations =
-      locationOfInterestMutationDao
-        .loadAllOnceAndStream()
-        .map { list: List<LocationOfInterestMutationEntity> ->
-          list.filter { it.surveyId == survey.id }.map { it.toModelObject() }.toImmutableList()
-        }
-        .subscribeOn(schedulers.io())
-    val submissionMutations =
-      submissionMutationDao
-        .loadAllOnceAndStream()
-        .map { list: List<SubmissionMutationEntity> ->
-          list
-            .filter { it.surveyId == survey.id }
-            .map { it.toModelObject(survey) }
-            .toImmutableList()
+    mutationDao
+      .findKeysBySurveyIdOnceAndStream(
+        survey.id,
+        after?.clientTimestamp?.time ?: Long.MAX_VALUE,
+        after == null || after is SubmissionMutation,
+        after?.id ?: Long.MAX_VALUE,
+        limit
+      )
+      .concatMapSingle { findMutations(survey, it) }
+      .subscribeOn(schedulers.io())
+
+  /**
+   * Loads the LOI and submission mutations with the specified keys, retaining the order of the
+   * keys. Mutations removed since the keys were read are skipped.
+   */
+  private fun findMutations(
+    survey: Survey,
+    keys: List<MutationKey>
+  ): Single<ImmutableList<Mutation>> {
+    val (submissionKeys, locationOfInterestKeys) = keys.partition { it.isSubmissionMutation }
+    return Single.zip(
+      findByIdsInChunks(locationOfInterestKeys) { locationOfInterestMutationDao.findByIds(it) },
+      findByIdsInChunks(submissionKeys) { submissionMutationDao.findByIds(it) }
+    ) { locationOfInterestMutations, submissionMutations ->
+      val locationOfInterestMutationsById = locationOfInterestMutations.associateBy { it.id }
+      val submissionMutationsById = submissionMutations.associateBy { it.id }
+      keys
+        .mapNotNull<MutationKey, Mutation> {
+          if (it.isSubmissionMutation) submissionMutationsById[it.id]?.toModelObject(survey)
+          else locationOfInterestMutationsById[it.id]?.toModelObject()
         }
-        .subscribeOn(schedulers.io())
-    return Flowable.combineLatest(
-      locationOfInterestMutations,
-      submissionMutations,
-      this::combineAndSortMutations
-    )
+        .toImmutableList()
+    }
   }
 
-  private fun combineAndSortMutations(
-    locationOfInterestMutations: ImmutableList<LocationOfInterestMutation>,
-    submissionMutations: ImmutableList<SubmissionMutation>
-  ): ImmutableList<Mutation> =
-    ImmutableList.sortedCopyOf(
-      byDescendingClientTimestamp(),
-      ImmutableList.builder<Mutation>()
-        .addAll(locationOfInterestMutations)
-        .addAll(submissionMutations)
-        .build()
-    )
+  private fun <E> findByIdsInChunks(
+    keys: List<MutationKey>,
+    findByIds: (List<Long>) -> Single<List<E>>
+  ): Single<List<E>> =
+    Flowable.fromIterable(keys.map { it.id }.chunked(MAX_QUERY_ARGS))
+      .concatMapSingle { findByIds(it) }
+      .flatMapIterable { it }
+      .toList()
 
   override fun getPendingMutations(locationOfInterestId: String): Single<ImmutableList<Mutation>> =
+    toMutations(
+      locationOfInterestMutationDao.findByLocationOfInterestId(
+        locationOfInterestId,
+        MutationEntitySyncStatus.PENDING
+      ),
+      submissionMutationDao.findByLocationOfInterestId(
+        locationOfInterestId,
+        MutationEntitySyncStatus.PENDING
+      )
+    )
+
+  override fun getPendingMutations(): Single<ImmutableList<Mutation>> =
+    toMutations(
+        locationOfInterestMutationDao.findByState(MutationEntitySyncStatus.PENDING),
+        submissionMutationDao.findByState(MutationEntitySyncStatus.PENDING)
+      )
+      .zipWith(
+        toMutations(
+          locationOfInterestMutationDao.findByState(MutationEntitySyncStatus.FAILED),
+          submissionMutationDao.findByState(MutationEntitySyncStatus.FAILED)
+        )
+      ) { pending, failed -> filterReadyToSync(pending, failed, System.currentTimeMillis()) }
+
+  override fun getNextPendingMutationAttemptTime(): Maybe<Long> =
     locationOfInterestMutationDao
-      .findByLocationOfInterestId(locationOfInterestId, MutationEntitySyncStatus.PENDING)
+      .findNextAttemptAt(MutationEntitySyncStatus.PENDING)
+      .mergeWith(submissionMutationDao.findNextAttemptAt(MutationEntitySyncStatus.PENDING))
+      .reduce { a, b -> minOf(a, b) }
+      .subscribeOn(schedulers.io())
+
+  private fun toMutations(
+    locationOfInterestMutations: Single<List<LocationOfInterestMutationEntity>>,
+    submissionMutations: Single<List<SubmissionMutationEntity>>
+  ): Single<ImmutableList<Mutation>> =
+    locationOfInterestMutations
       .flattenAsObservable { it }
       .map { it.toModelObject() }
       .cast(Mutation::class.java)
       .mergeWith(
-        submissionMutationDao
-          .findByLocationOfInterestId(locationOfInterestId, MutationEntitySyncStatus.PENDING)
+        submissionMutations
           .flattenAsObservable { it }
           .flatMap { ome ->
             getSurveyById(ome.surveyId)
@@ -345,6 +491,50 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
       .map { it.toLocalDataStoreObject() }
       .toImmutableList()
 
+  override fun compactMutations(
+    retentionMillis: Long,
+    maxCount: Int
+  ): Single<MutationCompactionResult> =
+    Single.fromCallable {
+        val before = System.currentTimeMillis() - retentionMillis
+        val rowsRemoved =
+          localDatabase.runInTransaction(
+            Callable {
+              locationOfInterestMutationDao.deleteExpired(
+                MutationEntitySyncStatus.COMPLETED,
+                before,
+                maxCount
+              ) +
+                submissionMutationDao.deleteExpired(
+                  MutationEntitySyncStatus.COMPLETED,
+                  before,
+                  maxCount
+                )
+            }
+          )
+        MutationCompactionResult(rowsRemoved, if (rowsRemoved > 0) vacuum() else 0)
+      }
+      .subscribeOn(schedulers.io())
+
+  /**
+   * Rebuilds the db file if it contains any free pages, returning the number of bytes reclaimed.
+   * Must not be called from within a transaction.
+   */
+  private fun vacuum(): Long {
+    val db = localDatabase.openHelper.writableDatabase
+    val freePages = db.queryLong("PRAGMA freelist_count")
+    if (freePages == 0L) return 0
+    val sizeBefore = db.queryLong("PRAGMA page_count") * db.pageSize
+    db.execSQL("VACUUM")
+    return sizeBefore - db.queryLong("PRAGMA page_count") * db.pageSize
+  }
+
+  private fun SupportSQLiteDatabase.queryLong(sql: String): Long =
+    query(sql).use {
+      it.moveToFirst()
+      it.getLong(0)
+    }
+
   override fun finalizePendingMutations(mutations: ImmutableList<Mutation>): Completable =
     finalizeDeletions(mutations).andThen(markComplete(mutations))
 
@@ -385,6 +575,25 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
       .insertOrUpdate(locationOfInterest.toLocalDataStoreObject())
       .subscribeOn(schedulers.io())
 
+  override fun mergeLocationsOfInterest(
+    locationsOfInterest: ImmutableList<LocationOfInterest>
+  ): Completable =
+    mergeLocationOfInterestChanges(LocationOfInterestChangeSet(modified = locationsOfInterest))
+
+  override fun mergeLocationOfInterestChanges(changes: LocationOfInterestChangeSet): Completable =
+    // TODO(#706): Apply pending local mutations before saving.
+    Completable.fromAction {
+        localDatabase.runInTransaction {
+          locationOfInterestDao.insertOrUpdateAll(
+            (changes.added + changes.modified).map { it.toLocalDataStoreObject() }
+          )
+          changes.removedIds.chunked(MAX_QUERY_ARGS).forEach {
+            locationOfInterestDao.deleteByIds(it)
+          }
+        }
+      }
+      .subscribeOn(schedulers.io())
+
   @Transaction
   override fun mergeSubmission(submission: Submission): Completable {
     val submissionEntity = submission.toLocalDataStoreObject()
@@ -575,7 +784,12 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
       .subscribeOn(schedulers.io())
 
   override fun insertOrUpdateTileSet(tileSet: TileSet): Completable =
-    tileSetDao.insertOrUpdate(tileSet.toLocalDataStoreObject()).subscribeOn(schedulers.io())
+    insertOrUpdateTileSets(ImmutableList.of(tileSet))
+
+  override fun insertOrUpdateTileSets(tileSets: ImmutableList<TileSet>): Completable =
+    tileSetDao
+      .insertOrReplaceAll(tileSets.map { it.toLocalDataStoreObject() })
+      .subscribeOn(schedulers.io())
 
   override fun getTileSet(tileUrl: String): Maybe<TileSet> =
     tileSetDao.findByUrl(tileUrl).map { it.toModelObject() }.subscribeOn(schedulers.io())
@@ -588,7 +802,7 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
         .subscribeOn(schedulers.io())
 
   override fun insertOrUpdateOfflineArea(area: OfflineArea): Completable =
-    offlineAreaDao.insertOrUpdate(area.toOfflineAreaEntity()).subscribeOn(schedulers.io())
+    offlineAreaDao.insertOrReplace(area.toOfflineAreaEntity()).subscribeOn(schedulers.io())
 
   override val offlineAreasOnceAndStream: Flowable<ImmutableList<OfflineArea>>
     get() =
@@ -652,4 +866,36 @@ class RoomLocalDataStore @Inject internal constructor() : LocalDataStore {
       Timber.d(e.message)
       emptySet()
     }
+
+  companion object {
+    /** Maximum number of ids bound to a single `IN` query; SQLite allows at most 999 arguments. */
+    private const val MAX_QUERY_ARGS = 500
+
+    /**
+     * Returns the [pending] mutations whose next sync attempt is due by [now]. Mutations queued
+     * after a mutation to the same LOI which is awaiting retry or has [failed] permanently are held
+     * back, so that changes to an LOI are never synced ahead of earlier ones, such as the LOI's
+     * creation.
+     */
+    internal fun filterReadyToSync(
+      pending: List<Mutation>,
+      failed: List<Mutation>,
+      now: Long
+    ): ImmutableList<Mutation> {
+      val firstFailureByLoiId =
+        failed
+          .groupBy { it.locationOfInterestId }
+          .mapValues { (_, loiMutations) -> loiMutations.minOf { it.clientTimestamp } }
+      return pending
+        .groupBy { it.locationOfInterestId }
+        .flatMap { (loiId, loiMutations) ->
+          val firstFailure = firstFailureByLoiId[loiId]
+          loiMutations
+            .sortedBy { it.clientTimestamp }
+            .takeWhile { it.nextAttemptAt.time <= now }
+            .filter { firstFailure == null || it.clientTimestamp < firstFailure }
+        }
+        .toImmutableList()
+    }
+  }
 }
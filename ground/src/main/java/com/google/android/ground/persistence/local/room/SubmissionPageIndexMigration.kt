@@ -0,0 +1,34 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/**
+ * Extends the submission lookup index with the last modified timestamp so that pages of
+ * submissions can be read in order directly from the index.
+ */
+object SubmissionPageIndexMigration : Migration(99, 100) {
+  override fun migrate(database: SupportSQLiteDatabase) {
+    database.execSQL("DROP INDEX IF EXISTS index_submission_location_of_interest_id_job_id_state")
+    database.execSQL(
+      "CREATE INDEX IF NOT EXISTS " +
+        "index_submission_location_of_interest_id_job_id_state_modified_clientTimestamp " +
+        "ON submission (location_of_interest_id, job_id, state, modified_clientTimestamp)"
+    )
+  }
+}
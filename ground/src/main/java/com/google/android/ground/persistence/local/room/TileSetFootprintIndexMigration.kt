@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
+
+/** Adds the spatial index of base map tile set footprints and the versions of indexed files. */
+object TileSetFootprintIndexMigration : Migration(101, 102) {
+  override fun migrate(database: SupportSQLiteDatabase) {
+    database.execSQL(
+      "CREATE TABLE IF NOT EXISTS `tile_set_footprint` (`base_map_url` TEXT NOT NULL, " +
+        "`id` TEXT NOT NULL, `url` TEXT NOT NULL, `south` REAL NOT NULL, `west` REAL NOT NULL, " +
+        "`north` REAL NOT NULL, `east` REAL NOT NULL, PRIMARY KEY(`base_map_url`, `id`))"
+    )
+    database.execSQL(
+      "CREATE INDEX IF NOT EXISTS `index_tile_set_footprint_base_map_url_south_north_west_east` " +
+        "ON `tile_set_footprint` (`base_map_url`, `south`, `north`, `west`, `east`)"
+    )
+    database.execSQL(
+      "CREATE TABLE IF NOT EXISTS `tile_set_footprint_source` (`url` TEXT NOT NULL, " +
+        "`e_tag` TEXT, `last_modified` TEXT, `indexed_at` INTEGER NOT NULL, PRIMARY KEY(`url`))"
+    )
+  }
+}
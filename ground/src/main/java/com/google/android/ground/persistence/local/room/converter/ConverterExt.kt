@@ -39,11 +39,8 @@ import com.google.android.ground.persistence.local.room.models.*
 import com.google.android.ground.persistence.local.room.relations.JobEntityAndRelations
 import com.google.android.ground.persistence.local.room.relations.SurveyEntityAndRelations
 import com.google.android.ground.persistence.local.room.relations.TaskEntityAndRelations
-import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableMap
-import com.google.common.reflect.TypeToken
-import com.google.gson.Gson
 import java.net.MalformedURLException
 import java.net.URL
 import java.util.*
@@ -99,11 +96,23 @@ fun Geometry.toLocalDataStoreObject() =
     else -> null
   }
 
+/** Returns the bounding box of this geometry's vertices, or null if it has no vertices. */
+fun Geometry.toBoundingBoxEntity(): BoundingBoxEntity? {
+  val coordinates = vertices.map { it.coordinate }
+  if (coordinates.isEmpty()) return null
+  return BoundingBoxEntity(
+    minLatitude = coordinates.minOf { it.x },
+    minLongitude = coordinates.minOf { it.y },
+    maxLatitude = coordinates.maxOf { it.x },
+    maxLongitude = coordinates.maxOf { it.y }
+  )
+}
+
 private fun GeometryEntity.toPointModel(): Geometry? = this.location?.toPoint()
 
 private fun GeometryEntity.toPolygonModel(): Geometry {
-  val shell = LinearRing(parseVertices(this.vertices).map { it.coordinate })
-  val holes = parseHoles(this.holes).map { LinearRing(it.map(Point::coordinate)) }
+  val shell = LinearRing(parseVertices(this.vertices))
+  val holes = parseHoles(this.holes).map { LinearRing(it) }
 
   return Polygon(shell, holes)
 }
@@ -113,60 +122,39 @@ private fun Point.toLocalDataStoreObject(): GeometryEntity =
 
 private fun Polygon.toLocalDataStoreObject(): GeometryEntity {
   val shell = formatVertices(this.vertices)
-  val holes = formatHoles(this.holes.map { it.vertices })
+  val holes = formatHoles(this.holes)
 
   return GeometryEntity(GeometryType.POLYGON.name, null, shell, holes)
 }
 
-private fun formatHoles(holes: List<ImmutableList<Point>>): String? {
+private fun formatHoles(holes: List<LinearRing>): ByteArray? {
   if (holes.isEmpty()) {
     return null
   }
 
-  val gson = Gson()
-  val holeArray =
-    holes.map { hole -> hole.map { ImmutableList.of(it.coordinate.x, it.coordinate.y) } }
-
-  return gson.toJson(holeArray)
+  return PackedCoordinatesConverter.toByteArray(holes.map { it.coordinates })
 }
 
-fun formatVertices(vertices: ImmutableList<Point>): String? {
+fun formatVertices(vertices: ImmutableList<Point>): ByteArray? {
   if (vertices.isEmpty()) {
     return null
   }
-  val gson = Gson()
-  val verticesArray =
-    vertices.map { (coordinate): Point -> ImmutableList.of(coordinate.x, coordinate.y) }.toList()
-  return gson.toJson(verticesArray)
+  return PackedCoordinatesConverter.toByteArray(listOf(vertices.map { it.coordinate }))
 }
 
-private fun parseHoles(holes: String?): List<ImmutableList<Point>> {
-  if (holes.isNullOrEmpty()) {
+private fun parseHoles(holes: ByteArray?): List<ImmutableList<Coordinate>> {
+  if (holes == null || holes.isEmpty()) {
     return ImmutableList.of()
   }
 
-  val gson = Gson()
-  val holesArray =
-    gson.fromJson<List<List<List<Double>>>>(
-      holes,
-      object : TypeToken<List<List<List<Double?>?>?>?>() {}.type
-    )
-
-  return holesArray.map {
-    it.map { vertex -> Point(Coordinate(vertex[0], vertex[1])) }.toImmutableList()
-  }
+  return PackedCoordinatesConverter.fromByteArray(holes)
 }
 
-fun parseVertices(vertices: String?): ImmutableList<Point> {
-  if (vertices.isNullOrEmpty()) {
+fun parseVertices(vertices: ByteArray?): ImmutableList<Coordinate> {
+  if (vertices == null || vertices.isEmpty()) {
     return ImmutableList.of()
   }
-  val gson = Gson()
-  val verticesArray =
-    gson.fromJson<List<List<Double>>>(vertices, object : TypeToken<List<List<Double?>?>?>() {}.type)
-  return verticesArray
-    .map { vertex: List<Double> -> Point(Coordinate(vertex[0], vertex[1])) }
-    .toImmutableList()
+  return PackedCoordinatesConverter.fromByteArray(vertices).firstOrNull() ?: ImmutableList.of()
 }
 
 fun Job.toLocalDataStoreObject(surveyId: String) =
@@ -191,7 +179,8 @@ fun LocationOfInterest.toLocalDataStoreObject() =
     state = EntityState.DEFAULT,
     created = created.toLocalDataStoreObject(),
     lastModified = lastModified.toLocalDataStoreObject(),
-    geometry = geometry.toLocalDataStoreObject()
+    geometry = geometry.toLocalDataStoreObject(),
+    bounds = geometry.toBoundingBoxEntity()
   )
 
 fun LocationOfInterestEntity.toModelObject(survey: Survey): LocationOfInterest {
@@ -228,7 +217,8 @@ fun LocationOfInterestMutation.toLocalDataStoreObject(
     state = EntityState.DEFAULT,
     created = authInfo,
     lastModified = authInfo,
-    geometry = geometry?.toLocalDataStoreObject()
+    geometry = geometry?.toLocalDataStoreObject(),
+    bounds = geometry?.toBoundingBoxEntity()
   )
 }
 
@@ -244,7 +234,8 @@ fun LocationOfInterestMutation.toLocalDataStoreObject() =
     syncStatus = MutationEntitySyncStatus.fromMutationSyncStatus(syncStatus),
     clientTimestamp = clientTimestamp.time,
     lastError = lastError,
-    retryCount = retryCount
+    retryCount = retryCount,
+    nextAttemptAt = nextAttemptAt.time
   )
 
 fun LocationOfInterestMutationEntity.toModelObject() =
@@ -258,8 +249,10 @@ fun LocationOfInterestMutationEntity.toModelObject() =
     locationOfInterestId = locationOfInterestId,
     syncStatus = syncStatus.toMutationSyncStatus(),
     clientTimestamp = Date(clientTimestamp),
+    lastModifiedTimestamp = Date(clientTimestamp),
     lastError = lastError,
     retryCount = retryCount,
+    nextAttemptAt = Date(nextAttemptAt),
   )
 
 fun MultipleChoiceEntity.toModelObject(optionEntities: List<OptionEntity>): MultipleChoice {
@@ -380,8 +373,10 @@ fun SubmissionMutationEntity.toModelObject(survey: Survey): SubmissionMutation {
     syncStatus = syncStatus.toMutationSyncStatus(),
     retryCount = retryCount,
     lastError = lastError,
+    nextAttemptAt = Date(nextAttemptAt),
     userId = userId,
-    clientTimestamp = Date(clientTimestamp)
+    clientTimestamp = Date(clientTimestamp),
+    lastModifiedTimestamp = Date(clientTimestamp)
   )
 }
 
@@ -397,6 +392,7 @@ fun SubmissionMutation.toLocalDataStoreObject() =
     responseDeltas = ResponseDeltasConverter.toString(taskDataDeltas),
     retryCount = retryCount,
     lastError = lastError,
+    nextAttemptAt = nextAttemptAt.time,
     userId = userId,
     clientTimestamp = clientTimestamp.time
   )
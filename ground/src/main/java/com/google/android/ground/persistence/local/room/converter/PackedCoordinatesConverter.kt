@@ -0,0 +1,83 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.converter
+
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.persistence.local.LocalDataConsistencyException
+import com.google.common.collect.ImmutableList
+import java.nio.BufferUnderflowException
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/**
+ * Converts between lists of coordinate rings and the packed binary form used to store them in BLOB
+ * columns in the local db.
+ *
+ * The encoding is a little-endian int ring count followed by, for each ring, an int vertex count
+ * and the x and y of each vertex as little-endian doubles.
+ */
+object PackedCoordinatesConverter {
+  private const val COORDINATE_SIZE_BYTES = 2 * Double.SIZE_BYTES
+
+  @JvmStatic
+  fun toByteArray(rings: List<List<Coordinate>>): ByteArray {
+    val size = Int.SIZE_BYTES + rings.sumOf { Int.SIZE_BYTES + it.size * COORDINATE_SIZE_BYTES }
+    val buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN)
+    buffer.putInt(rings.size)
+    for (ring in rings) {
+      buffer.putInt(ring.size)
+      for (coordinate in ring) {
+        buffer.putDouble(coordinate.x).putDouble(coordinate.y)
+      }
+    }
+    return buffer.array()
+  }
+
+  @JvmStatic
+  fun fromByteArray(bytes: ByteArray): ImmutableList<ImmutableList<Coordinate>> {
+    val buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+    try {
+      val ringCount = checkCount(buffer, "ring", Int.SIZE_BYTES)
+      val rings = ImmutableList.builderWithExpectedSize<ImmutableList<Coordinate>>(ringCount)
+      repeat(ringCount) {
+        val vertexCount = checkCount(buffer, "vertex", COORDINATE_SIZE_BYTES)
+        val ring = ImmutableList.builderWithExpectedSize<Coordinate>(vertexCount)
+        repeat(vertexCount) { ring.add(Coordinate(buffer.double, buffer.double)) }
+        rings.add(ring.build())
+      }
+      return rings.build()
+    } catch (e: BufferUnderflowException) {
+      throw LocalDataConsistencyException("Truncated coordinates in local db")
+    } catch (e: IllegalArgumentException) {
+      throw LocalDataConsistencyException("Invalid coordinates in local db")
+    }
+  }
+
+  /**
+   * Reads a count of items taking up at least [itemSizeBytes] each, failing if they couldn't fit in
+   * the rest of the buffer. Guards against allocating for counts read from corrupt values.
+   */
+  private fun checkCount(buffer: ByteBuffer, itemName: String, itemSizeBytes: Int): Int {
+    val count = buffer.int
+    if (count < 0 || count.toLong() * itemSizeBytes > buffer.remaining()) {
+      throw LocalDataConsistencyException(
+        "Invalid $itemName count $count in local db coordinates with ${buffer.remaining()} " +
+          "bytes remaining"
+      )
+    }
+    return count
+  }
+}
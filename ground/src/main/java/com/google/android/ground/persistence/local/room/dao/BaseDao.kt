@@ -17,6 +17,7 @@ package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Delete
 import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Update
 import io.reactivex.Completable
 import io.reactivex.Single
@@ -34,9 +35,34 @@ interface BaseDao<E> {
   @Update fun updateAll(entities: List<E>): Completable
 
   @Delete fun delete(entity: E): Completable
+
+  /**
+   * Inserts the specified entities, skipping those whose primary key already exists. Returns the
+   * row id of each inserted entity, or -1 where the entity was skipped.
+   */
+  @Insert(onConflict = OnConflictStrategy.IGNORE)
+  fun insertOrIgnoreAll(entities: List<E>): List<Long>
+
+  /** Updates the specified entities in place, returning the number of rows updated. */
+  @Update fun updateExisting(entities: List<E>): Int
 }
 
-/** Try to update the specified entity, and if it doesn't yet exist, create it. */
-fun <E> BaseDao<E>.insertOrUpdate(entity: E): Completable {
-  return update(entity).filter { n: Int -> n == 0 }.flatMapCompletable { insert(entity) }
+/**
+ * Inserts the specified entities, updating those which already exist in place. Existing rows are
+ * never deleted, so unlike REPLACE this is safe for entities referenced by cascading foreign keys.
+ * Callers should invoke this within a transaction if the batch must be applied atomically.
+ *
+ * SQLite only supports `INSERT ... ON CONFLICT DO UPDATE` from 3.24 (API 30), so this is
+ * implemented as one batched `INSERT OR IGNORE` followed by one batched `UPDATE` of the rows which
+ * already existed.
+ */
+fun <E> BaseDao<E>.insertOrUpdateAll(entities: List<E>) {
+  if (entities.isEmpty()) return
+  val rowIds = insertOrIgnoreAll(entities)
+  val existing = entities.filterIndexed { i, _ -> rowIds[i] == -1L }
+  if (existing.isNotEmpty()) updateExisting(existing)
 }
+
+/** Try to create the specified entity, and if it already exists, update it. */
+fun <E> BaseDao<E>.insertOrUpdate(entity: E): Completable =
+  Completable.fromAction { insertOrUpdateAll(listOf(entity)) }
@@ -16,12 +16,14 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
 import androidx.room.Query
 import com.google.android.ground.persistence.local.room.entity.BaseMapEntity
-import io.reactivex.Completable
 
 @Dao
 interface BaseMapDao : BaseDao<BaseMapEntity> {
+  @Insert fun insertAll(baseMaps: List<BaseMapEntity>)
+
   @Query("DELETE FROM offline_base_map_source WHERE survey_id = :surveyId")
-  fun deleteBySurveyId(surveyId: String): Completable
+  fun deleteBySurveyId(surveyId: String)
 }
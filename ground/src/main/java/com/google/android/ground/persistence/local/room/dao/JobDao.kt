@@ -16,12 +16,15 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import com.google.android.ground.persistence.local.room.entity.JobEntity
-import io.reactivex.Completable
 
 @Dao
 interface JobDao : BaseDao<JobEntity> {
-  @Query("DELETE FROM job WHERE survey_id = :surveyId")
-  fun deleteBySurveyId(surveyId: String): Completable
+  /** Inserts the specified jobs in a single statement batch, replacing rows with the same id. */
+  @Insert(onConflict = OnConflictStrategy.REPLACE) fun insertOrReplaceAll(jobs: List<JobEntity>)
+
+  @Query("DELETE FROM job WHERE survey_id = :surveyId") fun deleteBySurveyId(surveyId: String)
 }
@@ -19,8 +19,10 @@ import androidx.room.Dao
 import androidx.room.Query
 import com.google.android.ground.persistence.local.room.entity.LocationOfInterestEntity
 import com.google.android.ground.persistence.local.room.models.EntityState
+import com.google.android.ground.persistence.local.room.models.EntityVersion
 import io.reactivex.Flowable
 import io.reactivex.Maybe
+import io.reactivex.Single
 
 /** Provides low-level read/write operations of [LocationOfInterestEntity] to/from the local db. */
 @Dao
@@ -31,6 +33,79 @@ interface LocationOfInterestDao : BaseDao<LocationOfInterestEntity> {
     state: EntityState
   ): Flowable<List<LocationOfInterestEntity>>
 
+  /**
+   * Returns LOIs in the specified survey whose bounding boxes intersect the specified bounds. If
+   * [west] is greater than [east], the bounds are assumed to span the antimeridian.
+   */
+  @Query(
+    "SELECT * FROM location_of_interest " +
+      "WHERE survey_id = :surveyId AND state = :state " +
+      "AND min_lat <= :north AND max_lat >= :south " +
+      "AND ((:west <= :east AND min_lng <= :east AND max_lng >= :west) " +
+      "OR (:west > :east AND (min_lng <= :east OR max_lng >= :west)))"
+  )
+  fun findWithinBoundsOnceAndStream(
+    surveyId: String,
+    state: EntityState,
+    south: Double,
+    west: Double,
+    north: Double,
+    east: Double
+  ): Flowable<List<LocationOfInterestEntity>>
+
+  /**
+   * Returns LOIs in the specified survey whose bounding boxes intersect the specified bounds. See
+   * [findWithinBoundsOnceAndStream].
+   */
+  @Query(
+    "SELECT * FROM location_of_interest " +
+      "WHERE survey_id = :surveyId AND state = :state " +
+      "AND min_lat <= :north AND max_lat >= :south " +
+      "AND ((:west <= :east AND min_lng <= :east AND max_lng >= :west) " +
+      "OR (:west > :east AND (min_lng <= :east OR max_lng >= :west)))"
+  )
+  fun findWithinBounds(
+    surveyId: String,
+    state: EntityState,
+    south: Double,
+    west: Double,
+    north: Double,
+    east: Double
+  ): Single<List<LocationOfInterestEntity>>
+
   @Query("SELECT * FROM location_of_interest WHERE id = :id")
   fun findById(id: String): Maybe<LocationOfInterestEntity>
+
+  @Query("SELECT * FROM location_of_interest WHERE id IN (:ids)")
+  fun findByIds(ids: List<String>): Single<List<LocationOfInterestEntity>>
+
+  @Query("DELETE FROM location_of_interest WHERE id IN (:ids)")
+  fun deleteByIds(ids: List<String>): Int
+
+  /** Returns the id and row version of each LOI in the specified survey. */
+  @Query(
+    "SELECT id, row_version FROM location_of_interest " +
+      "WHERE survey_id = :surveyId AND state = :state"
+  )
+  fun findVersionsOnceAndStream(surveyId: String, state: EntityState): Flowable<List<EntityVersion>>
+
+  /**
+   * Returns the id and row version of each LOI in the specified survey whose bounding box
+   * intersects the specified bounds. See [findWithinBoundsOnceAndStream].
+   */
+  @Query(
+    "SELECT id, row_version FROM location_of_interest " +
+      "WHERE survey_id = :surveyId AND state = :state " +
+      "AND min_lat <= :north AND max_lat >= :south " +
+      "AND ((:west <= :east AND min_lng <= :east AND max_lng >= :west) " +
+      "OR (:west > :east AND (min_lng <= :east OR max_lng >= :west)))"
+  )
+  fun findVersionsWithinBoundsOnceAndStream(
+    surveyId: String,
+    state: EntityState,
+    south: Double,
+    west: Double,
+    north: Double,
+    east: Double
+  ): Flowable<List<EntityVersion>>
 }
@@ -21,6 +21,7 @@ import com.google.android.ground.persistence.local.room.entity.LocationOfInteres
 import com.google.android.ground.persistence.local.room.models.MutationEntitySyncStatus
 import com.google.android.ground.rx.annotations.Cold
 import io.reactivex.Flowable
+import io.reactivex.Maybe
 import io.reactivex.Single
 
 /**
@@ -29,8 +30,18 @@ import io.reactivex.Single
  */
 @Dao
 interface LocationOfInterestMutationDao : BaseDao<LocationOfInterestMutationEntity> {
-  @Query("SELECT * FROM location_of_interest_mutation")
-  fun loadAllOnceAndStream(): Flowable<List<LocationOfInterestMutationEntity>>
+  @Query("SELECT * FROM location_of_interest_mutation WHERE id IN (:ids)")
+  fun findByIds(ids: List<Long>): Single<List<LocationOfInterestMutationEntity>>
+
+  @Query("SELECT * FROM location_of_interest_mutation WHERE state = :state")
+  fun findByState(state: MutationEntitySyncStatus): Single<List<LocationOfInterestMutationEntity>>
+
+  /** Returns the earliest next sync attempt time of mutations in the specified state, if any. */
+  @Query(
+    "SELECT next_attempt_at FROM location_of_interest_mutation WHERE state = :state " +
+      "ORDER BY next_attempt_at LIMIT 1"
+  )
+  fun findNextAttemptAt(state: MutationEntitySyncStatus): Maybe<Long>
 
   @Query(
     "SELECT * FROM location_of_interest_mutation " +
@@ -51,4 +62,16 @@ interface LocationOfInterestMutationDao : BaseDao<LocationOfInterestMutationEnti
     locationOfInterestId: String,
     vararg allowedStates: MutationEntitySyncStatus
   ): @Cold(terminates = false) Flowable<List<LocationOfInterestMutationEntity>>
+
+  /**
+   * Deletes mutations in the specified state whose client timestamp is before [before], or which
+   * aren't among the [keepCount] most recent such mutations. Returns the number of rows deleted.
+   */
+  @Query(
+    "DELETE FROM location_of_interest_mutation " +
+      "WHERE state = :state AND (client_timestamp < :before OR id NOT IN (" +
+      "SELECT id FROM location_of_interest_mutation WHERE state = :state " +
+      "ORDER BY client_timestamp DESC LIMIT :keepCount))"
+  )
+  fun deleteExpired(state: MutationEntitySyncStatus, before: Long, keepCount: Int): Int
 }
@@ -16,6 +16,16 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import com.google.android.ground.persistence.local.room.entity.MultipleChoiceEntity
 
-@Dao interface MultipleChoiceDao : BaseDao<MultipleChoiceEntity>
+@Dao
+interface MultipleChoiceDao : BaseDao<MultipleChoiceEntity> {
+  /**
+   * Inserts the specified multiple choice definitions in a single statement batch, replacing rows
+   * with the same task id.
+   */
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplaceAll(multipleChoices: List<MultipleChoiceEntity>)
+}
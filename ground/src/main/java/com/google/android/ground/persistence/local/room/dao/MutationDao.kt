@@ -0,0 +1,57 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.dao
+
+import androidx.room.Dao
+import androidx.room.Query
+import com.google.android.ground.persistence.local.room.models.MutationKey
+import com.google.android.ground.rx.annotations.Cold
+import io.reactivex.Flowable
+
+/** Provides read operations spanning both the LOI and submission mutation tables. */
+@Dao
+interface MutationDao {
+  /**
+   * Returns the keys of up to [limit] mutations of either kind in the specified survey, newest
+   * first, which come after the mutation identified by [beforeTimestamp], [beforeIsSubmission],
+   * and [beforeId] in that order. Mutations are ordered by client timestamp, then by table, then by
+   * id, so that pages don't overlap or leave gaps. Each table is limited before being combined so
+   * that both are read using the `(survey_id, client_timestamp)` index.
+   */
+  @Query(
+    "SELECT * FROM (" +
+      "SELECT id, 0 AS is_submission_mutation, client_timestamp " +
+      "FROM location_of_interest_mutation " +
+      "WHERE survey_id = :surveyId AND client_timestamp <= :beforeTimestamp " +
+      "AND (client_timestamp < :beforeTimestamp OR :beforeIsSubmission OR id < :beforeId) " +
+      "ORDER BY client_timestamp DESC, id DESC LIMIT :limit) " +
+      "UNION ALL " +
+      "SELECT * FROM (" +
+      "SELECT id, 1 AS is_submission_mutation, client_timestamp " +
+      "FROM submission_mutation " +
+      "WHERE survey_id = :surveyId AND client_timestamp <= :beforeTimestamp " +
+      "AND (client_timestamp < :beforeTimestamp OR (:beforeIsSubmission AND id < :beforeId)) " +
+      "ORDER BY client_timestamp DESC, id DESC LIMIT :limit) " +
+      "ORDER BY client_timestamp DESC, is_submission_mutation DESC, id DESC LIMIT :limit"
+  )
+  fun findKeysBySurveyIdOnceAndStream(
+    surveyId: String,
+    beforeTimestamp: Long,
+    beforeIsSubmission: Boolean,
+    beforeId: Long,
+    limit: Int
+  ): @Cold(terminates = false) Flowable<List<MutationKey>>
+}
@@ -16,14 +16,21 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import com.google.android.ground.persistence.local.room.entity.OfflineAreaEntity
+import io.reactivex.Completable
 import io.reactivex.Flowable
 import io.reactivex.Maybe
 
 /** Provides read/write operations for writing [OfflineAreaEntity] to the local db. */
 @Dao
 interface OfflineAreaDao : BaseDao<OfflineAreaEntity> {
+  /** Inserts the specified offline area, replacing any existing row with the same id. */
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplace(area: OfflineAreaEntity): Completable
+
   @Query("SELECT * FROM offline_base_map")
   fun findAllOnceAndStream(): Flowable<List<OfflineAreaEntity>>
 
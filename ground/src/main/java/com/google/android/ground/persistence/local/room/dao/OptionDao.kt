@@ -16,6 +16,13 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import com.google.android.ground.persistence.local.room.entity.OptionEntity
 
-@Dao interface OptionDao : BaseDao<OptionEntity>
+@Dao
+interface OptionDao : BaseDao<OptionEntity> {
+  /** Inserts the specified options in a single statement batch, replacing rows with the same id. */
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplaceAll(options: List<OptionEntity>)
+}
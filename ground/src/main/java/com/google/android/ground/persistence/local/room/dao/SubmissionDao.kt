@@ -29,17 +29,24 @@ interface SubmissionDao : BaseDao<SubmissionEntity> {
   fun findById(submissionId: String): Maybe<SubmissionEntity>
 
   /**
-   * Returns the list submissions associated with the specified location of interest, task and
-   * state.
+   * Returns up to [limit] submissions associated with the specified location of interest, job and
+   * state, most recently modified first, starting after the submission last modified at
+   * [afterTimestamp] with id [afterId].
    */
   @Query(
     "SELECT * FROM submission " +
       "WHERE location_of_interest_id = :locationOfInterestId " +
-      "AND job_id = :jobId AND state = :state"
+      "AND job_id = :jobId AND state = :state " +
+      "AND (modified_clientTimestamp < :afterTimestamp " +
+      "OR (modified_clientTimestamp = :afterTimestamp AND id < :afterId)) " +
+      "ORDER BY modified_clientTimestamp DESC, id DESC LIMIT :limit"
   )
-  fun findByLocationOfInterestId(
+  fun findPageByLocationOfInterestId(
     locationOfInterestId: String,
     jobId: String,
-    state: EntityState
+    state: EntityState,
+    afterTimestamp: Long,
+    afterId: String,
+    limit: Int
   ): Single<List<SubmissionEntity>>
 }
@@ -21,13 +21,24 @@ import com.google.android.ground.persistence.local.room.entity.SubmissionMutatio
 import com.google.android.ground.persistence.local.room.models.MutationEntitySyncStatus
 import com.google.android.ground.rx.annotations.Cold
 import io.reactivex.Flowable
+import io.reactivex.Maybe
 import io.reactivex.Single
 
 /** Data access object for database operations related to [SubmissionMutationEntity]. */
 @Dao
 interface SubmissionMutationDao : BaseDao<SubmissionMutationEntity> {
-  @Query("SELECT * FROM submission_mutation")
-  fun loadAllOnceAndStream(): Flowable<List<SubmissionMutationEntity>>
+  @Query("SELECT * FROM submission_mutation WHERE id IN (:ids)")
+  fun findByIds(ids: List<Long>): Single<List<SubmissionMutationEntity>>
+
+  @Query("SELECT * FROM submission_mutation WHERE state = :state")
+  fun findByState(state: MutationEntitySyncStatus): Single<List<SubmissionMutationEntity>>
+
+  /** Returns the earliest next sync attempt time of mutations in the specified state, if any. */
+  @Query(
+    "SELECT next_attempt_at FROM submission_mutation WHERE state = :state " +
+      "ORDER BY next_attempt_at LIMIT 1"
+  )
+  fun findNextAttemptAt(state: MutationEntitySyncStatus): Maybe<Long>
 
   @Query(
     "SELECT * FROM submission_mutation " +
@@ -55,4 +66,16 @@ interface SubmissionMutationDao : BaseDao<SubmissionMutationEntity> {
     locationOfInterestId: String,
     vararg allowedStates: MutationEntitySyncStatus
   ): @Cold(terminates = false) Flowable<List<SubmissionMutationEntity>>
+
+  /**
+   * Deletes mutations in the specified state whose client timestamp is before [before], or which
+   * aren't among the [keepCount] most recent such mutations. Returns the number of rows deleted.
+   */
+  @Query(
+    "DELETE FROM submission_mutation " +
+      "WHERE state = :state AND (client_timestamp < :before OR id NOT IN (" +
+      "SELECT id FROM submission_mutation WHERE state = :state " +
+      "ORDER BY client_timestamp DESC LIMIT :keepCount))"
+  )
+  fun deleteExpired(state: MutationEntitySyncStatus, before: Long, keepCount: Int): Int
 }
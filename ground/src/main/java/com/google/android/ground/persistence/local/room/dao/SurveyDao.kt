@@ -16,6 +16,8 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import androidx.room.Transaction
 import com.google.android.ground.persistence.local.room.entity.SurveyEntity
@@ -25,6 +27,12 @@ import io.reactivex.Single
 
 @Dao
 interface SurveyDao : BaseDao<SurveyEntity> {
+  /**
+   * Inserts the specified survey, replacing any existing row with the same id. Note that replacing
+   * a survey cascades to its jobs and base maps, so callers must rewrite those as well.
+   */
+  @Insert(onConflict = OnConflictStrategy.REPLACE) fun insertOrReplace(survey: SurveyEntity)
+
   @Transaction
   @Query("SELECT * FROM survey")
   fun getAllSurveys(): Single<List<SurveyEntityAndRelations>>
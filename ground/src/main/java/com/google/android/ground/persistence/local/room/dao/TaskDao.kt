@@ -16,6 +16,12 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import com.google.android.ground.persistence.local.room.entity.TaskEntity
 
-@Dao interface TaskDao : BaseDao<TaskEntity>
+@Dao
+interface TaskDao : BaseDao<TaskEntity> {
+  /** Inserts the specified tasks in a single statement batch, replacing rows with the same id. */
+  @Insert(onConflict = OnConflictStrategy.REPLACE) fun insertOrReplaceAll(tasks: List<TaskEntity>)
+}
@@ -16,14 +16,21 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import com.google.android.ground.persistence.local.room.entity.TileSetEntity
+import io.reactivex.Completable
 import io.reactivex.Flowable
 import io.reactivex.Maybe
 import io.reactivex.Single
 
 @Dao
 interface TileSetDao : BaseDao<TileSetEntity> {
+  /** Inserts the specified tile sets, replacing any existing rows with the same id. */
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplaceAll(tileSets: List<TileSetEntity>): Completable
+
   @Query("SELECT * FROM tile_sources") fun findAllOnceAndStream(): Flowable<List<TileSetEntity>>
 
   @Query("SELECT * FROM tile_sources WHERE state = :state")
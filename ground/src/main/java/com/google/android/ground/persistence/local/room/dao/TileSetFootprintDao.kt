@@ -0,0 +1,70 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.dao
+
+import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
+import androidx.room.Query
+import com.google.android.ground.persistence.local.room.entity.TileSetFootprintEntity
+import com.google.android.ground.persistence.local.room.entity.TileSetFootprintSourceEntity
+import io.reactivex.Maybe
+import io.reactivex.Single
+
+/** Provides access to the spatial index of base map tile set footprints. */
+@Dao
+interface TileSetFootprintDao {
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplaceAll(footprints: List<TileSetFootprintEntity>)
+
+  @Query("DELETE FROM tile_set_footprint WHERE base_map_url = :baseMapUrl")
+  fun deleteByBaseMapUrl(baseMapUrl: String)
+
+  /** Moves all footprints indexed under [fromBaseMapUrl] to [toBaseMapUrl]. */
+  @Query(
+    "UPDATE tile_set_footprint SET base_map_url = :toBaseMapUrl " +
+      "WHERE base_map_url = :fromBaseMapUrl"
+  )
+  fun moveByBaseMapUrl(fromBaseMapUrl: String, toBaseMapUrl: String)
+
+  @Query("SELECT * FROM tile_set_footprint WHERE base_map_url = :baseMapUrl")
+  fun findByBaseMapUrl(baseMapUrl: String): Single<List<TileSetFootprintEntity>>
+
+  /**
+   * Returns footprints of the specified base map which intersect the specified bounds. If [west] is
+   * greater than [east], the bounds are assumed to span the antimeridian.
+   */
+  @Query(
+    "SELECT * FROM tile_set_footprint " +
+      "WHERE base_map_url = :baseMapUrl " +
+      "AND south <= :north AND north >= :south " +
+      "AND ((:west <= :east AND west <= :east AND east >= :west) " +
+      "OR (:west > :east AND (west <= :east OR east >= :west)))"
+  )
+  fun findWithinBounds(
+    baseMapUrl: String,
+    south: Double,
+    west: Double,
+    north: Double,
+    east: Double
+  ): Single<List<TileSetFootprintEntity>>
+
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplaceSource(source: TileSetFootprintSourceEntity)
+
+  @Query("SELECT * FROM tile_set_footprint_source WHERE url = :url")
+  fun findSourceByUrl(url: String): Maybe<TileSetFootprintSourceEntity>
+}
@@ -16,13 +16,20 @@
 package com.google.android.ground.persistence.local.room.dao
 
 import androidx.room.Dao
+import androidx.room.Insert
+import androidx.room.OnConflictStrategy
 import androidx.room.Query
 import androidx.room.Transaction
 import com.google.android.ground.persistence.local.room.entity.UserEntity
+import io.reactivex.Completable
 import io.reactivex.Maybe
 
 @Dao
 interface UserDao : BaseDao<UserEntity> {
+  /** Inserts the specified user, replacing any existing row with the same id. */
+  @Insert(onConflict = OnConflictStrategy.REPLACE)
+  fun insertOrReplace(user: UserEntity): Completable
+
   @Transaction
   @Query("SELECT * FROM user WHERE id = :id")
   fun findById(id: String): Maybe<UserEntity>
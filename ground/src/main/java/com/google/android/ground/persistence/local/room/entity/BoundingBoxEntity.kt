@@ -0,0 +1,29 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.entity
+
+import androidx.room.ColumnInfo
+
+/**
+ * Axis-aligned bounding box of a geometry, persisted alongside LOIs so that LOIs intersecting a
+ * given viewport can be found without loading and decoding every geometry in the survey.
+ */
+data class BoundingBoxEntity(
+  @ColumnInfo(name = "min_lat") val minLatitude: Double,
+  @ColumnInfo(name = "min_lng") val minLongitude: Double,
+  @ColumnInfo(name = "max_lat") val maxLatitude: Double,
+  @ColumnInfo(name = "max_lng") val maxLongitude: Double
+)
@@ -16,15 +16,35 @@
 package com.google.android.ground.persistence.local.room.entity
 
 import androidx.room.Embedded
+import com.google.android.ground.persistence.local.room.converter.PackedCoordinatesConverter
 import com.google.android.ground.persistence.local.room.models.Coordinates
+import java.util.Objects
 
 data class GeometryEntity(
   /** The type of this geometry. */
   val geometryType: String,
   /** Non-null iff this geometry is a point. */
   @Embedded val location: Coordinates? = null,
-  /** Non-null iff this geometry is a polygon */
-  val vertices: String? = null,
-  /** Non-null iff this geometry is a polygon */
-  val holes: String? = null,
-)
+  /**
+   * Non-null iff this geometry is a polygon. Encoded using [PackedCoordinatesConverter] as a
+   * single ring.
+   */
+  val vertices: ByteArray? = null,
+  /**
+   * Non-null iff this geometry is a polygon with holes. Encoded using [PackedCoordinatesConverter]
+   * as one ring per hole.
+   */
+  val holes: ByteArray? = null,
+) {
+  override fun equals(other: Any?): Boolean {
+    if (this === other) return true
+    if (other !is GeometryEntity) return false
+    return geometryType == other.geometryType &&
+      location == other.location &&
+      vertices.contentEquals(other.vertices) &&
+      holes.contentEquals(other.holes)
+  }
+
+  override fun hashCode(): Int =
+    Objects.hash(geometryType, location, vertices.contentHashCode(), holes.contentHashCode())
+}
@@ -22,7 +22,10 @@ import com.google.android.ground.persistence.local.room.models.EntityState
  * Defines how Room persists LOIs in the local db. By default, Room uses the name of object fields
  * and their respective types to determine database column names and types.
  */
-@Entity(tableName = "location_of_interest", indices = [Index("survey_id")])
+@Entity(
+  tableName = "location_of_interest",
+  indices = [Index("survey_id"), Index("survey_id", "state", "min_lat", "max_lat")]
+)
 data class LocationOfInterestEntity(
   @ColumnInfo(name = "id") @PrimaryKey val id: String,
   @ColumnInfo(name = "survey_id") val surveyId: String,
@@ -30,5 +33,12 @@ data class LocationOfInterestEntity(
   @ColumnInfo(name = "state") var state: EntityState, // TODO: Rename to DeletionState.
   @Embedded(prefix = "created_") val created: AuditInfoEntity,
   @Embedded(prefix = "modified_") val lastModified: AuditInfoEntity,
-  @Embedded val geometry: GeometryEntity?
+  @Embedded val geometry: GeometryEntity?,
+  /** Bounding box of [geometry], used for viewport queries. Null iff [geometry] is null. */
+  @Embedded val bounds: BoundingBoxEntity?,
+  /**
+   * Assigned by triggers each time this row is inserted or updated, and never reused. Used to
+   * detect changed rows without loading and converting unchanged ones.
+   */
+  @ColumnInfo(name = "row_version", defaultValue = "0") val rowVersion: Long = 0
 )
@@ -35,7 +35,12 @@ import com.google.android.ground.persistence.local.room.models.MutationEntityTyp
         onDelete = ForeignKey.CASCADE
       )
     ],
-  indices = [Index("location_of_interest_id")]
+  indices =
+    [
+      Index("location_of_interest_id"),
+      Index("survey_id", "client_timestamp"),
+      Index("state", "next_attempt_at"),
+    ]
 )
 data class LocationOfInterestMutationEntity(
   @ColumnInfo(name = "id") @PrimaryKey(autoGenerate = true) val id: Long? = 0,
@@ -44,6 +49,7 @@ data class LocationOfInterestMutationEntity(
   @ColumnInfo(name = "state") val syncStatus: MutationEntitySyncStatus,
   @ColumnInfo(name = "retry_count") val retryCount: Long,
   @ColumnInfo(name = "last_error") val lastError: String,
+  @ColumnInfo(name = "next_attempt_at", defaultValue = "0") val nextAttemptAt: Long = 0,
   @ColumnInfo(name = "user_id") val userId: String,
   @ColumnInfo(name = "client_timestamp") val clientTimestamp: Long,
   @ColumnInfo(name = "location_of_interest_id") val locationOfInterestId: String,
@@ -31,7 +31,8 @@ import com.google.android.ground.persistence.local.room.models.EntityState
       )
     ],
   tableName = "submission",
-  indices = [Index("location_of_interest_id", "job_id", "state")]
+  indices =
+    [Index("location_of_interest_id", "job_id", "state", "modified_clientTimestamp")]
 )
 data class SubmissionEntity(
   @ColumnInfo(name = "id") @PrimaryKey val id: String,
@@ -39,7 +39,13 @@ import java.util.*
         onDelete = ForeignKey.CASCADE
       )
     ],
-  indices = [Index("location_of_interest_id"), Index("submission_id")]
+  indices =
+    [
+      Index("location_of_interest_id"),
+      Index("submission_id"),
+      Index("survey_id", "client_timestamp"),
+      Index("state", "next_attempt_at"),
+    ]
 )
 data class SubmissionMutationEntity(
   @ColumnInfo(name = "id") @PrimaryKey(autoGenerate = true) val id: Long? = 0,
@@ -48,6 +54,7 @@ data class SubmissionMutationEntity(
   @ColumnInfo(name = "state") val syncStatus: MutationEntitySyncStatus,
   @ColumnInfo(name = "retry_count") val retryCount: Long,
   @ColumnInfo(name = "last_error") val lastError: String,
+  @ColumnInfo(name = "next_attempt_at", defaultValue = "0") val nextAttemptAt: Long = 0,
   @ColumnInfo(name = "user_id") val userId: String,
   @ColumnInfo(name = "client_timestamp") val clientTimestamp: Long,
   @ColumnInfo(name = "location_of_interest_id") val locationOfInterestId: String,
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.Index
+
+/**
+ * Bounding box of a tile set listed in the footprints file of an offline imagery base map. Rows are
+ * indexed by base map and extents so that the tile sets intersecting an area can be looked up
+ * without reading the footprints file.
+ */
+@Entity(
+  tableName = "tile_set_footprint",
+  primaryKeys = ["base_map_url", "id"],
+  indices = [Index("base_map_url", "south", "north", "west", "east")]
+)
+data class TileSetFootprintEntity(
+  @ColumnInfo(name = "base_map_url") val baseMapUrl: String,
+  @ColumnInfo(name = "id") val id: String,
+  @ColumnInfo(name = "url") val url: String,
+  @ColumnInfo(name = "south") val south: Double,
+  @ColumnInfo(name = "west") val west: Double,
+  @ColumnInfo(name = "north") val north: Double,
+  @ColumnInfo(name = "east") val east: Double
+)
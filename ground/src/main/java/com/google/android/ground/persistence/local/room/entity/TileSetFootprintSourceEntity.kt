@@ -0,0 +1,32 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.entity
+
+import androidx.room.ColumnInfo
+import androidx.room.Entity
+import androidx.room.PrimaryKey
+
+/**
+ * Version of a base map footprints file whose tile sets are stored in the footprint index, used to
+ * revalidate the file with conditional requests.
+ */
+@Entity(tableName = "tile_set_footprint_source")
+data class TileSetFootprintSourceEntity(
+  @ColumnInfo(name = "url") @PrimaryKey val url: String,
+  @ColumnInfo(name = "e_tag") val eTag: String?,
+  @ColumnInfo(name = "last_modified") val lastModified: String?,
+  @ColumnInfo(name = "indexed_at") val indexedAt: Long
+)
@@ -0,0 +1,28 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.models
+
+import androidx.room.ColumnInfo
+
+/**
+ * Identifies a row in either the LOI or the submission mutation table. Used to page through both
+ * tables in client timestamp order without loading every row.
+ */
+data class MutationKey(
+  @ColumnInfo(name = "id") val id: Long,
+  @ColumnInfo(name = "is_submission_mutation") val isSubmissionMutation: Boolean,
+  @ColumnInfo(name = "client_timestamp") val clientTimestamp: Long
+)
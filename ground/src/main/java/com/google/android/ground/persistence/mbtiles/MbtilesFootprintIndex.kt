@@ -0,0 +1,240 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.Config
+import com.google.android.ground.model.basemap.tile.TileSet
+import com.google.android.ground.model.basemap.tile.TileSet.Companion.pathFromId
+import com.google.android.ground.persistence.local.room.LocalDatabase
+import com.google.android.ground.persistence.local.room.dao.TileSetFootprintDao
+import com.google.android.ground.persistence.local.room.entity.TileSetFootprintEntity
+import com.google.android.ground.persistence.local.room.entity.TileSetFootprintSourceEntity
+import com.google.android.ground.persistence.uuid.OfflineUuidGenerator
+import com.google.android.ground.rx.Schedulers
+import com.google.android.ground.ui.util.FileUtil
+import com.google.android.ground.util.toImmutableList
+import com.google.common.collect.ImmutableList
+import io.reactivex.Completable
+import io.reactivex.Single
+import java.io.File
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URL
+import java.util.Collections
+import java.util.concurrent.ConcurrentHashMap
+import javax.inject.Inject
+import javax.inject.Singleton
+import timber.log.Timber
+
+/**
+ * Local spatial index of the tile sets listed in base map footprint files.
+ *
+ * Each version of a footprints file is parsed once into the local db, keyed by the file's URL and
+ * ETag. Tile sets are then looked up with indexed queries, without network access or JSON parsing.
+ * Only files which haven't been indexed yet are downloaded before querying, once however many
+ * queries are waiting for them. Indexes older than
+ * [Config.TILE_SET_FOOTPRINT_REVALIDATION_INTERVAL_MILLIS] are revalidated in the background with
+ * conditional requests, and the existing index is used when they can't be revalidated, e.g. while
+ * offline.
+ */
+@Singleton
+class MbtilesFootprintIndex
+@Inject
+constructor(
+  private val localDatabase: LocalDatabase,
+  private val footprintDao: TileSetFootprintDao,
+  private val parser: MbtilesFootprintParser,
+  private val fileUtil: FileUtil,
+  private val uuidGenerator: OfflineUuidGenerator,
+  private val schedulers: Schedulers
+) {
+
+  /** URLs of the footprints files currently being revalidated in the background. */
+  private val revalidatingUrls: MutableSet<String> = Collections.synchronizedSet(HashSet())
+
+  /** Initial indexing of footprints files by URL, shared by all queries waiting for it. */
+  private val initialIndexing = ConcurrentHashMap<String, Completable>()
+
+  /** Returns all tile sets listed in the footprints file at [baseMapUrl]. */
+  fun allTiles(baseMapUrl: URL): Single<ImmutableList<TileSet>> =
+    ensureIndexed(baseMapUrl)
+      .andThen(Single.defer { footprintDao.findByBaseMapUrl(baseMapUrl.toString()) })
+      .map { footprints -> footprints.map { toTileSet(it) }.toImmutableList() }
+
+  /**
+   * Returns the tile sets listed in the footprints file at [baseMapUrl] whose footprints intersect
+   * [bounds].
+   */
+  fun intersectingTiles(bounds: LatLngBounds, baseMapUrl: URL): Single<ImmutableList<TileSet>> =
+    ensureIndexed(baseMapUrl)
+      .andThen(
+        Single.defer {
+          footprintDao.findWithinBounds(
+            baseMapUrl.toString(),
+            bounds.southwest.latitude,
+            bounds.southwest.longitude,
+            bounds.northeast.latitude,
+            bounds.northeast.longitude
+          )
+        }
+      )
+      .map { footprints ->
+        footprints.map { toTileSet(it).incrementOfflineAreaCount() }.toImmutableList()
+      }
+
+  /**
+   * Indexes the footprints file at [url] if it hasn't been indexed yet. Otherwise completes right
+   * away, scheduling revalidation of the file if its index is due to be revalidated.
+   */
+  private fun ensureIndexed(url: URL): Completable =
+    Completable.defer {
+        val source = footprintDao.findSourceByUrl(url.toString()).blockingGet()
+        val age = System.currentTimeMillis() - (source?.indexedAt ?: 0)
+        when {
+          source == null -> indexInitially(url)
+          age >= Config.TILE_SET_FOOTPRINT_REVALIDATION_INTERVAL_MILLIS -> {
+            revalidateInBackground(url, source)
+            Completable.complete()
+          }
+          else -> Completable.complete()
+        }
+      }
+      .subscribeOn(schedulers.io())
+
+  /**
+   * Indexes the footprints file at [url] unless it has been indexed since it was last checked.
+   * Concurrent calls share a single download and indexing of the file.
+   */
+  private fun indexInitially(url: URL): Completable =
+    initialIndexing.computeIfAbsent(url.toString()) {
+      Completable.fromAction {
+          if (footprintDao.findSourceByUrl(url.toString()).blockingGet() == null) {
+            revalidate(url, null)
+          }
+        }
+        .doFinally { initialIndexing.remove(url.toString()) }
+        .cache()
+    }
+
+  private fun revalidateInBackground(url: URL, source: TileSetFootprintSourceEntity) {
+    if (!revalidatingUrls.add(url.toString())) return
+    Completable.fromAction { revalidate(url, source) }
+      .subscribeOn(schedulers.io())
+      .doFinally { revalidatingUrls.remove(url.toString()) }
+      .subscribe({}) { Timber.w(it, "Couldn't revalidate $url, using existing footprint index") }
+  }
+
+  /**
+   * Re-indexes the footprints file at [url] unless the server reports that the indexed version
+   * [source] is still current, in which case only its indexing time is updated.
+   */
+  private fun revalidate(url: URL, source: TileSetFootprintSourceEntity?) {
+    val connection = url.openConnection()
+    connection.connectTimeout = Config.TILE_SET_FOOTPRINT_CONNECT_TIMEOUT_MILLIS
+    connection.readTimeout = Config.TILE_SET_FOOTPRINT_READ_TIMEOUT_MILLIS
+    try {
+      if (connection is HttpURLConnection) {
+        source?.eTag?.let { connection.setRequestProperty("If-None-Match", it) }
+        source?.lastModified?.let { connection.setRequestProperty("If-Modified-Since", it) }
+        if (source != null && connection.responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+          Timber.d("Footprint index of $url is up to date")
+          footprintDao.insertOrReplaceSource(source.copy(indexedAt = System.currentTimeMillis()))
+          return
+        }
+        if (connection.responseCode != HttpURLConnection.HTTP_OK) {
+          throw IOException("Unexpected response ${connection.responseCode} for $url")
+        }
+      }
+      val file = fileUtil.getOrCreateFile(url.file).apply { parentFile?.mkdirs() }
+      connection.getInputStream().use { input -> file.outputStream().use { input.copyTo(it) } }
+      index(
+        url.toString(),
+        file,
+        connection.getHeaderField("ETag"),
+        connection.getHeaderField("Last-Modified")
+      )
+    } finally {
+      (connection as? HttpURLConnection)?.disconnect()
+    }
+  }
+
+  /**
+   * Replaces the indexed footprints of [baseMapUrl] with those in [file]. Footprints are parsed and
+   * staged in batches of [Config.TILE_SET_FOOTPRINT_INDEX_BATCH_SIZE], each inserted in its own
+   * short transaction so that other writers aren't blocked while the file is parsed. The staged
+   * footprints then replace the existing ones in a single transaction.
+   */
+  private fun index(baseMapUrl: String, file: File, eTag: String?, lastModified: String?) {
+    val stagingUrl = baseMapUrl + STAGING_URL_SUFFIX
+    // Discard footprints staged by an earlier attempt which didn't complete.
+    footprintDao.deleteByBaseMapUrl(stagingUrl)
+    val batch = ArrayList<TileSetFootprintEntity>(Config.TILE_SET_FOOTPRINT_INDEX_BATCH_SIZE)
+    var count = 0
+    parser.parseFootprints(file) { footprint ->
+      toEntity(stagingUrl, footprint)?.let { batch.add(it) }
+      if (batch.size == Config.TILE_SET_FOOTPRINT_INDEX_BATCH_SIZE) {
+        footprintDao.insertOrReplaceAll(batch)
+        count += batch.size
+        batch.clear()
+      }
+    }
+    footprintDao.insertOrReplaceAll(batch)
+    count += batch.size
+    localDatabase.runInTransaction {
+      footprintDao.deleteByBaseMapUrl(baseMapUrl)
+      footprintDao.moveByBaseMapUrl(stagingUrl, baseMapUrl)
+      footprintDao.insertOrReplaceSource(
+        TileSetFootprintSourceEntity(baseMapUrl, eTag, lastModified, System.currentTimeMillis())
+      )
+    }
+    Timber.d("Indexed $count tile set footprints from $baseMapUrl")
+  }
+
+  /** Returns the row for [footprint], or null if it has no id or no extents. */
+  private fun toEntity(baseMapUrl: String, footprint: TileSetFootprint): TileSetFootprintEntity? {
+    if (footprint.id == null || footprint.south > footprint.north) {
+      Timber.w("Skipping invalid tile set footprint $footprint")
+      return null
+    }
+    return TileSetFootprintEntity(
+      baseMapUrl,
+      footprint.id,
+      footprint.url ?: "",
+      footprint.south,
+      footprint.west,
+      footprint.north,
+      footprint.east
+    )
+  }
+
+  private fun toTileSet(footprint: TileSetFootprintEntity): TileSet =
+    TileSet(
+      footprint.url,
+      uuidGenerator.generateUuid(),
+      pathFromId(footprint.id),
+      TileSet.State.PENDING,
+      0
+    )
+
+  companion object {
+    /**
+     * Appended to the URL of a footprints file to key footprints staged while it's indexed. URLs
+     * can't contain spaces, so staged footprints can't be confused with those of another file.
+     */
+    private const val STAGING_URL_SUFFIX = " (indexing)"
+  }
+}
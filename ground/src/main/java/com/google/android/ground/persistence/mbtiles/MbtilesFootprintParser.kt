@@ -21,61 +21,68 @@ import com.google.android.ground.model.basemap.tile.TileSet.Companion.pathFromId
 import com.google.android.ground.persistence.uuid.OfflineUuidGenerator
 import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableList
+import com.google.gson.stream.JsonReader
 import io.reactivex.Single
 import java.io.File
 import java.nio.charset.Charset
 import javax.inject.Inject
-import org.apache.commons.io.FileUtils
-import org.json.JSONArray
-import org.json.JSONException
-import org.json.JSONObject
 import timber.log.Timber
 
+/**
+ * Reads tile set footprints from GeoJSON files describing the tile sets of an offline imagery base
+ * map. Files are parsed as a stream, one feature at a time, so that memory use doesn't grow with
+ * the size of the file.
+ */
 class MbtilesFootprintParser @Inject constructor(private val uuidGenerator: OfflineUuidGenerator) {
 
-  private fun getJsonTileSets(jsonSource: File): Single<ImmutableList<TileSetJson>> =
-    try {
-      val fileContents =
-        FileUtils.readFileToString(jsonSource, Charset.forName(JSON_SOURCE_CHARSET))
-      val geoJson = JSONObject(fileContents)
-      val locationsOfInterest = geoJson.getJSONArray(LOCATIONS_OF_INTEREST_KEY)
-      Single.just(
-        toArrayList(locationsOfInterest)
-          .map { jsonObject: JSONObject -> TileSetJson(jsonObject) }
-          .toImmutableList()
-      )
-    } catch (e: Exception) {
-      Single.error(e)
+  /** Parses [jsonSource], calling [onFootprint] with each tile set footprint as it's read. */
+  internal fun parseFootprints(jsonSource: File, onFootprint: (TileSetFootprint) -> Unit) =
+    JsonReader(jsonSource.bufferedReader(Charset.forName(JSON_SOURCE_CHARSET))).use { reader ->
+      reader.beginObject()
+      while (reader.hasNext()) {
+        if (reader.nextName() == LOCATIONS_OF_INTEREST_KEY) {
+          reader.beginArray()
+          while (reader.hasNext()) {
+            TileSetFootprint.read(reader)?.let(onFootprint)
+          }
+          reader.endArray()
+        } else {
+          reader.skipValue()
+        }
+      }
+      reader.endObject()
     }
 
-  fun allTiles(file: File): Single<ImmutableList<TileSet>> =
-    getJsonTileSets(file)
-      .map { tilesetJsonList -> tilesetJsonList.map { jsonToTileSet(it) }.toImmutableList() }
+  /** Returns the tiles in {@param file} for which [filter] returns true. */
+  private fun parseTileSets(
+    file: File,
+    filter: (TileSetFootprint) -> Boolean
+  ): Single<ImmutableList<TileSet>> =
+    Single.fromCallable {
+        val tileSets = ImmutableList.builder<TileSet>()
+        parseFootprints(file) { if (filter(it)) tileSets.add(jsonToTileSet(it)) }
+        tileSets.build()
+      }
       .doOnError { Timber.e(it) }
 
+  fun allTiles(file: File): Single<ImmutableList<TileSet>> = parseTileSets(file) { true }
+
   /**
    * Returns the immutable list of tiles specified in {@param geojson} that intersect {@param
    * bounds}.
    */
-  fun intersectingTiles(bounds: LatLngBounds, file: File): Single<ImmutableList<TileSet>> {
-    return getJsonTileSets(file)
-      .map { tilesetJsonList ->
-        tilesetJsonList
-          .filter { it.boundsIntersect(bounds) }
-          .map { jsonToTileSet(it).incrementOfflineAreaCount() }
-          .toImmutableList()
-      }
-      .doOnError { Timber.e(it) }
-  }
+  fun intersectingTiles(bounds: LatLngBounds, file: File): Single<ImmutableList<TileSet>> =
+    parseTileSets(file) { it.boundsIntersect(bounds) }
+      .map { tileSets -> tileSets.map { it.incrementOfflineAreaCount() }.toImmutableList() }
 
   // TODO: Instead of returning tiles with invalid state (empty URL/ID values), throw an exception
   //  here and handle it downstream.
   /** Returns the [TileSet] specified by {@param json}. */
-  private fun jsonToTileSet(json: TileSetJson): TileSet =
+  private fun jsonToTileSet(json: TileSetFootprint): TileSet =
     TileSet(
-      json.url.orElse(""),
+      json.url ?: "",
       uuidGenerator.generateUuid(),
-      pathFromId(json.id.orElse("")),
+      pathFromId(json.id ?: ""),
       TileSet.State.PENDING,
       0
     )
@@ -85,21 +92,5 @@ class MbtilesFootprintParser @Inject constructor(private val uuidGenerator: Offl
     //  even sticks around).
     private const val LOCATIONS_OF_INTEREST_KEY = "features"
     private const val JSON_SOURCE_CHARSET = "UTF-8"
-
-    /**
-     * Converts a JSONArray to an array of JSONObjects. Provided for compatibility with java8
-     * streams. JSONArray itself only inherits from Object, and is not convertible to a stream.
-     */
-    private fun toArrayList(arr: JSONArray): List<JSONObject> {
-      val result: MutableList<JSONObject> = ArrayList()
-      for (i in 0 until arr.length()) {
-        try {
-          result.add(arr.getJSONObject(i))
-        } catch (e: JSONException) {
-          Timber.e(e, "Ignoring error in JSON array")
-        }
-      }
-      return result
-    }
   }
 }
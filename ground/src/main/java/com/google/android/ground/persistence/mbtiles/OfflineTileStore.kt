@@ -0,0 +1,481 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import android.content.Context
+import android.database.sqlite.SQLiteDatabase
+import android.database.sqlite.SQLiteDoneException
+import android.database.sqlite.SQLiteOpenHelper
+import android.database.sqlite.SQLiteStatement
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.Config
+import com.google.android.ground.model.basemap.OfflineArea
+import com.google.android.ground.ui.map.WebMercator
+import com.google.common.io.BaseEncoding
+import dagger.hilt.android.qualifiers.ApplicationContext
+import java.io.Closeable
+import java.io.File
+import java.security.MessageDigest
+import javax.inject.Inject
+import javax.inject.Singleton
+import timber.log.Timber
+
+/**
+ * Consolidated store of downloaded offline imagery tiles, kept in a single SQLite database.
+ *
+ * Tiles are keyed by zoom level, column, row and the URL of the tile set they were imported from.
+ * Tile contents are stored once per distinct SHA-256 hash, so tiles repeated across overlapping
+ * tile sets or within a tile set only take up space once. Offline areas reference the tiles within
+ * their bounds, and tiles no longer referenced by any area are evicted in small batches.
+ *
+ * The store exposes a `tiles` view and a `metadata` table as defined by the MBTiles spec, so it can
+ * be rendered as a single MBTiles file.
+ *
+ * Methods in this class block on disk IO and must not be called on the main thread.
+ */
+@Singleton
+class OfflineTileStore @Inject constructor(@ApplicationContext private val context: Context) {
+
+  /** The database file backing the store. */
+  val file: File
+    get() = File(context.filesDir, Config.OFFLINE_TILE_STORE_FILE_NAME)
+
+  private val openHelper by lazy { OpenHelper(context, file) }
+
+  private val db: SQLiteDatabase
+    get() = openHelper.writableDatabase
+
+  /** Number of tiles and bytes read from a tile set file, and bytes which weren't yet stored. */
+  data class ImportResult(val tileCount: Int, val tileBytes: Long, val newBytes: Long)
+
+  /**
+   * Number and total size of tiles in the store, and of the distinct tile contents actually stored
+   * after deduplication.
+   */
+  data class StorageReport(
+    val tileCount: Long,
+    val tileBytes: Long,
+    val storedTileCount: Long,
+    val storedBytes: Long
+  ) {
+    val savedBytes: Long
+      get() = tileBytes - storedBytes
+  }
+
+  /**
+   * Copies the tiles in the MBTiles [file] into the store under [source], replacing any tiles
+   * previously imported from the same source, and adds references to the tiles within the bounds
+   * of each of [offlineAreas]. Tiles previously imported from [source] which are no longer in the
+   * file are deleted. The import is done in a single transaction.
+   */
+  fun importTileSet(
+    file: File,
+    source: String,
+    offlineAreas: Collection<OfflineArea>
+  ): ImportResult {
+    var tileCount = 0
+    var tileBytes = 0L
+    var newBytes = 0L
+    val flags = SQLiteDatabase.OPEN_READONLY or SQLiteDatabase.NO_LOCALIZED_COLLATORS
+    SQLiteDatabase.openDatabase(file.path, null, flags).use { tileSet ->
+      tileSet.rawQuery(SELECT_TILE_SET_TILES, null).use { cursor ->
+        inTransaction { writer ->
+          // Keys of the imported tiles, used to find tiles no longer in the source.
+          db.execSQL(CREATE_IMPORTED_TILES)
+          db.execSQL("DELETE FROM temp.imported_tile")
+          db.compileStatement(INSERT_IMPORTED_TILE).use { markImported ->
+            while (cursor.moveToNext()) {
+              val zoom = cursor.getInt(0)
+              val column = cursor.getInt(1)
+              val row = cursor.getInt(2)
+              val data = cursor.getBlob(3)
+              if (writer.put(zoom, column, row, source, data)) {
+                newBytes += data.size
+              }
+              markImported.bindLong(1, zoom.toLong())
+              markImported.bindLong(2, column.toLong())
+              markImported.bindLong(3, row.toLong())
+              markImported.executeInsert()
+              tileCount++
+              tileBytes += data.size
+            }
+          }
+          deleteStaleTiles(writer, source)
+          // The number of distinct tiles, compared against those remaining to detect evictions.
+          db.execSQL(INSERT_TILE_SOURCE, arrayOf(source))
+          offlineAreas.forEach { retainArea(it.id, it.bounds, source) }
+        }
+      }
+    }
+    Timber.d("Imported $tileCount tiles ($tileBytes bytes, $newBytes new) from $source")
+    return ImportResult(tileCount, tileBytes, newBytes)
+  }
+
+  private fun deleteStaleTiles(writer: TileWriter, source: String) {
+    val staleTiles =
+      db.rawQuery(SELECT_STALE_TILES, arrayOf(source)).use { cursor ->
+        generateSequence {
+            if (cursor.moveToNext()) Pair(cursor.getLong(0), cursor.getString(1)) else null
+          }
+          .toList()
+      }
+    if (staleTiles.isEmpty()) return
+    staleTiles.forEach { (rowId, hash) ->
+      db.delete("tile_index", "rowid = ?", arrayOf(rowId.toString()))
+      writer.release(hash)
+    }
+    db.execSQL(DELETE_DANGLING_AREA_TILES, arrayOf(source))
+    Timber.d("Deleted ${staleTiles.size} tiles no longer in $source")
+  }
+
+  /**
+   * Returns the sources with tiles in the store. Tiles of these sources should be rendered from the
+   * store rather than from the originally downloaded files.
+   */
+  fun getTileSetSources(): Set<String> = querySources("SELECT source FROM tile_source")
+
+  /**
+   * Returns the sources whose tiles have been fully imported and none of them evicted since. Tiles
+   * of these sources can be retained by new offline areas without downloading them again.
+   */
+  fun getCompleteTileSetSources(): Set<String> = querySources(SELECT_COMPLETE_SOURCES)
+
+  private fun querySources(sql: String): Set<String> =
+    db.rawQuery(sql, null).use { cursor ->
+      generateSequence { if (cursor.moveToNext()) cursor.getString(0) else null }.toSet()
+    }
+
+  /**
+   * Adds references from the offline area with the specified id to the stored tiles within
+   * [bounds], limited to tiles imported from [source] if specified. Returns the number of
+   * references added.
+   */
+  fun retainArea(areaId: String, bounds: LatLngBounds, source: String? = null): Int {
+    val zoomLevelsSql =
+      if (source == null) SELECT_ZOOM_LEVELS else "$SELECT_ZOOM_LEVELS WHERE source = ?"
+    val zoomLevels =
+      db.rawQuery(zoomLevelsSql, source?.let { arrayOf(it) }).use { cursor ->
+        generateSequence { if (cursor.moveToNext()) cursor.getInt(0) else null }.toList()
+      }
+    val sql = if (source == null) RETAIN_AREA_TILES else "$RETAIN_AREA_TILES AND source = ?"
+    return db.compileStatement(sql).use { statement ->
+      var count = 0
+      for (zoom in zoomLevels) {
+        for (range in tileRanges(bounds, zoom)) {
+          statement.clearBindings()
+          statement.bindString(1, areaId)
+          statement.bindLong(2, zoom.toLong())
+          statement.bindLong(3, range.minColumn.toLong())
+          statement.bindLong(4, range.maxColumn.toLong())
+          statement.bindLong(5, range.minRow.toLong())
+          statement.bindLong(6, range.maxRow.toLong())
+          source?.let { statement.bindString(7, it) }
+          count += statement.executeUpdateDelete()
+        }
+      }
+      count
+    }
+  }
+
+  /**
+   * Removes all references from the offline area with the specified id. Tiles are only deleted by
+   * [evictUnreferencedTiles].
+   */
+  fun releaseArea(areaId: String) {
+    db.delete("area_tile", "area_id = ?", arrayOf(areaId))
+  }
+
+  /**
+   * Deletes tiles not referenced by any offline area, along with tile contents no longer used by
+   * any tile. Tiles are deleted in batches, each in its own transaction, so that readers and other
+   * writers aren't blocked for long. Sources which lose tiles are no longer reported by
+   * [getCompleteTileSetSources], and sources which lose all of their tiles are no longer reported
+   * by [getTileSetSources]. Returns the number of tiles evicted.
+   */
+  fun evictUnreferencedTiles(): Int {
+    var evicted = 0
+    do {
+      val batchSize = inTransaction { writer -> evictBatch(writer) }
+      evicted += batchSize
+    } while (batchSize == Config.OFFLINE_TILE_EVICTION_BATCH_SIZE)
+    if (evicted > 0) {
+      // Returns free pages to the file system; requires auto_vacuum to be INCREMENTAL.
+      db.rawQuery("PRAGMA incremental_vacuum", null).use { it.count }
+      Timber.d("Evicted $evicted offline tiles")
+    }
+    return evicted
+  }
+
+  private fun evictBatch(writer: TileWriter): Int {
+    val sources = mutableSetOf<String>()
+    var count = 0
+    db
+      .rawQuery(
+        SELECT_UNREFERENCED_TILES,
+        arrayOf(Config.OFFLINE_TILE_EVICTION_BATCH_SIZE.toString())
+      )
+      .use { cursor ->
+        while (cursor.moveToNext()) {
+          db.delete("tile_index", "rowid = ?", arrayOf(cursor.getLong(0).toString()))
+          sources.add(cursor.getString(1))
+          writer.release(cursor.getString(2))
+          count++
+        }
+      }
+    sources.forEach { db.execSQL(DELETE_EMPTY_SOURCE, arrayOf(it)) }
+    return count
+  }
+
+  /** Returns the total size of the tiles referenced by the offline area with the specified id. */
+  fun getAreaSizeBytes(areaId: String): Long =
+    db.rawQuery(SELECT_AREA_SIZE, arrayOf(areaId)).use { cursor ->
+      if (cursor.moveToFirst()) cursor.getLong(0) else 0
+    }
+
+  /** Returns the number and size of tiles in the store, before and after deduplication. */
+  fun getStorageReport(): StorageReport {
+    val (tileCount, tileBytes) = queryCountAndSize(SELECT_TILE_COUNT_AND_SIZE)
+    val (storedTileCount, storedBytes) = queryCountAndSize(SELECT_STORED_COUNT_AND_SIZE)
+    return StorageReport(tileCount, tileBytes, storedTileCount, storedBytes)
+  }
+
+  private fun queryCountAndSize(sql: String): Pair<Long, Long> =
+    db.rawQuery(sql, null).use { cursor ->
+      if (cursor.moveToFirst()) Pair(cursor.getLong(0), cursor.getLong(1)) else Pair(0L, 0L)
+    }
+
+  private fun <T> inTransaction(block: (TileWriter) -> T): T {
+    db.beginTransaction()
+    try {
+      val result = TileWriter(db).use(block)
+      db.setTransactionSuccessful()
+      return result
+    } finally {
+      db.endTransaction()
+    }
+  }
+
+  /** Writes tiles using statements compiled once per transaction. */
+  private class TileWriter(db: SQLiteDatabase) : Closeable {
+    private val findHash =
+      db.compileStatement(
+        "SELECT hash FROM tile_index " +
+          "WHERE zoom_level = ? AND tile_column = ? AND tile_row = ? AND source = ?"
+      )
+    private val insertTile =
+      db.compileStatement(
+        "INSERT OR REPLACE INTO tile_index (zoom_level, tile_column, tile_row, source, hash) " +
+          "VALUES (?, ?, ?, ?, ?)"
+      )
+    private val addReference =
+      db.compileStatement("UPDATE tile_data SET ref_count = ref_count + 1 WHERE hash = ?")
+    private val insertData =
+      db.compileStatement(
+        "INSERT INTO tile_data (hash, tile_data, size, ref_count) VALUES (?, ?, ?, 1)"
+      )
+    private val removeReference =
+      db.compileStatement("UPDATE tile_data SET ref_count = ref_count - 1 WHERE hash = ?")
+    private val deleteUnusedData =
+      db.compileStatement("DELETE FROM tile_data WHERE hash = ? AND ref_count <= 0")
+    private val digest = MessageDigest.getInstance("SHA-256")
+
+    /**
+     * Stores the specified tile, replacing any tile with the same key. Returns true if the tile's
+     * contents weren't already stored.
+     */
+    fun put(zoom: Int, column: Int, row: Int, source: String, data: ByteArray): Boolean {
+      val hash = BaseEncoding.base16().lowerCase().encode(digest.digest(data))
+      findHash.bindLong(1, zoom.toLong())
+      findHash.bindLong(2, column.toLong())
+      findHash.bindLong(3, row.toLong())
+      findHash.bindString(4, source)
+      val previousHash =
+        try {
+          findHash.simpleQueryForString()
+        } catch (e: SQLiteDoneException) {
+          null
+        }
+      if (previousHash == hash) return false
+      previousHash?.let { release(it) }
+      insertTile.bindLong(1, zoom.toLong())
+      insertTile.bindLong(2, column.toLong())
+      insertTile.bindLong(3, row.toLong())
+      insertTile.bindString(4, source)
+      insertTile.bindString(5, hash)
+      insertTile.executeInsert()
+      addReference.bindString(1, hash)
+      if (addReference.executeUpdateDelete() > 0) return false
+      insertData.bindString(1, hash)
+      insertData.bindBlob(2, data)
+      insertData.bindLong(3, data.size.toLong())
+      insertData.executeInsert()
+      return true
+    }
+
+    /** Removes a reference to the contents with the specified hash, deleting them if unused. */
+    fun release(hash: String) {
+      removeReference.bindString(1, hash)
+      removeReference.executeUpdateDelete()
+      deleteUnusedData.bindString(1, hash)
+      deleteUnusedData.executeUpdateDelete()
+    }
+
+    override fun close() =
+      listOf(findHash, insertTile, addReference, insertData, removeReference, deleteUnusedData)
+        .forEach(SQLiteStatement::close)
+  }
+
+  private class OpenHelper(context: Context, file: File) :
+    SQLiteOpenHelper(context, file.path, null, DB_VERSION) {
+
+    init {
+      // Lets map tiles be read while tiles are being imported or evicted.
+      setWriteAheadLoggingEnabled(true)
+    }
+
+    override fun onConfigure(db: SQLiteDatabase) {
+      // Only takes effect before the first table is created.
+      db.execSQL("PRAGMA auto_vacuum = INCREMENTAL")
+    }
+
+    override fun onCreate(db: SQLiteDatabase) {
+      db.execSQL(
+        "CREATE TABLE tile_data (hash TEXT NOT NULL PRIMARY KEY, tile_data BLOB NOT NULL, " +
+          "size INTEGER NOT NULL, ref_count INTEGER NOT NULL)"
+      )
+      db.execSQL(
+        "CREATE TABLE tile_index (zoom_level INTEGER NOT NULL, tile_column INTEGER NOT NULL, " +
+          "tile_row INTEGER NOT NULL, source TEXT NOT NULL, hash TEXT NOT NULL, " +
+          "PRIMARY KEY (zoom_level, tile_column, tile_row, source))"
+      )
+      db.execSQL("CREATE INDEX tile_index_source ON tile_index (source)")
+      db.execSQL(
+        "CREATE TABLE area_tile (area_id TEXT NOT NULL, zoom_level INTEGER NOT NULL, " +
+          "tile_column INTEGER NOT NULL, tile_row INTEGER NOT NULL, source TEXT NOT NULL, " +
+          "PRIMARY KEY (area_id, zoom_level, tile_column, tile_row, source))"
+      )
+      db.execSQL(
+        "CREATE INDEX area_tile_tile ON area_tile (zoom_level, tile_column, tile_row, source)"
+      )
+      db.execSQL(
+        "CREATE TABLE tile_source (source TEXT NOT NULL PRIMARY KEY, tile_count INTEGER NOT NULL)"
+      )
+      db.execSQL("CREATE TABLE metadata (name TEXT NOT NULL, value TEXT)")
+      db.execSQL("INSERT INTO metadata (name, value) VALUES ('name', 'Offline imagery')")
+      db.execSQL(
+        "CREATE VIEW tiles AS " +
+          "SELECT i.zoom_level, i.tile_column, i.tile_row, d.tile_data " +
+          "FROM tile_index i JOIN tile_data d ON d.hash = i.hash"
+      )
+    }
+
+    override fun onUpgrade(db: SQLiteDatabase, oldVersion: Int, newVersion: Int) {}
+  }
+
+  /** Inclusive range of tile columns and MBTiles (TMS) rows at a single zoom level. */
+  internal data class TileRange(
+    val minColumn: Int,
+    val maxColumn: Int,
+    val minRow: Int,
+    val maxRow: Int
+  )
+
+  companion object {
+    private const val DB_VERSION = 1
+
+    private const val SELECT_TILE_SET_TILES =
+      "SELECT zoom_level, tile_column, tile_row, tile_data FROM tiles"
+
+    private const val CREATE_IMPORTED_TILES =
+      "CREATE TEMP TABLE IF NOT EXISTS imported_tile (zoom_level INTEGER NOT NULL, " +
+        "tile_column INTEGER NOT NULL, tile_row INTEGER NOT NULL, " +
+        "PRIMARY KEY (zoom_level, tile_column, tile_row))"
+
+    private const val INSERT_IMPORTED_TILE =
+      "INSERT OR IGNORE INTO temp.imported_tile (zoom_level, tile_column, tile_row) " +
+        "VALUES (?, ?, ?)"
+
+    private const val INSERT_TILE_SOURCE =
+      "INSERT OR REPLACE INTO tile_source (source, tile_count) " +
+        "SELECT ?, COUNT(*) FROM temp.imported_tile"
+
+    private const val SELECT_STALE_TILES =
+      "SELECT i.rowid, i.hash FROM tile_index i WHERE i.source = ? AND NOT EXISTS (" +
+        "SELECT 1 FROM temp.imported_tile t WHERE t.zoom_level = i.zoom_level " +
+        "AND t.tile_column = i.tile_column AND t.tile_row = i.tile_row)"
+
+    private const val DELETE_DANGLING_AREA_TILES =
+      "DELETE FROM area_tile WHERE source = ?1 AND NOT EXISTS (" +
+        "SELECT 1 FROM tile_index i WHERE i.zoom_level = area_tile.zoom_level " +
+        "AND i.tile_column = area_tile.tile_column AND i.tile_row = area_tile.tile_row " +
+        "AND i.source = ?1)"
+
+    private const val SELECT_COMPLETE_SOURCES =
+      "SELECT s.source FROM tile_source s " +
+        "WHERE s.tile_count = (SELECT COUNT(*) FROM tile_index i WHERE i.source = s.source)"
+
+    private const val DELETE_EMPTY_SOURCE =
+      "DELETE FROM tile_source WHERE source = ?1 " +
+        "AND NOT EXISTS (SELECT 1 FROM tile_index WHERE source = ?1)"
+
+    private const val SELECT_ZOOM_LEVELS = "SELECT DISTINCT zoom_level FROM tile_index"
+
+    private const val RETAIN_AREA_TILES =
+      "INSERT OR IGNORE INTO area_tile (area_id, zoom_level, tile_column, tile_row, source) " +
+        "SELECT ?, zoom_level, tile_column, tile_row, source FROM tile_index " +
+        "WHERE zoom_level = ? AND tile_column BETWEEN ? AND ? AND tile_row BETWEEN ? AND ?"
+
+    private const val SELECT_UNREFERENCED_TILES =
+      "SELECT i.rowid, i.source, i.hash FROM tile_index i WHERE NOT EXISTS (" +
+        "SELECT 1 FROM area_tile a WHERE a.zoom_level = i.zoom_level " +
+        "AND a.tile_column = i.tile_column AND a.tile_row = i.tile_row " +
+        "AND a.source = i.source) LIMIT ?"
+
+    private const val SELECT_AREA_SIZE =
+      "SELECT COALESCE(SUM(d.size), 0) FROM area_tile a " +
+        "JOIN tile_index i ON i.zoom_level = a.zoom_level AND i.tile_column = a.tile_column " +
+        "AND i.tile_row = a.tile_row AND i.source = a.source " +
+        "JOIN tile_data d ON d.hash = i.hash WHERE a.area_id = ?"
+
+    private const val SELECT_TILE_COUNT_AND_SIZE =
+      "SELECT COUNT(*), COALESCE(SUM(d.size), 0) FROM tile_index i " +
+        "JOIN tile_data d ON d.hash = i.hash"
+
+    private const val SELECT_STORED_COUNT_AND_SIZE =
+      "SELECT COUNT(*), COALESCE(SUM(size), 0) FROM tile_data"
+
+    /**
+     * Returns the ranges of tiles at [zoom] which intersect [bounds]. Bounds spanning the
+     * antimeridian are split into two ranges.
+     */
+    internal fun tileRanges(bounds: LatLngBounds, zoom: Int): List<TileRange> {
+      val tileCount = 1 shl zoom
+      val minColumn = WebMercator.tileX(bounds.southwest.longitude, zoom)
+      val maxColumn = WebMercator.tileX(bounds.northeast.longitude, zoom)
+      // MBTiles rows are numbered from the south, whereas XYZ rows are numbered from the north.
+      val minRow = tileCount - 1 - WebMercator.tileY(bounds.southwest.latitude, zoom)
+      val maxRow = tileCount - 1 - WebMercator.tileY(bounds.northeast.latitude, zoom)
+      return if (minColumn <= maxColumn) {
+        listOf(TileRange(minColumn, maxColumn, minRow, maxRow))
+      } else {
+        listOf(
+          TileRange(minColumn, tileCount - 1, minRow, maxRow),
+          TileRange(0, maxColumn, minRow, maxRow)
+        )
+      }
+    }
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2020 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.gson.stream.JsonReader
+import com.google.gson.stream.JsonToken
+import timber.log.Timber
+
+/**
+ * Describes a tile set source, including its id, extents, and source URL.
+ *
+ * A valid tile has the following information:
+ *
+ * - a geometry describing a polygon.
+ * - an id specifying cartesian coordinates.
+ * - a URL specifying a source for the tile imagery.
+ *
+ * GeoJSON Polygons are described using coordinate arrays that task a linear ring. Only the
+ * bounding box of the exterior ring is kept, since that's all that's needed to determine which
+ * tile sets intersect an area. Interior rings, which describe holes in the polygon, are ignored.
+ * Features whose coordinates aren't nested like a polygon's, such as MultiPolygons, are skipped.
+ */
+internal data class TileSetFootprint(
+  val id: String?,
+  val url: String?,
+  val south: Double,
+  val west: Double,
+  val north: Double,
+  val east: Double
+) {
+  /** Returns true if the footprint's bounding box intersects the specified bounds. */
+  fun boundsIntersect(bounds: LatLngBounds): Boolean {
+    if (south > north || north < bounds.southwest.latitude || south > bounds.northeast.latitude) {
+      return false
+    }
+    val boundsWest = bounds.southwest.longitude
+    val boundsEast = bounds.northeast.longitude
+    // Bounds whose west edge is east of their east edge span the antimeridian.
+    return if (boundsWest <= boundsEast) east >= boundsWest && west <= boundsEast
+    else east >= boundsWest || west <= boundsEast
+  }
+
+  companion object {
+    private const val GEOMETRY_KEY = "geometry"
+    private const val VERTICES_JSON_KEY = "coordinates"
+    private const val ID_KEY = "id"
+    private const val PROPERTIES_KEY = "properties"
+    private const val URL_KEY = "url"
+
+    /**
+     * Reads a single GeoJSON feature from [reader], consuming only the values needed to describe
+     * the tile set. Returns null if the next value isn't a JSON object, or if its coordinates
+     * don't describe a polygon. The whole feature is consumed either way, so that reading can
+     * continue with the next one.
+     */
+    fun read(reader: JsonReader): TileSetFootprint? {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue()
+        return null
+      }
+      var id: String? = null
+      var url: String? = null
+      var isPolygon = true
+      val bounds = Bounds()
+      reader.beginObject()
+      while (reader.hasNext()) {
+        when (reader.nextName()) {
+          ID_KEY -> id = readString(reader)
+          GEOMETRY_KEY ->
+            readObjectValue(reader, VERTICES_JSON_KEY) { isPolygon = readExteriorRing(it, bounds) }
+          PROPERTIES_KEY -> readObjectValue(reader, URL_KEY) { url = readString(it) }
+          else -> reader.skipValue()
+        }
+      }
+      reader.endObject()
+      if (!isPolygon) {
+        Timber.w("Skipping tile set footprint $id with malformed polygon coordinates")
+        return null
+      }
+      return TileSetFootprint(id, url, bounds.south, bounds.west, bounds.north, bounds.east)
+    }
+
+    /** Returns the string or number at the reader's position, or null if it's another value. */
+    private fun readString(reader: JsonReader): String? =
+      when (reader.peek()) {
+        JsonToken.STRING,
+        JsonToken.NUMBER -> reader.nextString().ifEmpty { null }
+        else -> {
+          reader.skipValue()
+          null
+        }
+      }
+
+    /** Reads the value of [key] in the object at the reader's position with [readValue]. */
+    private fun readObjectValue(reader: JsonReader, key: String, readValue: (JsonReader) -> Unit) {
+      if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+        reader.skipValue()
+        return
+      }
+      reader.beginObject()
+      while (reader.hasNext()) {
+        if (reader.nextName() == key) readValue(reader) else reader.skipValue()
+      }
+      reader.endObject()
+    }
+
+    /**
+     * Reads polygon coordinates, extending [bounds] with the points of the exterior ring. Returns
+     * false if the coordinates aren't an array of rings, in which case they're skipped.
+     */
+    private fun readExteriorRing(reader: JsonReader, bounds: Bounds): Boolean {
+      if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+        reader.skipValue()
+        return false
+      }
+      reader.beginArray()
+      val isRing = reader.hasNext() && readRing(reader, bounds)
+      while (reader.hasNext()) reader.skipValue()
+      reader.endArray()
+      return isRing
+    }
+
+    /**
+     * Reads a linear ring, extending [bounds] with its points. Returns false if it isn't an array
+     * of positions, in which case the rest of the ring is skipped.
+     */
+    private fun readRing(reader: JsonReader, bounds: Bounds): Boolean {
+      if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+        reader.skipValue()
+        return false
+      }
+      var isRing = true
+      reader.beginArray()
+      while (reader.hasNext()) {
+        if (isRing) isRing = readPosition(reader, bounds) else reader.skipValue()
+      }
+      reader.endArray()
+      return isRing
+    }
+
+    /**
+     * Reads a `[lng, lat]` position, extending [bounds] with it. Returns false if the value at the
+     * reader's position isn't a position, in which case it's skipped.
+     */
+    private fun readPosition(reader: JsonReader, bounds: Bounds): Boolean {
+      if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+        reader.skipValue()
+        return false
+      }
+      reader.beginArray()
+      val lng = readDouble(reader)
+      val lat = readDouble(reader)
+      while (reader.hasNext()) reader.skipValue()
+      reader.endArray()
+      if (lng == null || lat == null) return false
+      bounds.include(lat, lng)
+      return true
+    }
+
+    /** Returns the number at the reader's position, or null if there's another or no value. */
+    private fun readDouble(reader: JsonReader): Double? {
+      if (!reader.hasNext()) return null
+      if (reader.peek() != JsonToken.NUMBER) {
+        reader.skipValue()
+        return null
+      }
+      return reader.nextDouble()
+    }
+  }
+
+  private class Bounds {
+    var south = Double.POSITIVE_INFINITY
+    var west = Double.POSITIVE_INFINITY
+    var north = Double.NEGATIVE_INFINITY
+    var east = Double.NEGATIVE_INFINITY
+
+    fun include(lat: Double, lng: Double) {
+      south = minOf(south, lat)
+      north = maxOf(north, lat)
+      west = minOf(west, lng)
+      east = maxOf(east, lng)
+    }
+  }
+}
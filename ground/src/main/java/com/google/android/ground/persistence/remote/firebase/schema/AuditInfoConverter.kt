@@ -21,6 +21,7 @@ import com.google.android.ground.model.User
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.persistence.remote.DataStoreException
 import com.google.firebase.Timestamp
+import java.util.Date
 import java8.util.Optional
 
 /** Converts between Firestore nested objects and [AuditInfo] instances. */
@@ -38,9 +39,13 @@ internal object AuditInfoConverter {
 
   @JvmStatic
   fun fromMutationAndUser(mutation: Mutation, user: User): AuditInfoNestedObject =
-    AuditInfoNestedObject(
-      UserConverter.toNestedObject(user),
-      Timestamp(mutation.clientTimestamp),
-      null
-    )
+    fromTimestampAndUser(mutation.clientTimestamp, user)
+
+  /** Returns audit info for the latest change included in the specified mutation. */
+  @JvmStatic
+  fun lastModifiedFromMutationAndUser(mutation: Mutation, user: User): AuditInfoNestedObject =
+    fromTimestampAndUser(mutation.lastModifiedTimestamp, user)
+
+  private fun fromTimestampAndUser(clientTimestamp: Date, user: User): AuditInfoNestedObject =
+    AuditInfoNestedObject(UserConverter.toNestedObject(user), Timestamp(clientTimestamp), null)
 }
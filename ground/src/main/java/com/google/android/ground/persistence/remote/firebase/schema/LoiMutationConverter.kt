@@ -22,6 +22,7 @@ import com.google.android.ground.model.geometry.Polygon
 import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.persistence.remote.firebase.schema.AuditInfoConverter.fromMutationAndUser
+import com.google.android.ground.persistence.remote.firebase.schema.AuditInfoConverter.lastModifiedFromMutationAndUser
 import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableMap
@@ -53,13 +54,13 @@ internal object LoiMutationConverter {
       else -> {}
     }
 
-    val auditInfo = fromMutationAndUser(mutation, user)
+    val lastModified = lastModifiedFromMutationAndUser(mutation, user)
     when (mutation.type) {
       Mutation.Type.CREATE -> {
-        map.put(LoiConverter.CREATED, auditInfo)
-        map.put(LoiConverter.LAST_MODIFIED, auditInfo)
+        map.put(LoiConverter.CREATED, fromMutationAndUser(mutation, user))
+        map.put(LoiConverter.LAST_MODIFIED, lastModified)
       }
-      Mutation.Type.UPDATE -> map.put(LoiConverter.LAST_MODIFIED, auditInfo)
+      Mutation.Type.UPDATE -> map.put(LoiConverter.LAST_MODIFIED, lastModified)
       Mutation.Type.DELETE,
       Mutation.Type.UNKNOWN -> throw UnsupportedOperationException()
     }
@@ -22,6 +22,7 @@ import com.google.android.ground.model.mutation.SubmissionMutation
 import com.google.android.ground.model.submission.*
 import com.google.android.ground.persistence.remote.DataStoreException
 import com.google.android.ground.persistence.remote.firebase.schema.AuditInfoConverter.fromMutationAndUser
+import com.google.android.ground.persistence.remote.firebase.schema.AuditInfoConverter.lastModifiedFromMutationAndUser
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableMap
 import com.google.firebase.firestore.FieldValue
@@ -39,13 +40,13 @@ internal object SubmissionMutationConverter {
   @Throws(DataStoreException::class)
   fun toMap(mutation: SubmissionMutation, user: User): ImmutableMap<String, Any> {
     val map = ImmutableMap.builder<String, Any>()
-    val auditInfo = fromMutationAndUser(mutation, user)
+    val lastModified = lastModifiedFromMutationAndUser(mutation, user)
     when (mutation.type) {
       Mutation.Type.CREATE -> {
-        map.put(CREATED, auditInfo)
-        map.put(LAST_MODIFIED, auditInfo)
+        map.put(CREATED, fromMutationAndUser(mutation, user))
+        map.put(LAST_MODIFIED, lastModified)
       }
-      Mutation.Type.UPDATE -> map.put(LAST_MODIFIED, auditInfo)
+      Mutation.Type.UPDATE -> map.put(LAST_MODIFIED, lastModified)
       Mutation.Type.DELETE,
       Mutation.Type.UNKNOWN ->
         throw DataStoreException("Unsupported mutation type: ${mutation.type}")
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+
+/**
+ * A worker that enqueues a [LocalMutationSyncWorker] once mutations whose last attempt failed are
+ * due to be retried. Uploads are left to the sync worker so that they're never done concurrently.
+ */
+@HiltWorker
+class LocalMutationSyncWorkTrigger
+@AssistedInject
+constructor(
+  @Assisted context: Context,
+  @Assisted params: WorkerParameters,
+  private val mutationSyncWorkManager: MutationSyncWorkManager
+) : Worker(context, params) {
+
+  override fun doWork(): Result {
+    mutationSyncWorkManager.enqueueSyncWorkerInternal()
+    return Result.success()
+  }
+}
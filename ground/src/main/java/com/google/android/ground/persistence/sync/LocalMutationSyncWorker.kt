@@ -17,32 +17,40 @@ package com.google.android.ground.persistence.sync
 
 import android.content.Context
 import androidx.hilt.work.HiltWorker
-import androidx.work.Data
 import androidx.work.WorkerParameters
+import com.google.android.ground.Config
 import com.google.android.ground.R
 import com.google.android.ground.model.User
-import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.model.mutation.SubmissionMutation
 import com.google.android.ground.model.submission.TaskDataDelta
 import com.google.android.ground.model.task.Task
 import com.google.android.ground.persistence.local.LocalDataStore
 import com.google.android.ground.persistence.remote.RemoteDataStore
-import com.google.android.ground.persistence.sync.LocalMutationSyncWorker.Companion.createInputData
 import com.google.android.ground.system.NotificationManager
 import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableList
 import com.google.firebase.crashlytics.FirebaseCrashlytics
+import com.google.firebase.firestore.FirebaseFirestoreException
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import io.reactivex.Completable
+import io.reactivex.Flowable
 import io.reactivex.Observable
+import io.reactivex.Single
+import java.io.IOException
+import java.util.concurrent.TimeoutException
 import timber.log.Timber
 
 /**
- * A worker that syncs local changes to the remote data store. Each instance handles mutations for a
- * specific map location of interest, whose id is provided in the [Data] object built by
- * [createInputData] and provided to the worker request while being enqueued.
+ * A worker that syncs all pending local changes to the remote data store. Mutations are packed into
+ * write batches of up to [Config.MUTATION_UPLOAD_BATCH_SIZE] mutations, and up to
+ * [Config.MUTATION_UPLOAD_PARALLELISM] batches are committed concurrently. Mutations to the same
+ * entity within a batch are merged by [MutationCoalescer] so that each is written only once.
+ *
+ * Batches rejected by the remote data store are split to isolate the failing mutations, which are
+ * rescheduled individually by [MutationRetryPolicy] so that healthy mutations keep flowing. Later
+ * mutations to the LOI of a failed mutation are left pending until it's retried.
  */
 @HiltWorker
 class LocalMutationSyncWorker
@@ -53,34 +61,47 @@ constructor(
   private val localDataStore: LocalDataStore,
   private val remoteDataStore: RemoteDataStore,
   notificationManager: NotificationManager,
-  private val photoSyncWorkManager: PhotoSyncWorkManager
+  private val photoSyncWorkManager: PhotoSyncWorkManager,
+  private val mutationSyncWorkManager: MutationSyncWorkManager
 ) :
   BaseWorker(context, params, notificationManager, LocalMutationSyncWorker::class.java.hashCode()) {
 
   override val notificationTitle: String
     get() = applicationContext.getString(R.string.uploading_data)
 
-  private val locationOfInterestId: String =
-    params.inputData.getString(LOCATION_OF_INTEREST_ID_PARAM_KEY)!!
-
   override fun doWork(): Result {
-    Timber.d("Connected. Syncing changes to location of interest $locationOfInterestId")
-    val mutations: ImmutableList<Mutation> =
-      localDataStore.getPendingMutations(locationOfInterestId).blockingGet()
-    return try {
-      Timber.v("Mutations: $mutations")
-      processMutations(mutations)
-        .compose { completable: Completable -> this.notifyTransferState(completable) }
-        .blockingAwait()
-      Result.success()
-    } catch (t: Throwable) {
-      FirebaseCrashlytics.getInstance()
-        .log("Error applying remote updates to location of interest $locationOfInterestId")
-      FirebaseCrashlytics.getInstance().recordException(t)
-      Timber.e(t, "Remote updates for location of interest $locationOfInterestId failed")
-      localDataStore.updateMutations(incrementRetryCounts(mutations, t)).blockingAwait()
-      Result.retry()
-    }
+    Timber.d("Connected. Syncing pending changes")
+    val mutations: ImmutableList<Mutation> = localDataStore.getPendingMutations().blockingGet()
+    // Workers appended behind one which already uploaded everything have nothing left to do.
+    if (mutations.isEmpty()) return Result.success()
+    val start = System.currentTimeMillis()
+    val result =
+      try {
+        Timber.v("Mutations: $mutations")
+        processMutations(mutations)
+          .compose { completable: Completable -> this.notifyTransferState(completable) }
+          .blockingAwait()
+        val elapsedMillis = (System.currentTimeMillis() - start).coerceAtLeast(1)
+        Timber.d(
+          "Processed ${mutations.size} mutations in ${elapsedMillis}ms " +
+            "(${mutations.size * 1000 / elapsedMillis} mutations/s)"
+        )
+        Result.success()
+      } catch (t: Throwable) {
+        FirebaseCrashlytics.getInstance().log("Error applying remote updates")
+        FirebaseCrashlytics.getInstance().recordException(t)
+        Timber.e(t, "Remote updates failed")
+        Result.retry()
+      }
+    scheduleNextAttempt()
+    return result
+  }
+
+  /** Schedules a worker to retry failed mutations once the earliest of them is due. */
+  private fun scheduleNextAttempt() {
+    val nextAttemptAt = localDataStore.getNextPendingMutationAttemptTime().blockingGet() ?: return
+    val delayMillis = nextAttemptAt - System.currentTimeMillis()
+    if (delayMillis > 0) mutationSyncWorkManager.enqueueRetryWorker(delayMillis)
   }
 
   /**
@@ -91,26 +112,76 @@ constructor(
     val mutationsByUserId: Map<String, List<Mutation>> = groupByUserId(pendingMutations)
     val userIds = mutationsByUserId.keys
     return Observable.fromIterable(userIds).flatMapCompletable { userId: String ->
-      val mutations = mutationsByUserId[userId]?.toImmutableList() ?: ImmutableList.of()
+      val mutations = mutationsByUserId[userId] ?: listOf()
       processMutations(mutations, userId)
     }
   }
 
   /** Loads each user with specified id, applies mutations, and removes processed mutations. */
-  private fun processMutations(mutations: ImmutableList<Mutation>, userId: String): Completable {
+  private fun processMutations(mutations: List<Mutation>, userId: String): Completable {
     return localDataStore
       .getUser(userId)
-      .flatMapCompletable { user: User -> processMutations(mutations, user) }
+      .toMaybe()
       .doOnError { Timber.d("User account removed before mutation processed") }
       .onErrorComplete()
+      .flatMapCompletable { user: User -> processBatches(mutations, user) }
+  }
+
+  /**
+   * Packs the user's mutations into write batches and commits them, running up to
+   * [Config.MUTATION_UPLOAD_PARALLELISM] independent sequences of batches concurrently.
+   */
+  private fun processBatches(mutations: List<Mutation>, user: User): Completable =
+    Flowable.fromIterable(packBatches(mutations, Config.MUTATION_UPLOAD_BATCH_SIZE))
+      .flatMapCompletable(
+        { batches -> processSequence(batches, user) },
+        false,
+        Config.MUTATION_UPLOAD_PARALLELISM
+      )
+
+  /**
+   * Commits a sequence of batches in order. Mutations to LOIs with a failed mutation in an earlier
+   * batch are left pending, so that they're retried after it.
+   */
+  private fun processSequence(batches: List<ImmutableList<Mutation>>, user: User): Completable {
+    val failedLoiIds = mutableSetOf<String>()
+    return Flowable.fromIterable(batches).concatMapCompletable { batch ->
+      Completable.defer {
+        val remaining = batch.filter { it.locationOfInterestId !in failedLoiIds }
+        commitBatch(
+            remaining.toImmutableList(),
+            { processMutations(it, user) },
+            { failed, t -> scheduleRetry(failed, t) }
+          )
+          .doOnSuccess { failedLoiIds.addAll(it) }
+          .ignoreElement()
+      }
+    }
   }
 
-  /** Applies mutations to remote data store. Once successful, removes them from the local db. */
+  /** Records a failed sync attempt of the specified mutations, scheduling their next attempt. */
+  private fun scheduleRetry(mutations: ImmutableList<Mutation>, error: Throwable): Completable {
+    FirebaseCrashlytics.getInstance().recordException(error)
+    Timber.e(error, "Sync of mutation ${mutations.first().id} failed")
+    val now = System.currentTimeMillis()
+    return localDataStore.updateMutations(
+      mutations.map { MutationRetryPolicy.onFailure(it, error, now) }.toImmutableList()
+    )
+  }
+
+  /**
+   * Coalesces and applies mutations to remote data store. Once successful, removes them from the
+   * local db.
+   */
   private fun processMutations(mutations: ImmutableList<Mutation>, user: User): Completable {
-    return remoteDataStore
-      .applyMutations(mutations, user)
+    val coalesced = MutationCoalescer.coalesce(mutations)
+    Timber.v("Coalesced ${mutations.size} mutations into ${coalesced.size} writes")
+    val remoteSync =
+      if (coalesced.isEmpty()) Completable.complete()
+      else remoteDataStore.applyMutations(coalesced, user)
+    return remoteSync
       .andThen(
-        processPhotoFieldMutations(mutations)
+        processPhotoFieldMutations(coalesced)
       ) // TODO: If the remote sync fails, reset the state to DEFAULT.
       .andThen(localDataStore.finalizePendingMutations(mutations))
   }
@@ -136,26 +207,90 @@ constructor(
     pendingMutations: ImmutableList<Mutation>
   ): Map<String, List<Mutation>> = pendingMutations.groupBy { it.userId }
 
-  private fun incrementRetryCounts(
-    mutations: ImmutableList<Mutation>,
-    error: Throwable
-  ): ImmutableList<Mutation> =
-    mutations.map { m: Mutation -> incrementRetryCount(m, error) }.toImmutableList()
-
-  private fun incrementRetryCount(mutation: Mutation, error: Throwable): Mutation =
-    when (mutation) {
-      is LocationOfInterestMutation ->
-        mutation.copy(retryCount = mutation.retryCount + 1, lastError = error.toString())
-      is SubmissionMutation ->
-        mutation.copy(retryCount = mutation.retryCount + 1, lastError = error.toString())
+  companion object {
+    /**
+     * Commits a batch of mutations with [commit]. Transient errors fail the whole sync so that it's
+     * retried later. Otherwise, if the batch is rejected it's split in two and each half committed
+     * separately, so that a poison mutation only holds back itself and later mutations to the same
+     * LOI, which are skipped. Mutations which fail on their own are passed to [onFailure].
+     *
+     * Returns the ids of LOIs whose mutations failed or were skipped.
+     */
+    internal fun commitBatch(
+      mutations: ImmutableList<Mutation>,
+      commit: (ImmutableList<Mutation>) -> Completable,
+      onFailure: (ImmutableList<Mutation>, Throwable) -> Completable
+    ): Single<Set<String>> {
+      if (mutations.isEmpty()) return Single.just(setOf())
+      return commit(mutations).toSingleDefault(setOf<String>()).onErrorResumeNext { t: Throwable ->
+        when {
+          isTransient(t) -> Single.error<Set<String>>(t)
+          mutations.size > 1 -> {
+            val half = mutations.size / 2
+            commitBatch(mutations.subList(0, half), commit, onFailure).flatMap { failedLoiIds ->
+              val remaining =
+                mutations.subList(half, mutations.size).filter {
+                  it.locationOfInterestId !in failedLoiIds
+                }
+              commitBatch(remaining.toImmutableList(), commit, onFailure).map {
+                failedLoiIds + it
+              }
+            }
+          }
+          else ->
+            onFailure(mutations, t).toSingleDefault(setOf(mutations.first().locationOfInterestId))
+        }
+      }
     }
 
-  companion object {
-    private const val LOCATION_OF_INTEREST_ID_PARAM_KEY = "locationOfInterestId"
+    /**
+     * Returns true if the error is likely to be caused by connectivity or server availability
+     * rather than the mutations being synced.
+     */
+    internal fun isTransient(t: Throwable): Boolean =
+      t is IOException ||
+        t is TimeoutException ||
+        (t is FirebaseFirestoreException && t.code in TRANSIENT_ERROR_CODES)
+
+    private val TRANSIENT_ERROR_CODES =
+      setOf(
+        FirebaseFirestoreException.Code.ABORTED,
+        FirebaseFirestoreException.Code.DEADLINE_EXCEEDED,
+        FirebaseFirestoreException.Code.RESOURCE_EXHAUSTED,
+        FirebaseFirestoreException.Code.UNAVAILABLE
+      )
 
-    /** Returns a new work [Data] object containing the specified location of interest id. */
+    /**
+     * Splits mutations into sequences of write batches of at most [maxBatchSize] mutations each.
+     * Each LOI's mutations are kept together and in client timestamp order, so that committing
+     * sequences concurrently can't reorder changes to the same LOI. LOIs with more mutations than
+     * fit in a batch are split across consecutive batches of the same sequence, which must be
+     * committed in order.
+     */
     @JvmStatic
-    fun createInputData(locationOfInterestId: String): Data =
-      Data.Builder().putString(LOCATION_OF_INTEREST_ID_PARAM_KEY, locationOfInterestId).build()
+    fun packBatches(
+      mutations: List<Mutation>,
+      maxBatchSize: Int
+    ): List<List<ImmutableList<Mutation>>> {
+      val sequences = mutableListOf<List<ImmutableList<Mutation>>>()
+      val batch = mutableListOf<Mutation>()
+      mutations
+        .sortedBy { it.clientTimestamp }
+        .groupBy { it.locationOfInterestId }
+        .values
+        .forEach { loiMutations ->
+          if (loiMutations.size > maxBatchSize) {
+            sequences.add(loiMutations.chunked(maxBatchSize).map { it.toImmutableList() })
+            return@forEach
+          }
+          if (batch.size + loiMutations.size > maxBatchSize) {
+            sequences.add(listOf(batch.toImmutableList()))
+            batch.clear()
+          }
+          batch.addAll(loiMutations)
+        }
+      if (batch.isNotEmpty()) sequences.add(listOf(batch.toImmutableList()))
+      return sequences
+    }
   }
 }
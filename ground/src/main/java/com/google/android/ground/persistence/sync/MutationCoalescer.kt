@@ -0,0 +1,125 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.model.mutation.LocationOfInterestMutation
+import com.google.android.ground.model.mutation.Mutation
+import com.google.android.ground.model.mutation.SubmissionMutation
+import com.google.android.ground.model.submission.TaskDataDelta
+import com.google.android.ground.util.toImmutableList
+import com.google.common.collect.ImmutableList
+
+/**
+ * Merges consecutive mutations to the same LOI or submission so that each entity is written to the
+ * remote data store at most once per upload.
+ *
+ * Mutations to each entity are applied in client timestamp order: CREATE or UPDATE followed by an
+ * UPDATE is merged into a single mutation of the former's type, with task data deltas combined as
+ * per [com.google.android.ground.model.submission.TaskDataMap.copyWithDeltas]. A CREATE followed by
+ * a DELETE cancels out, and an UPDATE followed by a DELETE is replaced by the DELETE. Mutations
+ * which can't be merged are left as is. When an LOI's mutations cancel out entirely, mutations to
+ * submissions of that LOI are dropped too, since the LOI they refer to is never uploaded.
+ *
+ * Merged mutations keep the client timestamp of the first mutation, which is reported as the
+ * creation time of created entities, and take their last modified time from the latest update.
+ */
+object MutationCoalescer {
+  fun coalesce(mutations: List<Mutation>): ImmutableList<Mutation> {
+    val coalesced =
+      mutations
+        .sortedBy { it.clientTimestamp }
+        .groupBy { entityKey(it) }
+        .mapValues { coalesceEntityMutations(it.value) }
+    val cancelledLoiIds =
+      coalesced.filter { (key, value) -> !key.first && value.isEmpty() }.keys.map { it.second }
+    return coalesced.values
+      .flatten()
+      .filterNot { it is SubmissionMutation && cancelledLoiIds.contains(it.locationOfInterestId) }
+      .sortedBy { it.clientTimestamp }
+      .toImmutableList()
+  }
+
+  private fun entityKey(mutation: Mutation): Pair<Boolean, String> =
+    when (mutation) {
+      is LocationOfInterestMutation -> Pair(false, mutation.locationOfInterestId)
+      is SubmissionMutation -> Pair(true, mutation.submissionId)
+    }
+
+  private fun coalesceEntityMutations(mutations: List<Mutation>): List<Mutation> {
+    val result = mutableListOf<Mutation>()
+    var pending: Mutation? = null
+    for (mutation in mutations) {
+      val current = pending
+      pending =
+        when {
+          current == null -> mutation
+          current.type == Mutation.Type.CREATE && mutation.type == Mutation.Type.DELETE -> null
+          current.type == Mutation.Type.UPDATE && mutation.type == Mutation.Type.DELETE -> mutation
+          mutation.type == Mutation.Type.UPDATE &&
+            (current.type == Mutation.Type.CREATE || current.type == Mutation.Type.UPDATE) ->
+            merge(current, mutation)
+          else -> {
+            result.add(current)
+            mutation
+          }
+        }
+    }
+    pending?.let { result.add(it) }
+    return result
+  }
+
+  /** Returns [first] updated with the changes in the later [update] to the same entity. */
+  private fun merge(first: Mutation, update: Mutation): Mutation =
+    when (first) {
+      is LocationOfInterestMutation -> {
+        update as LocationOfInterestMutation
+        first.copy(
+          lastModifiedTimestamp = update.lastModifiedTimestamp,
+          jobId = update.jobId,
+          geometry = update.geometry ?: first.geometry
+        )
+      }
+      is SubmissionMutation -> {
+        update as SubmissionMutation
+        first.copy(
+          lastModifiedTimestamp = update.lastModifiedTimestamp,
+          job = update.job ?: first.job,
+          taskDataDeltas =
+            mergeDeltas(
+              first.taskDataDeltas,
+              update.taskDataDeltas,
+              first.type == Mutation.Type.CREATE
+            )
+        )
+      }
+    }
+
+  /**
+   * Combines two lists of deltas so that the latest delta for each task wins. Removals are dropped
+   * when merging into a CREATE, since there is no prior task data to remove.
+   */
+  private fun mergeDeltas(
+    first: List<TaskDataDelta>,
+    second: List<TaskDataDelta>,
+    dropRemovals: Boolean
+  ): ImmutableList<TaskDataDelta> {
+    val deltasByTaskId = LinkedHashMap<String, TaskDataDelta>()
+    (first + second).forEach { deltasByTaskId[it.taskId] = it }
+    return deltasByTaskId.values
+      .filter { !dropRemovals || it.newTaskData.isPresent }
+      .toImmutableList()
+  }
+}
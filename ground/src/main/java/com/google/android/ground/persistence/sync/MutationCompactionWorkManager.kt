@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import androidx.work.Constraints
+import androidx.work.ExistingPeriodicWorkPolicy
+import androidx.work.PeriodicWorkRequest
+import androidx.work.WorkManager
+import com.google.android.ground.Config
+import java.util.concurrent.TimeUnit
+import javax.inject.Inject
+
+/** Schedules periodic compaction of the local mutation queue. */
+class MutationCompactionWorkManager @Inject constructor(private val workManager: WorkManager) {
+
+  /**
+   * Schedules [MutationCompactionWorker] to run periodically while the battery isn't low. Existing
+   * schedules are kept, so this may safely be called on each app start.
+   */
+  fun enqueuePeriodicCompactionWorker() {
+    val request =
+      PeriodicWorkRequest.Builder(
+          MutationCompactionWorker::class.java,
+          Config.MUTATION_COMPACTION_INTERVAL_HOURS,
+          TimeUnit.HOURS
+        )
+        .setConstraints(Constraints.Builder().setRequiresBatteryNotLow(true).build())
+        .build()
+    workManager.enqueueUniquePeriodicWork(
+      MutationCompactionWorker::class.java.name,
+      ExistingPeriodicWorkPolicy.KEEP,
+      request
+    )
+  }
+}
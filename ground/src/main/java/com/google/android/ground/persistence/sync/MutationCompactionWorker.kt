@@ -0,0 +1,72 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import android.content.Context
+import androidx.hilt.work.HiltWorker
+import androidx.work.Data
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import com.google.android.ground.Config
+import com.google.android.ground.persistence.local.LocalDataStore
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import java.util.concurrent.TimeUnit
+import timber.log.Timber
+
+/**
+ * A worker that removes completed mutations past the configured retention limits from the local db
+ * and reclaims the space they occupied. The number of rows removed and bytes reclaimed are logged
+ * and returned in the worker's output data.
+ */
+@HiltWorker
+class MutationCompactionWorker
+@AssistedInject
+constructor(
+  @Assisted context: Context,
+  @Assisted params: WorkerParameters,
+  private val localDataStore: LocalDataStore
+) : Worker(context, params) {
+
+  override fun doWork(): Result =
+    try {
+      val result =
+        localDataStore
+          .compactMutations(
+            TimeUnit.DAYS.toMillis(Config.COMPLETED_MUTATION_RETENTION_DAYS),
+            Config.MAX_COMPLETED_MUTATIONS
+          )
+          .blockingGet()
+      Timber.d(
+        "Removed ${result.rowsRemoved} completed mutations, " +
+          "reclaimed ${result.bytesReclaimed} bytes"
+      )
+      Result.success(
+        Data.Builder()
+          .putInt(ROWS_REMOVED_KEY, result.rowsRemoved)
+          .putLong(BYTES_RECLAIMED_KEY, result.bytesReclaimed)
+          .build()
+      )
+    } catch (e: RuntimeException) {
+      Timber.e(e, "Mutation compaction failed")
+      Result.retry()
+    }
+
+  companion object {
+    const val ROWS_REMOVED_KEY = "rowsRemoved"
+    const val BYTES_RECLAIMED_KEY = "bytesReclaimed"
+  }
+}
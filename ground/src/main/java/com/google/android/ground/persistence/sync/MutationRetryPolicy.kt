@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.Config
+import com.google.android.ground.model.mutation.LocationOfInterestMutation
+import com.google.android.ground.model.mutation.Mutation
+import com.google.android.ground.model.mutation.SubmissionMutation
+import java.util.*
+import kotlin.math.min
+import kotlin.random.Random
+
+/**
+ * Determines when mutations which failed to sync should next be attempted. Delays grow
+ * exponentially with the number of failed attempts, with random jitter so that retries of many
+ * mutations or devices don't all happen at once. Mutations which fail
+ * [Config.MAX_MUTATION_SYNC_ATTEMPTS] times are marked as [Mutation.SyncStatus.FAILED] so that
+ * they're no longer retried.
+ */
+object MutationRetryPolicy {
+  /** Returns a copy of [mutation] updated to record a failed sync attempt at time [now]. */
+  fun onFailure(
+    mutation: Mutation,
+    error: Throwable,
+    now: Long,
+    random: Random = Random.Default
+  ): Mutation {
+    val retryCount = mutation.retryCount + 1
+    val syncStatus =
+      if (retryCount >= Config.MAX_MUTATION_SYNC_ATTEMPTS) Mutation.SyncStatus.FAILED
+      else Mutation.SyncStatus.PENDING
+    val nextAttemptAt = Date(now + backoffMillis(retryCount, random))
+    return when (mutation) {
+      is LocationOfInterestMutation ->
+        mutation.copy(
+          retryCount = retryCount,
+          lastError = error.toString(),
+          syncStatus = syncStatus,
+          nextAttemptAt = nextAttemptAt
+        )
+      is SubmissionMutation ->
+        mutation.copy(
+          retryCount = retryCount,
+          lastError = error.toString(),
+          syncStatus = syncStatus,
+          nextAttemptAt = nextAttemptAt
+        )
+    }
+  }
+
+  /**
+   * Returns the delay before the next attempt after the specified number of failed attempts. The
+   * delay is chosen uniformly between half and all of the exponential backoff time.
+   */
+  fun backoffMillis(retryCount: Long, random: Random = Random.Default): Long {
+    val exponent = min(retryCount - 1, MAX_EXPONENT).coerceAtLeast(0)
+    val backoff =
+      min(
+        Config.MUTATION_RETRY_BASE_DELAY_MILLIS shl exponent.toInt(),
+        Config.MUTATION_RETRY_MAX_DELAY_MILLIS
+      )
+    return backoff / 2 + random.nextLong(backoff / 2 + 1)
+  }
+
+  /** Upper bound on the exponent, used to avoid overflowing the shifted delay. */
+  private const val MAX_EXPONENT = 30L
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2019 Google LLC
+ * Copyright 2022 Google LLC
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,36 +16,83 @@
 package com.google.android.ground.persistence.sync
 
 import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequest
+import androidx.work.WorkInfo
 import androidx.work.WorkManager
-import com.google.android.ground.persistence.sync.LocalMutationSyncWorker.Companion.createInputData
+import com.google.android.ground.rx.Schedulers
 import io.reactivex.Completable
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 
-/** Enqueues data sync work to be done in the background. */
-class MutationSyncWorkManager @Inject constructor(private val workManager: WorkManager) :
+/**
+ * Enqueues data sync work to be done in the background.
+ *
+ * All uploads are done by [LocalMutationSyncWorker]s enqueued under a single unique work name, so
+ * that no two of them ever run at once. At most one worker is kept waiting behind a running one,
+ * however many changes are made while it runs.
+ */
+class MutationSyncWorkManager
+@Inject
+constructor(private val workManager: WorkManager, private val schedulers: Schedulers) :
   SyncService() {
   override val workerClass: Class<LocalMutationSyncWorker>
     get() = LocalMutationSyncWorker::class.java
 
   /**
-   * Enqueues a worker that sends changes made locally to the remote data store once a network
-   * connection is available. The returned `Completable` completes immediately as soon as the worker
-   * is added to the work queue (not once the sync job completes).
+   * Enqueues a worker that sends all pending changes made locally to the remote data store once a
+   * network connection is available. The returned `Completable` completes immediately as soon as
+   * the worker is added to the work queue (not once the sync job completes).
    */
-  fun enqueueSyncWorker(locationOfInterestId: String): Completable =
-    Completable.fromRunnable { enqueueSyncWorkerInternal(locationOfInterestId) }
-
-  private fun enqueueSyncWorkerInternal(locationOfInterestId: String) {
-    // Rather than having running workers monitor the queue for new mutations for their respective
-    // locationOfInterestId, we instead queue a new worker on each new mutation. This simplifies the
-    // worker
-    // implementation and avoids race conditions in the rare event the worker finishes just when new
-    // mutations are added to the db.
-    val inputData = createInputData(locationOfInterestId)
+  fun enqueueSyncWorker(): Completable =
+    Completable.fromRunnable { enqueueSyncWorkerInternal() }.subscribeOn(schedulers.io())
+
+  /**
+   * Enqueues a sync worker unless one is already waiting to start, since it will upload all
+   * changes made so far. If a worker is running, it may have read pending changes before the
+   * latest ones were made, so another is appended to run after it. Must not be called on the main
+   * thread, since it waits for the state of enqueued work.
+   */
+  internal fun enqueueSyncWorkerInternal() =
+    synchronized(lock) {
+      val states = workManager.getWorkInfosForUniqueWork(WORK_NAME).get().map { it.state }.toSet()
+      workManager.enqueueUniqueWork(WORK_NAME, getEnqueuePolicy(states), buildWorkerRequest())
+    }
+
+  /**
+   * Schedules [LocalMutationSyncWorkTrigger] to enqueue a sync worker once the next attempt of
+   * mutations whose last attempt failed is due, replacing any previously scheduled retry. The
+   * retry isn't enqueued as a sync worker directly, so that it doesn't hold back new changes until
+   * it's due.
+   */
+  fun enqueueRetryWorker(delayMillis: Long) {
     workManager.enqueueUniqueWork(
-      LocalMutationSyncWorker::class.java.name,
-      ExistingWorkPolicy.APPEND,
-      buildWorkerRequest(inputData)
+      WORK_NAME + RETRY_WORK_NAME_SUFFIX,
+      ExistingWorkPolicy.REPLACE,
+      OneTimeWorkRequest.Builder(LocalMutationSyncWorkTrigger::class.java)
+        .setInitialDelay(delayMillis, TimeUnit.MILLISECONDS)
+        .build()
     )
   }
+
+  companion object {
+    private val WORK_NAME = LocalMutationSyncWorker::class.java.name
+    private const val RETRY_WORK_NAME_SUFFIX = ".retry"
+
+    /** Serializes checking and enqueueing work so that concurrent calls append one worker. */
+    private val lock = Any()
+
+    private val WAITING_STATES = setOf(WorkInfo.State.ENQUEUED, WorkInfo.State.BLOCKED)
+
+    /**
+     * Returns the policy used to enqueue a sync worker given the [states] of existing sync work.
+     * Waiting work is kept, and a worker is appended only if all existing work is running or
+     * finished.
+     */
+    internal fun getEnqueuePolicy(states: Set<WorkInfo.State>): ExistingWorkPolicy =
+      if (WorkInfo.State.RUNNING in states && WAITING_STATES.none { it in states }) {
+        ExistingWorkPolicy.APPEND_OR_REPLACE
+      } else {
+        ExistingWorkPolicy.KEEP
+      }
+  }
 }
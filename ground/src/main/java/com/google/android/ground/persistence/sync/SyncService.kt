@@ -24,8 +24,8 @@ import java.util.concurrent.TimeUnit
  * By default, the only constraint is availability of any type of internet connection, as it is
  * assumed that all background tasks need at least some sort of connectivity.
  *
- * In case the required criteria are not met, the next attempt uses LINEAR backoff policy with a
- * backoff delay of 10 seconds.
+ * In case the required criteria are not met, the next attempt uses EXPONENTIAL backoff policy
+ * starting with a backoff delay of 10 seconds.
  */
 abstract class SyncService {
   /** A set of constraints that must be satisfied in order to start the scheduled job. */
@@ -43,14 +43,19 @@ abstract class SyncService {
 
   /**
    * Create a work request for non-repeating work along with input data that would be passed along
-   * to the worker class.
+   * to the worker class. If [initialDelayMillis] is non-zero, the work won't be started until the
+   * specified delay has passed.
    */
   @JvmOverloads
-  protected fun buildWorkerRequest(inputData: Data? = null): OneTimeWorkRequest {
+  protected fun buildWorkerRequest(
+    inputData: Data? = null,
+    initialDelayMillis: Long = 0
+  ): OneTimeWorkRequest {
     val builder =
       OneTimeWorkRequest.Builder(workerClass)
         .setConstraints(workerConstraints)
         .setBackoffCriteria(BACKOFF_POLICY, BACKOFF_DELAY_MILLIS, TimeUnit.MILLISECONDS)
+        .setInitialDelay(initialDelayMillis, TimeUnit.MILLISECONDS)
 
     if (inputData != null) {
       builder.setInputData(inputData)
@@ -60,10 +65,11 @@ abstract class SyncService {
   }
 
   companion object {
-    /** Backoff time should increase linearly. */
-    // TODO(#710): Check if it is possible to wake the worker as soon as the connection becomes
-    //   available, and if so switch to EXPONENTIAL backoff policy.
-    private val BACKOFF_POLICY = BackoffPolicy.LINEAR
+    /**
+     * Backoff time should increase exponentially, so that repeated failures in areas with poor
+     * coverage don't wake the device at a fixed short interval.
+     */
+    private val BACKOFF_POLICY = BackoffPolicy.EXPONENTIAL
 
     /** Number of milliseconds to wait before retrying failed sync tasks. */
     private const val BACKOFF_DELAY_MILLIS = WorkRequest.MIN_BACKOFF_MILLIS
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+/**
+ * Progress of the tile set downloads currently in progress.
+ *
+ * @property isActive whether any downloads are in progress.
+ * @property totalBytes the total number of bytes expected to be downloaded.
+ * @property bytesDownloaded the number of bytes downloaded so far.
+ * @property bytesPerSecond the average download throughput since downloads started.
+ * @property etaMillis the estimated time remaining until downloads complete, or null if unknown.
+ */
+data class TileSetDownloadProgress(
+  val isActive: Boolean = false,
+  val totalBytes: Long = 0,
+  val bytesDownloaded: Long = 0,
+  val bytesPerSecond: Long = 0,
+  val etaMillis: Long? = null
+) {
+  /** Percentage of the expected bytes downloaded so far, from 0 to 100. */
+  val percentComplete: Int
+    get() =
+      if (totalBytes <= 0) 0 else (bytesDownloaded * 100 / totalBytes).toInt().coerceIn(0, 100)
+
+  val megabytesDownloaded: Double
+    get() = bytesDownloaded.toDouble() / BYTES_PER_MEGABYTE
+
+  val totalMegabytes: Double
+    get() = totalBytes.toDouble() / BYTES_PER_MEGABYTE
+
+  val megabytesPerSecond: Double
+    get() = bytesPerSecond.toDouble() / BYTES_PER_MEGABYTE
+
+  /** Estimated seconds remaining, or null if unknown. */
+  val etaSeconds: Long?
+    get() = etaMillis?.let { it / 1000 }
+
+  companion object {
+    private const val BYTES_PER_MEGABYTE = 1024 * 1024
+  }
+}
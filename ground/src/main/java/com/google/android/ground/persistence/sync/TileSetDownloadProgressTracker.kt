@@ -0,0 +1,103 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.Config
+import com.google.android.ground.rx.annotations.Hot
+import io.reactivex.Flowable
+import io.reactivex.Scheduler
+import io.reactivex.processors.BehaviorProcessor
+import io.reactivex.schedulers.Schedulers
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Aggregates the byte-level progress of tile set downloads across workers. Downloaders report bytes
+ * as they're written, which are only counted here; progress is published at a fixed cadence so
+ * that observers such as notifications aren't updated for every block downloaded.
+ */
+@Singleton
+class TileSetDownloadProgressTracker(private val scheduler: Scheduler) {
+  @Inject constructor() : this(Schedulers.computation())
+
+  private val totalBytes = AtomicLong()
+  private val bytesDownloaded = AtomicLong()
+  private val isActive: BehaviorProcessor<Boolean> = BehaviorProcessor.createDefault(false)
+  private var activeDownloadCount = 0
+  @Volatile private var startTimeMillis = 0L
+
+  /**
+   * Emits the current progress every [Config.TILE_DOWNLOAD_PROGRESS_INTERVAL_MILLIS] while
+   * downloads are in progress, and once when they finish.
+   */
+  val progressOnceAndStream: @Hot(replays = true) Flowable<TileSetDownloadProgress> =
+    isActive.distinctUntilChanged().switchMap { active ->
+      if (active) {
+        Flowable.interval(
+            0,
+            Config.TILE_DOWNLOAD_PROGRESS_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS,
+            scheduler
+          )
+          .map { getProgress(true) }
+      } else {
+        Flowable.just(getProgress(false))
+      }
+    }
+
+  /** The current progress of downloads. */
+  val progress: TileSetDownloadProgress
+    @Synchronized get() = getProgress(activeDownloadCount > 0)
+
+  /** Registers the start of downloads expected to total the specified number of bytes. */
+  @Synchronized
+  fun start(expectedBytes: Long) {
+    if (activeDownloadCount++ == 0) {
+      totalBytes.set(0)
+      bytesDownloaded.set(0)
+      startTimeMillis = scheduler.now(TimeUnit.MILLISECONDS)
+    }
+    totalBytes.addAndGet(expectedBytes)
+    isActive.onNext(true)
+  }
+
+  /**
+   * Records the specified number of bytes as downloaded. Negative counts retract bytes previously
+   * recorded whose download had to be discarded.
+   */
+  fun addBytesDownloaded(byteCount: Long) {
+    bytesDownloaded.addAndGet(byteCount)
+  }
+
+  /** Registers the end of downloads registered with [start]. */
+  @Synchronized
+  fun finish() {
+    if (--activeDownloadCount == 0) isActive.onNext(false)
+  }
+
+  private fun getProgress(active: Boolean): TileSetDownloadProgress {
+    val total = totalBytes.get()
+    val downloaded = bytesDownloaded.get()
+    val elapsedMillis = (scheduler.now(TimeUnit.MILLISECONDS) - startTimeMillis).coerceAtLeast(1)
+    val bytesPerSecond = downloaded * 1000 / elapsedMillis
+    val etaMillis =
+      if (bytesPerSecond > 0 && total >= downloaded) (total - downloaded) * 1000 / bytesPerSecond
+      else null
+    return TileSetDownloadProgress(active, total, downloaded, bytesPerSecond, etaMillis)
+  }
+}
@@ -16,21 +16,25 @@
 package com.google.android.ground.persistence.sync
 
 import android.content.Context
+import android.database.sqlite.SQLiteException
 import androidx.hilt.work.HiltWorker
 import androidx.work.WorkerParameters
+import com.google.android.ground.Config
 import com.google.android.ground.R
+import com.google.android.ground.model.basemap.OfflineArea
 import com.google.android.ground.model.basemap.tile.TileSet
 import com.google.android.ground.persistence.local.LocalDataStore
+import com.google.android.ground.persistence.mbtiles.OfflineTileStore
 import com.google.android.ground.persistence.remote.TransferProgress.Companion.inProgress
+import com.google.android.ground.rx.Schedulers
 import com.google.android.ground.system.NotificationManager
-import com.google.common.collect.ImmutableList
 import dagger.assisted.Assisted
 import dagger.assisted.AssistedInject
 import io.reactivex.Completable
-import io.reactivex.Observable
+import io.reactivex.Flowable
+import io.reactivex.Single
 import java.io.File
 import java.io.IOException
-import java.net.HttpURLConnection
 import java.net.URL
 import timber.log.Timber
 
@@ -46,120 +50,120 @@ constructor(
   @param:Assisted private val context: Context,
   @Assisted params: WorkerParameters,
   private val localDataStore: LocalDataStore,
-  notificationManager: NotificationManager
+  notificationManager: NotificationManager,
+  private val tileSetDownloader: TileSetDownloader,
+  private val progressTracker: TileSetDownloadProgressTracker,
+  private val offlineTileStore: OfflineTileStore,
+  private val schedulers: Schedulers
 ) : BaseWorker(context, params, notificationManager, TileSetDownloadWorker::class.java.hashCode()) {
+
   /**
    * Given a tile, downloads the given {@param tile}'s source file and saves it to the device's app
-   * storage. Optional HTTP request header {@param requestProperties} may be provided.
+   * storage, resuming previous partial downloads where possible.
    */
   @Throws(TileSetDownloadException::class)
-  private fun downloadTileFile(tileSet: TileSet, requestProperties: Map<String, String>) {
-    var mode = Context.MODE_PRIVATE
-
+  private fun downloadTileFile(tileSet: TileSet, metadata: TileSetDownloader.Metadata) {
     try {
-      val url = URL(tileSet.url)
-      val connection = url.openConnection() as HttpURLConnection
-
-      if (requestProperties.isNotEmpty()) {
-        for ((key, value) in requestProperties) {
-          connection.setRequestProperty(key, value)
-        }
-        mode = Context.MODE_APPEND
-      }
-
-      connection.connect()
-
-      connection.inputStream.use { inputStream ->
-        context.openFileOutput(tileSet.path, mode).use { fos ->
-          val byteChunk = ByteArray(BUFFER_SIZE)
-          var n: Int
-
-          while (inputStream.read(byteChunk).also { n = it } > 0) {
-            fos.write(byteChunk, 0, n)
-          }
-        }
+      tileSetDownloader.download(URL(tileSet.url), getFile(tileSet), metadata) {
+        progressTracker.addBytesDownloaded(it)
       }
     } catch (e: IOException) {
       throw TileSetDownloadException("Failed to download tile", e)
     }
   }
 
-  /** Update a tile's state in the database and initiate a download of the tile source file. */
-  private fun downloadTileSet(tileSet: TileSet): Completable {
-    val requestProperties: MutableMap<String, String> = HashMap()
-
-    // To resume a download for an in progress tile, we use the HTTP Range request property.
-    // The range property takes a range of bytes, the server returns the content of the resource
-    // that corresponds to the given byte range.
-    //
-    // To resume a download, we get the current length, in bytes, of the file on disk.
-    // appending '-' to the byte value tells the server to return the range of bytes from the given
-    // byte value to the end of the file, e.g. '500-' returns contents starting at byte 500 to EOF.
-    //
-    // Note that length returns 0 when the file does not exist, so this correctly handles an edge
-    // case whereby the local DB has a tile state of IN_PROGRESS but none of the file has been
-    // downloaded yet (since then we'll fetch the range '0-', the entire file).
-    //
-    // For more info see: https://developer.mozilla.org/en-US/docs/Web/HTTP/Headers/Range
-    if (tileSet.state === TileSet.State.IN_PROGRESS) {
-      val existingTileFile = File(context.filesDir, tileSet.path)
-      requestProperties["Range"] = "bytes=" + existingTileFile.length() + "-"
+  /**
+   * Moves the tiles in the downloaded file of {@param tileSet} into the offline tile store,
+   * retaining those within {@param offlineAreas}. Files which can't be read as MBTiles are left in
+   * place and rendered directly.
+   */
+  private fun importTileFile(tileSet: TileSet, offlineAreas: List<OfflineArea>) {
+    val file = getFile(tileSet)
+    try {
+      offlineTileStore.importTileSet(file, tileSet.url, offlineAreas)
+      file.delete()
+    } catch (e: SQLiteException) {
+      Timber.w(e, "Couldn't import tile set into offline tile store: $tileSet")
     }
-    return localDataStore
+  }
+
+  /** Update a tile's state in the database and initiate a download of the tile source file. */
+  private fun downloadTileSet(
+    tileSet: TileSet,
+    metadata: TileSetDownloader.Metadata,
+    offlineAreas: List<OfflineArea>
+  ): Completable =
+    localDataStore
       .insertOrUpdateTileSet(
         tileSet.copy(
           state = TileSet.State.IN_PROGRESS,
         )
       )
-      .andThen(Completable.fromRunnable { downloadTileFile(tileSet, requestProperties) })
-      .onErrorResumeNext { e ->
-        Timber.d(e, "Failed to download tile: $tileSet")
+      .andThen(Completable.fromRunnable { downloadTileFile(tileSet, metadata) })
+      .andThen(Completable.fromRunnable { importTileFile(tileSet, offlineAreas) })
+      .andThen(
         localDataStore.insertOrUpdateTileSet(
           tileSet.copy(
-            state = TileSet.State.FAILED,
+            state = TileSet.State.DOWNLOADED,
           )
         )
-      }
-      .andThen(
+      )
+      .onErrorResumeNext { e ->
+        Timber.d(e, "Failed to download tile: $tileSet")
         localDataStore.insertOrUpdateTileSet(
           tileSet.copy(
-            state = TileSet.State.DOWNLOADED,
+            state = TileSet.State.FAILED,
           )
         )
-      )
-  }
+      }
+      .subscribeOn(schedulers.io())
+
+  private fun getFile(tileSet: TileSet) = File(context.filesDir, tileSet.path)
 
   /**
-   * Verifies that {@param tile} marked as `Tile.State.DOWNLOADED` in the local database still
-   * exists in the app's storage. If the tile's source file isn't present, initiates a download of
-   * source file.
+   * Returns true unless {@param tile} is marked as `Tile.State.DOWNLOADED` in the local database
+   * and is still stored in full in the offline tile store or the app's storage.
    */
-  private fun downloadIfNotFound(tileSet: TileSet): Completable {
-    val file = File(context.filesDir, tileSet.path)
-    return if (file.exists()) {
-      Completable.complete()
-    } else downloadTileSet(tileSet)
-  }
+  private fun needsDownload(tileSet: TileSet, storedSources: Set<String>): Boolean =
+    tileSet.state !== TileSet.State.DOWNLOADED ||
+      !(storedSources.contains(tileSet.url) || getFile(tileSet).exists())
 
-  private fun processTileSets(pendingTileSets: ImmutableList<TileSet>): Completable =
-    Observable.fromIterable(pendingTileSets)
-      .doOnNext { tile ->
-        sendNotification(inProgress(pendingTileSets.size, pendingTileSets.indexOf(tile) + 1))
-      }
-      .flatMapCompletable { t ->
-        when (t.state) {
-          TileSet.State.DOWNLOADED -> downloadIfNotFound(t)
-          TileSet.State.PENDING,
-          TileSet.State.IN_PROGRESS,
-          TileSet.State.FAILED -> downloadTileSet(t)
-        }
-      }
+  /**
+   * Fetches the size and ETag of each tile set's file with HEAD requests, so that progress can be
+   * reported against the total expected bytes before downloads start.
+   */
+  private fun fetchMetadata(tileSets: List<TileSet>): Map<TileSet, TileSetDownloader.Metadata> =
+    Flowable.fromIterable(tileSets)
+      .flatMapSingle(
+        { tileSet ->
+          Single.fromCallable { tileSetDownloader.fetchMetadata(URL(tileSet.url)) }
+            .doOnError { Timber.d(it, "Failed to fetch metadata for tile: $tileSet") }
+            .onErrorReturnItem(TileSetDownloader.Metadata.UNKNOWN)
+            .map { Pair(tileSet, it) }
+            .subscribeOn(schedulers.io())
+        },
+        false,
+        Config.TILE_DOWNLOAD_CONCURRENCY
+      )
+      .toMap({ it.first }, { it.second })
+      .blockingGet()
+
+  private fun processTileSets(
+    metadata: Map<TileSet, TileSetDownloader.Metadata>,
+    offlineAreas: List<OfflineArea>
+  ): Completable =
+    Flowable.fromIterable(metadata.entries)
+      .flatMapCompletable(
+        { (tileSet, tileSetMetadata) -> downloadTileSet(tileSet, tileSetMetadata, offlineAreas) },
+        false,
+        Config.TILE_DOWNLOAD_CONCURRENCY
+      )
       .compose { completable -> this.notifyTransferState(completable) }
 
   /**
-   * Given a tile identifier, downloads a tile source file and saves it to the app's file storage.
-   * If the tile source file already exists on the device, this method returns `Result.success()`
-   * and does not re-download the file.
+   * Downloads the source files of all pending tile sets to the app's file storage and imports them
+   * into the offline tile store. Tile sets already stored in full on the device are skipped.
+   * Returns `Result.failure()` if any download fails.
    */
   override fun doWork(): Result {
     val pendingTileSets = localDataStore.pendingTileSets.blockingGet() ?: return Result.success()
@@ -168,12 +172,33 @@ constructor(
     // If that isn't the case, another worker may have already taken care of the work.
     // In this case, we return a result immediately to stop the worker.
     Timber.d("Downloading tiles: $pendingTileSets")
+    val storedSources = offlineTileStore.getTileSetSources()
+    val metadata = fetchMetadata(pendingTileSets.filter { needsDownload(it, storedSources) })
+    val expectedBytes =
+      metadata.entries.sumOf { (tileSet, tileSetMetadata) ->
+        tileSetDownloader.getRemainingBytes(getFile(tileSet), tileSetMetadata)
+      }
+    progressTracker.start(expectedBytes)
+    // Progress is published at a fixed cadence, so the notification is only updated that often.
+    val notifications =
+      progressTracker.progressOnceAndStream
+        .filter { it.isActive }
+        .subscribe { sendNotification(inProgress(PERCENT_MAX, it.percentComplete)) }
     return try {
-      processTileSets(pendingTileSets).blockingAwait()
+      processTileSets(metadata, localDataStore.offlineAreasOnceAndStream.blockingFirst())
+        .blockingAwait()
       Result.success()
     } catch (t: Throwable) {
       Timber.d(t, "Downloads for tiles failed: $pendingTileSets")
       Result.failure()
+    } finally {
+      notifications.dispose()
+      val progress = progressTracker.progress
+      Timber.d(
+        "Downloaded ${progress.bytesDownloaded} of ${progress.totalBytes} bytes " +
+          "(${progress.bytesPerSecond} bytes/s)"
+      )
+      progressTracker.finish()
     }
   }
 
@@ -182,6 +207,6 @@ constructor(
 
   internal class TileSetDownloadException(msg: String?, e: Throwable?) : RuntimeException(msg, e)
   companion object {
-    private const val BUFFER_SIZE = 4096
+    private const val PERCENT_MAX = 100
   }
 }
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.Config
+import com.google.android.ground.rx.Schedulers
+import io.reactivex.Completable
+import io.reactivex.Flowable
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.RandomAccessFile
+import java.net.HttpURLConnection
+import java.net.URL
+import java.security.MessageDigest
+import java.util.concurrent.ConcurrentLinkedQueue
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Downloads tile set files over HTTP.
+ *
+ * Files are first downloaded to a temporary file next to the destination, which is only moved into
+ * place once its size matches the server's Content-Length and, where the server's ETag is an MD5
+ * digest, its contents match the ETag. Files of at least [chunkedDownloadThreshold] bytes are
+ * fetched as up to [maxParallelChunks] concurrent range requests when the server supports them.
+ * Smaller files are fetched with a single request, resuming a previous partial download using the
+ * HTTP Range header. Copy buffers are pooled and shared between downloads.
+ */
+@Singleton
+class TileSetDownloader(
+  private val schedulers: Schedulers,
+  private val chunkedDownloadThreshold: Long,
+  private val maxParallelChunks: Int
+) {
+  @Inject
+  constructor(
+    schedulers: Schedulers
+  ) : this(
+    schedulers,
+    Config.TILE_DOWNLOAD_CHUNKED_THRESHOLD_BYTES,
+    Config.TILE_DOWNLOAD_MAX_PARALLEL_CHUNKS
+  )
+
+  private val buffers = ConcurrentLinkedQueue<ByteArray>()
+
+  /**
+   * Downloads the file at [url] to [file], calling [onBytesDownloaded] with the number of bytes
+   * received each time a block is written, or with the negated number of bytes previously reported
+   * which were discarded. [metadata] may be provided if already fetched with [fetchMetadata].
+   */
+  @Throws(IOException::class)
+  fun download(
+    url: URL,
+    file: File,
+    metadata: Metadata = fetchMetadata(url),
+    onBytesDownloaded: (Long) -> Unit = {}
+  ) {
+    val partFile = File(file.path + PART_FILE_SUFFIX)
+    val downloadedFile =
+      if (
+        metadata.acceptsRanges &&
+          metadata.contentLength >= chunkedDownloadThreshold &&
+          !partFile.exists()
+      ) {
+        downloadChunks(url, File(file.path + CHUNKS_FILE_SUFFIX), metadata, onBytesDownloaded)
+      } else {
+        downloadSequentially(url, partFile, metadata, onBytesDownloaded)
+      }
+    verify(downloadedFile, metadata)
+    if (!downloadedFile.renameTo(file)) throw IOException("Failed to move download to $file")
+  }
+
+  /**
+   * Returns the number of bytes which remain to be downloaded to [file], taking into account any
+   * partial download which can be resumed, or 0 if unknown.
+   */
+  fun getRemainingBytes(file: File, metadata: Metadata): Long {
+    if (metadata.contentLength < 0) return 0
+    val partFile = File(file.path + PART_FILE_SUFFIX)
+    val resumableBytes = if (metadata.acceptsRanges) partFile.length() else 0
+    return (metadata.contentLength - resumableBytes).coerceAtLeast(0)
+  }
+
+  /** Requests the size and ETag of the file at the specified URL without downloading it. */
+  @Throws(IOException::class)
+  fun fetchMetadata(url: URL): Metadata {
+    val connection = openConnection(url)
+    return try {
+      connection.requestMethod = "HEAD"
+      if (connection.responseCode != HttpURLConnection.HTTP_OK) {
+        Metadata.UNKNOWN
+      } else {
+        Metadata(
+          connection.getHeaderField("Content-Length")?.toLongOrNull() ?: -1,
+          connection.getHeaderField("ETag"),
+          connection.getHeaderField("Accept-Ranges") == "bytes"
+        )
+      }
+    } finally {
+      connection.disconnect()
+    }
+  }
+
+  /**
+   * Downloads the file with a single request. If [partFile] contains the start of the file from a
+   * previous attempt, only the remaining bytes are requested. The If-Range header ensures the
+   * server returns the whole file instead if it has changed since. A partial download which is
+   * longer than the file, as when the file has since been replaced with a smaller one, is discarded
+   * and the file downloaded from the start.
+   */
+  private fun downloadSequentially(
+    url: URL,
+    partFile: File,
+    metadata: Metadata,
+    onBytesDownloaded: (Long) -> Unit
+  ): File {
+    if (metadata.contentLength >= 0 && partFile.length() > metadata.contentLength) {
+      partFile.delete()
+    }
+    val offset = partFile.length()
+    if (offset > 0 && offset == metadata.contentLength) return partFile
+    val connection = openConnection(url)
+    try {
+      if (offset > 0 && metadata.acceptsRanges) {
+        connection.setRequestProperty("Range", "bytes=$offset-")
+        metadata.eTag?.let { connection.setRequestProperty("If-Range", it) }
+      }
+      val responseCode = connection.responseCode
+      if (responseCode == HTTP_RANGE_NOT_SATISFIABLE && offset > 0) {
+        partFile.delete()
+        return downloadSequentially(url, partFile, metadata, onBytesDownloaded)
+      }
+      if (responseCode !in 200..299) throw IOException("HTTP $responseCode fetching $url")
+      val append = responseCode == HttpURLConnection.HTTP_PARTIAL
+      connection.inputStream.use { input ->
+        FileOutputStream(partFile, append).use { output ->
+          copy(input, output, Long.MAX_VALUE, onBytesDownloaded)
+        }
+      }
+    } finally {
+      connection.disconnect()
+    }
+    return partFile
+  }
+
+  /**
+   * Downloads the file as concurrent range requests written in place to [chunksFile]. Since
+   * completed ranges aren't tracked, the file is restarted from scratch if this fails, and the
+   * bytes reported so far are retracted.
+   */
+  private fun downloadChunks(
+    url: URL,
+    chunksFile: File,
+    metadata: Metadata,
+    onBytesDownloaded: (Long) -> Unit
+  ): File {
+    val length = metadata.contentLength
+    val chunkSize = (length + maxParallelChunks - 1) / maxParallelChunks
+    RandomAccessFile(chunksFile, "rw").use { it.setLength(length) }
+    val lock = Any()
+    var bytesReported = 0L
+    var failed = false
+    // Chunks still in flight after a failure mustn't report bytes once they've been retracted.
+    val reportBytes: (Long) -> Unit = { byteCount ->
+      synchronized(lock) {
+        if (!failed) {
+          bytesReported += byteCount
+          onBytesDownloaded(byteCount)
+        }
+      }
+    }
+    try {
+      Flowable.rangeLong(0, (length + chunkSize - 1) / chunkSize)
+        .flatMapCompletable(
+          { i ->
+            val start = i * chunkSize
+            val end = minOf(start + chunkSize, length) - 1
+            Completable.fromAction {
+                downloadRange(url, chunksFile, start, end, metadata, reportBytes)
+              }
+              .subscribeOn(schedulers.io())
+          },
+          false,
+          maxParallelChunks
+        )
+        .blockingAwait()
+    } catch (e: RuntimeException) {
+      synchronized(lock) {
+        failed = true
+        if (bytesReported > 0) onBytesDownloaded(-bytesReported)
+      }
+      chunksFile.delete()
+      throw e.cause as? IOException ?: IOException("Chunked download of $url failed", e)
+    }
+    return chunksFile
+  }
+
+  /** Downloads bytes [start] to [end] inclusive of the file at [url] into [file] at [start]. */
+  private fun downloadRange(
+    url: URL,
+    file: File,
+    start: Long,
+    end: Long,
+    metadata: Metadata,
+    onBytesDownloaded: (Long) -> Unit
+  ) {
+    val connection = openConnection(url)
+    try {
+      connection.setRequestProperty("Range", "bytes=$start-$end")
+      metadata.eTag?.let { connection.setRequestProperty("If-Range", it) }
+      if (connection.responseCode != HttpURLConnection.HTTP_PARTIAL) {
+        throw IOException("HTTP ${connection.responseCode} fetching range $start-$end of $url")
+      }
+      val eTag = connection.getHeaderField("ETag")
+      if (metadata.eTag != null && eTag != null && eTag != metadata.eTag) {
+        throw IOException("$url changed during download")
+      }
+      val expectedBytes = end - start + 1
+      val copied =
+        connection.inputStream.use { input ->
+          RandomAccessFile(file, "rw").use { output ->
+            output.seek(start)
+            copy(input, RandomAccessFileOutputStream(output), expectedBytes, onBytesDownloaded)
+          }
+        }
+      if (copied != expectedBytes) {
+        throw IOException("Received $copied of $expectedBytes bytes of range $start-$end of $url")
+      }
+    } finally {
+      connection.disconnect()
+    }
+  }
+
+  /**
+   * Fails if the downloaded file doesn't match the expected size, or if the ETag is an MD5 digest
+   * of the file contents, if the digest doesn't match.
+   */
+  private fun verify(file: File, metadata: Metadata) {
+    if (metadata.contentLength >= 0 && file.length() != metadata.contentLength) {
+      file.delete()
+      throw IOException("Expected ${metadata.contentLength} bytes, got ${file.length()}")
+    }
+    val expectedMd5 = metadata.md5 ?: return
+    val digest = MessageDigest.getInstance("MD5")
+    withBuffer { buffer ->
+      FileInputStream(file).use { input ->
+        var n: Int
+        while (input.read(buffer).also { n = it } > 0) {
+          digest.update(buffer, 0, n)
+        }
+      }
+    }
+    val md5 = digest.digest().joinToString("") { "%02x".format(it) }
+    if (md5 != expectedMd5) {
+      file.delete()
+      throw IOException("Downloaded file doesn't match ETag $expectedMd5")
+    }
+  }
+
+  /** Copies up to [maxBytes] bytes from [input] to [output], returning the number copied. */
+  private fun copy(
+    input: InputStream,
+    output: OutputStream,
+    maxBytes: Long,
+    onBytesDownloaded: (Long) -> Unit
+  ): Long = withBuffer { buffer ->
+    var copied = 0L
+    while (copied < maxBytes) {
+      val n = input.read(buffer, 0, minOf(buffer.size.toLong(), maxBytes - copied).toInt())
+      if (n <= 0) break
+      output.write(buffer, 0, n)
+      copied += n
+      onBytesDownloaded(n.toLong())
+    }
+    copied
+  }
+
+  /** Opens a connection to [url] which fails rather than hanging if the server stops responding. */
+  private fun openConnection(url: URL): HttpURLConnection =
+    (url.openConnection() as HttpURLConnection).apply {
+      connectTimeout = Config.TILE_DOWNLOAD_CONNECT_TIMEOUT_MILLIS
+      readTimeout = Config.TILE_DOWNLOAD_READ_TIMEOUT_MILLIS
+    }
+
+  private fun <T> withBuffer(block: (ByteArray) -> T): T {
+    val buffer = buffers.poll() ?: ByteArray(BUFFER_SIZE)
+    try {
+      return block(buffer)
+    } finally {
+      buffers.offer(buffer)
+    }
+  }
+
+  private class RandomAccessFileOutputStream(private val file: RandomAccessFile) : OutputStream() {
+    override fun write(b: Int) = file.write(b)
+
+    override fun write(b: ByteArray, off: Int, len: Int) = file.write(b, off, len)
+  }
+
+  /**
+   * Properties of a remote file returned by the server.
+   *
+   * @property contentLength the size of the file in bytes, or -1 if unknown.
+   * @property eTag the entity tag identifying the version of the file, if provided.
+   * @property acceptsRanges whether the server supports range requests for the file.
+   */
+  data class Metadata(val contentLength: Long, val eTag: String?, val acceptsRanges: Boolean) {
+    /** The MD5 digest of the file if provided as a strong ETag, as done by Cloud Storage. */
+    internal val md5: String? =
+      eTag?.removeSurrounding("\"")?.lowercase()?.takeIf { MD5_HEX_PATTERN.matches(it) }
+
+    companion object {
+      val UNKNOWN = Metadata(-1, null, false)
+    }
+  }
+
+  companion object {
+    private const val BUFFER_SIZE = 64 * 1024
+    private const val PART_FILE_SUFFIX = ".part"
+    private const val CHUNKS_FILE_SUFFIX = ".chunks"
+    private const val HTTP_RANGE_NOT_SATISFIABLE = 416
+    private val MD5_HEX_PATTERN = Regex("[0-9a-f]{32}")
+  }
+}
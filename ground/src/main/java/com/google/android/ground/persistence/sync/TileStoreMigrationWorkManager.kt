@@ -0,0 +1,37 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import androidx.work.ExistingWorkPolicy
+import androidx.work.OneTimeWorkRequest
+import androidx.work.WorkManager
+import javax.inject.Inject
+
+/** Schedules the import of individually downloaded tile set files into the offline tile store. */
+class TileStoreMigrationWorkManager @Inject constructor(private val workManager: WorkManager) {
+
+  /**
+   * Enqueues [TileStoreMigrationWorker] unless it's already pending. The worker returns quickly
+   * once all files have been imported, so this may safely be called on each app start.
+   */
+  fun enqueueMigrationWorker() {
+    workManager.enqueueUniqueWork(
+      TileStoreMigrationWorker::class.java.name,
+      ExistingWorkPolicy.KEEP,
+      OneTimeWorkRequest.Builder(TileStoreMigrationWorker::class.java).build()
+    )
+  }
+}
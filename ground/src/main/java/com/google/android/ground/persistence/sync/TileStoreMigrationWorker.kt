@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import android.content.Context
+import android.database.sqlite.SQLiteException
+import androidx.hilt.work.HiltWorker
+import androidx.work.Data
+import androidx.work.Worker
+import androidx.work.WorkerParameters
+import com.google.android.ground.model.basemap.tile.TileSet
+import com.google.android.ground.persistence.local.LocalDataStore
+import com.google.android.ground.persistence.mbtiles.OfflineTileStore
+import com.google.android.ground.ui.util.FileUtil
+import dagger.assisted.Assisted
+import dagger.assisted.AssistedInject
+import timber.log.Timber
+
+/**
+ * A worker that moves tile sets downloaded as individual MBTiles files into the [OfflineTileStore],
+ * deleting each file once its tiles have been imported. The bytes saved by deduplication are logged
+ * and returned in the worker's output data.
+ */
+@HiltWorker
+class TileStoreMigrationWorker
+@AssistedInject
+constructor(
+  @Assisted context: Context,
+  @Assisted params: WorkerParameters,
+  private val localDataStore: LocalDataStore,
+  private val offlineTileStore: OfflineTileStore,
+  private val fileUtil: FileUtil
+) : Worker(context, params) {
+
+  override fun doWork(): Result {
+    val offlineAreas = localDataStore.offlineAreasOnceAndStream.blockingFirst()
+    val storedSources = offlineTileStore.getTileSetSources()
+    val tileSetFiles =
+      localDataStore.tileSetsOnceAndStream
+        .blockingFirst()
+        .filter { it.state == TileSet.State.DOWNLOADED && !storedSources.contains(it.url) }
+        .associateWith { fileUtil.getOrCreateFile(it.path) }
+        .filterValues { it.exists() }
+    var importedCount = 0
+    for ((tileSet, file) in tileSetFiles) {
+      try {
+        offlineTileStore.importTileSet(file, tileSet.url, offlineAreas)
+        file.delete()
+        importedCount++
+      } catch (e: SQLiteException) {
+        Timber.w(e, "Couldn't import tile set into offline tile store: $tileSet")
+      }
+    }
+    val report = offlineTileStore.getStorageReport()
+    Timber.d(
+      "Imported $importedCount tile set files; ${report.tileCount} tiles " +
+        "(${report.tileBytes} bytes) stored in ${report.storedBytes} bytes, " +
+        "saving ${report.savedBytes} bytes"
+    )
+    return Result.success(
+      Data.Builder()
+        .putInt(IMPORTED_COUNT_KEY, importedCount)
+        .putLong(BYTES_SAVED_KEY, report.savedBytes)
+        .build()
+    )
+  }
+
+  companion object {
+    const val IMPORTED_COUNT_KEY = "importedCount"
+    const val BYTES_SAVED_KEY = "bytesSaved"
+  }
+}
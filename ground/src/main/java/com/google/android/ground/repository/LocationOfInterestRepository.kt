@@ -15,11 +15,14 @@
  */
 package com.google.android.ground.repository
 
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.Config
 import com.google.android.ground.model.Survey
 import com.google.android.ground.model.geometry.LinearRing
 import com.google.android.ground.model.geometry.Point
 import com.google.android.ground.model.geometry.Polygon
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.model.mutation.Mutation.SyncStatus
@@ -34,10 +37,13 @@ import com.google.android.ground.persistence.sync.MutationSyncWorkManager
 import com.google.android.ground.persistence.uuid.OfflineUuidGenerator
 import com.google.android.ground.rx.annotations.Cold
 import com.google.android.ground.system.auth.AuthenticationManager
+import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableSet
 import io.reactivex.*
+import io.reactivex.schedulers.Timed
 import java.util.*
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 import javax.inject.Singleton
 import timber.log.Timber
@@ -64,30 +70,66 @@ constructor(
    * the network is available. When invoked, will first attempt to resync all locations of interest
    * from the remote db, subsequently syncing only remote changes. The returned stream never
    * completes, and subscriptions will only terminate on disposal.
+   *
+   * Remote changes are buffered for up to [batchWindowMillis] or [maxBatchSize] changes, whichever
+   * is reached first, and each batch is written to the local db in a single transaction.
    */
-  fun syncLocationsOfInterest(survey: Survey): @Cold Completable {
-    return remoteDataStore.loadLocationsOfInterestOnceAndStreamChanges(survey).flatMapCompletable {
-      updateLocalLocationOfInterest(it)
-    }
-  }
+  fun syncLocationsOfInterest(
+    survey: Survey,
+    batchWindowMillis: Long = Config.LOI_SYNC_BATCH_WINDOW_MILLIS,
+    maxBatchSize: Int = Config.LOI_SYNC_MAX_BATCH_SIZE
+  ): @Cold Completable =
+    remoteDataStore
+      .loadLocationsOfInterestOnceAndStreamChanges(survey)
+      // Timed buffers don't support backpressure, so batches are queued without bound while the
+      // previous batch is being written.
+      .toObservable()
+      .timestamp()
+      .buffer(batchWindowMillis, TimeUnit.MILLISECONDS, maxBatchSize)
+      .filter { it.isNotEmpty() }
+      .concatMapCompletable { updateLocalLocationsOfInterest(it) }
 
   // TODO: Remove "location of interest" qualifier from this and other repository method names.
-  private fun updateLocalLocationOfInterest(
-    event: RemoteDataEvent<LocationOfInterest>
+  private fun updateLocalLocationsOfInterest(
+    events: List<Timed<RemoteDataEvent<LocationOfInterest>>>
   ): @Cold Completable {
-    return event.result.fold(
-      { (entityId: String, entity: LocationOfInterest?) ->
-        when (event.eventType) {
-          ENTITY_LOADED,
-          ENTITY_MODIFIED -> localDataStore.mergeLocationOfInterest(checkNotNull(entity))
-          ENTITY_REMOVED -> localDataStore.deleteLocationOfInterest(entityId)
-          else -> throw IllegalArgumentException()
+    val changes = toChangeSet(events.map { it.value() })
+    if (changes.isEmpty()) return Completable.complete()
+    val receivedAt = events.first().time()
+    val startTime = System.currentTimeMillis()
+    return localDataStore.mergeLocationOfInterestChanges(changes).doOnComplete {
+      val endTime = System.currentTimeMillis()
+      Timber.d(
+        "Synced ${events.size} remote LOI changes " +
+          "(${changes.modified.size} merged, ${changes.removedIds.size} removed) " +
+          "in ${endTime - startTime}ms, ${endTime - receivedAt}ms after first change"
+      )
+    }
+  }
+
+  /**
+   * Reduces the specified events to the resulting set of changes. Where an LOI changes more than
+   * once in the same batch, only the last change is retained.
+   */
+  private fun toChangeSet(
+    events: List<RemoteDataEvent<LocationOfInterest>>
+  ): LocationOfInterestChangeSet {
+    val latest = LinkedHashMap<String, LocationOfInterest?>()
+    events.forEach { event ->
+      event.result
+        .onSuccess { (entityId: String, entity: LocationOfInterest?) ->
+          when (event.eventType) {
+            ENTITY_LOADED,
+            ENTITY_MODIFIED -> latest[entityId] = checkNotNull(entity)
+            ENTITY_REMOVED -> latest[entityId] = null
+            else -> throw IllegalArgumentException()
+          }
         }
-      },
-      {
-        Timber.d(it, "Invalid locations of interest in remote db ignored")
-        Completable.complete()
-      }
+        .onFailure { Timber.d(it, "Invalid locations of interest in remote db ignored") }
+    }
+    return LocationOfInterestChangeSet(
+      modified = latest.values.filterNotNull().toImmutableList(),
+      removedIds = ImmutableSet.copyOf(latest.filterValues { it == null }.keys)
     )
   }
 
@@ -97,6 +139,37 @@ constructor(
   ): @Cold(terminates = false) Flowable<ImmutableSet<LocationOfInterest>> =
     localDataStore.getLocationsOfInterestOnceAndStream(survey)
 
+  /**
+   * Returns a long-lived stream of the locations of interest in the specified survey whose bounding
+   * boxes intersect the specified bounds.
+   */
+  fun getLocationsOfInterestWithinBoundsOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds
+  ): @Cold(terminates = false) Flowable<ImmutableSet<LocationOfInterest>> =
+    localDataStore.getLocationsOfInterestWithinBoundsOnceAndStream(survey, bounds)
+
+  /**
+   * Returns the locations of interest in the specified survey whose bounding boxes intersect the
+   * specified bounds.
+   */
+  fun getLocationsOfInterestWithinBounds(
+    survey: Survey,
+    bounds: LatLngBounds
+  ): @Cold Single<ImmutableSet<LocationOfInterest>> =
+    localDataStore.getLocationsOfInterestWithinBounds(survey, bounds)
+
+  /**
+   * Returns a long-lived stream of changes to the locations of interest in the specified survey,
+   * limited to those intersecting the specified bounds if provided. See
+   * [LocalDataStore.getLocationOfInterestChangesOnceAndStream].
+   */
+  fun getLocationOfInterestChangesOnceAndStream(
+    survey: Survey,
+    bounds: LatLngBounds?
+  ): @Cold(terminates = false) Flowable<LocationOfInterestChangeSet> =
+    localDataStore.getLocationOfInterestChangesOnceAndStream(survey, bounds)
+
   fun getLocationOfInterest(
     locationOfInterestMutation: LocationOfInterestMutation
   ): @Cold Single<LocationOfInterest> =
@@ -133,7 +206,8 @@ constructor(
       locationOfInterestId = uuidGenerator.generateUuid(),
       surveyId = surveyId,
       userId = authManager.currentUser.id,
-      clientTimestamp = date
+      clientTimestamp = date,
+      lastModifiedTimestamp = date
     )
 
   fun newPolygonOfInterestMutation(
@@ -150,7 +224,8 @@ constructor(
       locationOfInterestId = uuidGenerator.generateUuid(),
       surveyId = surveyId,
       userId = authManager.currentUser.id,
-      clientTimestamp = date
+      clientTimestamp = date,
+      lastModifiedTimestamp = date
     )
 
   /**
@@ -162,7 +237,7 @@ constructor(
    */
   fun applyAndEnqueue(mutation: LocationOfInterestMutation): @Cold Completable {
     val localTransaction = localDataStore.applyAndEnqueue(mutation)
-    val remoteSync = mutationSyncWorkManager.enqueueSyncWorker(mutation.locationOfInterestId)
+    val remoteSync = mutationSyncWorkManager.enqueueSyncWorker()
     return localTransaction.andThen(remoteSync)
   }
 
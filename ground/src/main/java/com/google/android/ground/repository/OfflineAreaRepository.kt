@@ -15,18 +15,23 @@
  */
 package com.google.android.ground.repository
 
+import com.google.android.ground.Config
 import com.google.android.ground.model.Survey
 import com.google.android.ground.model.basemap.BaseMap
 import com.google.android.ground.model.basemap.BaseMap.BaseMapType
 import com.google.android.ground.model.basemap.OfflineArea
 import com.google.android.ground.model.basemap.tile.TileSet
 import com.google.android.ground.persistence.local.LocalDataStore
-import com.google.android.ground.persistence.mbtiles.MbtilesFootprintParser
+import com.google.android.ground.persistence.mbtiles.MbtilesFootprintIndex
+import com.google.android.ground.persistence.mbtiles.OfflineTileStore
+import com.google.android.ground.persistence.sync.TileSetDownloadProgress
+import com.google.android.ground.persistence.sync.TileSetDownloadProgressTracker
 import com.google.android.ground.persistence.sync.TileSetDownloadWorkManager
 import com.google.android.ground.persistence.uuid.OfflineUuidGenerator
 import com.google.android.ground.rx.Loadable
 import com.google.android.ground.rx.Schedulers
 import com.google.android.ground.rx.annotations.Cold
+import com.google.android.ground.rx.annotations.Hot
 import com.google.android.ground.system.GeocodingManager
 import com.google.android.ground.ui.util.FileUtil
 import com.google.android.ground.util.toImmutableList
@@ -34,52 +39,40 @@ import com.google.android.ground.util.toImmutableSet
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableSet
 import io.reactivex.*
-import java.io.File
-import java.io.IOException
 import javax.inject.Inject
-import org.apache.commons.io.FileUtils
 import timber.log.Timber
 
 class OfflineAreaRepository
 @Inject
 constructor(
   private val tileSetDownloadWorkManager: TileSetDownloadWorkManager,
+  private val tileSetDownloadProgressTracker: TileSetDownloadProgressTracker,
   private val localDataStore: LocalDataStore,
   private val surveyRepository: SurveyRepository,
-  private val geoJsonParser: MbtilesFootprintParser,
+  private val footprintIndex: MbtilesFootprintIndex,
+  private val offlineTileStore: OfflineTileStore,
   private val fileUtil: FileUtil,
   private val schedulers: Schedulers,
   private val geocodingManager: GeocodingManager,
   private val offlineUuidGenerator: OfflineUuidGenerator
 ) {
-  /**
-   * Download the offline basemap source for the active survey.
-   *
-   * Only the first basemap source is used. Sources are always re-downloaded and overwritten on
-   * subsequent calls.
-   */
-  @Throws(IOException::class)
-  private fun downloadOfflineBaseMapSource(baseMap: BaseMap): File {
-    val baseMapUrl = baseMap.url
-    Timber.d("Basemap url: $baseMapUrl, file: ${baseMapUrl.file}")
-    val localFile = fileUtil.getOrCreateFile(baseMapUrl.file)
-
-    FileUtils.copyURLToFile(baseMapUrl, localFile)
-    return localFile
-  }
-
   /** Enqueue a single area and its tile sources for download. */
   private fun enqueueDownload(
     area: OfflineArea,
     tileSets: ImmutableList<TileSet>
   ): @Cold Completable =
-    Flowable.fromIterable(tileSets)
-      .flatMapCompletable { tileSet ->
-        localDataStore
-          .getTileSet(tileSet.url)
-          .map { it.incrementOfflineAreaCount() }
-          .toSingle(tileSet)
-          .flatMapCompletable { localDataStore.insertOrUpdateTileSet(it) }
+    Completable.defer {
+        val completeSources = offlineTileStore.getCompleteTileSetSources()
+        Flowable.fromIterable(tileSets)
+          .concatMapSingle { tileSet ->
+            localDataStore
+              .getTileSet(tileSet.url)
+              .map { it.incrementOfflineAreaCount() }
+              .toSingle(tileSet)
+          }
+          .map { tileSet -> retainStoredTiles(area, tileSet, completeSources) }
+          .toList()
+          .flatMapCompletable { localDataStore.insertOrUpdateTileSets(it.toImmutableList()) }
       }
       .doOnError { Timber.e("failed to add/update a tile in the database") }
       .andThen(
@@ -87,6 +80,28 @@ constructor(
       )
       .andThen(tileSetDownloadWorkManager.enqueueTileSetDownloadWorker())
 
+  /**
+   * Adds references from {@param area} to the stored tiles of {@param tileSet} if it has already
+   * been downloaded. Returns the tile set marked as pending if some of its tiles are no longer
+   * stored, so that it's downloaded again. {@param completeSources} are the sources whose tiles
+   * are all stored, as returned by [OfflineTileStore.getCompleteTileSetSources].
+   */
+  private fun retainStoredTiles(
+    area: OfflineArea,
+    tileSet: TileSet,
+    completeSources: Set<String>
+  ): TileSet =
+    when {
+      tileSet.state !== TileSet.State.DOWNLOADED -> tileSet
+      completeSources.contains(tileSet.url) -> {
+        offlineTileStore.retainArea(area.id, area.bounds, tileSet.url)
+        tileSet
+      }
+      // Not yet moved into the tile store.
+      fileUtil.getOrCreateFile(tileSet.path).exists() -> tileSet
+      else -> tileSet.copy(state = TileSet.State.PENDING)
+    }
+
   /**
    * Determine the tile sources that need to be downloaded for a given area, then enqueue tile
    * source downloads.
@@ -115,8 +130,7 @@ constructor(
       .map { it.asList() }
       .flatMap { source -> Flowable.fromIterable(source) }
       .firstOrError()
-      .map { baseMap -> downloadOfflineBaseMapSource(baseMap) }
-      .flatMap { json -> geoJsonParser.intersectingTiles(offlineArea.bounds, json) }
+      .flatMap { baseMap -> footprintIndex.intersectingTiles(offlineArea.bounds, baseMap.url) }
       .doOnError { throwable ->
         Timber.e(throwable, "couldn't retrieve basemap sources for the active survey")
       }
@@ -134,6 +148,14 @@ constructor(
   val offlineAreasOnceAndStream: @Cold(terminates = false) Flowable<ImmutableList<OfflineArea>>
     get() = localDataStore.offlineAreasOnceAndStream
 
+  /**
+   * Emits the byte-level progress of tile set downloads at a fixed cadence while downloads are in
+   * progress, and once more when they finish.
+   */
+  val tileSetDownloadProgressOnceAndStream:
+    @Hot(replays = true) Flowable<TileSetDownloadProgress>
+    get() = tileSetDownloadProgressTracker.progressOnceAndStream
+
   /**
    * Fetches a single offline area by ID. Triggers `onError` when the area is not found. Triggers
    * `onSuccess` when the area is found.
@@ -193,9 +215,46 @@ constructor(
         tileSet.filter { it.state === TileSet.State.DOWNLOADED }.toImmutableSet()
       }
 
+  /**
+   * Returns the paths of the MBTiles files to render offline imagery from, relative to the app's
+   * file directory, and a new set each time tile sets are downloaded. Tile sets moved into the
+   * [OfflineTileStore] are all rendered from the store's file.
+   */
+  val localTileOverlayPathsOnceAndStream: @Cold(terminates = false) Flowable<ImmutableSet<String>>
+    get() =
+      downloadedTileSetsOnceAndStream
+        .observeOn(schedulers.io())
+        .map { tileSets ->
+          val storedSources = offlineTileStore.getTileSetSources()
+          tileSets
+            .map {
+              if (storedSources.contains(it.url)) Config.OFFLINE_TILE_STORE_FILE_NAME else it.path
+            }
+            .toImmutableSet()
+        }
+
+  /**
+   * Returns the number of bytes taken up by the imagery of {@param offlineArea}, and the updated
+   * size each time tile sets are downloaded. Tiles shared with other areas are included.
+   */
+  fun getOfflineAreaSizeBytesOnceAndStream(
+    offlineArea: OfflineArea
+  ): @Cold(terminates = false) Flowable<Long> =
+    getIntersectingDownloadedTileSetsOnceAndStream(offlineArea)
+      .observeOn(schedulers.io())
+      .map { tileSets ->
+        offlineTileStore.getAreaSizeBytes(offlineArea.id) +
+          tileSets.map { fileUtil.getOrCreateFile(it.path) }.sumOf { it.length() }
+      }
+
+  /** Returns the number and size of stored offline tiles, before and after deduplication. */
+  val offlineTileStorageReport: @Cold Single<OfflineTileStore.StorageReport>
+    get() =
+      Single.fromCallable { offlineTileStore.getStorageReport() }.subscribeOn(schedulers.io())
+
   /**
    * Delete an offline area and any tile sources associated with it that do not overlap with other
-   * offline base maps .
+   * offline base maps. Stored tiles no longer used by any area are evicted.
    */
   fun deleteOfflineArea(offlineAreaId: String): @Cold Completable =
     localDataStore
@@ -212,6 +271,13 @@ constructor(
           .andThen(localDataStore.deleteTileSetByUrl(tileSet))
       }
       .andThen(localDataStore.deleteOfflineArea(offlineAreaId))
+      .andThen(
+        Completable.fromAction {
+            offlineTileStore.releaseArea(offlineAreaId)
+            offlineTileStore.evictUnreferencedTiles()
+          }
+          .subscribeOn(schedulers.io())
+      )
 
   /**
    * Retrieves all tile sources from a GeoJSON basemap specification, regardless of their
@@ -232,16 +298,12 @@ constructor(
   /**
    * Returns a list of [TileSet]s corresponding to a given [BaseMap] based on the BaseMap's type.
    *
-   * This function may perform network IO when the provided BaseMap requires downloading TileSets
-   * locally.
+   * The returned Single may perform network IO when the provided BaseMap lists TileSets in a
+   * footprints file which needs to be revalidated.
    */
-  @Throws(IOException::class)
   private fun getTileSets(baseMap: BaseMap): Single<ImmutableList<TileSet>> =
     when (baseMap.type) {
-      BaseMapType.MBTILES_FOOTPRINTS -> {
-        val tileFile = downloadOfflineBaseMapSource(baseMap)
-        geoJsonParser.allTiles(tileFile)
-      }
+      BaseMapType.MBTILES_FOOTPRINTS -> footprintIndex.allTiles(baseMap.url)
       BaseMapType.TILED_WEB_MAP ->
         Single.just(
           ImmutableList.of(
@@ -21,6 +21,7 @@ import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.model.mutation.Mutation.SyncStatus
 import com.google.android.ground.model.mutation.SubmissionMutation
 import com.google.android.ground.model.submission.Submission
+import com.google.android.ground.model.submission.SubmissionPage
 import com.google.android.ground.model.submission.TaskDataDelta
 import com.google.android.ground.persistence.local.LocalDataStore
 import com.google.android.ground.persistence.local.room.models.MutationEntitySyncStatus
@@ -35,6 +36,7 @@ import io.reactivex.Completable
 import io.reactivex.Flowable
 import io.reactivex.Observable
 import io.reactivex.Single
+import java.util.Date
 import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 import timber.log.Timber
@@ -58,40 +60,38 @@ constructor(
 ) {
 
   /**
-   * Retrieves the submissions or the specified survey, location of interest, and task.
+   * Retrieves up to [limit] submissions for the specified survey, location of interest, and task,
+   * most recently modified first, starting at [after].
    *
-   * <ol> <li>Attempt to sync remote submission changes to the local data store. If network is not
-   * ```
-   *       available or operation times out, this step is skipped.
-   * ```
-   * <li>Relevant submissions are returned directly from the local data store. </ol>
+   * When loading the first page (i.e., when [after] is null), remote submission changes are first
+   * synced to the local data store. If network is not available or the operation times out, this
+   * step is skipped. Submissions are then returned directly from the local data store.
    */
-  fun getSubmissions(
+  fun getSubmissionsPage(
     surveyId: String,
     locationOfInterestId: String,
-    taskId: String
-  ): @Cold Single<ImmutableList<Submission>> =
-    // TODO: Only fetch first n fields.
+    taskId: String,
+    after: SubmissionPage.Cursor?,
+    limit: Int
+  ): @Cold Single<SubmissionPage> =
     locationOfInterestRepository.getLocationOfInterest(surveyId, locationOfInterestId).flatMap {
       locationOfInterest: LocationOfInterest ->
-      getSubmissions(locationOfInterest, taskId)
+      val remoteSync =
+        if (after == null) syncRemoteSubmissions(locationOfInterest) else Completable.complete()
+      remoteSync.andThen(
+        localDataStore.getSubmissionsPage(locationOfInterest, taskId, after, limit)
+      )
     }
 
-  private fun getSubmissions(
-    locationOfInterest: LocationOfInterest,
-    taskId: String
-  ): @Cold Single<ImmutableList<Submission>> {
-    val remoteSync =
-      remoteDataStore
-        .loadSubmissions(locationOfInterest)
-        .timeout(LOAD_REMOTE_SUBMISSIONS_TIMEOUT_SECS, TimeUnit.SECONDS)
-        .doOnError { Timber.e(it, "Submission sync timed out") }
-        .flatMapCompletable { submissions: ImmutableList<Result<Submission>> ->
-          mergeRemoteSubmissions(submissions)
-        }
-        .onErrorComplete()
-    return remoteSync.andThen(localDataStore.getSubmissions(locationOfInterest, taskId))
-  }
+  private fun syncRemoteSubmissions(locationOfInterest: LocationOfInterest): @Cold Completable =
+    remoteDataStore
+      .loadSubmissions(locationOfInterest)
+      .timeout(LOAD_REMOTE_SUBMISSIONS_TIMEOUT_SECS, TimeUnit.SECONDS)
+      .doOnError { Timber.e(it, "Submission sync timed out") }
+      .flatMapCompletable { submissions: ImmutableList<Result<Submission>> ->
+        mergeRemoteSubmissions(submissions)
+      }
+      .onErrorComplete()
 
   private fun mergeRemoteSubmissions(
     submissions: ImmutableList<Result<Submission>>
@@ -140,8 +140,9 @@ constructor(
     }
   }
 
-  fun deleteSubmission(submission: Submission): @Cold Completable =
-    applyAndEnqueue(
+  fun deleteSubmission(submission: Submission): @Cold Completable {
+    val now = Date()
+    return applyAndEnqueue(
       SubmissionMutation(
         job = submission.job,
         submissionId = submission.id,
@@ -149,16 +150,20 @@ constructor(
         syncStatus = SyncStatus.PENDING,
         surveyId = submission.surveyId,
         locationOfInterestId = submission.locationOfInterest.id,
-        userId = authManager.currentUser.id
+        userId = authManager.currentUser.id,
+        clientTimestamp = now,
+        lastModifiedTimestamp = now
       )
     )
+  }
 
   fun createOrUpdateSubmission(
     submission: Submission,
     taskDataDeltas: ImmutableList<TaskDataDelta>,
     isNew: Boolean
-  ): @Cold Completable =
-    applyAndEnqueue(
+  ): @Cold Completable {
+    val now = Date()
+    return applyAndEnqueue(
       SubmissionMutation(
         job = submission.job,
         submissionId = submission.id,
@@ -167,14 +172,17 @@ constructor(
         syncStatus = SyncStatus.PENDING,
         surveyId = submission.surveyId,
         locationOfInterestId = submission.locationOfInterest.id,
-        userId = authManager.currentUser.id
+        userId = authManager.currentUser.id,
+        clientTimestamp = now,
+        lastModifiedTimestamp = now
       )
     )
+  }
 
   private fun applyAndEnqueue(mutation: SubmissionMutation): @Cold Completable =
     localDataStore
       .applyAndEnqueue(mutation)
-      .andThen(mutationSyncWorkManager.enqueueSyncWorker(mutation.locationOfInterestId))
+      .andThen(mutationSyncWorkManager.enqueueSyncWorker())
 
   /**
    * Returns all [SubmissionMutation] instances for a given location of interest which have not yet
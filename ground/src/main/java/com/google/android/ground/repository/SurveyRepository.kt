@@ -139,10 +139,16 @@ constructor(
       .loadSurveySummaries(user)
       .timeout(LOAD_REMOTE_SURVEY_SUMMARIES_TIMEOUT_SECS, TimeUnit.SECONDS)
 
+  /**
+   * Returns a long-lived stream of up to [limit] mutations in the specified survey, newest first,
+   * starting after [after] or from the most recent mutation if [after] is null.
+   */
   fun getMutationsOnceAndStream(
-    survey: Survey
+    survey: Survey,
+    after: Mutation?,
+    limit: Int
   ): @Cold(terminates = false) Flowable<ImmutableList<Mutation>> {
-    return localDataStore.getMutationsOnceAndStream(survey)
+    return localDataStore.getMutationsOnceAndStream(survey, after, limit)
   }
 
   fun setCameraPosition(surveyId: String, cameraPosition: CameraPosition) =
@@ -33,6 +33,14 @@ object NetworkManager {
     return networkInfo?.isConnected ?: false
   }
 
+  /** Returns true iff the device is connected to a network which isn't metered. */
+  @JvmStatic
+  @RequiresPermission("android.permission.ACCESS_NETWORK_STATE")
+  fun isNetworkUnmetered(context: Context): Boolean {
+    val cm = context.getSystemService(Context.CONNECTIVITY_SERVICE) as ConnectivityManager
+    return isNetworkAvailable(context) && !cm.isActiveNetworkMetered
+  }
+
   /**
    * Returns a Completable that completes immediately on subscribe if network is available, or fails
    * in error if not.
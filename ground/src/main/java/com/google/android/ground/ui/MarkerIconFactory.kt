@@ -19,11 +19,13 @@ import android.content.Context
 import android.graphics.Bitmap
 import android.graphics.Canvas
 import android.graphics.PorterDuff
+import android.util.LruCache
 import androidx.annotation.ColorInt
 import androidx.appcompat.content.res.AppCompatResources
 import androidx.core.content.res.ResourcesCompat
 import com.google.android.gms.maps.model.BitmapDescriptor
 import com.google.android.gms.maps.model.BitmapDescriptorFactory
+import com.google.android.ground.Config
 import com.google.android.ground.R
 import com.google.android.ground.ui.home.mapcontainer.HomeScreenMapContainerViewModel
 import dagger.hilt.android.qualifiers.ApplicationContext
@@ -31,7 +33,25 @@ import javax.inject.Inject
 import javax.inject.Singleton
 
 @Singleton
-class MarkerIconFactory @Inject constructor(@ApplicationContext private val context: Context) {
+class MarkerIconFactory(
+  private val context: Context,
+  private val toBitmapDescriptor: (Bitmap) -> BitmapDescriptor
+) {
+
+  @Inject
+  constructor(
+    @ApplicationContext context: Context
+  ) : this(context, BitmapDescriptorFactory::fromBitmap)
+
+  /** Marker icons only vary by color, selection state and which side of the zoom threshold. */
+  private data class IconKey(val color: Int, val isZoomedIn: Boolean, val isSelected: Boolean)
+
+  private class Icon(val descriptor: BitmapDescriptor, val byteCount: Int)
+
+  private val iconCache =
+    object : LruCache<IconKey, Icon>(Config.MARKER_ICON_CACHE_MAX_BYTES) {
+      override fun sizeOf(key: IconKey, value: Icon): Int = value.byteCount
+    }
 
   fun getMarkerBitmap(color: Int, currentZoomLevel: Float, isSelected: Boolean = false): Bitmap {
     val outline = AppCompatResources.getDrawable(context, R.drawable.ic_marker_outline)
@@ -39,7 +59,7 @@ class MarkerIconFactory @Inject constructor(@ApplicationContext private val cont
     val overlay = AppCompatResources.getDrawable(context, R.drawable.ic_marker_overlay)
     // TODO: Adjust size based on selection state.
     var scale = ResourcesCompat.getFloat(context.resources, R.dimen.marker_bitmap_default_scale)
-    if (currentZoomLevel >= HomeScreenMapContainerViewModel.ZOOM_LEVEL_THRESHOLD) {
+    if (isZoomedIn(currentZoomLevel)) {
       scale = ResourcesCompat.getFloat(context.resources, R.dimen.marker_bitmap_zoomed_scale)
     }
     if (isSelected) {
@@ -65,8 +85,35 @@ class MarkerIconFactory @Inject constructor(@ApplicationContext private val cont
     currentZoomLevel: Float,
     isSelected: Boolean = false
   ): BitmapDescriptor {
-    val bitmap = getMarkerBitmap(color, currentZoomLevel, isSelected)
-    // TODO: Cache rendered bitmaps.
-    return BitmapDescriptorFactory.fromBitmap(bitmap)
+    val key = IconKey(color, isZoomedIn(currentZoomLevel), isSelected)
+    iconCache.get(key)?.let { return it.descriptor }
+    val icon = renderIcon(color, currentZoomLevel, isSelected)
+    iconCache.put(key, icon)
+    return icon.descriptor
   }
+
+  /**
+   * Renders and caches the icons of markers with the specified colors in all selection states and
+   * zoom levels, so that they're not rendered while markers are being clustered.
+   */
+  fun prewarm(@ColorInt colors: Collection<Int>) {
+    for (color in colors) {
+      for (isSelected in listOf(false, true)) {
+        for (zoomLevel in listOf(0f, HomeScreenMapContainerViewModel.ZOOM_LEVEL_THRESHOLD)) {
+          val key = IconKey(color, isZoomedIn(zoomLevel), isSelected)
+          if (iconCache.get(key) == null) {
+            iconCache.put(key, renderIcon(color, zoomLevel, isSelected))
+          }
+        }
+      }
+    }
+  }
+
+  private fun renderIcon(color: Int, zoomLevel: Float, isSelected: Boolean): Icon {
+    val bitmap = getMarkerBitmap(color, zoomLevel, isSelected)
+    return Icon(toBitmapDescriptor(bitmap), bitmap.byteCount)
+  }
+
+  private fun isZoomedIn(zoomLevel: Float) =
+    zoomLevel >= HomeScreenMapContainerViewModel.ZOOM_LEVEL_THRESHOLD
 }
@@ -78,7 +78,19 @@ class SubmissionListAdapter extends RecyclerView.Adapter<SubmissionListItemViewH
   }
 
   void update(List<Submission> submissionList) {
+    List<Submission> previous = this.submissionList;
     this.submissionList = submissionList;
-    notifyDataSetChanged();
+    if (isAppended(previous, submissionList)) {
+      // Only bind the newly loaded page.
+      notifyItemRangeInserted(previous.size(), submissionList.size() - previous.size());
+    } else {
+      notifyDataSetChanged();
+    }
+  }
+
+  private static boolean isAppended(List<Submission> previous, List<Submission> current) {
+    return !previous.isEmpty()
+        && current.size() > previous.size()
+        && current.subList(0, previous.size()).equals(previous);
   }
 }
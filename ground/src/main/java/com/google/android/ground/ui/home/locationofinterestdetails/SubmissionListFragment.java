@@ -20,6 +20,7 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -71,6 +72,15 @@ public class SubmissionListFragment extends AbstractFragment {
     RecyclerView submissionList = binding.submissionListContainer;
     submissionList.setLayoutManager(new LinearLayoutManager(getContext()));
     submissionList.setAdapter(submissionListAdapter);
+    submissionList.addOnScrollListener(
+        new RecyclerView.OnScrollListener() {
+          @Override
+          public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+            if (!view.canScrollVertically(1)) {
+              viewModel.loadNextPage(submissionListAdapter.getItemCount());
+            }
+          }
+        });
     locationOfInterestDetailsViewModel
         .getSelectedLocationOfInterestOnceAndStream()
         .observe(getViewLifecycleOwner(), this::onLocationOfInterestSelected);
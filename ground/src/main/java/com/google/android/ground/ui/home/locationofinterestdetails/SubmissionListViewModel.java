@@ -16,16 +16,20 @@
 
 package com.google.android.ground.ui.home.locationofinterestdetails;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.LiveDataReactiveStreams;
 import androidx.lifecycle.MutableLiveData;
 import com.google.android.ground.model.job.Job;
 import com.google.android.ground.model.locationofinterest.LocationOfInterest;
 import com.google.android.ground.model.submission.Submission;
+import com.google.android.ground.model.submission.SubmissionPage;
 import com.google.android.ground.repository.SubmissionRepository;
 import com.google.android.ground.rx.annotations.Hot;
 import com.google.android.ground.ui.common.AbstractViewModel;
 import com.google.common.collect.ImmutableList;
+import io.reactivex.Flowable;
 import io.reactivex.Single;
 import io.reactivex.processors.FlowableProcessor;
 import io.reactivex.processors.PublishProcessor;
@@ -34,6 +38,8 @@ import javax.inject.Inject;
 import timber.log.Timber;
 
 public class SubmissionListViewModel extends AbstractViewModel {
+  /** Number of submissions loaded at a time as the list is scrolled. */
+  @VisibleForTesting static final int PAGE_SIZE = 20;
 
   @Hot(replays = true)
   public final MutableLiveData<Boolean> isLoading = new MutableLiveData(false);
@@ -44,6 +50,8 @@ public class SubmissionListViewModel extends AbstractViewModel {
   private final FlowableProcessor<SubmissionListRequest> submissionListRequests =
       PublishProcessor.create();
 
+  @Hot private final FlowableProcessor<Integer> nextPageRequests = PublishProcessor.create();
+
   private final LiveData<ImmutableList<Submission>> submissionList;
 
   @Inject
@@ -53,7 +61,7 @@ public class SubmissionListViewModel extends AbstractViewModel {
         LiveDataReactiveStreams.fromPublisher(
             submissionListRequests
                 .doOnNext(__ -> isLoading.postValue(true))
-                .switchMapSingle(this::getSubmissions)
+                .switchMap(this::getSubmissionPages)
                 .doOnNext(__ -> isLoading.postValue(false)));
   }
 
@@ -69,21 +77,76 @@ public class SubmissionListViewModel extends AbstractViewModel {
         Optional.of(locationOfInterest.getJob()).map(Job::getId));
   }
 
-  private Single<ImmutableList<Submission>> getSubmissions(SubmissionListRequest req) {
+  /**
+   * Requests the next page of submissions. Called when the end of the list is reached.
+   *
+   * @param itemCount the number of submissions currently shown.
+   */
+  public void loadNextPage(int itemCount) {
+    nextPageRequests.onNext(itemCount);
+  }
+
+  /**
+   * Returns a stream of the submissions loaded so far for the specified request. The first page is
+   * loaded immediately, and each subsequent page when the end of the list is reached.
+   */
+  private Flowable<ImmutableList<Submission>> getSubmissionPages(SubmissionListRequest req) {
     if (req.taskId.isEmpty()) {
       // Do nothing. No task defined for this layer.
       // TODO(#354): Show message or special treatment for layer with no task.
-      return Single.just(ImmutableList.of());
+      return Flowable.just(ImmutableList.of());
     }
+    return getPagesFrom(req, null, 0)
+        .scan(
+            ImmutableList.<Submission>of(),
+            (loaded, page) ->
+                ImmutableList.<Submission>builder()
+                    .addAll(loaded)
+                    .addAll(page.getSubmissions())
+                    .build())
+        // Skip the empty seed so that the loading indicator is only cleared once a page arrives.
+        .skip(1);
+  }
+
+  /**
+   * Returns a stream of the pages starting at {@code after}, loading each page after the first
+   * once the end of the list is reached, i.e., once {@code loadedCount} plus the submissions loaded
+   * since are shown.
+   */
+  private Flowable<SubmissionPage> getPagesFrom(
+      SubmissionListRequest req, @Nullable SubmissionPage.Cursor after, int loadedCount) {
+    return getSubmissionsPage(req, after)
+        .toFlowable()
+        .concatMap(
+            page -> {
+              SubmissionPage.Cursor next = page.getNext();
+              if (next == null) {
+                return Flowable.just(page);
+              }
+              int count = loadedCount + page.getSubmissions().size();
+              // A page whose submissions were all skipped adds nothing to scroll through, so the
+              // following page is loaded right away.
+              Flowable<Integer> nextPageRequest =
+                  page.getSubmissions().isEmpty()
+                      ? Flowable.just(count)
+                      : nextPageRequests.filter(itemCount -> itemCount >= count).take(1);
+              return Flowable.just(page)
+                  .concatWith(nextPageRequest.concatMap(__ -> getPagesFrom(req, next, count)));
+            });
+  }
+
+  private Single<SubmissionPage> getSubmissionsPage(
+      SubmissionListRequest req, @Nullable SubmissionPage.Cursor after) {
     return submissionRepository
-        .getSubmissions(req.surveyId, req.locationOfInterestId, req.taskId.get())
+        .getSubmissionsPage(
+            req.surveyId, req.locationOfInterestId, req.taskId.get(), after, PAGE_SIZE)
         .onErrorResumeNext(this::onGetSubmissionsError);
   }
 
-  private Single<ImmutableList<Submission>> onGetSubmissionsError(Throwable t) {
+  private Single<SubmissionPage> onGetSubmissionsError(Throwable t) {
     // TODO: Show an appropriate error message to the user.
     Timber.e(t, "Failed to fetch submission list.");
-    return Single.just(ImmutableList.of());
+    return Single.just(new SubmissionPage(ImmutableList.of(), null));
   }
 
   private void loadSubmissions(
@@ -27,6 +27,7 @@ import com.google.android.ground.databinding.MenuButtonBinding
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
 import com.google.android.ground.model.locationofinterest.LocationOfInterestType
 import com.google.android.ground.rx.RxAutoDispose
+import com.google.android.ground.rx.Schedulers
 import com.google.android.ground.ui.common.AbstractMapContainerFragment
 import com.google.android.ground.ui.common.AbstractMapViewModel
 import com.google.android.ground.ui.common.Navigator
@@ -50,6 +51,7 @@ class HomeScreenMapContainerFragment : AbstractMapContainerFragment() {
 
   @Inject lateinit var loiCardSource: LoiCardSource
   @Inject lateinit var navigator: Navigator
+  @Inject lateinit var schedulers: Schedulers
 
   lateinit var polygonDrawingViewModel: PolygonDrawingViewModel
   private lateinit var mapContainerViewModel: HomeScreenMapContainerViewModel
@@ -166,9 +168,10 @@ class HomeScreenMapContainerFragment : AbstractMapContainerFragment() {
     polygonDrawingViewModel.setLocationLockEnabled(true)
 
     // Observe events emitted by the ViewModel.
-    mapContainerViewModel.mapLocationsOfInterest.observe(this) {
-      mapFragment.renderLocationsOfInterest(it)
-    }
+    mapContainerViewModel.locationOfInterestChanges
+      .observeOn(schedulers.ui())
+      .`as`(RxAutoDispose.autoDisposable(this))
+      .subscribe { mapFragment.applyLocationOfInterestChanges(it) }
     homeScreenViewModel.bottomSheetState.observe(this) { state: BottomSheetState ->
       onBottomSheetStateChange(state, mapFragment)
     }
@@ -213,7 +216,10 @@ class HomeScreenMapContainerFragment : AbstractMapContainerFragment() {
   }
 
   override fun onMapCameraMoved(position: CameraPosition) {
-    super.onMapCameraMoved(position)
-    loiCardSource.onCameraBoundsUpdated(position.bounds?.toGoogleMapsObject())
+    // Programmatic camera updates don't carry the resulting viewport, so read it from the map.
+    val newPosition =
+      if (position.bounds == null) position.copy(bounds = mapFragment.viewport) else position
+    super.onMapCameraMoved(newPosition)
+    loiCardSource.onCameraBoundsUpdated(newPosition.bounds?.toGoogleMapsObject())
   }
 }
@@ -20,12 +20,12 @@ import android.view.View
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.LiveDataReactiveStreams
 import androidx.lifecycle.MutableLiveData
-import com.cocoahero.android.gmaps.addons.mapbox.MapBoxOfflineTileProvider
+import com.cocoahero.android.gmaps.addons.mapbox.CompositeMapBoxOfflineTileProvider
 import com.google.android.ground.R
 import com.google.android.ground.model.Survey
-import com.google.android.ground.model.basemap.tile.TileSet
 import com.google.android.ground.model.geometry.Point
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.model.locationofinterest.LocationOfInterestType
 import com.google.android.ground.repository.LocationOfInterestRepository
 import com.google.android.ground.repository.OfflineAreaRepository
@@ -34,11 +34,13 @@ import com.google.android.ground.rx.Nil
 import com.google.android.ground.rx.annotations.Hot
 import com.google.android.ground.ui.common.AbstractMapViewModel
 import com.google.android.ground.ui.common.SharedViewModel
+import com.google.android.ground.ui.map.Bounds
 import com.google.android.ground.ui.map.CameraPosition
 import com.google.android.ground.ui.map.LocationController
 import com.google.android.ground.ui.map.MapController
 import com.google.android.ground.ui.map.MapLocationOfInterest
-import com.google.android.ground.util.toImmutableSet
+import com.google.android.ground.ui.map.gms.toGoogleMapsObject
+import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableSet
 import io.reactivex.Flowable
 import io.reactivex.Observable
@@ -48,6 +50,8 @@ import io.reactivex.subjects.PublishSubject
 import io.reactivex.subjects.Subject
 import java8.util.Optional
 import javax.inject.Inject
+import kotlinx.collections.immutable.PersistentMap
+import kotlinx.collections.immutable.persistentHashMapOf
 import timber.log.Timber
 
 @SharedViewModel
@@ -61,7 +65,11 @@ internal constructor(
   private val mapController: MapController,
   offlineAreaRepository: OfflineAreaRepository
 ) : AbstractMapViewModel(locationController, mapController) {
-  val mapLocationsOfInterest: LiveData<ImmutableSet<MapLocationOfInterest>>
+  /**
+   * Changes to the LOIs rendered on the map. Each subscriber first receives all rendered LOIs as
+   * added, followed by only the LOIs added, modified or removed since.
+   */
+  val locationOfInterestChanges: @Hot(replays = true) Flowable<LocationOfInterestChangeSet>
 
   private var lastCameraPosition: CameraPosition? = null
 
@@ -79,7 +87,11 @@ internal constructor(
   val mbtilesFilePaths: LiveData<ImmutableSet<String>>
   val isLocationUpdatesEnabled: LiveData<Boolean>
   val locationAccuracy: LiveData<String>
-  private val tileProviders: MutableList<MapBoxOfflineTileProvider> = ArrayList()
+  private val tileProviders: MutableList<CompositeMapBoxOfflineTileProvider> = ArrayList()
+
+  /** Bounds of the current map viewport, or empty until the camera has moved. */
+  private val viewportBounds: @Hot(replays = true) BehaviorProcessor<Optional<Bounds>> =
+    BehaviorProcessor.createDefault(Optional.empty())
 
   /** The currently selected LOI on the map. */
   private val selectedLocationOfInterest =
@@ -96,65 +108,43 @@ internal constructor(
   fun setUnsavedMapLocationsOfInterest(locationsOfInterest: ImmutableSet<MapLocationOfInterest>) =
     unsavedMapLocationsOfInterest.onNext(locationsOfInterest)
 
-  private fun updateSelectedLocationOfInterest(
-    locationsOfInterest: ImmutableSet<MapLocationOfInterest>,
-    selectedLocationOfInterest: Optional<LocationOfInterest>
-  ): ImmutableSet<MapLocationOfInterest> {
-    Timber.v("Updating selected LOI style")
-    if (selectedLocationOfInterest.isEmpty) {
-      return locationsOfInterest
-    }
-    val updatedLocationsOfInterest: ImmutableSet.Builder<MapLocationOfInterest> =
-      ImmutableSet.builder()
-    val selectedLocationOfInterestId = selectedLocationOfInterest.get().id
-    for (locationOfInterest in locationsOfInterest) {
-      // TODO: Update strokewidth of non MapGeoJson locationOfInterest
-      updatedLocationsOfInterest.add(locationOfInterest)
-    }
-    return updatedLocationsOfInterest.build()
-  }
-
-  private fun toMapLocationsOfInterest(
-    locationsOfInterest: ImmutableSet<LocationOfInterest>
-  ): ImmutableSet<MapLocationOfInterest> {
-    val points =
-      locationsOfInterest
-        .filter { it.type === LocationOfInterestType.POINT }
-        .map { MapLocationOfInterest(it) }
-        .toImmutableSet()
-
-    // TODO: Add support for polylines similar to mapPins.
-    val polygons =
-      locationsOfInterest
-        .filter { it.type === LocationOfInterestType.POLYGON }
-        .map { MapLocationOfInterest(it) }
-        .toImmutableSet()
-
-    return ImmutableSet.builder<MapLocationOfInterest>().addAll(points).addAll(polygons).build()
-  }
-
   private fun createLocationAccuracyFlowable() =
     locationController.getLocationUpdates().map {
       resources.getString(R.string.location_accuracy, it.accuracy)
     }
 
-  private fun getLocationsOfInterestStream(
-    activeProject: Optional<Survey>
-  ): Flowable<ImmutableSet<LocationOfInterest>> =
-    // Emit empty set in separate stream to force unsubscribe from LocationOfInterest updates and
-    // update
-    // subscribers.
+  private fun getLocationOfInterestUpdates(
+    activeProject: Optional<Survey>,
+    bounds: Optional<Bounds>
+  ): Flowable<MapUpdate> =
     activeProject
       .map { survey: Survey ->
-        locationOfInterestRepository.getLocationsOfInterestOnceAndStream(survey)
+        // Only load LOIs in the viewport once known, falling back to the full set until then.
+        locationOfInterestRepository
+          .getLocationOfInterestChangesOnceAndStream(
+            survey,
+            bounds.map { it.toGoogleMapsObject() }.orElse(null)
+          )
+          .map { it.filter(::isRenderable) }
+          .mapFirst<LocationOfInterestChangeSet, MapUpdate>(
+            { MapUpdate.Saved(it, isSnapshot = true) },
+            { MapUpdate.Saved(it) }
+          )
       }
-      .orElse(Flowable.just(ImmutableSet.of()))
+      // Emit an empty snapshot to remove LOIs from the previously active survey.
+      .orElse(Flowable.just(EMPTY_SNAPSHOT))
+
+  // TODO: Add support for polylines similar to mapPins.
+  private fun isRenderable(locationOfInterest: LocationOfInterest) =
+    locationOfInterest.type === LocationOfInterestType.POINT ||
+      locationOfInterest.type === LocationOfInterestType.POLYGON
 
   override fun onMapCameraMoved(newCameraPosition: CameraPosition) {
     Timber.d("Setting position to $newCameraPosition")
     onZoomChange(lastCameraPosition?.zoomLevel, newCameraPosition.zoomLevel)
     surveyRepository.setCameraPosition(surveyRepository.lastActiveSurveyId, newCameraPosition)
     lastCameraPosition = newCameraPosition
+    newCameraPosition.bounds?.let { viewportBounds.onNext(Optional.of(it)) }
   }
 
   private fun onZoomChange(oldZoomLevel: Float?, newZoomLevel: Float?) {
@@ -180,7 +170,7 @@ internal constructor(
   }
 
   // TODO(#691): Create our own wrapper/interface for MbTiles providers.
-  fun queueTileProvider(tileProvider: MapBoxOfflineTileProvider) {
+  fun queueTileProvider(tileProvider: CompositeMapBoxOfflineTileProvider) {
     tileProviders.add(tileProvider)
   }
 
@@ -222,10 +212,46 @@ internal constructor(
     const val ZOOM_LEVEL_THRESHOLD = 16f
     const val DEFAULT_LOI_ZOOM_LEVEL = 18.0f
 
-    private fun concatLocationsOfInterestSets(
-      objects: Array<Any>
-    ): ImmutableSet<MapLocationOfInterest> =
-      listOf(*objects).flatMap { it as ImmutableSet<MapLocationOfInterest> }.toImmutableSet()
+    private val EMPTY_SNAPSHOT: MapUpdate =
+      MapUpdate.Saved(LocationOfInterestChangeSet(), isSnapshot = true)
+  }
+
+  /** An update to the LOIs rendered on the map. */
+  private sealed class MapUpdate {
+    /**
+     * Changes to saved LOIs. Snapshots contain all saved LOIs in the current survey and viewport,
+     * replacing those previously rendered.
+     */
+    data class Saved(val changes: LocationOfInterestChangeSet, val isSnapshot: Boolean = false) :
+      MapUpdate()
+
+    /** The current set of unsaved LOIs, replacing those previously rendered. */
+    data class Unsaved(val locationsOfInterest: Collection<LocationOfInterest>) : MapUpdate()
+  }
+
+  /** The LOIs rendered on the map, along with the changes last applied to them. */
+  private data class MapState(
+    val saved: PersistentMap<String, LocationOfInterest> = persistentHashMapOf(),
+    val unsaved: PersistentMap<String, LocationOfInterest> = persistentHashMapOf(),
+    val lastChanges: LocationOfInterestChangeSet = LocationOfInterestChangeSet()
+  ) {
+    fun apply(update: MapUpdate): MapState =
+      when (update) {
+        is MapUpdate.Saved -> {
+          val changes =
+            if (update.isSnapshot) LocationOfInterestChangeSet.between(saved, update.changes.added)
+            else update.changes
+          copy(saved = changes.applyTo(saved), lastChanges = changes)
+        }
+        is MapUpdate.Unsaved -> {
+          val changes = LocationOfInterestChangeSet.between(unsaved, update.locationsOfInterest)
+          copy(unsaved = changes.applyTo(unsaved), lastChanges = changes)
+        }
+      }
+
+    /** Returns changes adding all rendered LOIs. */
+    fun toSnapshot(): LocationOfInterestChangeSet =
+      LocationOfInterestChangeSet(added = (saved + unsaved).values.toImmutableList())
   }
 
   init {
@@ -240,35 +266,43 @@ internal constructor(
     // TODO: Since we depend on survey stream from repo anyway, this transformation can be moved
     // into the repo
     // LOIs that are persisted to the local and remote dbs.
-    val loiStream =
-      surveyRepository.activeSurvey.switchMap { activeProject ->
-        getLocationsOfInterestStream(activeProject)
-      }
-
-    val savedMapLocationsOfInterest =
+    val savedUpdates =
       Flowable.combineLatest(
-        loiStream.map { locationsOfInterest -> toMapLocationsOfInterest(locationsOfInterest) },
-        selectedLocationOfInterest
-      ) { locationsOfInterest, selectedLocationOfInterest ->
-        updateSelectedLocationOfInterest(locationsOfInterest, selectedLocationOfInterest)
+          surveyRepository.activeSurvey,
+          viewportBounds.distinctUntilChanged()
+        ) { activeProject, bounds ->
+          Pair(activeProject, bounds)
+        }
+        .switchMap { (activeProject, bounds) ->
+          getLocationOfInterestUpdates(activeProject, bounds)
+        }
+    val unsavedUpdates: Flowable<MapUpdate> =
+      unsavedMapLocationsOfInterest.map { set ->
+        MapUpdate.Unsaved(set.map { it.locationOfInterest })
       }
 
-    mapLocationsOfInterest =
-      LiveDataReactiveStreams.fromPublisher(
-        Flowable.combineLatest(
-            listOf(
-              savedMapLocationsOfInterest.startWith(ImmutableSet.of<MapLocationOfInterest>()),
-              unsavedMapLocationsOfInterest.startWith(ImmutableSet.of<MapLocationOfInterest>())
-            )
-          ) { concatLocationsOfInterestSets(it) }
-          .distinctUntilChanged()
-      )
+    // Only changes are passed on to the map, except for the first emission to each subscriber,
+    // which adds all LOIs rendered so far so that recreated maps start from a consistent state.
+    val mapStates =
+      Flowable.merge(savedUpdates, unsavedUpdates)
+        .scan(MapState()) { state, update -> state.apply(update) }
+        .replay(1)
+        .refCount()
+    locationOfInterestChanges =
+      mapStates
+        .mapFirst({ it.toSnapshot() }, { it.lastChanges })
+        .filter { !it.isEmpty() }
 
     mbtilesFilePaths =
       LiveDataReactiveStreams.fromPublisher(
-        offlineAreaRepository.downloadedTileSetsOnceAndStream.map { set: ImmutableSet<TileSet> ->
-          set.map(TileSet::path).toImmutableSet()
-        }
+        offlineAreaRepository.localTileOverlayPathsOnceAndStream
       )
   }
 }
+
+/** Maps the first item emitted to each subscriber with [first] and later items with [rest]. */
+private fun <T : Any, R : Any> Flowable<T>.mapFirst(first: (T) -> R, rest: (T) -> R): Flowable<R> =
+  Flowable.defer {
+    var isFirst = true
+    map { item -> if (isFirst) first(item).also { isFirst = false } else rest(item) }
+  }
@@ -30,6 +30,7 @@ import io.reactivex.BackpressureStrategy
 import io.reactivex.Flowable
 import io.reactivex.subjects.PublishSubject
 import io.reactivex.subjects.Subject
+import java8.util.Optional
 import javax.inject.Inject
 
 /** Provides data for displaying cards for visible LOIs at the bottom of the screen. */
@@ -44,12 +45,15 @@ internal constructor(
   val locationsOfInterest: LiveData<List<LocationOfInterest>>
 
   init {
-    val loiStream = getAllLocationsOfInterest()
-
     locationsOfInterest =
       LiveDataReactiveStreams.fromPublisher(
-        getCameraBoundUpdates()
-          .flatMap { bounds -> loiStream.map { it.toLoiCardsWithinBounds(bounds) } }
+        Flowable.combineLatest(
+            surveyRepository.activeSurvey,
+            getCameraBoundUpdates(),
+          ) { survey, bounds ->
+            Pair(survey, bounds)
+          }
+          .switchMap { (survey, bounds) -> getLocationsOfInterestWithinBounds(survey, bounds) }
           .distinctUntilChanged()
       )
   }
@@ -62,15 +66,21 @@ internal constructor(
   private fun getCameraBoundUpdates(): Flowable<LatLngBounds> =
     cameraBoundsSubject.toFlowable(BackpressureStrategy.LATEST).distinctUntilChanged()
 
-  /** Returns a flowable of all [LocationOfInterest] for the selected [Survey]. */
-  private fun getAllLocationsOfInterest(): Flowable<ImmutableSet<LocationOfInterest>> =
-    surveyRepository.activeSurvey
-      .switchMap { survey ->
-        survey
-          .map { locationOfInterestRepository.getLocationsOfInterestOnceAndStream(it) }
-          .orElse(Flowable.just(ImmutableSet.of()))
+  /**
+   * Returns a flowable of [LocationOfInterest] cards for the selected [Survey] within [bounds].
+   * Candidates are fetched from the local db's bounding box index and then refined in memory.
+   */
+  private fun getLocationsOfInterestWithinBounds(
+    survey: Optional<Survey>,
+    bounds: LatLngBounds
+  ): Flowable<List<LocationOfInterest>> =
+    survey
+      .map {
+        locationOfInterestRepository
+          .getLocationsOfInterestWithinBoundsOnceAndStream(it, bounds)
+          .map { lois -> lois.toLoiCardsWithinBounds(bounds) }
       }
-      .distinctUntilChanged()
+      .orElse(Flowable.just(listOf()))
 
   /** Filters all [LocationOfInterest] within [bounds]. */
   private fun ImmutableSet<LocationOfInterest>.toLoiCardsWithinBounds(
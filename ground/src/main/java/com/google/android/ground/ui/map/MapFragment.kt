@@ -17,9 +17,10 @@ package com.google.android.ground.ui.map
 
 import android.annotation.SuppressLint
 import androidx.annotation.IdRes
-import com.cocoahero.android.gmaps.addons.mapbox.MapBoxOfflineTileProvider
+import com.cocoahero.android.gmaps.addons.mapbox.CompositeMapBoxOfflineTileProvider
 import com.google.android.ground.model.geometry.Point
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.rx.Nil
 import com.google.android.ground.rx.annotations.Hot
 import com.google.android.ground.ui.common.AbstractFragment
@@ -85,14 +86,17 @@ interface MapFragment {
   /** Displays user location indicator on the map. */
   @SuppressLint("MissingPermission") fun enableCurrentLocationIndicator()
 
-  /** Update the set of [MapLocationOfInterest]s rendered on the map. */
-  fun renderLocationsOfInterest(mapLocationsOfInterest: ImmutableSet<MapLocationOfInterest>)
+  /**
+   * Updates the [LocationOfInterest]s rendered on the map, adding, updating or removing only those
+   * included in the specified changes.
+   */
+  fun applyLocationOfInterestChanges(changes: LocationOfInterestChangeSet)
 
   fun refresh()
 
   // TODO(#691): Create interface and impl to encapsulate MapBoxOfflineTileProvider impl.
   /** Returns TileProviders associated with this map adapter. */
-  val tileProviders: @Hot Observable<MapBoxOfflineTileProvider>
+  val tileProviders: @Hot Observable<CompositeMapBoxOfflineTileProvider>
 
   /** Render locally stored tile overlays on the map. */
   fun addLocalTileOverlays(mbtilesFiles: ImmutableSet<String>)
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import kotlin.math.PI
+import kotlin.math.atan
+import kotlin.math.exp
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.min
+import kotlin.math.tan
+
+/**
+ * Conversions between latitudes and longitudes and the Web Mercator world map, as divided into XYZ
+ * tiles by map providers. Positions on the world map range from 0 to 1, from west to east and from
+ * north to south. XYZ tile rows are numbered from the north.
+ */
+object WebMercator {
+  /** Latitude limit of the projection, beyond which the world map is cropped. */
+  private const val MAX_LATITUDE = 85.05112878
+
+  /** Returns the position of the longitude across the world map. */
+  fun lngToWorldX(longitude: Double): Double = (longitude + 180) / 360
+
+  /** Returns the position of the latitude down the world map. */
+  fun latToWorldY(latitude: Double): Double {
+    val radians = latitude.coerceIn(-MAX_LATITUDE, MAX_LATITUDE) * PI / 180
+    return (1 - ln(tan(PI / 4 + radians / 2)) / PI) / 2
+  }
+
+  fun worldXToLng(worldX: Double): Double = worldX * 360 - 180
+
+  fun worldYToLat(worldY: Double): Double =
+    (2 * atan(exp(PI * (1 - 2 * worldY))) - PI / 2) * 180 / PI
+
+  /** Returns the column of the tile containing the longitude at the specified zoom level. */
+  fun tileX(longitude: Double, zoom: Int): Int = toTile(lngToWorldX(longitude), zoom)
+
+  /** Returns the row of the tile containing the latitude at the specified zoom level. */
+  fun tileY(latitude: Double, zoom: Int): Int = toTile(latToWorldY(latitude), zoom)
+
+  /** Returns the bounds of the specified XYZ tile. */
+  fun tileBounds(x: Int, y: Int, zoom: Int): LatLngBounds {
+    val tileCount = (1 shl zoom).toDouble()
+    return LatLngBounds(
+      LatLng(worldYToLat((y + 1) / tileCount), worldXToLng(x / tileCount)),
+      // Avoid wrapping the east edge of the last column around to -180.
+      LatLng(worldYToLat(y / tileCount), min(179.999999, worldXToLng((x + 1) / tileCount)))
+    )
+  }
+
+  private fun toTile(worldPosition: Double, zoom: Int): Int {
+    val tileCount = 1 shl zoom
+    return floor(worldPosition * tileCount).toInt().coerceIn(0, tileCount - 1)
+  }
+}
@@ -26,19 +26,20 @@ import android.widget.RelativeLayout
 import androidx.annotation.IdRes
 import androidx.core.view.ViewCompat
 import androidx.core.view.WindowInsetsCompat
-import com.cocoahero.android.gmaps.addons.mapbox.MapBoxOfflineTileProvider
+import com.cocoahero.android.gmaps.addons.mapbox.CompositeMapBoxOfflineTileProvider
 import com.google.android.gms.maps.CameraUpdateFactory
 import com.google.android.gms.maps.GoogleMap
 import com.google.android.gms.maps.GoogleMap.OnCameraMoveStartedListener
 import com.google.android.gms.maps.SupportMapFragment
 import com.google.android.gms.maps.model.*
-import com.google.android.gms.maps.model.Polygon as MapsPolygon
+import com.google.android.ground.Config
 import com.google.android.ground.R
 import com.google.android.ground.model.geometry.MultiPolygon
 import com.google.android.ground.model.geometry.Point
 import com.google.android.ground.model.geometry.Polygon
 import com.google.android.ground.model.job.Style
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.rx.Nil
 import com.google.android.ground.rx.annotations.Hot
 import com.google.android.ground.ui.MarkerIconFactory
@@ -46,9 +47,9 @@ import com.google.android.ground.ui.common.AbstractFragment
 import com.google.android.ground.ui.map.*
 import com.google.android.ground.ui.map.CameraPosition
 import com.google.android.ground.ui.util.BitmapUtil
+import com.google.android.ground.util.toImmutableList
 import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableSet
-import com.google.maps.android.PolyUtil
 import dagger.hilt.android.AndroidEntryPoint
 import io.reactivex.Flowable
 import io.reactivex.Observable
@@ -60,6 +61,7 @@ import java.io.File
 import java8.util.function.Consumer
 import javax.inject.Inject
 import kotlin.math.min
+import kotlin.math.pow
 import kotlin.math.sqrt
 import timber.log.Timber
 
@@ -87,23 +89,39 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
   // TODO(#691): This is a limitation of the MapBox tile provider we're using;
   // since one need to call `close` explicitly, we cannot generically expose these as TileProviders;
   // instead we must retain explicit reference to the concrete type.
-  private val tileProvidersSubject: @Hot PublishSubject<MapBoxOfflineTileProvider> =
+  private val tileProvidersSubject: @Hot PublishSubject<CompositeMapBoxOfflineTileProvider> =
     PublishSubject.create()
 
+  /** Overlay rendering local MBTiles files, its tile provider, and the files it renders. */
+  private var localTileOverlay: TileOverlay? = null
+  private var localTileProvider: CompositeMapBoxOfflineTileProvider? = null
+  private var localTileOverlayFiles: List<File> = listOf()
+
   /**
    * References to Google Maps SDK Markers present on the map. Used to sync and update polylines
    * with current view and data state.
    */
   private val clusters: MutableMap<LocationOfInterestClusterItem, MapLocationOfInterest> = HashMap()
-  private val polygons: MutableMap<MapLocationOfInterest, MutableList<MapsPolygon>> = HashMap()
 
   @Inject lateinit var bitmapUtil: BitmapUtil
 
   @Inject lateinit var markerIconFactory: MarkerIconFactory
+
+  @Inject lateinit var webTileCache: WebTileCache
+
+  @Inject lateinit var locationOfInterestTileSource: LocationOfInterestTileSource
+
+  /** Providers of the remote tile overlays on the map, keyed by URL template. */
+  private val remoteTileProviders: MutableMap<String, WebTileProvider> = HashMap()
   private var map: GoogleMap? = null
 
   private lateinit var clusterManager: LocationOfInterestClusterManager
 
+  private lateinit var polygonLayer: PolygonLayerManager
+
+  /** Renders LOIs as tiles instead of map objects when there are too many for the map. */
+  private lateinit var locationOfInterestTileLayer: LocationOfInterestTileLayer
+
   /**
    * User selected [LocationOfInterest] by either clicking the bottom card or horizontal scrolling.
    */
@@ -173,7 +191,33 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
     this.map = map
     this.clusterManager = LocationOfInterestClusterManager(context, map)
     clusterManager.setOnClusterItemClickListener(this::onClusterItemClick)
-    clusterManager.renderer = LocationOfInterestClusterRenderer(context, map, clusterManager)
+    clusterManager.renderer =
+      LocationOfInterestClusterRenderer(context, map, clusterManager, markerIconFactory)
+    // LOIs are currently all rendered with the default job style.
+    markerIconFactory.prewarm(listOf(parseColor(Style().color)))
+    // TODO(jsunde): Figure out where we want to get the style from
+    val polygonStyle =
+      PolygonLayerManager.Style(
+        polylineStrokeWidth.toFloat(),
+        parseColor(Style().color),
+        parseColor("#55ffffff")
+      )
+    polygonLayer =
+      PolygonLayerManager(
+        map,
+        clusterManager.markerManager.newCollection(),
+        polygonStyle,
+        { getMarkerIcon() },
+        { onLocationOfInterestMarkerClick(it) }
+      )
+    locationOfInterestTileLayer =
+      LocationOfInterestTileLayer(
+        LocationOfInterestTileProvider(
+          { locationOfInterestTileSource.getLocationsOfInterestWithinBounds(it).blockingGet() },
+          polygonStyle,
+          resources.displayMetrics.density
+        )
+      )
 
     map.setOnCameraIdleListener(this::onCameraIdle)
     map.setOnCameraMoveStartedListener(this::onCameraMoveStarted)
@@ -191,31 +235,38 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
 
   // Handle taps on ambiguous features.
   private fun handleAmbiguity(latLng: LatLng) {
-    val candidates = ImmutableList.builder<MapLocationOfInterest>()
-    val processed = ArrayList<String>()
-
-    for ((mapLocationOfInterest, value) in polygons) {
-      val loiId = mapLocationOfInterest.locationOfInterest.id
-      if (processed.contains(loiId)) {
-        continue
-      }
-
-      if (value.any { PolyUtil.containsLocation(latLng, it.points, false) }) {
-        candidates.add(mapLocationOfInterest)
-      }
-
-      processed.add(loiId)
+    if (locationOfInterestTileLayer.isShown) {
+      handleLocationOfInterestTileClick(latLng)
+      return
     }
-    val result = candidates.build()
+    val result = polygonLayer.findLocationsOfInterestAt(latLng).toImmutableList()
     if (!result.isEmpty()) {
       locationOfInterestClicks.onNext(result)
     }
   }
 
+  /** Resolves taps on LOIs rendered as tiles, which have no map objects to click on. */
+  private fun handleLocationOfInterestTileClick(latLng: LatLng) {
+    val radiusDegrees =
+      Config.LOI_TILE_TAP_RADIUS_DP * 360 / (256 * 2.0.pow(currentZoomLevel.toDouble()))
+    val candidates =
+      locationOfInterestTileLayer.findLocationsOfInterestAt(latLng, radiusDegrees).map {
+        MapLocationOfInterest(it)
+      }
+    when (candidates.size) {
+      0 -> return
+      1 -> onLocationOfInterestMarkerClick(candidates.single())
+      else -> locationOfInterestClicks.onNext(candidates.toImmutableList())
+    }
+  }
+
   /** Handles both cluster and marker clicks. */
-  private fun onClusterItemClick(item: LocationOfInterestClusterItem): Boolean {
+  private fun onClusterItemClick(item: LocationOfInterestClusterItem): Boolean =
+    onLocationOfInterestMarkerClick(MapLocationOfInterest(item.locationOfInterest))
+
+  private fun onLocationOfInterestMarkerClick(locationOfInterest: MapLocationOfInterest): Boolean {
     return if (getMap().uiSettings.isZoomGesturesEnabled) {
-      markerClicks.onNext(MapLocationOfInterest(item.locationOfInterest))
+      markerClicks.onNext(locationOfInterest)
       // Allow map to pan to marker.
       false
     } else {
@@ -235,7 +286,8 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
 
   override val cameraMovedEvents: @Hot Flowable<CameraPosition> = cameraMovedEventsProcessor
 
-  override val tileProviders: @Hot Observable<MapBoxOfflineTileProvider> = tileProvidersSubject
+  override val tileProviders: @Hot Observable<CompositeMapBoxOfflineTileProvider> =
+    tileProvidersSubject
 
   override fun getDistanceInPixels(point1: Point, point2: Point): Double {
     if (map == null) {
@@ -263,31 +315,6 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
   private fun getMarkerIcon(isSelected: Boolean = false): BitmapDescriptor =
     markerIconFactory.getMarkerIcon(parseColor(Style().color), currentZoomLevel, isSelected)
 
-  private fun addMultiPolygon(
-    locationOfInterest: MapLocationOfInterest,
-    multiPolygon: MultiPolygon
-  ) = multiPolygon.polygons.forEach { addPolygon(locationOfInterest, it) }
-
-  private fun addPolygon(locationOfInterest: MapLocationOfInterest, polygon: Polygon) {
-    val options = PolygonOptions()
-    options.clickable(false)
-    val shellVertices = polygon.shell.vertices.map { it.toLatLng() }
-    options.addAll(shellVertices)
-    val holes = polygon.holes.map { hole -> hole.vertices.map { point -> point.toLatLng() } }
-    holes.forEach { options.addHole(it) }
-
-    val mapsPolygon = getMap().addPolygon(options)
-    mapsPolygon.tag = Pair(locationOfInterest.locationOfInterest.id, LocationOfInterest::javaClass)
-    mapsPolygon.strokeWidth = polylineStrokeWidth.toFloat()
-    // TODO(jsunde): Figure out where we want to get the style from
-    //  parseColor(Style().color)
-    mapsPolygon.fillColor = parseColor("#55ffffff")
-    mapsPolygon.strokeColor = parseColor(Style().color)
-    mapsPolygon.strokeJointType = JointType.ROUND
-
-    polygons.getOrPut(locationOfInterest) { mutableListOf() }.add(mapsPolygon)
-  }
-
   private val polylineStrokeWidth: Int
     get() = resources.getDimension(R.dimen.polyline_stroke_width).toInt()
 
@@ -303,48 +330,69 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
     }
   }
 
-  private fun removeStaleLocationsOfInterest(
-    mapLocationsOfInterest: ImmutableSet<MapLocationOfInterest>
-  ) {
-    clusterManager.removeLocationsOfInterest(
-      mapLocationsOfInterest.map { it.locationOfInterest }.toSet()
-    )
-
-    val deletedIds =
-      polygons.keys.map { it.locationOfInterest.id } -
-        mapLocationsOfInterest.map { it.locationOfInterest.id }.toSet()
-    val deletedPolygons = polygons.filter { deletedIds.contains(it.key.locationOfInterest.id) }
-    deletedPolygons.values.forEach { it.forEach(MapsPolygon::remove) }
-    polygons.minusAssign(deletedPolygons.keys)
-  }
-
-  private fun addOrUpdateLocationOfInterest(mapLocationOfInterest: MapLocationOfInterest) {
+  private fun addLocationOfInterest(mapLocationOfInterest: MapLocationOfInterest) {
     val loi = mapLocationOfInterest.locationOfInterest
 
     when (loi.geometry) {
       is Point -> clusterManager.addOrUpdateLocationOfInterest(loi)
-      is Polygon -> addPolygon(mapLocationOfInterest, loi.geometry)
-      is MultiPolygon -> addMultiPolygon(mapLocationOfInterest, loi.geometry)
+      is Polygon -> polygonLayer.addOrUpdate(mapLocationOfInterest, listOf(loi.geometry))
+      is MultiPolygon -> polygonLayer.addOrUpdate(mapLocationOfInterest, loi.geometry.polygons)
       else -> TODO()
     }
   }
 
-  override fun renderLocationsOfInterest(
-    mapLocationsOfInterest: ImmutableSet<MapLocationOfInterest>
-  ) {
-    // Re-cluster and re-render
-    if (!mapLocationsOfInterest.isEmpty()) {
-      Timber.v(
-        "renderLocationsOfInterest() called with ${mapLocationsOfInterest.size} locations of interest"
-      )
-      removeStaleLocationsOfInterest(mapLocationsOfInterest)
-      Timber.v("Updating ${mapLocationsOfInterest.size} features")
-      mapLocationsOfInterest.forEach(this::addOrUpdateLocationOfInterest)
-      clusterManager.cluster()
+  override fun applyLocationOfInterestChanges(changes: LocationOfInterestChangeSet) {
+    if (changes.isEmpty()) return
+    Timber.v(
+      "Applying LOI changes: ${changes.added.size} added, ${changes.modified.size} modified, " +
+        "${changes.removedIds.size} removed"
+    )
+    locationOfInterestTileLayer.applyChanges(changes)
+    val renderAsTiles = locationOfInterestTileLayer.size > Config.LOI_TILE_RENDERING_MIN_COUNT
+    when {
+      renderAsTiles && !locationOfInterestTileLayer.isShown -> renderLocationsOfInterestAsTiles()
+      !renderAsTiles && locationOfInterestTileLayer.isShown -> renderLocationsOfInterestAsObjects()
+      !renderAsTiles -> applyMapObjectChanges(changes)
     }
   }
 
-  override fun refresh() = renderLocationsOfInterest(clusterManager.getMapLocationsOfInterest())
+  /** Replaces LOI markers and polygons with a tile overlay of all loaded LOIs. */
+  private fun renderLocationsOfInterestAsTiles() {
+    Timber.d("Rendering ${locationOfInterestTileLayer.size} LOIs as tiles")
+    clusterManager.clearLocationsOfInterest()
+    polygonLayer.clear()
+    clusterManager.cluster()
+    locationOfInterestTileLayer.show(getMap())
+  }
+
+  /** Replaces the LOI tile overlay with markers and polygons for each loaded LOI. */
+  private fun renderLocationsOfInterestAsObjects() {
+    Timber.d("Rendering ${locationOfInterestTileLayer.size} LOIs as map objects")
+    locationOfInterestTileLayer.hide()
+    applyMapObjectChanges(
+      LocationOfInterestChangeSet(
+        added = locationOfInterestTileLayer.getLocationsOfInterest().toImmutableList()
+      )
+    )
+  }
+
+  private fun applyMapObjectChanges(changes: LocationOfInterestChangeSet) {
+    // Modified LOIs are removed and re-added, since their geometry type may have changed.
+    val staleIds = changes.removedIds + changes.modified.map { it.id }
+    clusterManager.removeLocationsOfInterestById(staleIds)
+    staleIds.forEach(polygonLayer::remove)
+    val (points, shapes) = (changes.added + changes.modified).partition { it.geometry is Point }
+    clusterManager.addOrUpdateLocationsOfInterest(points)
+    shapes.forEach { addLocationOfInterest(MapLocationOfInterest(it)) }
+    clusterManager.cluster()
+    polygonLayer.render()
+  }
+
+  /** Re-renders point markers so that they reflect the active LOI. */
+  override fun refresh() =
+    applyLocationOfInterestChanges(
+      LocationOfInterestChangeSet(modified = clusterManager.getLocationsOfInterest())
+    )
 
   override var mapType: Int
     get() = getMap().mapType
@@ -362,6 +410,11 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
 
   private fun onCameraIdle() {
     clusterManager.onCameraIdle()
+    polygonLayer.render(
+      getMap().projection.visibleRegion.latLngBounds,
+      getMap().cameraPosition.zoom
+    )
+    prefetchRemoteTiles()
 
     if (cameraChangeReason == OnCameraMoveStartedListener.REASON_GESTURE) {
       cameraMovedEventsProcessor.onNext(
@@ -376,6 +429,13 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
     }
   }
 
+  private fun prefetchRemoteTiles() {
+    if (!Config.WEB_TILE_PREFETCH_ENABLED || remoteTileProviders.isEmpty()) return
+    val bounds = getMap().projection.visibleRegion.latLngBounds
+    val zoom = getMap().cameraPosition.zoom.toInt()
+    remoteTileProviders.values.forEach { it.prefetch(bounds, zoom) }
+  }
+
   private fun onCameraMoveStarted(reason: Int) {
     cameraChangeReason = reason
     if (reason == OnCameraMoveStartedListener.REASON_GESTURE) {
@@ -388,28 +448,41 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
     set(bounds) =
       getMap().moveCamera(CameraUpdateFactory.newLatLngBounds(bounds.toGoogleMapsObject(), 0))
 
-  private fun addTileOverlay(filePath: String) {
-    val mbtilesFile = File(requireContext().filesDir, filePath)
-
-    if (!mbtilesFile.exists()) {
-      Timber.i("mbtiles file ${mbtilesFile.absolutePath} does not exist")
+  /**
+   * Renders all of [mbtilesFiles] with a single tile overlay, replacing the overlay of any files
+   * previously added. Files which don't exist are skipped. If the files are unchanged, cached tiles
+   * are discarded instead, since tiles may have been imported into them since.
+   */
+  override fun addLocalTileOverlays(mbtilesFiles: ImmutableSet<String>) {
+    val files = mbtilesFiles.map { File(requireContext().filesDir, it) }.filter { it.exists() }
+    (mbtilesFiles.size - files.size).let { if (it > 0) Timber.i("$it mbtiles files don't exist") }
+    if (files == localTileOverlayFiles) {
+      // Both the provider and the Maps SDK cache missing tiles.
+      localTileProvider?.clearCache()
+      localTileOverlay?.clearTileCache()
       return
     }
+    localTileOverlay?.remove()
+    localTileProvider?.close()
+    localTileOverlay = null
+    localTileProvider = null
+    localTileOverlayFiles = files
+    if (files.isEmpty()) return
 
     try {
-      val tileProvider = MapBoxOfflineTileProvider(mbtilesFile)
+      val tileProvider = CompositeMapBoxOfflineTileProvider(files)
       tileProvidersSubject.onNext(tileProvider)
-      getMap().addTileOverlay(TileOverlayOptions().tileProvider(tileProvider))
+      localTileProvider = tileProvider
+      localTileOverlay = getMap().addTileOverlay(TileOverlayOptions().tileProvider(tileProvider))
     } catch (e: Exception) {
-      Timber.e(e, "Couldn't initialize tile provider for mbtiles file $mbtilesFile")
+      Timber.e(e, "Couldn't initialize tile provider for mbtiles files $files")
     }
   }
 
-  override fun addLocalTileOverlays(mbtilesFiles: ImmutableSet<String>) =
-    mbtilesFiles.forEach { filePath -> addTileOverlay(filePath) }
-
   private fun addRemoteTileOverlay(url: String) {
-    val webTileProvider = WebTileProvider(url)
+    if (remoteTileProviders.containsKey(url)) return
+    val webTileProvider = WebTileProvider(url, webTileCache)
+    remoteTileProviders[url] = webTileProvider
     getMap().addTileOverlay(TileOverlayOptions().tileProvider(webTileProvider))
   }
 
@@ -420,6 +493,7 @@ class GoogleMapsFragment : SupportMapFragment(), MapFragment {
     val newId = locationOfInterest?.id
     if (activeLocationOfInterest == newId) return
     clusterManager.activeLocationOfInterest = newId
+    locationOfInterestTileLayer.setActiveLocationOfInterest(newId)
 
     refresh()
   }
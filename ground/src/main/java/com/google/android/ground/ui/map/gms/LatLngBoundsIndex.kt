@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import kotlin.math.floor
+import kotlin.math.ln
+import kotlin.math.min
+
+/**
+ * In-memory spatial index of items by bounding box, used to find the items near a point or area
+ * without testing every item.
+ *
+ * Items are stored in a hierarchy of grids, where each grid level halves the cell size of the
+ * previous one. Each item is stored in the cells of the finest level whose cells are at least as
+ * large as its bounds, so that it occupies at most four cells. Items can be added and removed
+ * individually without rebuilding the index.
+ */
+internal class LatLngBoundsIndex<T : Any> {
+  private class Entry(val bounds: LatLngBounds, val level: Int, val cells: List<Long>)
+
+  private val entries: MutableMap<T, Entry> = HashMap()
+  private val cells: MutableMap<Long, MutableSet<T>> = HashMap()
+  private val levels: Array<MutableSet<T>> = Array(MAX_LEVEL + 1) { HashSet() }
+
+  val size: Int
+    get() = entries.size
+
+  /** Adds the specified item, replacing its bounds if already present. */
+  fun put(item: T, bounds: LatLngBounds) {
+    remove(item)
+    val level = levelOf(bounds)
+    val entry = Entry(bounds, level, cellsOf(bounds, level)!!)
+    entries[item] = entry
+    levels[level].add(item)
+    entry.cells.forEach { cells.getOrPut(it) { HashSet() }.add(item) }
+  }
+
+  /** Returns the bounds of the specified item, or null if it isn't in the index. */
+  fun getBounds(item: T): LatLngBounds? = entries[item]?.bounds
+
+  fun remove(item: T) {
+    val entry = entries.remove(item) ?: return
+    levels[entry.level].remove(item)
+    entry.cells.forEach { key ->
+      cells[key]?.let {
+        it.remove(item)
+        if (it.isEmpty()) cells.remove(key)
+      }
+    }
+  }
+
+  /** Returns the items whose bounds contain the specified point. */
+  fun findContaining(latLng: LatLng): List<T> {
+    val result = mutableListOf<T>()
+    for (level in 0..MAX_LEVEL) {
+      if (levels[level].isEmpty()) continue
+      val key = cellKey(level, cellX(latLng.longitude, level), cellY(latLng.latitude, level))
+      cells[key]?.filterTo(result) { entries.getValue(it).bounds.contains(latLng) }
+    }
+    return result
+  }
+
+  /** Returns the items whose bounds intersect the specified bounds. */
+  fun findIntersecting(bounds: LatLngBounds): Set<T> {
+    val candidates = HashSet<T>()
+    for (level in 0..MAX_LEVEL) {
+      val levelItems = levels[level]
+      if (levelItems.isEmpty()) continue
+      val cellKeys = cellsOf(bounds, level, maxCount = levelItems.size)
+      if (cellKeys == null) {
+        // Scanning the level is cheaper than looking up more cells than it has items.
+        candidates.addAll(levelItems)
+      } else {
+        cellKeys.forEach { key -> cells[key]?.let { candidates.addAll(it) } }
+      }
+    }
+    return candidates.filterTo(HashSet()) { intersects(entries.getValue(it).bounds, bounds) }
+  }
+
+  companion object {
+    /** Finest grid level, with cells of about 40 m. */
+    private const val MAX_LEVEL = 20
+
+    /** Returns the finest level whose cells are at least as large as the specified bounds. */
+    private fun levelOf(bounds: LatLngBounds): Int {
+      val latSpan = bounds.northeast.latitude - bounds.southwest.latitude
+      return min(MAX_LEVEL, min(levelOf(lngSpan(bounds), 360.0), levelOf(latSpan, 180.0)))
+    }
+
+    private fun levelOf(span: Double, worldSpan: Double): Int =
+      if (span <= 0) MAX_LEVEL
+      else floor(ln(worldSpan / span) / ln(2.0)).toInt().coerceIn(0, MAX_LEVEL)
+
+    /**
+     * Returns the keys of the cells covered by the specified bounds at the specified level, or null
+     * if there are more than [maxCount].
+     */
+    private fun cellsOf(
+      bounds: LatLngBounds,
+      level: Int,
+      maxCount: Int = Int.MAX_VALUE
+    ): List<Long>? {
+      val xRanges = lngRanges(bounds).map { (west, east) -> cellX(west, level)..cellX(east, level) }
+      val yRange = cellY(bounds.southwest.latitude, level)..cellY(bounds.northeast.latitude, level)
+      val count = xRanges.sumOf { it.last - it.first + 1L } * (yRange.last - yRange.first + 1)
+      if (count > maxCount) return null
+      return xRanges.flatMap { xRange ->
+        xRange.flatMap { x -> yRange.map { y -> cellKey(level, x, y) } }
+      }
+    }
+
+    private fun cellX(longitude: Double, level: Int): Int =
+      floor((longitude + 180) / 360 * (1 shl level)).toInt().coerceIn(0, (1 shl level) - 1)
+
+    private fun cellY(latitude: Double, level: Int): Int =
+      floor((latitude + 90) / 180 * (1 shl level)).toInt().coerceIn(0, (1 shl level) - 1)
+
+    private fun cellKey(level: Int, x: Int, y: Int): Long =
+      (level.toLong() shl 48) or (x.toLong() shl 24) or y.toLong()
+
+    /** Returns true iff the bounds overlap, including bounds crossing the antimeridian. */
+    fun intersects(a: LatLngBounds, b: LatLngBounds): Boolean {
+      if (a.southwest.latitude > b.northeast.latitude) return false
+      if (b.southwest.latitude > a.northeast.latitude) return false
+      return lngRanges(a).any { (aWest, aEast) ->
+        lngRanges(b).any { (bWest, bEast) -> aWest <= bEast && bWest <= aEast }
+      }
+    }
+
+    fun lngSpan(bounds: LatLngBounds): Double {
+      val span = bounds.northeast.longitude - bounds.southwest.longitude
+      return if (span < 0) span + 360 else span
+    }
+
+    private fun lngRanges(bounds: LatLngBounds): List<Pair<Double, Double>> {
+      val west = bounds.southwest.longitude
+      val east = bounds.northeast.longitude
+      return if (west <= east) listOf(Pair(west, east))
+      else listOf(Pair(west, 180.0), Pair(-180.0, east))
+    }
+  }
+}
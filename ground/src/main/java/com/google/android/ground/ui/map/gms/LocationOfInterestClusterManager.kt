@@ -19,49 +19,67 @@ import android.content.Context
 import com.google.android.gms.maps.GoogleMap
 import com.google.android.ground.model.geometry.Point
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
-import com.google.android.ground.ui.map.MapLocationOfInterest
-import com.google.android.ground.util.toImmutableSet
+import com.google.android.ground.util.toImmutableList
 import com.google.maps.android.clustering.ClusterManager
 import timber.log.Timber
 
+/**
+ * Manages the clustered point markers of LOIs. Cluster items are indexed by LOI id, so that LOIs
+ * can be added, updated and removed in bulk without scanning all items in the cluster algorithm.
+ * Callers are expected to call [cluster] once after applying a batch of changes.
+ */
 class LocationOfInterestClusterManager(context: Context?, map: GoogleMap) :
   ClusterManager<LocationOfInterestClusterItem>(context, map) {
   var activeLocationOfInterest: String? = null
 
-  fun addOrUpdateLocationOfInterest(locationOfInterest: LocationOfInterest) {
-    if (locationOfInterest.geometry !is Point) {
-      // TODO(#1152): Add support for polygons.
-      Timber.d("can't manage a non-point")
-      return
-    }
+  /** Cluster items currently managed, keyed by LOI id. */
+  private val itemsById: MutableMap<String, LocationOfInterestClusterItem> = HashMap()
 
-    val clusterItem = algorithm.items.find { it.locationOfInterest.id == locationOfInterest.id }
+  fun addOrUpdateLocationOfInterest(locationOfInterest: LocationOfInterest) =
+    addOrUpdateLocationsOfInterest(listOf(locationOfInterest))
 
-    if (clusterItem != null) {
-      updateItem(clusterItem)
-    } else {
-      Timber.d("adding loi to cluster manager: ${locationOfInterest}")
-      addItem(
-        LocationOfInterestClusterItem(
-          locationOfInterest.geometry,
-          locationOfInterest.caption ?: "",
-          locationOfInterest.lastModified.toString(),
-          locationOfInterest,
-        )
-      )
+  /**
+   * Adds cluster items for the specified point LOIs, replacing the items of any LOIs already
+   * present. LOIs with other geometries are skipped.
+   */
+  fun addOrUpdateLocationsOfInterest(locationsOfInterest: Collection<LocationOfInterest>) {
+    // TODO(#1152): Add support for polygons.
+    val newItems = locationsOfInterest.mapNotNull { toClusterItem(it) }
+    if (newItems.size < locationsOfInterest.size) {
+      Timber.d("can't manage ${locationsOfInterest.size - newItems.size} non-points")
     }
+    val staleItems = newItems.mapNotNull { itemsById[it.locationOfInterest.id] }
+    if (staleItems.isNotEmpty()) removeItems(staleItems)
+    newItems.forEach { itemsById[it.locationOfInterest.id] = it }
+    Timber.v("adding ${newItems.size} LOIs to cluster manager, replacing ${staleItems.size}")
+    addItems(newItems)
   }
 
-  fun removeLocationsOfInterest(locationsOfInterest: Set<LocationOfInterest>) {
-    val existingIds = algorithm.items.map { it.locationOfInterest.id }.toSet()
-    val deletedIds = existingIds.intersect(locationsOfInterest.map { it.id }.toSet())
-    val deletedPoints: Set<LocationOfInterestClusterItem> =
-      algorithm.items.filter { deletedIds.contains(it.locationOfInterest.id) }.toSet()
+  fun removeLocationsOfInterest(locationsOfInterest: Set<LocationOfInterest>) =
+    removeLocationsOfInterestById(locationsOfInterest.map { it.id }.toSet())
 
-    Timber.d("removing points: ${deletedPoints}")
-    removeItems(deletedPoints)
+  fun removeLocationsOfInterestById(ids: Set<String>) {
+    val deletedItems = ids.mapNotNull { itemsById.remove(it) }
+    if (deletedItems.isEmpty()) return
+
+    Timber.v("removing ${deletedItems.size} LOIs from cluster manager")
+    removeItems(deletedItems)
   }
 
-  fun getMapLocationsOfInterest() =
-    algorithm.items.map { MapLocationOfInterest(it.locationOfInterest) }.toImmutableSet()
+  fun clearLocationsOfInterest() {
+    itemsById.clear()
+    clearItems()
+  }
+
+  fun getLocationsOfInterest() = itemsById.values.map { it.locationOfInterest }.toImmutableList()
+
+  private fun toClusterItem(loi: LocationOfInterest): LocationOfInterestClusterItem? {
+    val geometry = loi.geometry as? Point ?: return null
+    return LocationOfInterestClusterItem(
+      geometry,
+      loi.caption ?: "",
+      loi.lastModified.toString(),
+      loi,
+    )
+  }
 }
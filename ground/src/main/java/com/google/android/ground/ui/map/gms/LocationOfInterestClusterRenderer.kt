@@ -30,10 +30,9 @@ class LocationOfInterestClusterRenderer(
   private val context: Context?,
   private val map: GoogleMap,
   private val clusterManager: LocationOfInterestClusterManager,
+  private val markerIconFactory: MarkerIconFactory
 ) : DefaultClusterRenderer<LocationOfInterestClusterItem>(context, map, clusterManager) {
 
-  val markerIconFactory: MarkerIconFactory? = context?.let { MarkerIconFactory(it) }
-
   private fun parseColor(colorHexCode: String?): Int =
     try {
       Color.parseColor(colorHexCode.toString())
@@ -42,8 +41,8 @@ class LocationOfInterestClusterRenderer(
       context?.resources?.getColor(R.color.colorMapAccent) ?: 0
     }
 
-  private fun getMarkerIcon(isSelected: Boolean = false): BitmapDescriptor? =
-    markerIconFactory?.getMarkerIcon(parseColor(Style().color), map.cameraPosition.zoom, isSelected)
+  private fun getMarkerIcon(isSelected: Boolean = false): BitmapDescriptor =
+    markerIconFactory.getMarkerIcon(parseColor(Style().color), map.cameraPosition.zoom, isSelected)
 
   override fun onBeforeClusterItemRendered(
     item: LocationOfInterestClusterItem,
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.GoogleMap
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.gms.maps.model.TileOverlay
+import com.google.android.gms.maps.model.TileOverlayOptions
+import com.google.android.ground.model.geometry.Geometry
+import com.google.android.ground.model.geometry.MultiPolygon
+import com.google.android.ground.model.geometry.Point
+import com.google.android.ground.model.geometry.Polygon
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
+import com.google.android.ground.ui.map.WebMercator
+import kotlin.math.hypot
+
+/**
+ * Keeps track of the LOIs loaded on the map, and when shown, renders them as a tile overlay drawn
+ * by [tileProvider] instead of as individual markers and polygons. The LOIs are indexed by bounding
+ * box so that taps can be resolved without map objects to click on.
+ */
+class LocationOfInterestTileLayer(private val tileProvider: LocationOfInterestTileProvider) {
+  private val locationsOfInterest: MutableMap<String, LocationOfInterest> = HashMap()
+  private val index = LatLngBoundsIndex<String>()
+  private var overlay: TileOverlay? = null
+
+  /** Number of LOIs currently loaded. */
+  val size: Int
+    get() = locationsOfInterest.size
+
+  val isShown: Boolean
+    get() = overlay != null
+
+  fun getLocationsOfInterest(): List<LocationOfInterest> = locationsOfInterest.values.toList()
+
+  /** Applies the specified changes, re-rendering the tiles they affect if shown. */
+  fun applyChanges(changes: LocationOfInterestChangeSet) {
+    val affectedBounds = mutableListOf<LatLngBounds>()
+    (changes.removedIds + changes.modified.map { it.id }).forEach { id ->
+      index.getBounds(id)?.let { affectedBounds.add(it) }
+      index.remove(id)
+      locationsOfInterest.remove(id)
+    }
+    (changes.added + changes.modified).forEach { loi ->
+      val bounds = boundsOf(loi.geometry)
+      index.put(loi.id, bounds)
+      locationsOfInterest[loi.id] = loi
+      affectedBounds.add(bounds)
+    }
+    invalidate(affectedBounds)
+  }
+
+  /** Draws the LOI with the specified id as selected, or none if null. */
+  fun setActiveLocationOfInterest(loiId: String?) {
+    val previousId = tileProvider.activeLocationOfInterestId
+    if (previousId == loiId) return
+    tileProvider.activeLocationOfInterestId = loiId
+    invalidate(listOfNotNull(previousId, loiId).mapNotNull { index.getBounds(it) })
+  }
+
+  /**
+   * Returns the LOIs at the specified point, counting points within [radiusDegrees] of longitude of
+   * it as drawn on the map. Only LOIs whose bounds are near the point are tested.
+   */
+  fun findLocationsOfInterestAt(latLng: LatLng, radiusDegrees: Double): List<LocationOfInterest> {
+    val tapBounds =
+      LatLngBounds(
+        LatLng(latLng.latitude - radiusDegrees, latLng.longitude - radiusDegrees),
+        LatLng(latLng.latitude + radiusDegrees, latLng.longitude + radiusDegrees)
+      )
+    return index
+      .findIntersecting(tapBounds)
+      .mapNotNull { locationsOfInterest[it] }
+      .filter { loi ->
+        when (val geometry = loi.geometry) {
+          is Point -> isWithinRadius(geometry, latLng, radiusDegrees)
+          is Polygon -> PolygonLayerManager.contains(geometry, latLng)
+          is MultiPolygon -> geometry.polygons.any { PolygonLayerManager.contains(it, latLng) }
+          else -> false
+        }
+      }
+  }
+
+  fun show(map: GoogleMap) {
+    if (overlay != null) return
+    overlay = map.addTileOverlay(TileOverlayOptions().tileProvider(tileProvider).zIndex(Z_INDEX))
+  }
+
+  fun hide() {
+    overlay?.remove()
+    overlay = null
+    tileProvider.invalidateAll()
+  }
+
+  private fun invalidate(bounds: List<LatLngBounds>) {
+    val overlay = overlay ?: return
+    if (bounds.isEmpty()) return
+    tileProvider.invalidate(bounds)
+    overlay.clearTileCache()
+  }
+
+  companion object {
+    /** Draws LOI tiles above base map tile overlays. */
+    private const val Z_INDEX = 1f
+
+    /**
+     * Returns true if the point is drawn within [radiusDegrees] of longitude of [latLng]. Distances
+     * are measured on the Web Mercator world map, where a degree of latitude is drawn longer than a
+     * degree of longitude away from the equator.
+     */
+    private fun isWithinRadius(point: Point, latLng: LatLng, radiusDegrees: Double): Boolean {
+      val coordinate = point.coordinate
+      val dx = WebMercator.lngToWorldX(coordinate.y) - WebMercator.lngToWorldX(latLng.longitude)
+      val dy = WebMercator.latToWorldY(coordinate.x) - WebMercator.latToWorldY(latLng.latitude)
+      return hypot(dx, dy) <= radiusDegrees / 360
+    }
+
+    private fun boundsOf(geometry: Geometry): LatLngBounds {
+      val builder = LatLngBounds.builder()
+      geometry.vertices.forEach { builder.include(it.toLatLng()) }
+      return builder.build()
+    }
+  }
+}
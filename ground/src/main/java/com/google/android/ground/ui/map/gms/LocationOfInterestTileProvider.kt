@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import android.graphics.Bitmap
+import android.graphics.Canvas
+import android.graphics.Color
+import android.graphics.Paint
+import android.graphics.Path
+import android.util.LruCache
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.gms.maps.model.Tile
+import com.google.android.gms.maps.model.TileProvider
+import com.google.android.ground.Config
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.model.geometry.MultiPolygon
+import com.google.android.ground.model.geometry.Point
+import com.google.android.ground.model.geometry.Polygon
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.ui.map.WebMercator
+import java.io.ByteArrayOutputStream
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.math.max
+import kotlin.math.min
+import timber.log.Timber
+
+/**
+ * Renders LOIs into map tiles, as an alternative to adding a marker or polygon to the map for each
+ * LOI when there are more than the map can handle. Tiles are rendered on the map's tile loading
+ * threads, querying only the LOIs which overlap each tile from [source].
+ *
+ * Rendered tiles are cached until invalidated with bounds that overlap them.
+ */
+class LocationOfInterestTileProvider(
+  private val source: (LatLngBounds) -> Collection<LocationOfInterest>,
+  private val tileStyle: PolygonLayerManager.Style,
+  density: Float
+) : TileProvider {
+  private val tileSizePx = min(MAX_TILE_SIZE_PX, (TILE_SIZE_DP * density).toInt())
+  private val pxPerDp = tileSizePx.toFloat() / TILE_SIZE_DP
+  private val strokeWidthPx = tileStyle.strokeWidth / density * pxPerDp
+  private val pointRadiusPx = Config.LOI_TILE_POINT_RADIUS_DP * pxPerDp
+
+  /** Fraction of a tile by which LOIs drawn on it may extend past its bounds. */
+  private val tilePadding = (SELECTED_SCALE * (pointRadiusPx + strokeWidthPx)) / tileSizePx
+
+  private val tileCache =
+    object : LruCache<Long, ByteArray>(Config.LOI_TILE_CACHE_MAX_BYTES) {
+      override fun sizeOf(key: Long, value: ByteArray): Int = max(value.size, EMPTY_TILE_SIZE)
+    }
+
+  /** Incremented on each invalidation, so that tiles rendered from stale data aren't cached. */
+  private val generation = AtomicLong()
+
+  /** Id of the LOI drawn as selected. Tiles containing it must be invalidated when changed. */
+  @Volatile var activeLocationOfInterestId: String? = null
+
+  override fun getTile(x: Int, y: Int, zoom: Int): Tile? {
+    val key = tileKey(x, y, zoom)
+    tileCache.get(key)?.let {
+      return toTile(it)
+    }
+    val renderedGeneration = generation.get()
+    val bounds = PolygonLayerManager.expand(tileBounds(key), tilePadding.toDouble())
+    val data =
+      try {
+        val locationsOfInterest = source(bounds)
+        if (locationsOfInterest.isEmpty()) EMPTY_TILE else render(locationsOfInterest, x, y, zoom)
+      } catch (e: RuntimeException) {
+        Timber.e(e, "Failed to render LOI tile $zoom/$x/$y")
+        // Returning null tells the map to retry the tile later.
+        return null
+      }
+    if (generation.get() == renderedGeneration) tileCache.put(key, data)
+    return toTile(data)
+  }
+
+  /** Evicts cached tiles which may contain LOIs within any of the specified bounds. */
+  fun invalidate(bounds: Collection<LatLngBounds>) {
+    if (bounds.isEmpty()) return
+    generation.incrementAndGet()
+    tileCache
+      .snapshot()
+      .keys
+      .filter { key ->
+        val tileBounds = PolygonLayerManager.expand(tileBounds(key), tilePadding.toDouble())
+        bounds.any { LatLngBoundsIndex.intersects(tileBounds, it) }
+      }
+      .forEach { tileCache.remove(it) }
+  }
+
+  /** Evicts all cached tiles. */
+  fun invalidateAll() {
+    generation.incrementAndGet()
+    tileCache.evictAll()
+  }
+
+  private fun toTile(data: ByteArray): Tile =
+    if (data.isEmpty()) TileProvider.NO_TILE else Tile(tileSizePx, tileSizePx, data)
+
+  private fun render(
+    locationsOfInterest: Collection<LocationOfInterest>,
+    x: Int,
+    y: Int,
+    zoom: Int
+  ): ByteArray =
+    TileCanvas(x, y, zoom).use { canvas ->
+      // Draw polygons first so that they don't obscure points.
+      for (loi in locationsOfInterest) {
+        val isSelected = loi.id == activeLocationOfInterestId
+        when (val geometry = loi.geometry) {
+          is Polygon -> canvas.drawPolygon(geometry, isSelected)
+          is MultiPolygon -> geometry.polygons.forEach { canvas.drawPolygon(it, isSelected) }
+          else -> {}
+        }
+      }
+      for (loi in locationsOfInterest) {
+        val geometry = loi.geometry
+        if (geometry is Point) canvas.drawPoint(geometry, loi.id == activeLocationOfInterestId)
+      }
+    }
+
+  /** Bitmap of a single tile, onto which geometries are drawn in map coordinates. */
+  private inner class TileCanvas(private val x: Int, private val y: Int, zoom: Int) {
+    private val bitmap = Bitmap.createBitmap(tileSizePx, tileSizePx, Bitmap.Config.ARGB_8888)
+    private val canvas = Canvas(bitmap)
+    private val worldSizePx = tileSizePx.toDouble() * (1 shl zoom)
+    private val fillPaint = paint(Paint.Style.FILL, tileStyle.fillColor)
+    private val strokePaint = paint(Paint.Style.STROKE, tileStyle.strokeColor)
+    private val pointPaint = paint(Paint.Style.FILL, tileStyle.strokeColor)
+    private val pointOutlinePaint = paint(Paint.Style.STROKE, Color.WHITE)
+
+    fun drawPolygon(polygon: Polygon, isSelected: Boolean) {
+      val path = Path()
+      path.fillType = Path.FillType.EVEN_ODD
+      (listOf(polygon.shell) + polygon.holes).forEach { ring ->
+        ring.coordinates.forEachIndexed { i, coordinate ->
+          val px = toPixelX(coordinate)
+          val py = toPixelY(coordinate)
+          if (i == 0) path.moveTo(px, py) else path.lineTo(px, py)
+        }
+        path.close()
+      }
+      canvas.drawPath(path, fillPaint)
+      strokePaint.strokeWidth = strokeWidthPx * if (isSelected) SELECTED_SCALE else 1f
+      canvas.drawPath(path, strokePaint)
+    }
+
+    fun drawPoint(point: Point, isSelected: Boolean) {
+      val radius = pointRadiusPx * if (isSelected) SELECTED_SCALE else 1f
+      val px = toPixelX(point.coordinate)
+      val py = toPixelY(point.coordinate)
+      canvas.drawCircle(px, py, radius, pointPaint)
+      pointOutlinePaint.strokeWidth = strokeWidthPx / 2
+      canvas.drawCircle(px, py, radius, pointOutlinePaint)
+    }
+
+    /** Encodes the tile as a PNG and releases its bitmap. */
+    fun use(block: (TileCanvas) -> Unit): ByteArray {
+      try {
+        block(this)
+        val out = ByteArrayOutputStream()
+        bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)
+        return out.toByteArray()
+      } finally {
+        bitmap.recycle()
+      }
+    }
+
+    private fun toPixelX(coordinate: Coordinate): Float =
+      (WebMercator.lngToWorldX(coordinate.y) * worldSizePx - x * tileSizePx).toFloat()
+
+    private fun toPixelY(coordinate: Coordinate): Float =
+      (WebMercator.latToWorldY(coordinate.x) * worldSizePx - y * tileSizePx).toFloat()
+
+    private fun paint(paintStyle: Paint.Style, paintColor: Int) =
+      Paint(Paint.ANTI_ALIAS_FLAG).apply {
+        style = paintStyle
+        color = paintColor
+        strokeJoin = Paint.Join.ROUND
+      }
+  }
+
+  companion object {
+    private const val TILE_SIZE_DP = 256
+    private const val MAX_TILE_SIZE_PX = 512
+    private const val SELECTED_SCALE = 1.5f
+
+    /** Empty tiles are cached as empty arrays, but still count towards the cache size. */
+    private val EMPTY_TILE = ByteArray(0)
+    private const val EMPTY_TILE_SIZE = 64
+
+    private fun tileKey(x: Int, y: Int, zoom: Int): Long =
+      (zoom.toLong() shl 50) or (x.toLong() shl 25) or y.toLong()
+
+    private fun tileBounds(key: Long): LatLngBounds =
+      WebMercator.tileBounds(
+        ((key shr 25) and 0x1ffffff).toInt(),
+        (key and 0x1ffffff).toInt(),
+        (key shr 50).toInt()
+      )
+  }
+}
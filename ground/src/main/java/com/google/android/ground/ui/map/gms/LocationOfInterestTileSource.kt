@@ -0,0 +1,46 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.repository.LocationOfInterestRepository
+import com.google.android.ground.repository.SurveyRepository
+import com.google.android.ground.rx.annotations.Cold
+import com.google.common.collect.ImmutableSet
+import io.reactivex.Single
+import javax.inject.Inject
+
+/** Provides the LOIs of the active survey to be rendered into map tiles. */
+class LocationOfInterestTileSource
+@Inject
+internal constructor(
+  private val surveyRepository: SurveyRepository,
+  private val locationOfInterestRepository: LocationOfInterestRepository,
+) {
+  /**
+   * Returns the LOIs in the active survey whose bounding boxes intersect [bounds], queried from the
+   * local db's bounding box index. Waits for a survey to be activated if none has been yet.
+   */
+  fun getLocationsOfInterestWithinBounds(
+    bounds: LatLngBounds
+  ): @Cold Single<ImmutableSet<LocationOfInterest>> =
+    surveyRepository.activeSurvey.firstOrError().flatMap { survey ->
+      survey
+        .map { locationOfInterestRepository.getLocationsOfInterestWithinBounds(it, bounds) }
+        .orElse(Single.just(ImmutableSet.of()))
+    }
+}
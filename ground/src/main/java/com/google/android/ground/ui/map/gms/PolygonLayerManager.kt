@@ -0,0 +1,296 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.GoogleMap
+import com.google.android.gms.maps.model.BitmapDescriptor
+import com.google.android.gms.maps.model.JointType
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.gms.maps.model.Marker
+import com.google.android.gms.maps.model.MarkerOptions
+import com.google.android.gms.maps.model.Polygon as MapsPolygon
+import com.google.android.gms.maps.model.PolygonOptions
+import com.google.android.ground.Config
+import com.google.android.ground.model.geometry.LinearRing
+import com.google.android.ground.model.geometry.Polygon
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.ui.map.MapLocationOfInterest
+import com.google.maps.android.PolyUtil
+import com.google.maps.android.collections.MarkerManager
+import java.util.ArrayDeque
+import kotlin.math.abs
+import kotlin.math.floor
+import kotlin.math.max
+import kotlin.math.min
+import kotlin.math.pow
+
+/**
+ * Renders the polygons of LOIs on a [GoogleMap], limited to those near the viewport.
+ *
+ * Polygons are simplified to the resolution of the current zoom level, and simplified rings are
+ * cached per zoom level. Below [Config.POLYGON_MIN_ZOOM_LEVEL], a marker is shown at the centroid
+ * of each LOI instead. Map polygons which are no longer visible are hidden and reused for other
+ * LOIs rather than removed from the map. LOIs are indexed by bounding box, so that neither
+ * rendering nor hit testing needs to visit every LOI.
+ */
+class PolygonLayerManager(
+  private val map: GoogleMap,
+  private val centroidMarkers: MarkerManager.Collection,
+  private val style: Style,
+  private val centroidIcon: () -> BitmapDescriptor,
+  onCentroidClick: (MapLocationOfInterest) -> Boolean
+) {
+  /** Appearance of rendered polygons. */
+  data class Style(val strokeWidth: Float, val strokeColor: Int, val fillColor: Int)
+
+  private class Layer(val locationOfInterest: MapLocationOfInterest, val polygons: List<Polygon>) {
+    val bounds: LatLngBounds = boundsOf(polygons)
+    val centroid: LatLng = centroidOf(polygons) ?: bounds.center
+
+    /** Rings of each polygon, shell first, simplified for each zoom level rendered so far. */
+    val simplifiedRings: MutableMap<Int, List<List<List<LatLng>>>> = HashMap()
+
+    var mapsPolygons: List<MapsPolygon> = listOf()
+    var renderedZoomLevel: Int? = null
+    var centroidMarker: Marker? = null
+  }
+
+  private val layers: MutableMap<String, Layer> = HashMap()
+  private val layerIndex = LatLngBoundsIndex<Layer>()
+  private val renderedLayers: MutableSet<Layer> = HashSet()
+  private val polygonPool = ArrayDeque<MapsPolygon>()
+
+  private var viewport: LatLngBounds? = null
+  private var zoom = 0f
+
+  init {
+    centroidMarkers.setOnMarkerClickListener { marker ->
+      (marker.tag as? MapLocationOfInterest)?.let(onCentroidClick) ?: false
+    }
+  }
+
+  /**
+   * Adds the polygons of the specified LOI, replacing those previously added for it. The polygons
+   * aren't shown until the next call to [render].
+   */
+  fun addOrUpdate(locationOfInterest: MapLocationOfInterest, polygons: List<Polygon>) {
+    remove(locationOfInterest.locationOfInterest.id)
+    if (polygons.isEmpty()) return
+    val layer = Layer(locationOfInterest, polygons)
+    layers[locationOfInterest.locationOfInterest.id] = layer
+    layerIndex.put(layer, layer.bounds)
+  }
+
+  /** Removes the polygons of the LOI with the specified id from the map. */
+  fun remove(loiId: String) {
+    val layer = layers.remove(loiId) ?: return
+    layerIndex.remove(layer)
+    renderedLayers.remove(layer)
+    hide(layer)
+  }
+
+  /** Removes the polygons of all LOIs from the map. */
+  fun clear() = layers.keys.toList().forEach { remove(it) }
+
+  /** Returns the LOIs with polygons which contain the specified point. */
+  fun findLocationsOfInterestAt(latLng: LatLng): List<MapLocationOfInterest> =
+    layerIndex
+      .findContaining(latLng)
+      .filter { layer -> layer.polygons.any { contains(it, latLng) } }
+      .map { it.locationOfInterest }
+
+  /** Renders the polygons near the specified viewport, simplified for the specified zoom level. */
+  fun render(viewport: LatLngBounds, zoom: Float) {
+    this.viewport = viewport
+    this.zoom = zoom
+    render()
+  }
+
+  /** Re-renders polygons with the most recent viewport and zoom level. */
+  fun render() {
+    val viewport = viewport ?: return
+    val renderBounds = expand(viewport, Config.POLYGON_VIEWPORT_PADDING)
+    val zoomLevel = floor(zoom).toInt()
+    val showCentroids = zoom < Config.POLYGON_MIN_ZOOM_LEVEL
+    val visibleLayers = layerIndex.findIntersecting(renderBounds)
+    renderedLayers.filterNot { it in visibleLayers }.forEach { hide(it) }
+    for (layer in visibleLayers) {
+      if (showCentroids) showCentroid(layer) else showPolygons(layer, zoomLevel)
+    }
+    renderedLayers.clear()
+    renderedLayers.addAll(visibleLayers)
+  }
+
+  private fun showCentroid(layer: Layer) {
+    recyclePolygons(layer)
+    if (layer.centroidMarker != null) return
+    val options = MarkerOptions().position(layer.centroid).icon(centroidIcon())
+    layer.centroidMarker =
+      centroidMarkers.addMarker(options).also { it.tag = layer.locationOfInterest }
+  }
+
+  private fun showPolygons(layer: Layer, zoomLevel: Int) {
+    removeCentroid(layer)
+    if (layer.renderedZoomLevel == zoomLevel) return
+    val rings = layer.simplifiedRings.getOrPut(zoomLevel) { simplify(layer.polygons, zoomLevel) }
+    val tag = Pair(layer.locationOfInterest.locationOfInterest.id, LocationOfInterest::javaClass)
+    val existing = layer.mapsPolygons
+    layer.mapsPolygons =
+      rings.mapIndexed { i, polygonRings ->
+        val mapsPolygon = existing.getOrNull(i) ?: polygonPool.poll() ?: addMapsPolygon()
+        mapsPolygon.points = polygonRings.first()
+        mapsPolygon.holes = polygonRings.drop(1)
+        mapsPolygon.tag = tag
+        mapsPolygon.isVisible = true
+        mapsPolygon
+      }
+    existing.drop(rings.size).forEach { recycle(it) }
+    layer.renderedZoomLevel = zoomLevel
+  }
+
+  private fun hide(layer: Layer) {
+    recyclePolygons(layer)
+    removeCentroid(layer)
+  }
+
+  private fun recyclePolygons(layer: Layer) {
+    layer.mapsPolygons.forEach { recycle(it) }
+    layer.mapsPolygons = listOf()
+    layer.renderedZoomLevel = null
+  }
+
+  private fun removeCentroid(layer: Layer) {
+    layer.centroidMarker?.let { centroidMarkers.remove(it) }
+    layer.centroidMarker = null
+  }
+
+  private fun recycle(mapsPolygon: MapsPolygon) {
+    if (polygonPool.size >= Config.POLYGON_POOL_MAX_SIZE) {
+      mapsPolygon.remove()
+      return
+    }
+    mapsPolygon.isVisible = false
+    mapsPolygon.tag = null
+    polygonPool.add(mapsPolygon)
+  }
+
+  private fun addMapsPolygon(): MapsPolygon =
+    map.addPolygon(
+      PolygonOptions()
+        // Points are replaced before the polygon is shown, but can't be empty.
+        .add(LatLng(0.0, 0.0))
+        .clickable(false)
+        .visible(false)
+        .strokeWidth(style.strokeWidth)
+        .strokeColor(style.strokeColor)
+        .fillColor(style.fillColor)
+        .strokeJointType(JointType.ROUND)
+    )
+
+  companion object {
+    /** Meters per pixel at the equator at zoom level 0. */
+    private const val METERS_PER_PIXEL_AT_ZOOM_0 = 156543.03392
+
+    /**
+     * Returns the rings of each of the specified polygons, shell first, simplified with the
+     * Douglas-Peucker algorithm to within [Config.POLYGON_SIMPLIFICATION_TOLERANCE_PIXELS] at the
+     * specified zoom level. Holes which simplify to less than a triangle are dropped, as they
+     * wouldn't be visible at that zoom level; shells which do are kept as is.
+     */
+    internal fun simplify(polygons: List<Polygon>, zoomLevel: Int): List<List<List<LatLng>>> {
+      val toleranceMeters =
+        Config.POLYGON_SIMPLIFICATION_TOLERANCE_PIXELS * METERS_PER_PIXEL_AT_ZOOM_0 /
+          2.0.pow(zoomLevel)
+      return polygons.map { polygon ->
+        val shell = polygon.shell.toLatLngs()
+        val simplifiedShell = simplify(shell, toleranceMeters) ?: shell
+        val simplifiedHoles = polygon.holes.mapNotNull { simplify(it.toLatLngs(), toleranceMeters) }
+        listOf(simplifiedShell) + simplifiedHoles
+      }
+    }
+
+    /** Returns the simplified ring, or null if it's simplified to less than a triangle. */
+    private fun simplify(ring: List<LatLng>, toleranceMeters: Double): List<LatLng>? {
+      if (ring.size < 4) return ring
+      return PolyUtil.simplify(ring, toleranceMeters).takeIf { it.size >= 4 }
+    }
+
+    /** Returns the bounds expanded by the specified fraction of their size on each side. */
+    internal fun expand(bounds: LatLngBounds, fraction: Double): LatLngBounds {
+      val latSpan = bounds.northeast.latitude - bounds.southwest.latitude
+      val lngSpan = LatLngBoundsIndex.lngSpan(bounds)
+      if (lngSpan * (1 + 2 * fraction) >= 360) {
+        return LatLngBounds(
+          LatLng(max(-90.0, bounds.southwest.latitude - latSpan * fraction), -180.0),
+          LatLng(min(90.0, bounds.northeast.latitude + latSpan * fraction), 180.0)
+        )
+      }
+      // LatLng wraps longitudes outside [-180, 180), so bounds may cross the antimeridian.
+      return LatLngBounds(
+        LatLng(
+          max(-90.0, bounds.southwest.latitude - latSpan * fraction),
+          bounds.southwest.longitude - lngSpan * fraction
+        ),
+        LatLng(
+          min(90.0, bounds.northeast.latitude + latSpan * fraction),
+          bounds.northeast.longitude + lngSpan * fraction
+        )
+      )
+    }
+
+    private fun boundsOf(polygons: List<Polygon>): LatLngBounds {
+      val builder = LatLngBounds.builder()
+      polygons.forEach { polygon -> polygon.shell.toLatLngs().forEach { builder.include(it) } }
+      return builder.build()
+    }
+
+    /**
+     * Returns the area-weighted centroid of the shell of the largest of the specified polygons, or
+     * null if they have no area.
+     */
+    internal fun centroidOf(polygons: List<Polygon>): LatLng? {
+      var bestArea = 0.0
+      var centroid: LatLng? = null
+      for (polygon in polygons) {
+        val ring = polygon.shell.toLatLngs()
+        var area = 0.0
+        var lat = 0.0
+        var lng = 0.0
+        for (i in 0 until ring.size - 1) {
+          val (x0, y0) = Pair(ring[i].longitude, ring[i].latitude)
+          val (x1, y1) = Pair(ring[i + 1].longitude, ring[i + 1].latitude)
+          val cross = x0 * y1 - x1 * y0
+          area += cross
+          lng += (x0 + x1) * cross
+          lat += (y0 + y1) * cross
+        }
+        if (abs(area) > bestArea) {
+          bestArea = abs(area)
+          centroid = LatLng(lat / (3 * area), lng / (3 * area))
+        }
+      }
+      return centroid
+    }
+
+    /** Returns true iff the polygon contains the specified point, excluding its holes. */
+    internal fun contains(polygon: Polygon, latLng: LatLng): Boolean =
+      PolyUtil.containsLocation(latLng, polygon.shell.toLatLngs(), false) &&
+        polygon.holes.none { PolyUtil.containsLocation(latLng, it.toLatLngs(), false) }
+
+    private fun LinearRing.toLatLngs(): List<LatLng> = coordinates.map { it.toGoogleMapsObject() }
+  }
+}
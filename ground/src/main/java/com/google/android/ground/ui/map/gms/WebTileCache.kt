@@ -0,0 +1,329 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import android.content.Context
+import com.google.android.ground.Config
+import com.google.android.ground.rx.Schedulers
+import com.google.android.ground.system.NetworkManager
+import com.google.common.io.BaseEncoding
+import dagger.hilt.android.qualifiers.ApplicationContext
+import io.reactivex.Completable
+import io.reactivex.Flowable
+import io.reactivex.disposables.Disposable
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.io.File
+import java.io.IOException
+import java.net.HttpURLConnection
+import java.net.URL
+import java.security.MessageDigest
+import java.util.Properties
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.FutureTask
+import javax.inject.Inject
+import javax.inject.Singleton
+import timber.log.Timber
+
+/**
+ * Disk cache of remote map tiles, keyed by tile URL and bounded by the total size of cached tiles,
+ * evicting the least recently used tiles first.
+ *
+ * Cached tiles are served without network access until they expire according to the
+ * `Cache-Control` or `Expires` headers they were served with, or after
+ * [Config.WEB_TILE_DEFAULT_TTL_MILLIS] if served with neither, after which they're revalidated with
+ * conditional requests. Responses marked `no-store` aren't cached. Expired tiles are still served
+ * when they can't be revalidated, e.g. while offline. Concurrent requests for the same tile share a
+ * single network request.
+ *
+ * Each tile is stored with its metadata in a single file, so that both are replaced together.
+ */
+@Singleton
+class WebTileCache(
+  private val directory: File,
+  private val maxSizeBytes: Long,
+  private val schedulers: Schedulers,
+  private val isPrefetchAllowed: () -> Boolean
+) {
+  @Inject
+  constructor(
+    @ApplicationContext context: Context,
+    schedulers: Schedulers
+  ) : this(
+    File(context.cacheDir, Config.WEB_TILE_CACHE_DIR_NAME),
+    Config.WEB_TILE_CACHE_MAX_BYTES,
+    schedulers,
+    { Config.WEB_TILE_PREFETCH_ENABLED && NetworkManager.isNetworkUnmetered(context) }
+  )
+
+  private class Entry(val data: ByteArray, val metadata: Properties) {
+    fun isFresh(now: Long): Boolean = now < metadata.getProperty(EXPIRES_KEY, "0").toLong()
+  }
+
+  /**
+   * The size of a cached tile's file, and the version of the tile, which changes each time the file
+   * is replaced.
+   */
+  private class Slot(val size: Long, val version: Long)
+
+  /**
+   * Cached tiles in least recently used order, loaded from disk on first use. Tile files are only
+   * moved into place or deleted while holding its lock, so that the files always match these
+   * slots. Reading and writing the tiles' contents is done without the lock, so that tile file IO
+   * doesn't block other requests.
+   */
+  private val slots: LinkedHashMap<String, Slot> by lazy { loadSlots() }
+  private var totalSizeBytes = 0L
+  private var nextVersion = 0L
+
+  private val inFlightRequests = ConcurrentHashMap<String, FutureTask<ByteArray?>>()
+  private var prefetchDisposable: Disposable? = null
+
+  /**
+   * Returns the tile at [url] from the cache or the network, or null if the server doesn't have
+   * it. Throws [IOException] if the tile isn't cached and can't be downloaded.
+   */
+  @Throws(IOException::class)
+  fun getTile(url: String): ByteArray? {
+    val key = key(url)
+    val cached = read(key)
+    if (cached != null && cached.isFresh(System.currentTimeMillis())) {
+      return cached.data
+    }
+    val task = FutureTask { fetch(url, key, cached) }
+    val inFlightTask = inFlightRequests.putIfAbsent(key, task)
+    if (inFlightTask == null) {
+      try {
+        task.run()
+      } finally {
+        inFlightRequests.remove(key, task)
+      }
+    }
+    return try {
+      (inFlightTask ?: task).get()
+    } catch (e: ExecutionException) {
+      throw e.cause as? IOException ?: IOException(e.cause)
+    }
+  }
+
+  /**
+   * Fetches the tiles at [urls] in the background unless prefetching isn't allowed, e.g. on a
+   * metered network, cancelling any previous prefetch still in progress.
+   */
+  @Synchronized
+  fun prefetch(urls: List<String>) {
+    prefetchDisposable?.dispose()
+    if (urls.isEmpty() || !isPrefetchAllowed()) return
+    prefetchDisposable =
+      Flowable.fromIterable(urls.take(Config.WEB_TILE_PREFETCH_MAX_TILES))
+        .flatMapCompletable(
+          { url ->
+            Completable.fromAction { getTile(url) }
+              .doOnError { Timber.d(it, "Failed to prefetch tile $url") }
+              .onErrorComplete()
+              .subscribeOn(schedulers.io())
+          },
+          false,
+          Config.WEB_TILE_PREFETCH_CONCURRENCY
+        )
+        .subscribe()
+  }
+
+  private fun fetch(url: String, key: String, cached: Entry?): ByteArray? {
+    val connection = URL(url).openConnection() as HttpURLConnection
+    try {
+      connection.useCaches = false
+      cached?.metadata?.getProperty(ETAG_KEY)?.let {
+        connection.setRequestProperty("If-None-Match", it)
+      }
+      cached?.metadata?.getProperty(LAST_MODIFIED_KEY)?.let {
+        connection.setRequestProperty("If-Modified-Since", it)
+      }
+      when (connection.responseCode) {
+        HttpURLConnection.HTTP_OK -> {
+          val data = connection.inputStream.use { it.readBytes() }
+          val metadata = toMetadata(connection)
+          if (metadata != null) write(key, Entry(data, metadata))
+          return data
+        }
+        HttpURLConnection.HTTP_NOT_MODIFIED -> {
+          if (cached == null) throw IOException("Unexpected 304 response for $url")
+          toMetadata(connection)?.let {
+            // Keep validators the server omitted from the 304 response.
+            it.putAll(cached.metadata.filterKeys { name -> !it.containsKey(name) })
+            write(key, Entry(cached.data, it))
+          }
+          return cached.data
+        }
+        HttpURLConnection.HTTP_NOT_FOUND,
+        HttpURLConnection.HTTP_NO_CONTENT -> return null
+        else -> throw IOException("Unexpected response ${connection.responseCode} for $url")
+      }
+    } catch (e: IOException) {
+      if (cached == null) throw e
+      Timber.d(e, "Couldn't revalidate tile $url, serving expired tile")
+      return cached.data
+    } finally {
+      connection.disconnect()
+    }
+  }
+
+  /**
+   * Returns the cache metadata of the response, including its expiry time, or null if the response
+   * must not be stored.
+   */
+  private fun toMetadata(connection: HttpURLConnection): Properties? {
+    val directives =
+      connection.getHeaderField("Cache-Control")?.split(',')?.map { it.trim().lowercase() }
+        ?: listOf()
+    if (directives.contains("no-store")) return null
+    val now = System.currentTimeMillis()
+    val maxAgeSeconds =
+      directives.firstOrNull { it.startsWith("max-age=") }?.substringAfter('=')?.toLongOrNull()
+    val expires =
+      when {
+        directives.contains("no-cache") -> 0
+        maxAgeSeconds != null -> now + maxAgeSeconds * 1000
+        connection.expiration != 0L -> connection.expiration
+        else -> now + Config.WEB_TILE_DEFAULT_TTL_MILLIS
+      }
+    return Properties().apply {
+      setProperty(EXPIRES_KEY, expires.toString())
+      connection.getHeaderField("ETag")?.let { setProperty(ETAG_KEY, it) }
+      connection.getHeaderField("Last-Modified")?.let { setProperty(LAST_MODIFIED_KEY, it) }
+    }
+  }
+
+  /**
+   * Reads the cached tile, or returns null if not cached. If the file can't be read, the tile is
+   * removed from the cache, unless it has since been replaced or evicted.
+   */
+  private fun read(key: String): Entry? {
+    val version = synchronized(slots) { slots[key]?.version } ?: return null
+    return try {
+      val file = entryFile(key)
+      file.setLastModified(System.currentTimeMillis())
+      DataInputStream(file.inputStream().buffered()).use { input ->
+        val metadata = Properties()
+        val metadataSize = input.readInt()
+        if (metadataSize !in 0..file.length()) throw IOException("Corrupt cached tile $key")
+        val metadataBytes = ByteArray(metadataSize)
+        input.readFully(metadataBytes)
+        metadata.load(metadataBytes.inputStream())
+        Entry(input.readBytes(), metadata)
+      }
+    } catch (e: IOException) {
+      Timber.d(e, "Failed to read cached tile $key")
+      remove(key, version)
+      null
+    }
+  }
+
+  /**
+   * Writes the tile to a temporary file which is then moved into place, so that concurrent reads
+   * never see a partially written tile.
+   */
+  private fun write(key: String, entry: Entry) {
+    val tempFile =
+      try {
+        newTempFile(key)
+      } catch (e: IOException) {
+        Timber.d(e, "Failed to cache tile $key")
+        return
+      }
+    try {
+      val metadataBytes =
+        ByteArrayOutputStream().also { entry.metadata.store(it, null) }.toByteArray()
+      DataOutputStream(tempFile.outputStream().buffered()).use { output ->
+        output.writeInt(metadataBytes.size)
+        output.write(metadataBytes)
+        output.write(entry.data)
+      }
+    } catch (e: IOException) {
+      Timber.d(e, "Failed to cache tile $key")
+      tempFile.delete()
+      return
+    }
+    val size = tempFile.length()
+    synchronized(slots) {
+      if (!tempFile.renameTo(entryFile(key))) {
+        Timber.d("Failed to move tile $key into place")
+        tempFile.delete()
+        return
+      }
+      totalSizeBytes += size - (slots.put(key, Slot(size, nextVersion++))?.size ?: 0L)
+      trimToSize()
+    }
+  }
+
+  /** Drops least recently used tiles until within the max size. Must hold the lock on [slots]. */
+  private fun trimToSize() {
+    val iterator = slots.entries.iterator()
+    while (totalSizeBytes > maxSizeBytes && iterator.hasNext()) {
+      val (key, slot) = iterator.next()
+      iterator.remove()
+      totalSizeBytes -= slot.size
+      entryFile(key).delete()
+    }
+  }
+
+  /** Removes the tile if it's still at the specified version. */
+  private fun remove(key: String, version: Long) {
+    synchronized(slots) {
+      val slot = slots[key]
+      if (slot == null || slot.version != version) return
+      slots.remove(key)
+      totalSizeBytes -= slot.size
+      entryFile(key).delete()
+    }
+  }
+
+  private fun loadSlots(): LinkedHashMap<String, Slot> {
+    directory.mkdirs()
+    val slots = LinkedHashMap<String, Slot>(16, 0.75f, true)
+    // Temporary files are left behind if the app is killed while writing a tile, and tiles cached
+    // by earlier versions were stored as separate data and metadata files.
+    directory
+      .listFiles { file -> !file.name.endsWith(ENTRY_FILE_SUFFIX) }
+      ?.forEach { it.delete() }
+    directory
+      .listFiles { file -> file.name.endsWith(ENTRY_FILE_SUFFIX) }
+      .orEmpty()
+      .sortedBy { it.lastModified() }
+      .forEach { slots[it.name.removeSuffix(ENTRY_FILE_SUFFIX)] = Slot(it.length(), nextVersion++) }
+    totalSizeBytes = slots.values.sumOf { it.size }
+    return slots
+  }
+
+  private fun entryFile(key: String) = File(directory, key + ENTRY_FILE_SUFFIX)
+
+  private fun newTempFile(key: String) = File.createTempFile(key, TEMP_FILE_SUFFIX, directory)
+
+  companion object {
+    private const val ENTRY_FILE_SUFFIX = ".entry"
+    private const val TEMP_FILE_SUFFIX = ".tmp"
+    private const val EXPIRES_KEY = "expires"
+    private const val ETAG_KEY = "etag"
+    private const val LAST_MODIFIED_KEY = "lastModified"
+
+    private fun key(url: String): String =
+      BaseEncoding.base16()
+        .lowerCase()
+        .encode(MessageDigest.getInstance("SHA-1").digest(url.toByteArray()))
+  }
+}
@@ -15,28 +15,64 @@
  */
 package com.google.android.ground.ui.map.gms
 
-import com.google.android.gms.maps.model.UrlTileProvider
-import java.net.MalformedURLException
-import java.net.URL
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.gms.maps.model.Tile
+import com.google.android.gms.maps.model.TileProvider
+import com.google.android.ground.ui.map.WebMercator
+import java.io.IOException
 import timber.log.Timber
 
 /**
- * Fetches tile imagery from a server according to a formatted URL.
+ * Fetches tile imagery from a server according to a formatted URL, caching tiles in the provided
+ * [WebTileCache].
  *
  * Tile URLs should have the format: host/z/x/y
  */
-class WebTileProvider(private val formatUrl: String) : UrlTileProvider(256, 256) {
-  override fun getTileUrl(x: Int, y: Int, z: Int): URL? {
-    val url =
-      formatUrl
-        .replace("\${z}", z.toString())
-        .replace("\${x}", x.toString())
-        .replace("\${y}", y.toString())
+class WebTileProvider(private val formatUrl: String, private val cache: WebTileCache) :
+  TileProvider {
+  override fun getTile(x: Int, y: Int, z: Int): Tile? {
+    val url = getTileUrl(x, y, z)
     return try {
-      URL(url)
-    } catch (e: MalformedURLException) {
-      Timber.e(e, "Tile URL malformed: %s", url)
+      cache.getTile(url)?.let { Tile(TILE_SIZE, TILE_SIZE, it) } ?: TileProvider.NO_TILE
+    } catch (e: IOException) {
+      Timber.d(e, "Failed to fetch tile %s", url)
+      // Returning null tells the map to retry the tile later.
       null
     }
   }
+
+  /**
+   * Prefetches the tiles covering [bounds] at [zoom] and at the next zoom level, so that they can
+   * be shown without waiting for the network when the user pans or zooms in.
+   */
+  fun prefetch(bounds: LatLngBounds, zoom: Int) {
+    val urls =
+      listOf(zoom, zoom + 1)
+        .filter { it in 0..MAX_ZOOM }
+        .flatMap { z -> tileCoordinates(bounds, z).map { (x, y) -> getTileUrl(x, y, z) } }
+    cache.prefetch(urls)
+  }
+
+  private fun getTileUrl(x: Int, y: Int, z: Int): String =
+    formatUrl
+      .replace("\${z}", z.toString())
+      .replace("\${x}", x.toString())
+      .replace("\${y}", y.toString())
+
+  companion object {
+    private const val TILE_SIZE = 256
+    private const val MAX_ZOOM = 22
+
+    /** Returns the XYZ coordinates of the tiles covering [bounds] at zoom level [z]. */
+    internal fun tileCoordinates(bounds: LatLngBounds, z: Int): List<Pair<Int, Int>> {
+      val tileCount = 1 shl z
+      val west = WebMercator.tileX(bounds.southwest.longitude, z)
+      var east = WebMercator.tileX(bounds.northeast.longitude, z)
+      // Bounds crossing the antimeridian wrap around to the first column.
+      if (bounds.southwest.longitude > bounds.northeast.longitude) east += tileCount
+      val north = WebMercator.tileY(bounds.northeast.latitude, z)
+      val south = WebMercator.tileY(bounds.southwest.latitude, z)
+      return (west..east).flatMap { x -> (north..south).map { y -> Pair(x % tileCount, y) } }
+    }
+  }
 }
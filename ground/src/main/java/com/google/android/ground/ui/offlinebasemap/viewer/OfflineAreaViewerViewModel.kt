@@ -15,24 +15,18 @@
  */
 package com.google.android.ground.ui.offlinebasemap.viewer
 
-import android.content.Context
 import androidx.lifecycle.LiveData
 import androidx.lifecycle.LiveDataReactiveStreams
 import com.google.android.ground.model.basemap.OfflineArea
-import com.google.android.ground.model.basemap.tile.TileSet
+import com.google.android.ground.persistence.sync.TileSetDownloadProgress
 import com.google.android.ground.repository.OfflineAreaRepository
 import com.google.android.ground.rx.Nil
 import com.google.android.ground.rx.annotations.Hot
 import com.google.android.ground.ui.common.AbstractViewModel
 import com.google.android.ground.ui.common.Navigator
-import com.google.common.collect.ImmutableSet
-import dagger.hilt.android.qualifiers.ApplicationContext
 import io.reactivex.BackpressureStrategy
 import io.reactivex.Flowable
 import io.reactivex.subjects.PublishSubject
-import java.io.File
-import java.lang.ref.WeakReference
-import java8.util.stream.StreamSupport
 import javax.inject.Inject
 import timber.log.Timber
 
@@ -42,28 +36,24 @@ import timber.log.Timber
  */
 class OfflineAreaViewerViewModel
 @Inject
-constructor(
-  offlineAreaRepository: OfflineAreaRepository,
-  @ApplicationContext context: Context,
-  navigator: Navigator
-) : AbstractViewModel() {
+constructor(offlineAreaRepository: OfflineAreaRepository, navigator: Navigator) :
+  AbstractViewModel() {
 
   private val fragmentArgs: @Hot(replays = true) PublishSubject<OfflineAreaViewerFragmentArgs> =
     PublishSubject.create()
   private val removeAreaClicks: @Hot PublishSubject<Nil> = PublishSubject.create()
 
-  private val context: WeakReference<Context>
-
   /** Returns the offline area associated with this view model. */
   @JvmField val offlineArea: LiveData<OfflineArea>
   @JvmField var areaStorageSize: LiveData<Double>
   @JvmField var areaName: LiveData<String>
 
+  /** Progress of tile set downloads, updated at a fixed cadence while downloads are running. */
+  @JvmField val downloadProgress: LiveData<TileSetDownloadProgress>
+
   private var offlineAreaId: String? = null
 
   init {
-    this.context = WeakReference(context)
-
     // We only need to convert this single to a flowable in order to use it with LiveData.
     // It still only contains a single offline area returned by getOfflineArea.
     val offlineAreaItemAsFlowable: @Hot Flowable<OfflineArea> =
@@ -78,10 +68,14 @@ constructor(
     areaStorageSize =
       LiveDataReactiveStreams.fromPublisher(
         offlineAreaItemAsFlowable
-          .flatMap { offlineAreaRepository.getIntersectingDownloadedTileSetsOnceAndStream(it) }
-          .map { tileSets: ImmutableSet<TileSet> -> tileSetsToTotalStorageSize(tileSets) }
+          .flatMap { offlineAreaRepository.getOfflineAreaSizeBytesOnceAndStream(it) }
+          .map { bytes -> bytes.toDouble() / (1024 * 1024) }
       )
     offlineArea = LiveDataReactiveStreams.fromPublisher(offlineAreaItemAsFlowable)
+    downloadProgress =
+      LiveDataReactiveStreams.fromPublisher(
+        offlineAreaRepository.tileSetDownloadProgressOnceAndStream
+      )
     disposeOnClear(
       removeAreaClicks
         .map { offlineArea.getValue()!!.id }
@@ -91,23 +85,6 @@ constructor(
     )
   }
 
-  private fun tileSetsToTotalStorageSize(tileSets: ImmutableSet<TileSet>): Double {
-    return StreamSupport.stream(tileSets)
-      .map { tileSet: TileSet -> tileSetStorageSize(tileSet) }
-      .reduce { x: Double, y: Double -> x + y }
-      .orElse(0.0)
-  }
-
-  private fun tileSetStorageSize(tileSet: TileSet): Double {
-    val context1 = context.get()
-    return if (context1 == null) {
-      0.0
-    } else {
-      val tileFile = File(context1.filesDir, tileSet.path)
-      tileFile.length().toDouble() / (1024 * 1024)
-    }
-  }
-
   /** Gets a single offline area by the id passed to the OfflineAreaViewerFragment's arguments. */
   fun loadOfflineArea(args: OfflineAreaViewerFragmentArgs) {
     fragmentArgs.onNext(args)
@@ -20,6 +20,7 @@ import android.os.Bundle;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
@@ -62,6 +63,15 @@ public class SyncStatusFragment extends AbstractFragment {
     recyclerView.setHasFixedSize(true);
     recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
     recyclerView.setAdapter(syncStatusListAdapter);
+    recyclerView.addOnScrollListener(
+        new RecyclerView.OnScrollListener() {
+          @Override
+          public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+            if (!view.canScrollVertically(1)) {
+              viewModel.onEndOfListReached(syncStatusListAdapter.getItemCount());
+            }
+          }
+        });
 
     viewModel.getMutations().observe(getViewLifecycleOwner(), syncStatusListAdapter::update);
 
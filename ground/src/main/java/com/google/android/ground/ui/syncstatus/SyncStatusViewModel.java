@@ -20,9 +20,11 @@ import static java8.util.stream.Collectors.toList;
 import static java8.util.stream.StreamSupport.stream;
 
 import android.util.Pair;
+import androidx.annotation.Nullable;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.LiveDataReactiveStreams;
 import com.google.android.ground.model.locationofinterest.LocationOfInterest;
+import com.google.android.ground.model.Survey;
 import com.google.android.ground.model.mutation.Mutation;
 import com.google.android.ground.repository.LocationOfInterestRepository;
 import com.google.android.ground.repository.SurveyRepository;
@@ -33,17 +35,21 @@ import com.google.android.ground.ui.offlinebasemap.OfflineAreasFragmentDirection
 import com.google.common.collect.ImmutableList;
 import io.reactivex.Flowable;
 import io.reactivex.Single;
+import io.reactivex.processors.BehaviorProcessor;
 import javax.inject.Inject;
 
 /**
  * View model for the offline area manager fragment. Handles the current list of downloaded areas.
  */
 public class SyncStatusViewModel extends AbstractViewModel {
+  /** Number of mutations loaded each time the end of the list is reached. */
+  private static final int PAGE_SIZE = 50;
 
   private final LiveData<ImmutableList<Pair<LocationOfInterest, Mutation>>> mutations;
   private final Navigator navigator;
   private final SurveyRepository surveyRepository;
   private final LocationOfInterestRepository locationOfInterestRepository;
+  private final BehaviorProcessor<Integer> pageCount = BehaviorProcessor.createDefault(1);
 
   @Inject
   SyncStatusViewModel(
@@ -81,10 +87,51 @@ public class SyncStatusViewModel extends AbstractViewModel {
         .switchMap(
             survey ->
                 survey
-                    .map(surveyRepository::getMutationsOnceAndStream)
+                    .map(s -> getMutationPagesOnceAndStream(s, null, 1))
                     .orElse(Flowable.just(ImmutableList.of())));
   }
 
+  /**
+   * Returns the mutations in the specified page and in each later page requested so far. Each page
+   * starts after the last mutation in the previous one, so that only pages which change are
+   * reloaded, and later pages follow if mutations are pushed into them.
+   */
+  private Flowable<ImmutableList<Mutation>> getMutationPagesOnceAndStream(
+      Survey survey, @Nullable Mutation after, int page) {
+    return surveyRepository
+        .getMutationsOnceAndStream(survey, after, PAGE_SIZE)
+        .switchMap(
+            mutations -> {
+              if (mutations.size() < PAGE_SIZE) {
+                return Flowable.just(mutations);
+              }
+              Mutation last = mutations.get(mutations.size() - 1);
+              return pageCount
+                  .filter(count -> count > page)
+                  .take(1)
+                  .switchMap(__ -> getMutationPagesOnceAndStream(survey, last, page + 1))
+                  .map(
+                      nextPages ->
+                          ImmutableList.<Mutation>builder()
+                              .addAll(mutations)
+                              .addAll(nextPages)
+                              .build())
+                  .startWith(mutations);
+            });
+  }
+
+  /**
+   * Loads the next page of mutations if all of those loaded so far are shown.
+   *
+   * @param itemCount the number of mutations currently shown.
+   */
+  public void onEndOfListReached(int itemCount) {
+    int count = pageCount.getValue();
+    if (itemCount >= count * PAGE_SIZE) {
+      pageCount.onNext(count + 1);
+    }
+  }
+
   public void showOfflineAreaSelector() {
     navigator.navigate(OfflineAreasFragmentDirections.showOfflineAreaSelector());
   }
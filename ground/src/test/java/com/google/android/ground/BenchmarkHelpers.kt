@@ -0,0 +1,55 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground
+
+import java.io.File
+import java.lang.management.ManagementFactory
+
+/** The elapsed time and, where supported by the JVM, bytes allocated while running a benchmark. */
+data class Measurement(val millis: Long, val allocatedBytes: Long)
+
+/**
+ * Runs [block] the specified number of times on the calling thread, returning the total time
+ * elapsed and bytes allocated.
+ */
+fun measure(iterations: Int = 1, block: () -> Unit): Measurement {
+  val threadMxBean = ManagementFactory.getThreadMXBean() as? com.sun.management.ThreadMXBean
+  val threadId = Thread.currentThread().id
+  val startBytes = threadMxBean?.getThreadAllocatedBytes(threadId) ?: 0
+  val start = System.nanoTime()
+  repeat(iterations) { block() }
+  val millis = (System.nanoTime() - start) / 1_000_000
+  val bytes = (threadMxBean?.getThreadAllocatedBytes(threadId) ?: 0) - startBytes
+  return Measurement(millis, bytes)
+}
+
+/** Returns the number of items processed per second, given the time taken to process them. */
+fun perSecond(count: Int, millis: Long): Long = count * 1000L / millis.coerceAtLeast(1)
+
+/**
+ * Writes the results of the named benchmark to the directory specified by the
+ * `benchmark.resultsDir` system property, which is set when running unit tests with
+ * `-Pbenchmark`. Results are discarded otherwise.
+ */
+fun reportBenchmark(name: String, results: Map<String, Any>) {
+  val resultsDir = System.getProperty(BENCHMARK_RESULTS_DIR_PROPERTY) ?: return
+  File(resultsDir)
+    .apply { mkdirs() }
+    .resolve("$name.txt")
+    .writeText(results.entries.joinToString("\n", postfix = "\n") { "${it.key}: ${it.value}" })
+}
+
+private const val BENCHMARK_RESULTS_DIR_PROPERTY = "benchmark.resultsDir"
@@ -19,6 +19,7 @@ import android.content.Context
 import androidx.room.Room
 import com.google.android.ground.persistence.local.LocalDatabaseModule
 import com.google.android.ground.persistence.local.room.LocalDatabase
+import com.google.android.ground.persistence.local.room.LocalDatabaseCallback
 import dagger.Module
 import dagger.Provides
 import dagger.hilt.android.qualifiers.ApplicationContext
@@ -34,6 +35,7 @@ object TestLocalDatabaseModule {
   fun localDatabaseProvider(@ApplicationContext context: Context): LocalDatabase {
     return Room.inMemoryDatabaseBuilder(context, LocalDatabase::class.java)
       .allowMainThreadQueries()
+      .addCallback(LocalDatabaseCallback)
       .build()
   }
 }
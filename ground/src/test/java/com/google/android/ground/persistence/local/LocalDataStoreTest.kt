@@ -28,15 +28,20 @@ import com.google.android.ground.model.geometry.Point
 import com.google.android.ground.model.geometry.Polygon
 import com.google.android.ground.model.job.Job
 import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.model.mutation.Mutation.SyncStatus
 import com.google.android.ground.model.mutation.SubmissionMutation
 import com.google.android.ground.model.submission.Submission
+import com.google.android.ground.model.submission.SubmissionPage
 import com.google.android.ground.model.submission.TaskDataDelta
 import com.google.android.ground.model.submission.TaskDataMap
 import com.google.android.ground.model.submission.TextTaskData
+import com.google.android.ground.model.task.MultipleChoice
+import com.google.android.ground.model.task.Option
 import com.google.android.ground.model.task.Task
+import com.google.android.ground.persistence.local.room.LocalModelCache
 import com.google.android.ground.persistence.local.room.converter.formatVertices
 import com.google.android.ground.persistence.local.room.converter.parseVertices
 import com.google.android.ground.persistence.local.room.dao.LocationOfInterestDao
@@ -51,6 +56,7 @@ import com.google.common.truth.Truth.assertThat
 import dagger.hilt.android.testing.HiltAndroidTest
 import java.util.*
 import javax.inject.Inject
+import kotlinx.collections.immutable.toPersistentList
 import org.hamcrest.MatcherAssert
 import org.hamcrest.Matchers
 import org.junit.Test
@@ -68,6 +74,8 @@ class LocalDataStoreTest : BaseHiltTest() {
 
   @Inject lateinit var locationOfInterestDao: LocationOfInterestDao
 
+  @Inject lateinit var modelCache: LocalModelCache
+
   @Test
   fun testInsertAndGetSurveys() {
     localDataStore.insertOrUpdateSurvey(TEST_SURVEY).test().assertComplete()
@@ -112,6 +120,16 @@ class LocalDataStoreTest : BaseHiltTest() {
     }
   }
 
+  @Test
+  fun testInsertOrUpdateSurvey_replacesTasksAndOptions() {
+    localDataStore.insertOrUpdateSurvey(createMultipleChoiceSurvey("a", 3)).blockingAwait()
+    val updatedSurvey = createMultipleChoiceSurvey("b", 2)
+
+    localDataStore.insertOrUpdateSurvey(updatedSurvey).blockingAwait()
+
+    localDataStore.getSurveyById(updatedSurvey.id).test().assertValue(updatedSurvey)
+  }
+
   @Test
   fun testInsertAndGetUser() {
     localDataStore.insertOrUpdateUser(TEST_USER).test().assertComplete()
@@ -152,6 +170,74 @@ class LocalDataStoreTest : BaseHiltTest() {
     }
   }
 
+  @Test
+  fun testGetSurveyById_cachesUntilSurveyChanges() {
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+
+    localDataStore.getSurveyById("survey id").test().assertValue(TEST_SURVEY)
+    localDataStore.getSurveyById("survey id").test().assertValue(TEST_SURVEY)
+    assertThat(modelCache.surveyHitCount).isEqualTo(1)
+
+    val updatedSurvey = TEST_SURVEY.copy(title = "updated title")
+    localDataStore.insertOrUpdateSurvey(updatedSurvey).blockingAwait()
+    localDataStore.getSurveyById("survey id").test().assertValue(updatedSurvey)
+    assertThat(modelCache.surveyHitCount).isEqualTo(1)
+  }
+
+  @Test
+  fun testGetLoi_cachesUntilLoiChanges() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+
+    val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+    localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").test().assertValue(loi)
+    assertThat(modelCache.locationOfInterestHitCount).isEqualTo(1)
+
+    val update =
+      createTestLocationOfInterestMutation(TEST_POINT_2)
+        .copy(id = null, type = Mutation.Type.UPDATE)
+    localDataStore.applyAndEnqueue(update).blockingAwait()
+    localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").test().assertValue {
+      it.geometry == TEST_POINT_2
+    }
+    assertThat(modelCache.locationOfInterestHitCount).isEqualTo(1)
+  }
+
+  @Test
+  fun testGetLoi_reinsertedLoiNotServedFromCache() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+
+    localDataStore
+      .mergeLocationOfInterestChanges(
+        LocationOfInterestChangeSet(removedIds = ImmutableSet.of("loi id"))
+      )
+      .blockingAwait()
+    localDataStore.mergeLocationOfInterest(loi.copy(geometry = TEST_POINT_2)).blockingAwait()
+
+    localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").test().assertValue {
+      it.geometry == TEST_POINT_2
+    }
+    assertThat(modelCache.locationOfInterestHitCount).isEqualTo(0)
+  }
+
+  @Test
+  fun testGetLoi_cachedPerSurvey() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+
+    localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+    localDataStore
+      .getLocationOfInterest(TEST_SURVEY.copy(id = "other survey id"), "loi id")
+      .blockingGet()
+
+    assertThat(modelCache.locationOfInterestHitCount).isEqualTo(0)
+  }
+
   @Test
   fun testGetLoisOnceAndStream() {
     localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
@@ -163,6 +249,125 @@ class LocalDataStoreTest : BaseHiltTest() {
     subscriber.assertValueSet(ImmutableSet.of(ImmutableSet.of(), ImmutableSet.of(loi)))
   }
 
+  @Test
+  fun testGetLoisWithinBoundsOnceAndStream() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_POLYGON_LOI_MUTATION).blockingAwait()
+    val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+    val intersectingBounds = LatLngBounds(LatLng(49.87, 8.65), LatLng(49.88, 8.66))
+    val disjointBounds = LatLngBounds(LatLng(49.86, 8.64), LatLng(49.865, 8.645))
+
+    localDataStore
+      .getLocationsOfInterestWithinBoundsOnceAndStream(TEST_SURVEY, intersectingBounds)
+      .test()
+      .assertValue(ImmutableSet.of(loi))
+    localDataStore
+      .getLocationsOfInterestWithinBoundsOnceAndStream(TEST_SURVEY, disjointBounds)
+      .test()
+      .assertValue(ImmutableSet.of())
+    localDataStore
+      .getLocationsOfInterestWithinBounds(TEST_SURVEY, intersectingBounds)
+      .test()
+      .assertValue(ImmutableSet.of(loi))
+    localDataStore
+      .getLocationsOfInterestWithinBounds(TEST_SURVEY, disjointBounds)
+      .test()
+      .assertValue(ImmutableSet.of())
+  }
+
+  @Test
+  fun testGetLoiChangesOnceAndStream() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    val subscriber =
+      localDataStore.getLocationOfInterestChangesOnceAndStream(TEST_SURVEY, null).test()
+
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+    val update =
+      createTestLocationOfInterestMutation(TEST_POINT_2)
+        .copy(id = null, type = Mutation.Type.UPDATE)
+    localDataStore.applyAndEnqueue(update).blockingAwait()
+    val updatedLoi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+    localDataStore
+      .applyAndEnqueue(TEST_LOI_MUTATION.copy(id = null, type = Mutation.Type.DELETE))
+      .blockingAwait()
+
+    subscriber.assertValues(
+      LocationOfInterestChangeSet(),
+      LocationOfInterestChangeSet(added = ImmutableList.of(loi)),
+      LocationOfInterestChangeSet(modified = ImmutableList.of(updatedLoi)),
+      LocationOfInterestChangeSet(removedIds = ImmutableSet.of("loi id"))
+    )
+  }
+
+  @Test
+  fun testGetMutationsOnceAndStream() {
+    val loiMutation =
+      TEST_LOI_MUTATION.copy(clientTimestamp = Date(1000), lastModifiedTimestamp = Date(1000))
+    val submissionMutation =
+      TEST_SUBMISSION_MUTATION.copy(
+        clientTimestamp = Date(2000),
+        lastModifiedTimestamp = Date(2000)
+      )
+    val otherSurveyMutation =
+      TEST_LOI_MUTATION.copy(
+        id = 2L,
+        surveyId = "other survey id",
+        locationOfInterestId = "other loi id",
+        clientTimestamp = Date(3000),
+        lastModifiedTimestamp = Date(3000)
+      )
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(loiMutation).blockingAwait()
+    localDataStore.applyAndEnqueue(submissionMutation).blockingAwait()
+    localDataStore.applyAndEnqueue(otherSurveyMutation).blockingAwait()
+
+    localDataStore
+      .getMutationsOnceAndStream(TEST_SURVEY, null, 10)
+      .test()
+      .assertValue(ImmutableList.of(submissionMutation, loiMutation))
+    localDataStore
+      .getMutationsOnceAndStream(TEST_SURVEY, null, 1)
+      .test()
+      .assertValue(ImmutableList.of(submissionMutation))
+  }
+
+  @Test
+  fun testGetMutationsOnceAndStream_afterMutation() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    // Mutations with the same client timestamp are ordered by table, then by id.
+    localDataStore
+      .applyAndEnqueue(
+        TEST_LOI_MUTATION.copy(clientTimestamp = Date(1000), lastModifiedTimestamp = Date(1000))
+      )
+      .blockingAwait()
+    listOf("submission a", "submission b").forEach {
+      localDataStore
+        .applyAndEnqueue(
+          TEST_SUBMISSION_MUTATION.copy(
+            id = null,
+            submissionId = it,
+            clientTimestamp = Date(1000),
+            lastModifiedTimestamp = Date(1000)
+          )
+        )
+        .blockingAwait()
+    }
+    val all = localDataStore.getMutationsOnceAndStream(TEST_SURVEY, null, 10).blockingFirst()
+
+    val firstPage = localDataStore.getMutationsOnceAndStream(TEST_SURVEY, null, 2).blockingFirst()
+    val secondPage =
+      localDataStore.getMutationsOnceAndStream(TEST_SURVEY, firstPage.last(), 2).blockingFirst()
+
+    assertThat(all).hasSize(3)
+    assertThat(firstPage + secondPage).containsExactlyElementsIn(all).inOrder()
+    assertThat(all.last()).isInstanceOf(LocationOfInterestMutation::class.java)
+  }
+
   @Test
   fun testUpdateMutations() {
     localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
@@ -189,6 +394,87 @@ class LocalDataStoreTest : BaseHiltTest() {
       .assertValue(ImmutableList.of(mutation))
   }
 
+  @Test
+  fun testGetPendingMutations_includesAllLocationsOfInterest() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    val otherMutation = TEST_LOI_MUTATION.copy(id = 2L, locationOfInterestId = "other loi id")
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    localDataStore.applyAndEnqueue(otherMutation).blockingAwait()
+    localDataStore.finalizePendingMutations(ImmutableList.of(otherMutation)).blockingAwait()
+    val polygonMutation =
+      TEST_POLYGON_LOI_MUTATION.copy(id = 3L, locationOfInterestId = "third loi id")
+    localDataStore.applyAndEnqueue(polygonMutation).blockingAwait()
+
+    localDataStore.getPendingMutations().test().assertValue {
+      it.map { mutation -> mutation.id }.toSet() == setOf(1L, 3L)
+    }
+  }
+
+  @Test
+  fun testGetPendingMutations_excludesMutationsNotYetDue() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    val nextAttemptAt = Date(System.currentTimeMillis() + 60_000)
+    val mutation = TEST_LOI_MUTATION.copy(retryCount = 1, nextAttemptAt = nextAttemptAt)
+    localDataStore.updateMutations(ImmutableList.of(mutation)).blockingAwait()
+
+    localDataStore.getPendingMutations().test().assertValue { it.isEmpty() }
+    localDataStore.getNextPendingMutationAttemptTime().test().assertValue(nextAttemptAt.time)
+  }
+
+  @Test
+  fun testGetPendingMutations_holdsBackLaterMutationsOfLoiAwaitingRetry() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    val update =
+      TEST_LOI_MUTATION.copy(
+        id = 2L,
+        type = Mutation.Type.UPDATE,
+        clientTimestamp = Date(TEST_LOI_MUTATION.clientTimestamp.time + 1),
+        lastModifiedTimestamp = Date(TEST_LOI_MUTATION.clientTimestamp.time + 1)
+      )
+    localDataStore.applyAndEnqueue(update).blockingAwait()
+    val otherMutation = TEST_LOI_MUTATION.copy(id = 3L, locationOfInterestId = "other loi id")
+    localDataStore.applyAndEnqueue(otherMutation).blockingAwait()
+    val nextAttemptAt = Date(System.currentTimeMillis() + 60_000)
+    localDataStore
+      .updateMutations(
+        ImmutableList.of(TEST_LOI_MUTATION.copy(retryCount = 1, nextAttemptAt = nextAttemptAt))
+      )
+      .blockingAwait()
+
+    localDataStore.getPendingMutations().test().assertValue {
+      it.map { mutation -> mutation.id } == listOf(3L)
+    }
+  }
+
+  @Test
+  fun testGetPendingMutations_holdsBackLaterMutationsOfLoiWithFailedMutation() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    val update =
+      TEST_LOI_MUTATION.copy(
+        id = 2L,
+        type = Mutation.Type.UPDATE,
+        clientTimestamp = Date(TEST_LOI_MUTATION.clientTimestamp.time + 1),
+        lastModifiedTimestamp = Date(TEST_LOI_MUTATION.clientTimestamp.time + 1)
+      )
+    localDataStore.applyAndEnqueue(update).blockingAwait()
+    val otherMutation = TEST_LOI_MUTATION.copy(id = 3L, locationOfInterestId = "other loi id")
+    localDataStore.applyAndEnqueue(otherMutation).blockingAwait()
+    localDataStore
+      .updateMutations(ImmutableList.of(TEST_LOI_MUTATION.copy(syncStatus = SyncStatus.FAILED)))
+      .blockingAwait()
+
+    localDataStore.getPendingMutations().test().assertValue {
+      it.map { mutation -> mutation.id } == listOf(3L)
+    }
+  }
+
   @Test
   fun testFinalizePendingMutation() {
     localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
@@ -201,6 +487,32 @@ class LocalDataStoreTest : BaseHiltTest() {
     localDataStore.getPendingMutations("loi id").test().assertValue { it.isEmpty() }
   }
 
+  @Test
+  fun testCompactMutations() {
+    val loiMutation =
+      TEST_LOI_MUTATION.copy(clientTimestamp = Date(1000), lastModifiedTimestamp = Date(1000))
+    val submissionMutation =
+      TEST_SUBMISSION_MUTATION.copy(
+        clientTimestamp = Date(2000),
+        lastModifiedTimestamp = Date(2000)
+      )
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(loiMutation).blockingAwait()
+    localDataStore.applyAndEnqueue(submissionMutation).blockingAwait()
+    localDataStore.finalizePendingMutations(ImmutableList.of(loiMutation)).blockingAwait()
+
+    localDataStore.compactMutations(retentionMillis = 0, maxCount = 100).test().assertValue {
+      it.rowsRemoved == 1 && it.bytesReclaimed >= 0
+    }
+
+    // Pending mutations are retained regardless of age.
+    localDataStore
+      .getMutationsOnceAndStream(TEST_SURVEY, null, 10)
+      .test()
+      .assertValue(ImmutableList.of(submissionMutation))
+  }
+
   @Test
   fun testMergeLoi() {
     localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
@@ -227,6 +539,28 @@ class LocalDataStoreTest : BaseHiltTest() {
     }
   }
 
+  @Test
+  fun testMergeLois_updatesInPlace() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_SUBMISSION_MUTATION).blockingAwait()
+    val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+    val newLoi = loi.copy(id = "new loi id")
+
+    localDataStore
+      .mergeLocationsOfInterest(ImmutableList.of(loi.copy(geometry = TEST_POINT_2), newLoi))
+      .test()
+      .assertComplete()
+
+    localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").test().assertValue {
+      it.geometry == TEST_POINT_2
+    }
+    localDataStore.getLocationOfInterest(TEST_SURVEY, "new loi id").test().assertValue(newLoi)
+    // Updating the LOI must not cascade to its submissions.
+    localDataStore.getSubmission(loi, "submission id").test().assertValueCount(1)
+  }
+
   @Test
   fun testApplyAndEnqueue_submissionMutation() {
     localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
@@ -262,12 +596,36 @@ class LocalDataStoreTest : BaseHiltTest() {
     submission = localDataStore.getSubmission(loi, "submission id").blockingGet()
     assertEquivalent(mutation, submission)
 
-    // also test that getSubmissions returns the same submission as well
-    val submissions = localDataStore.getSubmissions(loi, "job id").blockingGet()
+    // also test that getSubmissionsPage returns the same submission as well
+    val submissions =
+      localDataStore.getSubmissionsPage(loi, "job id", null, 10).blockingGet().submissions
     assertThat(submissions).hasSize(1)
     assertEquivalent(mutation, submissions[0])
   }
 
+  @Test
+  fun testGetSubmissionsPage() {
+    localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(TEST_SURVEY).blockingAwait()
+    localDataStore.applyAndEnqueue(TEST_LOI_MUTATION).blockingAwait()
+    listOf("submission a", "submission b", "submission c").forEach {
+      localDataStore
+        .applyAndEnqueue(TEST_SUBMISSION_MUTATION.copy(id = null, submissionId = it))
+        .blockingAwait()
+    }
+    val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
+
+    val firstPage = localDataStore.getSubmissionsPage(loi, "job id", null, 2).blockingGet()
+    val secondPage =
+      localDataStore.getSubmissionsPage(loi, "job id", firstPage.next, 2).blockingGet()
+
+    assertThat(firstPage.submissions.map { it.id })
+      .containsExactly("submission c", "submission b")
+      .inOrder()
+    assertThat(secondPage.submissions.map { it.id }).containsExactly("submission a")
+    assertThat(secondPage.next).isNull()
+  }
+
   @Test
   fun testMergeSubmission() {
     localDataStore.insertOrUpdateUser(TEST_USER).blockingAwait()
@@ -303,9 +661,12 @@ class LocalDataStoreTest : BaseHiltTest() {
       submissionEntity.state == EntityState.DELETED
     }
 
-    // Verify that the local submission doesn't end up in getSubmissions().
+    // Verify that the local submission doesn't end up in getSubmissionsPage().
     val loi = localDataStore.getLocationOfInterest(TEST_SURVEY, "loi id").blockingGet()
-    localDataStore.getSubmissions(loi, "task id").test().assertValue(ImmutableList.of())
+    localDataStore
+      .getSubmissionsPage(loi, "job id", null, 10)
+      .test()
+      .assertValue(SubmissionPage(ImmutableList.of(), null))
 
     // After successful remote sync, delete submission is called by LocalMutationSyncWorker.
     localDataStore.deleteSubmission("submission id").blockingAwait()
@@ -400,7 +761,7 @@ class LocalDataStoreTest : BaseHiltTest() {
 
   @Test
   fun testParseVertices_emptyString() {
-    assertThat(parseVertices("")).isEqualTo(ImmutableList.of<Any>())
+    assertThat(parseVertices(ByteArray(0))).isEqualTo(ImmutableList.of<Any>())
   }
 
   @Test
@@ -455,6 +816,7 @@ class LocalDataStoreTest : BaseHiltTest() {
         .add(Point(Coordinate(49.863051, 8.647306)))
         .add(Point(Coordinate(49.865374, 8.646920)))
         .build()
+    private val TEST_MUTATION_TIMESTAMP = Date()
     private val TEST_LOI_MUTATION = createTestLocationOfInterestMutation(TEST_POINT)
     private val TEST_POLYGON_LOI_MUTATION = createTestAreaOfInterestMutation(TEST_POLYGON_1)
     private val TEST_SUBMISSION_MUTATION =
@@ -470,7 +832,9 @@ class LocalDataStoreTest : BaseHiltTest() {
         syncStatus = SyncStatus.PENDING,
         surveyId = "survey id",
         locationOfInterestId = "loi id",
-        userId = "user id"
+        userId = "user id",
+        clientTimestamp = TEST_MUTATION_TIMESTAMP,
+        lastModifiedTimestamp = TEST_MUTATION_TIMESTAMP
       )
     private val TEST_PENDING_TILE_SOURCE =
       TileSet("some_url 1", "id_1", "some_path 1", TileSet.State.PENDING, 1)
@@ -496,7 +860,8 @@ class LocalDataStoreTest : BaseHiltTest() {
         syncStatus = SyncStatus.PENDING,
         userId = "user id",
         surveyId = "survey id",
-        clientTimestamp = Date()
+        clientTimestamp = TEST_MUTATION_TIMESTAMP,
+        lastModifiedTimestamp = TEST_MUTATION_TIMESTAMP
       )
 
     private fun createTestAreaOfInterestMutation(
@@ -511,7 +876,8 @@ class LocalDataStoreTest : BaseHiltTest() {
         syncStatus = SyncStatus.PENDING,
         userId = "user id",
         surveyId = "survey id",
-        clientTimestamp = Date()
+        clientTimestamp = TEST_MUTATION_TIMESTAMP,
+        lastModifiedTimestamp = TEST_MUTATION_TIMESTAMP
       )
 
     private fun assertEquivalent(mutation: SubmissionMutation, submission: Submission) {
@@ -526,5 +892,27 @@ class LocalDataStoreTest : BaseHiltTest() {
         Matchers.samePropertyValuesAs(submission.responses)
       )
     }
+
+    /** Returns a survey with [count] multiple choice tasks, each with [count] options. */
+    private fun createMultipleChoiceSurvey(prefix: String, count: Int): Survey {
+      val tasks =
+        (1..count).map { i ->
+          Task(
+            "$prefix task $i",
+            i,
+            Task.Type.MULTIPLE_CHOICE,
+            "$prefix task $i label",
+            false,
+            MultipleChoice(
+              (1..count)
+                .map { Option("$prefix task $i option $it", "code $it", "label $it") }
+                .toPersistentList(),
+              MultipleChoice.Cardinality.SELECT_ONE
+            )
+          )
+        }
+      val job = Job("job id", "job name", ImmutableMap.copyOf(tasks.associateBy { it.id }))
+      return Survey("survey id", "survey", "description", ImmutableMap.of(job.id, job))
+    }
   }
 }
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local
+
+import com.google.android.ground.BaseHiltTest
+import com.google.android.ground.measure
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.perSecond
+import com.google.android.ground.persistence.local.room.converter.toLocalDataStoreObject
+import com.google.android.ground.persistence.local.room.dao.LocationOfInterestDao
+import com.google.android.ground.persistence.local.room.entity.LocationOfInterestEntity
+import com.google.android.ground.reportBenchmark
+import com.google.common.collect.ImmutableList
+import com.google.common.truth.Truth.assertThat
+import com.sharedtest.FakeData
+import dagger.hilt.android.testing.HiltAndroidTest
+import io.reactivex.Completable
+import io.reactivex.Observable
+import javax.inject.Inject
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Compares the throughput of merging a large number of LOIs using the batched upsert in
+ * [LocalDataStore.mergeLocationsOfInterest] and the single entity upsert in
+ * [LocalDataStore.mergeLocationOfInterest] against the previous UPDATE-then-INSERT path.
+ */
+@HiltAndroidTest
+@RunWith(RobolectricTestRunner::class)
+class LocationOfInterestMergeBenchmarkTest : BaseHiltTest() {
+  @Inject lateinit var localDataStore: LocalDataStore
+
+  @Inject lateinit var locationOfInterestDao: LocationOfInterestDao
+
+  @Test
+  fun benchmarkMergeLocationsOfInterest() {
+    // Warm up all paths so that statement compilation isn't attributed to any of them.
+    val warmUp = createLocationsOfInterest("warm up", 10)
+    mergeUpdateThenInsert(warmUp).blockingAwait()
+    mergeEach(warmUp).blockingAwait()
+    localDataStore.mergeLocationsOfInterest(warmUp).blockingAwait()
+
+    val legacy = createLocationsOfInterest("legacy", LOI_COUNT)
+    val single = createLocationsOfInterest("single", LOI_COUNT)
+    val batched = createLocationsOfInterest("batched", LOI_COUNT)
+
+    // Inserts new rows, then merges over the existing rows.
+    report("updateThenInsert", legacy) { mergeUpdateThenInsert(it).blockingAwait() }
+    report("singleUpsert", single) { mergeEach(it).blockingAwait() }
+    report("batchedUpsert", batched) {
+      localDataStore.mergeLocationsOfInterest(it).blockingAwait()
+    }
+
+    assertThat(locationOfInterestDao.findByIds(batched.map { it.id }).blockingGet())
+      .hasSize(LOI_COUNT)
+  }
+
+  private fun report(
+    label: String,
+    locationsOfInterest: ImmutableList<LocationOfInterest>,
+    merge: (ImmutableList<LocationOfInterest>) -> Unit
+  ) {
+    val insert = measure { merge(locationsOfInterest) }
+    val update = measure { merge(locationsOfInterest) }
+    val count = locationsOfInterest.size
+    reportBenchmark(
+      "LocalDataStore.mergeLocationsOfInterest.$label",
+      mapOf(
+        "insert rows/s" to perSecond(count, insert.millis),
+        "update rows/s" to perSecond(count, update.millis)
+      )
+    )
+  }
+
+  private fun mergeEach(locationsOfInterest: List<LocationOfInterest>): Completable =
+    Observable.fromIterable(locationsOfInterest).concatMapCompletable {
+      localDataStore.mergeLocationOfInterest(it)
+    }
+
+  /** Merges each LOI with an UPDATE followed by an INSERT if no rows matched, as done before. */
+  private fun mergeUpdateThenInsert(locationsOfInterest: List<LocationOfInterest>): Completable =
+    Observable.fromIterable(locationsOfInterest.map { it.toLocalDataStoreObject() })
+      .concatMapCompletable { entity: LocationOfInterestEntity ->
+        locationOfInterestDao
+          .update(entity)
+          .filter { it == 0 }
+          .flatMapCompletable { locationOfInterestDao.insert(entity) }
+      }
+
+  companion object {
+    private const val LOI_COUNT = 10_000
+
+    private fun createLocationsOfInterest(
+      prefix: String,
+      count: Int
+    ): ImmutableList<LocationOfInterest> =
+      ImmutableList.copyOf(
+        (1..count).map { FakeData.LOCATION_OF_INTEREST.copy(id = "$prefix loi $it") }
+      )
+  }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local
+
+import com.google.android.ground.BaseHiltTest
+import com.google.android.ground.measure
+import com.google.android.ground.model.Survey
+import com.google.android.ground.model.job.Job
+import com.google.android.ground.model.task.MultipleChoice
+import com.google.android.ground.model.task.Option
+import com.google.android.ground.model.task.Task
+import com.google.android.ground.persistence.local.room.converter.toLocalDataStoreObject
+import com.google.android.ground.persistence.local.room.dao.*
+import com.google.android.ground.reportBenchmark
+import com.google.common.collect.ImmutableMap
+import dagger.hilt.android.testing.HiltAndroidTest
+import io.reactivex.Completable
+import io.reactivex.Observable
+import javax.inject.Inject
+import kotlinx.collections.immutable.toPersistentList
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Compares the time taken to import a large survey definition using the single transaction bulk
+ * import in [LocalDataStore.insertOrUpdateSurvey] against the previous per-entity upsert path.
+ */
+@HiltAndroidTest
+@RunWith(RobolectricTestRunner::class)
+class SurveyImportBenchmarkTest : BaseHiltTest() {
+  @Inject lateinit var localDataStore: LocalDataStore
+
+  @Inject lateinit var surveyDao: SurveyDao
+
+  @Inject lateinit var jobDao: JobDao
+
+  @Inject lateinit var taskDao: TaskDao
+
+  @Inject lateinit var multipleChoiceDao: MultipleChoiceDao
+
+  @Inject lateinit var optionDao: OptionDao
+
+  @Test
+  fun benchmarkInsertOrUpdateSurvey() {
+    // Warm up both paths so that statement compilation isn't attributed to either of them.
+    insertPerEntity(LARGE_SURVEY).blockingAwait()
+    localDataStore.insertOrUpdateSurvey(LARGE_SURVEY).blockingAwait()
+
+    val perEntity = measure { insertPerEntity(LARGE_SURVEY).blockingAwait() }
+    val bulk = measure { localDataStore.insertOrUpdateSurvey(LARGE_SURVEY).blockingAwait() }
+
+    reportBenchmark(
+      "LocalDataStore.insertOrUpdateSurvey",
+      mapOf("per-entity ms" to perEntity.millis, "bulk ms" to bulk.millis)
+    )
+    localDataStore.getSurveyById(LARGE_SURVEY.id).test().assertValue(LARGE_SURVEY)
+  }
+
+  /** Writes the survey graph issuing one upsert per entity, as done before bulk import. */
+  private fun insertPerEntity(survey: Survey): Completable =
+    surveyDao
+      .insertOrUpdate(survey.toLocalDataStoreObject())
+      .andThen(Completable.fromAction { jobDao.deleteBySurveyId(survey.id) })
+      .andThen(
+        Observable.fromIterable(survey.jobs).flatMapCompletable { job ->
+          jobDao
+            .insertOrUpdate(job.toLocalDataStoreObject(survey.id))
+            .andThen(
+              Observable.fromIterable(job.tasks.values).flatMapCompletable {
+                insertPerEntity(job, it)
+              }
+            )
+        }
+      )
+
+  private fun insertPerEntity(job: Job, task: Task): Completable =
+    taskDao
+      .insertOrUpdate(task.toLocalDataStoreObject(job.id))
+      .andThen(
+        Observable.fromIterable(listOfNotNull(task.multipleChoice)).flatMapCompletable {
+          multipleChoice ->
+          multipleChoiceDao
+            .insertOrUpdate(multipleChoice.toLocalDataStoreObject(task.id))
+            .andThen(
+              Observable.fromIterable(multipleChoice.options).flatMapCompletable {
+                optionDao.insertOrUpdate(it.toLocalDataStoreObject(task.id))
+              }
+            )
+        }
+      )
+
+  companion object {
+    private const val JOB_COUNT = 10
+    private const val TASKS_PER_JOB = 30
+    private const val OPTIONS_PER_TASK = 10
+
+    private val LARGE_SURVEY =
+      Survey(
+        "survey id",
+        "survey title",
+        "survey description",
+        ImmutableMap.copyOf((1..JOB_COUNT).map { createJob("job $it") }.associateBy { it.id }),
+        acl = ImmutableMap.of("user@gmail.com", "data_collector")
+      )
+
+    private fun createJob(jobId: String): Job =
+      Job(
+        jobId,
+        "$jobId name",
+        ImmutableMap.copyOf(
+          (1..TASKS_PER_JOB).map { createTask("$jobId task $it", it) }.associateBy { it.id }
+        )
+      )
+
+    private fun createTask(taskId: String, index: Int): Task =
+      Task(
+        taskId,
+        index,
+        Task.Type.MULTIPLE_CHOICE,
+        "$taskId label",
+        false,
+        MultipleChoice(
+          (1..OPTIONS_PER_TASK)
+            .map { Option("$taskId option $it", "code $it", "label $it") }
+            .toPersistentList(),
+          MultipleChoice.Cardinality.SELECT_ONE
+        )
+      )
+  }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import android.content.Context
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.persistence.local.room.converter.PackedCoordinatesConverter
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Runs [GeometryBlobMigration] on a database created with the version 96 definitions of the
+ * migrated tables. Room's MigrationTestHelper isn't used since it requires exported schemas.
+ */
+@RunWith(RobolectricTestRunner::class)
+class GeometryBlobMigrationTest {
+  private var database: SupportSQLiteDatabase? = null
+
+  @After
+  fun tearDown() {
+    database?.close()
+    ApplicationProvider.getApplicationContext<Context>().deleteDatabase(DB_NAME)
+  }
+
+  @Test
+  fun testMigrate_encodesGeometries() {
+    openDatabase(96).useWritable { db ->
+      db.execSQL(
+        "INSERT INTO location_of_interest VALUES " +
+          "('polygon', 'survey', 'POLYGON', NULL, NULL, ?, ?), " +
+          "('point', 'survey', 'POINT', 1.0, 2.0, NULL, NULL), " +
+          "('unreadable', 'survey', 'POLYGON', NULL, NULL, 'not json', NULL)",
+        arrayOf(SHELL_JSON, HOLES_JSON)
+      )
+      db.execSQL(
+        "INSERT INTO location_of_interest_mutation VALUES (1, 'polygon', 'POLYGON', ?, NULL)",
+        arrayOf(SHELL_JSON)
+      )
+    }
+
+    val db = openDatabase(97).writableDatabase.also { database = it }
+
+    assertThat(queryGeometry(db, "location_of_interest", "id = 'polygon'"))
+      .isEqualTo(Pair(listOf(SHELL), listOf(SHELL.reversed())))
+    assertThat(queryGeometry(db, "location_of_interest", "id = 'point'"))
+      .isEqualTo(Pair(null, null))
+    assertThat(queryGeometry(db, "location_of_interest", "id = 'unreadable'"))
+      .isEqualTo(Pair(null, null))
+    assertThat(queryGeometry(db, "location_of_interest_mutation", "id = 1"))
+      .isEqualTo(Pair(listOf(SHELL), null))
+    db.query("PRAGMA table_info(location_of_interest)").use { cursor ->
+      // Maps column names to their declared types.
+      val types =
+        generateSequence {
+            if (cursor.moveToNext()) cursor.getString(1) to cursor.getString(2) else null
+          }
+          .toMap()
+      assertThat(types).containsAtLeast("vertices", "BLOB", "holes", "BLOB")
+    }
+    // Indexes are recreated along with their tables.
+    db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL").use {
+      assertThat(generateSequence { if (it.moveToNext()) it.getString(0) else null }.toList())
+        .containsExactly(
+          "index_location_of_interest_survey_id",
+          "index_location_of_interest_mutation_location_of_interest_id"
+        )
+    }
+  }
+
+  /** Opens the test database, creating it at version 96 or migrating it to version 97. */
+  private fun openDatabase(version: Int): SupportSQLiteOpenHelper =
+    FrameworkSQLiteOpenHelperFactory()
+      .create(
+        SupportSQLiteOpenHelper.Configuration.builder(ApplicationProvider.getApplicationContext())
+          .name(DB_NAME)
+          .callback(
+            object : SupportSQLiteOpenHelper.Callback(version) {
+              override fun onCreate(db: SupportSQLiteDatabase) {
+                VERSION_96_SCHEMA.forEach { db.execSQL(it) }
+              }
+
+              override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) {
+                GeometryBlobMigration.migrate(db)
+              }
+            }
+          )
+          .build()
+      )
+
+  private fun SupportSQLiteOpenHelper.useWritable(block: (SupportSQLiteDatabase) -> Unit) =
+    try {
+      block(writableDatabase)
+    } finally {
+      close()
+    }
+
+  private fun queryGeometry(
+    db: SupportSQLiteDatabase,
+    table: String,
+    where: String
+  ): Pair<List<List<Coordinate>>?, List<List<Coordinate>>?> =
+    db.query("SELECT vertices, holes FROM $table WHERE $where").use { cursor ->
+      cursor.moveToFirst()
+      Pair(
+        cursor.getBlob(0)?.let { PackedCoordinatesConverter.fromByteArray(it) },
+        cursor.getBlob(1)?.let { PackedCoordinatesConverter.fromByteArray(it) }
+      )
+    }
+
+  companion object {
+    private const val DB_NAME = "geometry-blob-migration-test"
+
+    private val SHELL =
+      listOf(Coordinate(0.0, 0.0), Coordinate(0.0, 1.0), Coordinate(1.0, 1.0), Coordinate(0.0, 0.0))
+    private val SHELL_JSON = toJson(SHELL)
+    private val HOLES_JSON = "[${toJson(SHELL.reversed())}]"
+
+    /** The version 96 definitions of the migrated tables, abridged to the relevant columns. */
+    private val VERSION_96_SCHEMA =
+      listOf(
+        "CREATE TABLE IF NOT EXISTS `location_of_interest` (`id` TEXT NOT NULL, " +
+          "`survey_id` TEXT NOT NULL, `geometryType` TEXT, `x` REAL, `y` REAL, " +
+          "`vertices` TEXT, `holes` TEXT, PRIMARY KEY(`id`))",
+        "CREATE INDEX IF NOT EXISTS `index_location_of_interest_survey_id` " +
+          "ON `location_of_interest` (`survey_id`)",
+        "CREATE TABLE IF NOT EXISTS `location_of_interest_mutation` (" +
+          "`id` INTEGER PRIMARY KEY AUTOINCREMENT, `location_of_interest_id` TEXT NOT NULL, " +
+          "`geometryType` TEXT, `vertices` TEXT, `holes` TEXT, " +
+          "FOREIGN KEY(`location_of_interest_id`) REFERENCES `location_of_interest`(`id`) " +
+          "ON UPDATE NO ACTION ON DELETE CASCADE )",
+        "CREATE INDEX IF NOT EXISTS " +
+          "`index_location_of_interest_mutation_location_of_interest_id` " +
+          "ON `location_of_interest_mutation` (`location_of_interest_id`)"
+      )
+
+    /** Returns the JSON text used to store rings of coordinates prior to version 97. */
+    private fun toJson(ring: List<Coordinate>): String =
+      ring.joinToString(",", "[", "]") { "[${it.x},${it.y}]" }
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room
+
+import android.content.Context
+import androidx.sqlite.db.SupportSQLiteDatabase
+import androidx.sqlite.db.SupportSQLiteOpenHelper
+import androidx.sqlite.db.framework.FrameworkSQLiteOpenHelperFactory
+import androidx.test.core.app.ApplicationProvider
+import com.google.common.truth.Truth.assertThat
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Runs [LocationOfInterestBoundsMigration] on a database created with the version 95 definition of
+ * the migrated table. Room's MigrationTestHelper isn't used since it requires exported schemas.
+ */
+@RunWith(RobolectricTestRunner::class)
+class LocationOfInterestBoundsMigrationTest {
+  private var database: SupportSQLiteDatabase? = null
+
+  @After
+  fun tearDown() {
+    database?.close()
+    ApplicationProvider.getApplicationContext<Context>().deleteDatabase(DB_NAME)
+  }
+
+  @Test
+  fun testMigrate_fillsBounds() {
+    openDatabase(95).useWritable { db ->
+      db.execSQL(
+        "INSERT INTO location_of_interest VALUES " +
+          "('polygon', 'survey', 1, 'POLYGON', NULL, NULL, " +
+          "'[[1.0,-2.0],[3.0,-2.0],[3.0,4.0],[1.0,-2.0]]', NULL), " +
+          "('point', 'survey', 1, 'POINT', 5.0, 6.0, NULL, NULL), " +
+          "('unreadable', 'survey', 1, 'POLYGON', NULL, NULL, 'not json', NULL)"
+      )
+    }
+
+    val db = openDatabase(96).writableDatabase.also { database = it }
+
+    assertThat(queryBounds(db, "polygon")).containsExactly(1.0, -2.0, 3.0, 4.0).inOrder()
+    assertThat(queryBounds(db, "point")).containsExactly(5.0, 6.0, 5.0, 6.0).inOrder()
+    assertThat(queryBounds(db, "unreadable")).containsExactly(null, null, null, null)
+    db.query("SELECT name FROM sqlite_master WHERE type = 'index' AND sql IS NOT NULL").use {
+      assertThat(generateSequence { if (it.moveToNext()) it.getString(0) else null }.toList())
+        .containsExactly(
+          "index_location_of_interest_survey_id",
+          "index_location_of_interest_survey_id_state_min_lat_max_lat"
+        )
+    }
+  }
+
+  /** Opens the test database, creating it at version 95 or migrating it to version 96. */
+  private fun openDatabase(version: Int): SupportSQLiteOpenHelper =
+    FrameworkSQLiteOpenHelperFactory()
+      .create(
+        SupportSQLiteOpenHelper.Configuration.builder(ApplicationProvider.getApplicationContext())
+          .name(DB_NAME)
+          .callback(
+            object : SupportSQLiteOpenHelper.Callback(version) {
+              override fun onCreate(db: SupportSQLiteDatabase) {
+                VERSION_95_SCHEMA.forEach { db.execSQL(it) }
+              }
+
+              override fun onUpgrade(db: SupportSQLiteDatabase, oldVersion: Int, newVersion: Int) {
+                LocationOfInterestBoundsMigration.migrate(db)
+              }
+            }
+          )
+          .build()
+      )
+
+  private fun SupportSQLiteOpenHelper.useWritable(block: (SupportSQLiteDatabase) -> Unit) =
+    try {
+      block(writableDatabase)
+    } finally {
+      close()
+    }
+
+  private fun queryBounds(db: SupportSQLiteDatabase, id: String): List<Double?> =
+    db
+      .query(
+        "SELECT min_lat, min_lng, max_lat, max_lng FROM location_of_interest WHERE id = ?",
+        arrayOf(id)
+      )
+      .use { cursor ->
+        cursor.moveToFirst()
+        (0 until 4).map { if (cursor.isNull(it)) null else cursor.getDouble(it) }
+      }
+
+  companion object {
+    private const val DB_NAME = "loi-bounds-migration-test"
+
+    /** The version 95 definition of the migrated table, abridged to the relevant columns. */
+    private val VERSION_95_SCHEMA =
+      listOf(
+        "CREATE TABLE IF NOT EXISTS `location_of_interest` (`id` TEXT NOT NULL, " +
+          "`survey_id` TEXT NOT NULL, `state` INTEGER NOT NULL, `geometryType` TEXT, " +
+          "`lat` REAL, `lng` REAL, `vertices` TEXT, `holes` TEXT, PRIMARY KEY(`id`))",
+        "CREATE INDEX IF NOT EXISTS `index_location_of_interest_survey_id` " +
+          "ON `location_of_interest` (`survey_id`)"
+      )
+  }
+}
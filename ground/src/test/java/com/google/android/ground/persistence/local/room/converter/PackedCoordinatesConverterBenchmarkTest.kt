@@ -0,0 +1,81 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.converter
+
+import com.google.android.ground.measure
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.reportBenchmark
+import com.google.common.collect.ImmutableList
+import com.google.common.reflect.TypeToken
+import com.google.common.truth.Truth.assertThat
+import com.google.gson.Gson
+import org.junit.Test
+
+/**
+ * Compares the time taken and memory allocated to encode and decode a large polygon shell using
+ * [PackedCoordinatesConverter] against the Gson encoding used before.
+ */
+class PackedCoordinatesConverterBenchmarkTest {
+
+  @Test
+  fun benchmarkEncodeAndDecode() {
+    val coordinates = (0 until VERTEX_COUNT).map { Coordinate(it * 1e-5, -it * 1e-5) }
+    // Warm up both paths so that class loading and JIT aren't attributed to either of them.
+    repeat(ITERATIONS) {
+      decodeJson(encodeJson(coordinates))
+      PackedCoordinatesConverter.fromByteArray(
+        PackedCoordinatesConverter.toByteArray(listOf(coordinates))
+      )
+    }
+
+    val json = measure(ITERATIONS) { decodeJson(encodeJson(coordinates)) }
+    val packed =
+      measure(ITERATIONS) {
+        PackedCoordinatesConverter.fromByteArray(
+          PackedCoordinatesConverter.toByteArray(listOf(coordinates))
+        )
+      }
+
+    reportBenchmark(
+      "PackedCoordinatesConverter.encodeAndDecode",
+      mapOf(
+        "vertices" to VERTEX_COUNT,
+        "iterations" to ITERATIONS,
+        "json ms" to json.millis,
+        "json KiB allocated" to json.allocatedBytes / 1024,
+        "json bytes" to encodeJson(coordinates).length,
+        "packed ms" to packed.millis,
+        "packed KiB allocated" to packed.allocatedBytes / 1024,
+        "packed bytes" to PackedCoordinatesConverter.toByteArray(listOf(coordinates)).size
+      )
+    )
+    assertThat(decodeJson(encodeJson(coordinates))).isEqualTo(coordinates)
+  }
+
+  /** The encoding used to store polygon vertices prior to [PackedCoordinatesConverter]. */
+  private fun encodeJson(coordinates: List<Coordinate>): String =
+    Gson().toJson(coordinates.map { ImmutableList.of(it.x, it.y) })
+
+  private fun decodeJson(json: String): List<Coordinate> =
+    Gson()
+      .fromJson<List<List<Double>>>(json, object : TypeToken<List<List<Double?>?>?>() {}.type)
+      .map { Coordinate(it[0], it[1]) }
+
+  companion object {
+    private const val VERTEX_COUNT = 5_000
+    private const val ITERATIONS = 20
+  }
+}
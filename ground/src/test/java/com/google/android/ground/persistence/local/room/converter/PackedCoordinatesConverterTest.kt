@@ -0,0 +1,101 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.local.room.converter
+
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.persistence.local.LocalDataConsistencyException
+import com.google.android.ground.persistence.local.room.GeometryBlobMigration
+import com.google.common.collect.ImmutableList
+import com.google.common.truth.Truth.assertThat
+import com.google.gson.Gson
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import org.junit.Assert.assertThrows
+import org.junit.Test
+
+class PackedCoordinatesConverterTest {
+
+  @Test
+  fun testRoundTrip() {
+    val rings = ImmutableList.of(RING, RING.reverse())
+
+    val bytes = PackedCoordinatesConverter.toByteArray(rings)
+
+    assertThat(bytes).hasLength(4 + 2 * (4 + RING.size * 16))
+    assertThat(PackedCoordinatesConverter.fromByteArray(bytes)).isEqualTo(rings)
+  }
+
+  @Test
+  fun testRoundTrip_emptyRings() {
+    val bytes = PackedCoordinatesConverter.toByteArray(listOf())
+
+    assertThat(PackedCoordinatesConverter.fromByteArray(bytes)).isEmpty()
+  }
+
+  @Test
+  fun testFromByteArray_truncated() {
+    val bytes = PackedCoordinatesConverter.toByteArray(listOf(RING))
+
+    assertThrows(LocalDataConsistencyException::class.java) {
+      PackedCoordinatesConverter.fromByteArray(bytes.copyOf(bytes.size - 1))
+    }
+  }
+
+  @Test
+  fun testFromByteArray_countExceedsData() {
+    val bytes = PackedCoordinatesConverter.toByteArray(listOf(RING))
+    // Corrupts the vertex count of the first ring.
+    ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(4, Int.MAX_VALUE)
+
+    val e =
+      assertThrows(LocalDataConsistencyException::class.java) {
+        PackedCoordinatesConverter.fromByteArray(bytes)
+      }
+    assertThat(e).hasMessageThat().contains("vertex count ${Int.MAX_VALUE}")
+  }
+
+  @Test
+  fun testFromByteArray_negativeCount() {
+    val bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(-1).array()
+
+    assertThrows(LocalDataConsistencyException::class.java) {
+      PackedCoordinatesConverter.fromByteArray(bytes)
+    }
+  }
+
+  @Test
+  fun testMigration_encodesLegacyJson() {
+    val verticesJson = Gson().toJson(RING.map { listOf(it.x, it.y) })
+    val holesJson = Gson().toJson(listOf(RING.map { listOf(it.x, it.y) }))
+
+    assertThat(GeometryBlobMigration.encodeVertices(verticesJson))
+      .isEqualTo(PackedCoordinatesConverter.toByteArray(listOf(RING)))
+    assertThat(GeometryBlobMigration.encodeHoles(holesJson))
+      .isEqualTo(PackedCoordinatesConverter.toByteArray(listOf(RING)))
+    assertThat(GeometryBlobMigration.encodeVertices("[]")).isNull()
+  }
+
+  companion object {
+    private val RING =
+      ImmutableList.of(
+        Coordinate(49.874502, 8.655993),
+        Coordinate(49.874099, 8.651173),
+        Coordinate(49.872919, 8.651628),
+        Coordinate(49.873164, 8.653112),
+        Coordinate(49.874502, 8.655993)
+      )
+  }
+}
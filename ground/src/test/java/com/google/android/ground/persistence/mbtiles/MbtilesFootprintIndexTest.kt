@@ -0,0 +1,205 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.BaseHiltTest
+import com.google.android.ground.persistence.local.room.dao.TileSetFootprintDao
+import com.google.common.truth.Truth.assertThat
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import dagger.hilt.android.testing.HiltAndroidTest
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.net.URL
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import javax.inject.Inject
+import org.junit.After
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/** Tests [MbtilesFootprintIndex] against a local HTTP server serving a footprints file. */
+@HiltAndroidTest
+@RunWith(RobolectricTestRunner::class)
+class MbtilesFootprintIndexTest : BaseHiltTest() {
+  @Inject lateinit var footprintIndex: MbtilesFootprintIndex
+  @Inject lateinit var footprintDao: TileSetFootprintDao
+
+  private val ifNoneMatchHeaders = CopyOnWriteArrayList<String?>()
+  private var eTag = "\"v1\""
+  private var content = footprints("url 1", "url 2")
+  private var responseDelayMillis = 0L
+
+  private lateinit var server: HttpServer
+  private lateinit var url: URL
+
+  @Before
+  override fun setUp() {
+    super.setUp()
+    server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+    server.createContext("/footprints.geojson") { serve(it) }
+    server.executor = null
+    server.start()
+    url = URL("http://localhost:${server.address.port}/footprints.geojson")
+  }
+
+  @After
+  fun tearDown() {
+    server.stop(0)
+  }
+
+  @Test
+  fun testIntersectingTiles() {
+    val tileSets = footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1")
+    assertThat(tileSets.single().path).isEqualTo("3-1-2.mbtiles")
+    assertThat(tileSets.single().offlineAreaReferenceCount).isEqualTo(1)
+  }
+
+  @Test
+  fun testAllTiles() {
+    val tileSets = footprintIndex.allTiles(url).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1", "url 2")
+  }
+
+  @Test
+  fun testAllTiles_concurrentFirstCalls_indexOnce() {
+    responseDelayMillis = 200
+    val executor = Executors.newFixedThreadPool(2)
+
+    val results =
+      (1..2).map {
+        executor.submit<List<String>> { footprintIndex.allTiles(url).blockingGet().map { it.url } }
+      }
+
+    results.forEach { assertThat(it.get(5, TimeUnit.SECONDS)).containsExactly("url 1", "url 2") }
+    assertThat(ifNoneMatchHeaders).containsExactly(null)
+    executor.shutdown()
+  }
+
+  @Test
+  fun testIntersectingTiles_recentlyIndexedFile_notRevalidated() {
+    footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+
+    val tileSets = footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1")
+    assertThat(ifNoneMatchHeaders).containsExactly(null)
+  }
+
+  @Test
+  fun testIntersectingTiles_staleIndex_revalidatesWithETag() {
+    footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+    expireIndex()
+
+    val tileSets = footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1")
+    assertThat(ifNoneMatchHeaders).containsExactly(null, "\"v1\"").inOrder()
+    // Revalidation restarts the interval.
+    footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+    assertThat(ifNoneMatchHeaders).hasSize(2)
+  }
+
+  @Test
+  fun testIntersectingTiles_changedFile_reindexes() {
+    footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+    eTag = "\"v2\""
+    content = footprints("url 3", "url 4")
+    expireIndex()
+
+    val tileSets = footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 3")
+  }
+
+  @Test
+  fun testIntersectingTiles_offline_usesExistingIndex() {
+    footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+    server.stop(0)
+    expireIndex()
+
+    val tileSets = footprintIndex.intersectingTiles(BOUNDS, url).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1")
+  }
+
+  @Test
+  fun testIntersectingTiles_offlineAndNotIndexed_fails() {
+    server.stop(0)
+
+    footprintIndex.intersectingTiles(BOUNDS, url).test().assertError(IOException::class.java)
+  }
+
+  /** Marks the index of the footprints file as due to be revalidated. */
+  private fun expireIndex() {
+    val source = footprintDao.findSourceByUrl(url.toString()).blockingGet()!!
+    footprintDao.insertOrReplaceSource(source.copy(indexedAt = 0))
+  }
+
+  private fun serve(exchange: HttpExchange) {
+    Thread.sleep(responseDelayMillis)
+    val ifNoneMatch = exchange.requestHeaders.getFirst("If-None-Match")
+    ifNoneMatchHeaders.add(ifNoneMatch)
+    exchange.responseHeaders.add("ETag", eTag)
+    if (ifNoneMatch == eTag) {
+      exchange.sendResponseHeaders(304, -1)
+    } else {
+      val body = content.toByteArray()
+      exchange.sendResponseHeaders(200, body.size.toLong())
+      exchange.responseBody.write(body)
+    }
+    exchange.close()
+  }
+
+  companion object {
+    private val BOUNDS = LatLngBounds(LatLng(0.5, 0.5), LatLng(0.6, 0.6))
+
+    private fun footprints(firstUrl: String, secondUrl: String): String =
+      """
+      {
+        "type": "FeatureCollection",
+        "features": [
+          {
+            "type": "Feature",
+            "id": "(1, 2, 3)",
+            "geometry": {
+              "type": "Polygon",
+              "coordinates": [[[0.0, 0.0], [1.0, 0.0], [1.0, 1.0], [0.0, 1.0], [0.0, 0.0]]]
+            },
+            "properties": { "url": "$firstUrl" }
+          },
+          {
+            "type": "Feature",
+            "id": "(5, 6, 3)",
+            "geometry": {
+              "type": "Polygon",
+              "coordinates": [[[10.0, 10.0], [11.0, 10.0], [11.0, 11.0], [10.0, 11.0]]]
+            },
+            "properties": { "url": "$secondUrl" }
+          }
+        ]
+      }
+      """.trimIndent()
+  }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.persistence.uuid.OfflineUuidGenerator
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class MbtilesFootprintParserTest {
+  @get:Rule val tempFolder = TemporaryFolder()
+
+  private val parser =
+    MbtilesFootprintParser(
+      object : OfflineUuidGenerator {
+        override fun generateUuid(): String = "uuid"
+      }
+    )
+
+  @Test
+  fun testAllTiles() {
+    val tileSets = parser.allTiles(createFootprintFile()).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1", "url 2").inOrder()
+    assertThat(tileSets.map { it.path }).containsExactly("3-1-2.mbtiles", "3-5-6.mbtiles")
+  }
+
+  @Test
+  fun testAllTiles_skipsMalformedFeatures() {
+    val file = tempFolder.newFile()
+    file.writeText(
+      """
+      {
+        "features": [
+          {
+            "id": "(1, 2, 3)",
+            "geometry": {
+              "type": "MultiPolygon",
+              "coordinates": [[[[0.0, 0.0], [1.0, 0.0], [1.0, 1.0], [0.0, 0.0]]]]
+            },
+            "properties": { "url": "url 1" }
+          },
+          {
+            "id": "(5, 6, 3)",
+            "geometry": { "type": "Polygon", "coordinates": [[[10.0, 10.0], [11.0, 11.0]]] },
+            "properties": { "url": "url 2" }
+          }
+        ]
+      }
+      """.trimIndent()
+    )
+
+    assertThat(parser.allTiles(file).blockingGet().map { it.url }).containsExactly("url 2")
+  }
+
+  @Test
+  fun testIntersectingTiles() {
+    val bounds = LatLngBounds(LatLng(0.5, 0.5), LatLng(0.6, 0.6))
+
+    val tileSets = parser.intersectingTiles(bounds, createFootprintFile()).blockingGet()
+
+    assertThat(tileSets.map { it.url }).containsExactly("url 1")
+    assertThat(tileSets.single().offlineAreaReferenceCount).isEqualTo(1)
+  }
+
+  @Test
+  fun testIntersectingTiles_noneIntersect() {
+    val bounds = LatLngBounds(LatLng(20.0, 20.0), LatLng(21.0, 21.0))
+
+    assertThat(parser.intersectingTiles(bounds, createFootprintFile()).blockingGet()).isEmpty()
+  }
+
+  private fun createFootprintFile(): File {
+    val file = tempFolder.newFile()
+    file.writeText(
+      """
+      {
+        "type": "FeatureCollection",
+        "features": [
+          {
+            "type": "Feature",
+            "id": "(1, 2, 3)",
+            "geometry": {
+              "type": "Polygon",
+              "coordinates": [[[0.0, 0.0], [1.0, 0.0], [1.0, 1.0], [0.0, 1.0], [0.0, 0.0]]]
+            },
+            "properties": { "url": "url 1", "other": [1, 2] }
+          },
+          {
+            "type": "Feature",
+            "id": "(5, 6, 3)",
+            "properties": { "url": "url 2" },
+            "geometry": {
+              "type": "Polygon",
+              "coordinates": [[[10.0, 10.0], [11.0, 10.0], [11.0, 11.0], [10.0, 11.0]]]
+            }
+          }
+        ]
+      }
+      """.trimIndent()
+    )
+    return file
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import android.database.sqlite.SQLiteDatabase
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.model.basemap.OfflineArea
+import com.google.android.ground.persistence.mbtiles.OfflineTileStore.TileRange
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class OfflineTileStoreTest {
+  @get:Rule val tempFolder = TemporaryFolder()
+
+  private val store = OfflineTileStore(ApplicationProvider.getApplicationContext())
+
+  @Test
+  fun testImportTileSet_deduplicatesTileContents() {
+    val result = store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA))
+
+    assertThat(result.tileCount).isEqualTo(3)
+    assertThat(result.tileBytes).isEqualTo(3L * TILE_SIZE)
+    assertThat(result.newBytes).isEqualTo(2L * TILE_SIZE)
+    assertThat(store.getStorageReport())
+      .isEqualTo(OfflineTileStore.StorageReport(3, 3L * TILE_SIZE, 2, 2L * TILE_SIZE))
+  }
+
+  @Test
+  fun testImportTileSet_overlappingTileSets_storesSharedTilesOnce() {
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA))
+
+    val result = store.importTileSet(createTileSetFile(TILES), SOURCE_2, listOf(AREA))
+
+    assertThat(result.newBytes).isEqualTo(0)
+    assertThat(store.getStorageReport().savedBytes).isEqualTo(4L * TILE_SIZE)
+    assertThat(store.getTileSetSources()).containsExactly(SOURCE_1, SOURCE_2)
+    assertThat(store.getCompleteTileSetSources()).containsExactly(SOURCE_1, SOURCE_2)
+  }
+
+  @Test
+  fun testImportTileSet_deletesTilesNoLongerInSource() {
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA))
+
+    val result = store.importTileSet(createTileSetFile(TILES.take(1)), SOURCE_1, listOf(AREA))
+
+    assertThat(result.tileCount).isEqualTo(1)
+    assertThat(store.getStorageReport())
+      .isEqualTo(OfflineTileStore.StorageReport(1, TILE_SIZE.toLong(), 1, TILE_SIZE.toLong()))
+    assertThat(store.getCompleteTileSetSources()).containsExactly(SOURCE_1)
+  }
+
+  @Test
+  fun testImportTileSet_exposesMbtilesTilesView() {
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA))
+
+    val flags = SQLiteDatabase.OPEN_READONLY or SQLiteDatabase.NO_LOCALIZED_COLLATORS
+    SQLiteDatabase.openDatabase(store.file.path, null, flags).use { db ->
+      db
+        .rawQuery(
+          "SELECT tile_data FROM tiles WHERE zoom_level = 1 AND tile_column = 1 AND tile_row = 0",
+          null
+        )
+        .use { cursor ->
+          assertThat(cursor.moveToFirst()).isTrue()
+          assertThat(cursor.getBlob(0)).isEqualTo(tile(2))
+        }
+    }
+  }
+
+  @Test
+  fun testGetAreaSizeBytes_onlyCountsTilesWithinArea() {
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA))
+
+    // The area only covers the south west quarter of the world, i.e. column 0, row 0 at zoom 1.
+    assertThat(store.getAreaSizeBytes(AREA.id)).isEqualTo(TILE_SIZE.toLong())
+  }
+
+  @Test
+  fun testEvictUnreferencedTiles_keepsTilesUsedByOtherAreas() {
+    val otherArea = AREA.copy(id = "other area")
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA, otherArea))
+    // Tiles outside of all areas are evicted.
+    assertThat(store.evictUnreferencedTiles()).isEqualTo(2)
+
+    store.releaseArea(AREA.id)
+
+    assertThat(store.evictUnreferencedTiles()).isEqualTo(0)
+    assertThat(store.getAreaSizeBytes(otherArea.id)).isEqualTo(TILE_SIZE.toLong())
+  }
+
+  @Test
+  fun testEvictUnreferencedTiles_keepsSourcesWithRemainingTiles() {
+    val otherArea = AREA.copy(id = "other area")
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA, otherArea))
+
+    store.releaseArea(AREA.id)
+    store.evictUnreferencedTiles()
+
+    // The remaining area is still rendered from the store, but new areas need a fresh download.
+    assertThat(store.getTileSetSources()).containsExactly(SOURCE_1)
+    assertThat(store.getCompleteTileSetSources()).isEmpty()
+  }
+
+  @Test
+  fun testEvictUnreferencedTiles_deletesTilesOfReleasedArea() {
+    store.importTileSet(createTileSetFile(TILES), SOURCE_1, listOf(AREA))
+
+    store.releaseArea(AREA.id)
+
+    assertThat(store.evictUnreferencedTiles()).isEqualTo(3)
+    assertThat(store.getStorageReport()).isEqualTo(OfflineTileStore.StorageReport(0, 0, 0, 0))
+    assertThat(store.getTileSetSources()).isEmpty()
+    assertThat(store.getCompleteTileSetSources()).isEmpty()
+  }
+
+  @Test
+  fun testTileRanges() {
+    assertThat(OfflineTileStore.tileRanges(AREA.bounds, 1)).containsExactly(TileRange(0, 0, 0, 0))
+  }
+
+  @Test
+  fun testTileRanges_spanningAntimeridian() {
+    val bounds = LatLngBounds(LatLng(-10.0, 170.0), LatLng(10.0, -170.0))
+
+    assertThat(OfflineTileStore.tileRanges(bounds, 2))
+      .containsExactly(TileRange(3, 3, 1, 2), TileRange(0, 0, 1, 2))
+  }
+
+  private fun createTileSetFile(tiles: List<Tile>): File {
+    val file = tempFolder.newFile()
+    SQLiteDatabase.openOrCreateDatabase(file, null).use { db ->
+      db.execSQL(
+        "CREATE TABLE tiles (zoom_level INTEGER, tile_column INTEGER, tile_row INTEGER, " +
+          "tile_data BLOB)"
+      )
+      tiles.forEach {
+        db.execSQL(
+          "INSERT INTO tiles VALUES (?, ?, ?, ?)",
+          arrayOf(it.zoom, it.column, it.row, it.data)
+        )
+      }
+    }
+    return file
+  }
+
+  private data class Tile(val zoom: Int, val column: Int, val row: Int, val data: ByteArray)
+
+  companion object {
+    private const val SOURCE_1 = "https://example.com/1.mbtiles"
+    private const val SOURCE_2 = "https://example.com/2.mbtiles"
+    private const val TILE_SIZE = 16
+
+    private val AREA =
+      OfflineArea(
+        "area",
+        OfflineArea.State.DOWNLOADED,
+        LatLngBounds(LatLng(-60.0, -170.0), LatLng(-10.0, -10.0)),
+        "area name"
+      )
+
+    // Zoom 1 tiles; the first two have the same contents.
+    private val TILES =
+      listOf(Tile(1, 0, 0, tile(1)), Tile(1, 0, 1, tile(1)), Tile(1, 1, 0, tile(2)))
+
+    private fun tile(value: Int) = ByteArray(TILE_SIZE) { value.toByte() }
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.mbtiles
+
+import com.google.common.truth.Truth.assertThat
+import com.google.gson.stream.JsonReader
+import java.io.StringReader
+import org.junit.Test
+
+/** Tests [TileSetFootprint.read] without Android or Play services dependencies. */
+class TileSetFootprintTest {
+
+  @Test
+  fun testRead_polygon() {
+    val footprints =
+      readFeatures(
+        """
+        {
+          "id": "(1, 2, 3)",
+          "geometry": {
+            "type": "Polygon",
+            "coordinates": [[[0.0, 1.0], [2.0, 1.0], [2.0, 3.0, 100.0]], [[5.0, 5.0]]]
+          },
+          "properties": { "url": "url 1" }
+        }
+        """
+      )
+
+    assertThat(footprints)
+      .containsExactly(TileSetFootprint("(1, 2, 3)", "url 1", 1.0, 0.0, 3.0, 2.0))
+  }
+
+  @Test
+  fun testRead_skipsMultiPolygon() {
+    val footprints =
+      readFeatures(
+        """
+        {
+          "id": "(1, 2, 3)",
+          "geometry": {
+            "type": "MultiPolygon",
+            "coordinates": [[[[0.0, 0.0], [1.0, 0.0], [1.0, 1.0]]], [[[5.0, 5.0], [6.0, 6.0]]]]
+          },
+          "properties": { "url": "url 1" }
+        }
+        """,
+        VALID_FEATURE
+      )
+
+    assertThat(footprints.map { it?.id }).containsExactly(null, "(5, 6, 3)").inOrder()
+  }
+
+  @Test
+  fun testRead_skipsUnexpectedNesting() {
+    val footprints =
+      readFeatures(
+        """{ "id": "a", "geometry": { "coordinates": [[0.0, 0.0], [1.0, 1.0]] } }""",
+        """{ "id": "b", "geometry": { "coordinates": [[[0.0, "x"], [1.0]]] } }""",
+        """{ "id": "c", "geometry": { "coordinates": 1.0 } }""",
+        VALID_FEATURE
+      )
+
+    assertThat(footprints.map { it?.id }).containsExactly(null, null, null, "(5, 6, 3)").inOrder()
+  }
+
+  @Test
+  fun testRead_ignoresNonStringId() {
+    val footprints =
+      readFeatures(
+        """{ "id": { "nested": true }, "geometry": { "coordinates": [[[0.0, 1.0]]] } }""",
+        VALID_FEATURE
+      )
+
+    assertThat(footprints)
+      .containsExactly(
+        TileSetFootprint(null, null, 1.0, 0.0, 1.0, 0.0),
+        TileSetFootprint("(5, 6, 3)", null, 10.0, 10.0, 11.0, 11.0)
+      )
+      .inOrder()
+  }
+
+  @Test
+  fun testRead_skipsNonObjects() {
+    val footprints = readFeatures("[1, 2]", "\"feature\"", VALID_FEATURE)
+
+    assertThat(footprints.map { it?.id }).containsExactly(null, null, "(5, 6, 3)").inOrder()
+  }
+
+  /** Reads each of [features] from a JSON array, checking that all values are consumed. */
+  private fun readFeatures(vararg features: String): List<TileSetFootprint?> =
+    JsonReader(StringReader(features.joinToString(",", "[", "]"))).use { reader ->
+      reader.beginArray()
+      val footprints = features.map { TileSetFootprint.read(reader) }
+      reader.endArray()
+      footprints
+    }
+
+  companion object {
+    private const val VALID_FEATURE =
+      """{ "id": "(5, 6, 3)", "geometry": { "coordinates": [[[10.0, 10.0], [11.0, 11.0]]] } }"""
+  }
+}
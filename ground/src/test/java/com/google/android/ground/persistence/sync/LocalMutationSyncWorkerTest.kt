@@ -0,0 +1,171 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.model.mutation.LocationOfInterestMutation
+import com.google.android.ground.model.mutation.Mutation
+import com.google.common.collect.ImmutableList
+import com.google.common.truth.Truth.assertThat
+import com.google.firebase.firestore.FirebaseFirestoreException
+import io.reactivex.Completable
+import java.io.IOException
+import java.util.*
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LocalMutationSyncWorkerTest {
+  private val committed = mutableListOf<Mutation>()
+  private val failed = mutableListOf<Mutation>()
+
+  @Test
+  fun testCommitBatch_success() {
+    val mutations = ImmutableList.of(mutation(1, "loi 1"), mutation(2, "loi 2"))
+
+    commitBatch(mutations, rejectedIds = setOf()).test().assertValue(setOf())
+
+    assertThat(committed).containsExactlyElementsIn(mutations).inOrder()
+    assertThat(failed).isEmpty()
+  }
+
+  @Test
+  fun testCommitBatch_rejected_isolatesFailingMutation() {
+    val mutations =
+      ImmutableList.of(
+        mutation(1, "loi 1"),
+        mutation(2, "loi 2"),
+        mutation(3, "loi 3"),
+        mutation(4, "loi 4")
+      )
+
+    commitBatch(mutations, rejectedIds = setOf(2L)).test().assertValue(setOf("loi 2"))
+
+    assertThat(committed.map { it.id }).containsExactly(1L, 3L, 4L).inOrder()
+    assertThat(failed.map { it.id }).containsExactly(2L)
+  }
+
+  @Test
+  fun testCommitBatch_rejected_skipsLaterMutationsOfFailedLoi() {
+    val create = mutation(1, "loi 1", Mutation.Type.CREATE)
+    val otherLoi = mutation(2, "loi 2")
+    val update = mutation(3, "loi 1")
+    val mutations = ImmutableList.of(create, otherLoi, update, mutation(4, "loi 3"))
+
+    commitBatch(mutations, rejectedIds = setOf(1L)).test().assertValue(setOf("loi 1"))
+
+    // The update stays pending without being attempted, so it's retried after the create.
+    assertThat(committed.map { it.id }).containsExactly(2L, 4L).inOrder()
+    assertThat(failed).containsExactly(create)
+  }
+
+  @Test
+  fun testCommitBatch_transientError_failsWithoutSplitting() {
+    val mutations = ImmutableList.of(mutation(1, "loi 1"), mutation(2, "loi 2"))
+
+    LocalMutationSyncWorker.commitBatch(
+        mutations,
+        { Completable.error(IOException()) },
+        { _, _ -> Completable.complete() }
+      )
+      .test()
+      .assertError(IOException::class.java)
+  }
+
+  @Test
+  fun testPackBatches_keepsMutationsOfEachLoiTogetherInOrder() {
+    val mutations = listOf(mutation(3, "loi 1"), mutation(2, "loi 2"), mutation(1, "loi 1"))
+
+    assertThat(packBatchIds(mutations, maxBatchSize = 10))
+      .containsExactly(listOf(listOf(1L, 3L, 2L)))
+  }
+
+  @Test
+  fun testPackBatches_startsNewBatchWhenLoiDoesNotFit() {
+    val mutations =
+      listOf(mutation(1, "loi 1"), mutation(2, "loi 1"), mutation(3, "loi 2"), mutation(4, "loi 3"))
+
+    assertThat(packBatchIds(mutations, maxBatchSize = 2))
+      .containsExactly(listOf(listOf(1L, 2L)), listOf(listOf(3L, 4L)))
+      .inOrder()
+  }
+
+  @Test
+  fun testPackBatches_splitsLargeLoiIntoSequence() {
+    val mutations =
+      listOf(mutation(1, "loi 1"), mutation(2, "loi 1"), mutation(3, "loi 1"), mutation(4, "loi 2"))
+
+    assertThat(packBatchIds(mutations, maxBatchSize = 2))
+      .containsExactly(listOf(listOf(1L, 2L), listOf(3L)), listOf(listOf(4L)))
+      .inOrder()
+  }
+
+  @Test
+  fun testPackBatches_empty() {
+    assertThat(LocalMutationSyncWorker.packBatches(listOf(), maxBatchSize = 2)).isEmpty()
+  }
+
+  @Test
+  fun testIsTransient() {
+    assertThat(LocalMutationSyncWorker.isTransient(IOException())).isTrue()
+    assertThat(LocalMutationSyncWorker.isTransient(firestoreException(UNAVAILABLE))).isTrue()
+    assertThat(LocalMutationSyncWorker.isTransient(firestoreException(PERMISSION_DENIED)))
+      .isFalse()
+    assertThat(LocalMutationSyncWorker.isTransient(IllegalArgumentException())).isFalse()
+  }
+
+  /**
+   * Commits [mutations], rejecting any batch which includes a mutation with one of [rejectedIds].
+   */
+  private fun commitBatch(mutations: ImmutableList<Mutation>, rejectedIds: Set<Long>) =
+    LocalMutationSyncWorker.commitBatch(
+      mutations,
+      { batch ->
+        if (batch.any { it.id in rejectedIds }) {
+          Completable.error(firestoreException(PERMISSION_DENIED))
+        } else {
+          Completable.fromRunnable { committed.addAll(batch) }
+        }
+      },
+      { batch, _ -> Completable.fromRunnable { failed.addAll(batch) } }
+    )
+
+  private fun packBatchIds(mutations: List<Mutation>, maxBatchSize: Int): List<List<List<Long>>> =
+    LocalMutationSyncWorker.packBatches(mutations, maxBatchSize).map { sequence ->
+      sequence.map { batch -> batch.map { it.id!! } }
+    }
+
+  private fun mutation(
+    id: Long,
+    loiId: String,
+    type: Mutation.Type = Mutation.Type.UPDATE
+  ): Mutation =
+    LocationOfInterestMutation(
+      id = id,
+      type = type,
+      locationOfInterestId = loiId,
+      clientTimestamp = Date(id),
+      lastModifiedTimestamp = Date(id)
+    )
+
+  private fun firestoreException(code: FirebaseFirestoreException.Code) =
+    FirebaseFirestoreException(code.name, code)
+
+  companion object {
+    private val UNAVAILABLE = FirebaseFirestoreException.Code.UNAVAILABLE
+    private val PERMISSION_DENIED = FirebaseFirestoreException.Code.PERMISSION_DENIED
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.model.mutation.LocationOfInterestMutation
+import com.google.android.ground.model.mutation.Mutation
+import com.google.android.ground.model.mutation.SubmissionMutation
+import com.google.android.ground.model.submission.TaskDataDelta
+import com.google.android.ground.model.submission.TextTaskData
+import com.google.android.ground.model.task.Task
+import com.google.common.collect.ImmutableList
+import com.google.common.truth.Truth.assertThat
+import java.util.*
+import java8.util.Optional
+import org.junit.Test
+
+class MutationCoalescerTest {
+  @Test
+  fun testCoalesce_createAndUpdates_mergesDeltas() {
+    val create = submissionMutation(1, Mutation.Type.CREATE, delta("task 1", "a"))
+    val update1 = submissionMutation(2, Mutation.Type.UPDATE, delta("task 1", "b"))
+    val update2 =
+      submissionMutation(3, Mutation.Type.UPDATE, delta("task 2", "c"), removal("task 3"))
+
+    val result = MutationCoalescer.coalesce(listOf(update2, create, update1))
+
+    assertThat(result)
+      .containsExactly(
+        create.copy(
+          lastModifiedTimestamp = update2.clientTimestamp,
+          taskDataDeltas = ImmutableList.of(delta("task 1", "b"), delta("task 2", "c"))
+        )
+      )
+  }
+
+  @Test
+  fun testCoalesce_createAndUpdate_keepsCreationTime() {
+    val create = loiMutation(1, "loi 1").copy(type = Mutation.Type.CREATE)
+    val update = loiMutation(2, "loi 1").copy(jobId = "job id")
+
+    val result = MutationCoalescer.coalesce(listOf(create, update)).single()
+
+    assertThat(result.type).isEqualTo(Mutation.Type.CREATE)
+    assertThat(result.clientTimestamp).isEqualTo(create.clientTimestamp)
+    assertThat(result.lastModifiedTimestamp).isEqualTo(update.clientTimestamp)
+  }
+
+  @Test
+  fun testCoalesce_updates_keepsRemovals() {
+    val update1 = submissionMutation(1, Mutation.Type.UPDATE, delta("task 1", "a"))
+    val update2 = submissionMutation(2, Mutation.Type.UPDATE, removal("task 1"))
+
+    val result = MutationCoalescer.coalesce(listOf(update1, update2))
+
+    assertThat(result)
+      .containsExactly(
+        update1.copy(
+          lastModifiedTimestamp = update2.clientTimestamp,
+          taskDataDeltas = ImmutableList.of(removal("task 1"))
+        )
+      )
+  }
+
+  @Test
+  fun testCoalesce_createThenDelete_cancelsOut() {
+    val create = submissionMutation(1, Mutation.Type.CREATE, delta("task 1", "a"))
+    val update = submissionMutation(2, Mutation.Type.UPDATE, delta("task 1", "b"))
+    val delete = submissionMutation(3, Mutation.Type.DELETE)
+
+    assertThat(MutationCoalescer.coalesce(listOf(create, update, delete))).isEmpty()
+  }
+
+  @Test
+  fun testCoalesce_loiCreateThenDelete_dropsSubmissionMutations() {
+    val loiCreate = loiMutation(1, "loi 1").copy(type = Mutation.Type.CREATE)
+    val submissionCreate = submissionMutation(2, Mutation.Type.CREATE, delta("task 1", "a"))
+    val loiDelete = loiMutation(3, "loi 1").copy(type = Mutation.Type.DELETE)
+    val otherLoiUpdate = loiMutation(4, "loi 2")
+
+    val result =
+      MutationCoalescer.coalesce(listOf(loiCreate, submissionCreate, loiDelete, otherLoiUpdate))
+
+    assertThat(result).containsExactly(otherLoiUpdate)
+  }
+
+  @Test
+  fun testCoalesce_updateThenDelete_keepsDelete() {
+    val update = submissionMutation(1, Mutation.Type.UPDATE, delta("task 1", "a"))
+    val delete = submissionMutation(2, Mutation.Type.DELETE)
+
+    assertThat(MutationCoalescer.coalesce(listOf(update, delete))).containsExactly(delete)
+  }
+
+  @Test
+  fun testCoalesce_separateEntities_notMerged() {
+    val loiUpdate1 = loiMutation(1, "loi 1")
+    val loiUpdate2 = loiMutation(2, "loi 2")
+    val submissionUpdate = submissionMutation(3, Mutation.Type.UPDATE, delta("task 1", "a"))
+
+    val result = MutationCoalescer.coalesce(listOf(loiUpdate1, loiUpdate2, submissionUpdate))
+
+    assertThat(result).containsExactly(loiUpdate1, loiUpdate2, submissionUpdate).inOrder()
+  }
+
+  private fun submissionMutation(
+    time: Long,
+    type: Mutation.Type,
+    vararg deltas: TaskDataDelta
+  ): SubmissionMutation =
+    SubmissionMutation(
+      id = time,
+      type = type,
+      locationOfInterestId = "loi 1",
+      clientTimestamp = Date(time),
+      lastModifiedTimestamp = Date(time),
+      submissionId = "submission id",
+      taskDataDeltas = ImmutableList.copyOf(deltas)
+    )
+
+  private fun loiMutation(time: Long, loiId: String): LocationOfInterestMutation =
+    LocationOfInterestMutation(
+      id = time,
+      type = Mutation.Type.UPDATE,
+      locationOfInterestId = loiId,
+      clientTimestamp = Date(time),
+      lastModifiedTimestamp = Date(time)
+    )
+
+  private fun delta(taskId: String, text: String) =
+    TaskDataDelta(taskId, Task.Type.TEXT, TextTaskData.fromString(text))
+
+  private fun removal(taskId: String) = TaskDataDelta(taskId, Task.Type.TEXT, Optional.empty())
+}
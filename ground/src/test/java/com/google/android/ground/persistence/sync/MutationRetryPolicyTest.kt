@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.Config
+import com.google.android.ground.model.mutation.Mutation
+import com.google.android.ground.model.mutation.SubmissionMutation
+import com.google.common.collect.Range
+import com.google.common.truth.Truth.assertThat
+import java.util.*
+import kotlin.random.Random
+import org.junit.Test
+
+class MutationRetryPolicyTest {
+  @Test
+  fun testBackoffMillis_growsExponentiallyWithJitter() {
+    val random = Random(0)
+    for (retryCount in 1L..5L) {
+      val backoff = Config.MUTATION_RETRY_BASE_DELAY_MILLIS shl (retryCount - 1).toInt()
+      assertThat(MutationRetryPolicy.backoffMillis(retryCount, random))
+        .isIn(Range.closed(backoff / 2, backoff))
+    }
+  }
+
+  @Test
+  fun testBackoffMillis_cappedAtMaxDelay() {
+    assertThat(MutationRetryPolicy.backoffMillis(100, Random(0)))
+      .isAtMost(Config.MUTATION_RETRY_MAX_DELAY_MILLIS)
+  }
+
+  @Test
+  fun testOnFailure_schedulesNextAttempt() {
+    val mutation =
+      SubmissionMutation(
+        retryCount = 0,
+        syncStatus = Mutation.SyncStatus.PENDING,
+        lastModifiedTimestamp = Date(NOW)
+      )
+    val error = RuntimeException("error")
+
+    val result = MutationRetryPolicy.onFailure(mutation, error, NOW, Random(0))
+
+    assertThat(result.retryCount).isEqualTo(1)
+    assertThat(result.lastError).isEqualTo(error.toString())
+    assertThat(result.syncStatus).isEqualTo(Mutation.SyncStatus.PENDING)
+    assertThat(result.nextAttemptAt).isGreaterThan(Date(NOW))
+  }
+
+  @Test
+  fun testOnFailure_lastAttempt_marksFailed() {
+    val mutation =
+      SubmissionMutation(
+        retryCount = Config.MAX_MUTATION_SYNC_ATTEMPTS - 1L,
+        syncStatus = Mutation.SyncStatus.PENDING,
+        lastModifiedTimestamp = Date(NOW)
+      )
+
+    val result = MutationRetryPolicy.onFailure(mutation, RuntimeException(), NOW, Random(0))
+
+    assertThat(result.syncStatus).isEqualTo(Mutation.SyncStatus.FAILED)
+  }
+
+  companion object {
+    private const val NOW = 1_000_000L
+  }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import androidx.work.ExistingWorkPolicy
+import androidx.work.WorkInfo.State
+import com.google.android.ground.persistence.sync.MutationSyncWorkManager.Companion.getEnqueuePolicy
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class MutationSyncWorkManagerTest {
+
+  @Test
+  fun testGetEnqueuePolicy_noWork() {
+    assertThat(getEnqueuePolicy(setOf())).isEqualTo(ExistingWorkPolicy.KEEP)
+  }
+
+  @Test
+  fun testGetEnqueuePolicy_waiting_keepsWaitingWorker() {
+    assertThat(getEnqueuePolicy(setOf(State.ENQUEUED))).isEqualTo(ExistingWorkPolicy.KEEP)
+    assertThat(getEnqueuePolicy(setOf(State.RUNNING, State.ENQUEUED)))
+      .isEqualTo(ExistingWorkPolicy.KEEP)
+    assertThat(getEnqueuePolicy(setOf(State.RUNNING, State.BLOCKED)))
+      .isEqualTo(ExistingWorkPolicy.KEEP)
+  }
+
+  @Test
+  fun testGetEnqueuePolicy_running_appendsWorker() {
+    assertThat(getEnqueuePolicy(setOf(State.RUNNING)))
+      .isEqualTo(ExistingWorkPolicy.APPEND_OR_REPLACE)
+    assertThat(getEnqueuePolicy(setOf(State.SUCCEEDED, State.RUNNING)))
+      .isEqualTo(ExistingWorkPolicy.APPEND_OR_REPLACE)
+  }
+
+  @Test
+  fun testGetEnqueuePolicy_finished_enqueuesWorker() {
+    // KEEP only keeps unfinished work, so finished work is replaced.
+    assertThat(getEnqueuePolicy(setOf(State.SUCCEEDED))).isEqualTo(ExistingWorkPolicy.KEEP)
+    assertThat(getEnqueuePolicy(setOf(State.FAILED))).isEqualTo(ExistingWorkPolicy.KEEP)
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+
+class TileSetDownloadProgressTest {
+
+  @Test
+  fun testPercentComplete() {
+    assertThat(TileSetDownloadProgress(totalBytes = 200, bytesDownloaded = 50).percentComplete)
+      .isEqualTo(25)
+  }
+
+  @Test
+  fun testPercentComplete_totalUnknown() {
+    assertThat(TileSetDownloadProgress(totalBytes = 0, bytesDownloaded = 50).percentComplete)
+      .isEqualTo(0)
+  }
+
+  @Test
+  fun testPercentComplete_moreThanExpectedDownloaded() {
+    assertThat(TileSetDownloadProgress(totalBytes = 100, bytesDownloaded = 150).percentComplete)
+      .isEqualTo(100)
+  }
+
+  @Test
+  fun testMegabytes() {
+    val progress =
+      TileSetDownloadProgress(
+        totalBytes = 4 * MEGABYTE,
+        bytesDownloaded = MEGABYTE / 2,
+        bytesPerSecond = 2 * MEGABYTE
+      )
+
+    assertThat(progress.totalMegabytes).isEqualTo(4.0)
+    assertThat(progress.megabytesDownloaded).isEqualTo(0.5)
+    assertThat(progress.megabytesPerSecond).isEqualTo(2.0)
+  }
+
+  @Test
+  fun testEtaSeconds() {
+    assertThat(TileSetDownloadProgress(etaMillis = 2_500).etaSeconds).isEqualTo(2)
+    assertThat(TileSetDownloadProgress(etaMillis = null).etaSeconds).isNull()
+  }
+
+  companion object {
+    private const val MEGABYTE = 1024L * 1024
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.Config
+import com.google.common.truth.Truth.assertThat
+import io.reactivex.schedulers.TestScheduler
+import java.util.concurrent.TimeUnit
+import org.junit.Test
+
+class TileSetDownloadProgressTrackerTest {
+  private val scheduler = TestScheduler()
+  private val tracker = TileSetDownloadProgressTracker(scheduler)
+
+  @Test
+  fun testProgress_throughputAndEta() {
+    tracker.start(10_000)
+    scheduler.advanceTimeBy(2, TimeUnit.SECONDS)
+    tracker.addBytesDownloaded(4_000)
+
+    assertThat(tracker.progress)
+      .isEqualTo(
+        TileSetDownloadProgress(
+          isActive = true,
+          totalBytes = 10_000,
+          bytesDownloaded = 4_000,
+          bytesPerSecond = 2_000,
+          etaMillis = 3_000
+        )
+      )
+  }
+
+  @Test
+  fun testProgress_nothingDownloaded_etaUnknown() {
+    tracker.start(10_000)
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+
+    assertThat(tracker.progress.bytesPerSecond).isEqualTo(0)
+    assertThat(tracker.progress.etaMillis).isNull()
+  }
+
+  @Test
+  fun testProgress_moreThanExpectedDownloaded_etaUnknown() {
+    tracker.start(1_000)
+    scheduler.advanceTimeBy(1, TimeUnit.SECONDS)
+    tracker.addBytesDownloaded(2_000)
+
+    assertThat(tracker.progress.etaMillis).isNull()
+  }
+
+  @Test
+  fun testStart_concurrentDownloadsShareProgress() {
+    tracker.start(100)
+    tracker.start(200)
+    tracker.addBytesDownloaded(50)
+
+    tracker.finish()
+    assertThat(tracker.progress.isActive).isTrue()
+    assertThat(tracker.progress.totalBytes).isEqualTo(300)
+    assertThat(tracker.progress.bytesDownloaded).isEqualTo(50)
+
+    tracker.finish()
+    assertThat(tracker.progress.isActive).isFalse()
+  }
+
+  @Test
+  fun testStart_afterFinish_resetsProgress() {
+    tracker.start(100)
+    tracker.addBytesDownloaded(100)
+    tracker.finish()
+
+    tracker.start(200)
+
+    assertThat(tracker.progress.totalBytes).isEqualTo(200)
+    assertThat(tracker.progress.bytesDownloaded).isEqualTo(0)
+  }
+
+  @Test
+  fun testProgressOnceAndStream_publishedAtFixedInterval() {
+    val subscriber = tracker.progressOnceAndStream.test()
+    tracker.start(1_000)
+    scheduler.triggerActions()
+
+    repeat(100) { tracker.addBytesDownloaded(1) }
+    // Bytes downloaded between intervals aren't published individually.
+    subscriber.assertValueCount(2)
+
+    scheduler.advanceTimeBy(Config.TILE_DOWNLOAD_PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+    subscriber.assertValueCount(3)
+    assertThat(subscriber.values().last().bytesDownloaded).isEqualTo(100)
+
+    tracker.finish()
+    scheduler.advanceTimeBy(Config.TILE_DOWNLOAD_PROGRESS_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)
+    subscriber.assertValueCount(4)
+    assertThat(subscriber.values().map { it.isActive })
+      .containsExactly(false, true, true, false)
+      .inOrder()
+  }
+}
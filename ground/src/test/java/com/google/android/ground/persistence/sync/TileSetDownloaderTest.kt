@@ -0,0 +1,197 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.persistence.sync
+
+import com.google.android.ground.rx.Schedulers
+import com.google.common.truth.Truth.assertThat
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import io.reactivex.Scheduler
+import io.reactivex.schedulers.Schedulers as RxSchedulers
+import java.io.File
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.net.URL
+import java.security.MessageDigest
+import java.util.*
+import java.util.concurrent.CopyOnWriteArrayList
+import org.junit.After
+import org.junit.Assert.assertThrows
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+/** Tests [TileSetDownloader] against a local HTTP server serving a single file. */
+class TileSetDownloaderTest {
+  @get:Rule val tempFolder = TemporaryFolder()
+
+  private val content = Random(0).let { random -> ByteArray(100_000).also { random.nextBytes(it) } }
+  private val requestedRanges = CopyOnWriteArrayList<String?>()
+  private var eTag = "\"" + md5(content) + "\""
+  private var failedRangeStart: Int? = null
+
+  private lateinit var server: HttpServer
+  private lateinit var url: URL
+
+  private val downloader = createDownloader(CHUNKED_DOWNLOAD_THRESHOLD)
+
+  @Before
+  fun setUp() {
+    server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+    server.createContext("/tiles.mbtiles") { serve(it) }
+    server.executor = null
+    server.start()
+    url = URL("http://localhost:${server.address.port}/tiles.mbtiles")
+  }
+
+  @After
+  fun tearDown() {
+    server.stop(0)
+  }
+
+  @Test
+  fun testDownload_smallFile_downloadsWithSingleRequest() {
+    val file = tempFolder.newFile()
+
+    createDownloader(chunkedDownloadThreshold = Long.MAX_VALUE).download(url, file)
+
+    assertThat(file.readBytes()).isEqualTo(content)
+    assertThat(requestedRanges).containsExactly(null)
+  }
+
+  @Test
+  fun testDownload_largeFile_downloadsChunksInParallel() {
+    val file = tempFolder.newFile()
+    var bytesDownloaded = 0L
+
+    downloader.download(url, file) { synchronized(this) { bytesDownloaded += it } }
+
+    assertThat(file.readBytes()).isEqualTo(content)
+    assertThat(bytesDownloaded).isEqualTo(content.size.toLong())
+    assertThat(requestedRanges)
+      .containsExactly(
+        "bytes=0-24999",
+        "bytes=25000-49999",
+        "bytes=50000-74999",
+        "bytes=75000-99999"
+      )
+  }
+
+  @Test
+  fun testDownload_partialFile_resumesDownload() {
+    val file = File(tempFolder.root, "tiles.mbtiles")
+    File(file.path + ".part").writeBytes(content.copyOfRange(0, 40_000))
+
+    downloader.download(url, file)
+
+    assertThat(file.readBytes()).isEqualTo(content)
+    assertThat(requestedRanges).containsExactly("bytes=40000-")
+  }
+
+  @Test
+  fun testDownload_partialFileLongerThanFile_restartsDownload() {
+    val file = File(tempFolder.root, "tiles.mbtiles")
+    File(file.path + ".part").writeBytes(content + content.copyOfRange(0, 20_000))
+
+    downloader.download(url, file)
+
+    assertThat(file.readBytes()).isEqualTo(content)
+    assertThat(requestedRanges).containsExactly(null)
+  }
+
+  @Test
+  fun testDownload_rangeNotSatisfiable_restartsDownload() {
+    val file = File(tempFolder.root, "tiles.mbtiles")
+    File(file.path + ".part").writeBytes(content + content.copyOfRange(0, 20_000))
+
+    downloader.download(url, file, TileSetDownloader.Metadata(-1, null, true))
+
+    assertThat(file.readBytes()).isEqualTo(content)
+    assertThat(requestedRanges).containsExactly("bytes=120000-", null).inOrder()
+  }
+
+  @Test
+  fun testDownload_chunkFails_retractsReportedBytes() {
+    failedRangeStart = 75_000
+    val file = File(tempFolder.root, "tiles.mbtiles")
+    var bytesDownloaded = 0L
+
+    assertThrows(IOException::class.java) {
+      downloader.download(url, file) { synchronized(this) { bytesDownloaded += it } }
+    }
+    assertThat(bytesDownloaded).isEqualTo(0L)
+    assertThat(File(file.path + ".chunks").exists()).isFalse()
+  }
+
+  @Test
+  fun testDownload_eTagMismatch_fails() {
+    eTag = "\"" + md5(byteArrayOf(1)) + "\""
+    val file = File(tempFolder.root, "tiles.mbtiles")
+
+    assertThrows(IOException::class.java) { downloader.download(url, file) }
+    assertThat(file.exists()).isFalse()
+  }
+
+  private fun createDownloader(chunkedDownloadThreshold: Long) =
+    TileSetDownloader(
+      object : Schedulers {
+        override fun io(): Scheduler = RxSchedulers.io()
+        override fun ui(): Scheduler = RxSchedulers.trampoline()
+      },
+      chunkedDownloadThreshold,
+      MAX_PARALLEL_CHUNKS
+    )
+
+  private fun serve(exchange: HttpExchange) {
+    exchange.responseHeaders.add("Accept-Ranges", "bytes")
+    exchange.responseHeaders.add("ETag", eTag)
+    if (exchange.requestMethod == "HEAD") {
+      exchange.responseHeaders.add("Content-Length", content.size.toString())
+      exchange.sendResponseHeaders(200, -1)
+      exchange.close()
+      return
+    }
+    val range = exchange.requestHeaders.getFirst("Range")
+    requestedRanges.add(range)
+    val body =
+      if (range == null) {
+        exchange.sendResponseHeaders(200, content.size.toLong())
+        content
+      } else {
+        val (start, end) = range.removePrefix("bytes=").split("-")
+        if (start.toInt() >= content.size || start.toInt() == failedRangeStart) {
+          exchange.sendResponseHeaders(if (start.toInt() >= content.size) 416 else 500, -1)
+          exchange.close()
+          return
+        }
+        val last = if (end.isEmpty()) content.size - 1 else end.toInt()
+        exchange.responseHeaders.add("Content-Range", "bytes $start-$last/${content.size}")
+        val bytes = content.copyOfRange(start.toInt(), last + 1)
+        exchange.sendResponseHeaders(206, bytes.size.toLong())
+        bytes
+      }
+    exchange.responseBody.use { it.write(body) }
+  }
+
+  private fun md5(bytes: ByteArray): String =
+    MessageDigest.getInstance("MD5").digest(bytes).joinToString("") { "%02x".format(it) }
+
+  companion object {
+    private const val CHUNKED_DOWNLOAD_THRESHOLD = 50_000L
+    private const val MAX_PARALLEL_CHUNKS = 4
+  }
+}
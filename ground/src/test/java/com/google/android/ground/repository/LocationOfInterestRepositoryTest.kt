@@ -17,6 +17,7 @@ package com.google.android.ground.repository
 
 import com.google.android.ground.BaseHiltTest
 import com.google.android.ground.capture
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
 import com.google.android.ground.model.mutation.LocationOfInterestMutation
 import com.google.android.ground.model.mutation.Mutation
 import com.google.android.ground.model.mutation.Mutation.SyncStatus
@@ -29,6 +30,7 @@ import com.google.android.ground.persistence.remote.RemoteDataEvent.Companion.lo
 import com.google.android.ground.persistence.remote.RemoteDataEvent.Companion.modified
 import com.google.android.ground.persistence.remote.RemoteDataEvent.Companion.removed
 import com.google.android.ground.persistence.sync.MutationSyncWorkManager
+import com.google.common.collect.ImmutableList
 import com.google.common.collect.ImmutableSet
 import com.google.common.truth.Truth.assertThat
 import com.sharedtest.FakeData
@@ -42,6 +44,7 @@ import io.reactivex.Flowable
 import io.reactivex.Maybe
 import io.reactivex.Single
 import java.util.*
+import java.util.concurrent.TimeUnit
 import javax.inject.Inject
 import org.junit.Test
 import org.junit.runner.RunWith
@@ -75,8 +78,13 @@ class LocationOfInterestRepositoryTest : BaseHiltTest() {
       .applyAndEnqueue(capture(captorLoiMutation))
   }
 
+  private fun mockMergeLocationOfInterestChanges() {
+    Mockito.`when`(mockLocalDataStore.mergeLocationOfInterestChanges(any()))
+      .thenReturn(Completable.complete())
+  }
+
   private fun mockEnqueueSyncWorker() {
-    Mockito.`when`(mockWorkManager.enqueueSyncWorker(ArgumentMatchers.anyString()))
+    Mockito.`when`(mockWorkManager.enqueueSyncWorker())
       .thenReturn(Completable.complete())
   }
 
@@ -98,7 +106,7 @@ class LocationOfInterestRepositoryTest : BaseHiltTest() {
     Mockito.verify(mockLocalDataStore, Mockito.times(1))
       .applyAndEnqueue(any<LocationOfInterestMutation>())
     Mockito.verify(mockWorkManager, Mockito.times(1))
-      .enqueueSyncWorker(FakeData.LOCATION_OF_INTEREST.id)
+      .enqueueSyncWorker()
   }
 
   @Test
@@ -117,13 +125,13 @@ class LocationOfInterestRepositoryTest : BaseHiltTest() {
     Mockito.verify(mockLocalDataStore, Mockito.times(1))
       .applyAndEnqueue(any<LocationOfInterestMutation>())
     Mockito.verify(mockWorkManager, Mockito.times(1))
-      .enqueueSyncWorker(FakeData.LOCATION_OF_INTEREST.id)
+      .enqueueSyncWorker()
   }
 
   @Test
   fun testEnqueueSyncWorker_returnsError() {
     mockApplyAndEnqueue()
-    Mockito.`when`(mockWorkManager.enqueueSyncWorker(ArgumentMatchers.anyString()))
+    Mockito.`when`(mockWorkManager.enqueueSyncWorker())
       .thenReturn(Completable.error(NullPointerException()))
     locationOfInterestRepository
       .applyAndEnqueue(
@@ -136,44 +144,99 @@ class LocationOfInterestRepositoryTest : BaseHiltTest() {
     Mockito.verify(mockLocalDataStore, Mockito.times(1))
       .applyAndEnqueue(any<LocationOfInterestMutation>())
     Mockito.verify(mockWorkManager, Mockito.times(1))
-      .enqueueSyncWorker(FakeData.LOCATION_OF_INTEREST.id)
+      .enqueueSyncWorker()
   }
 
   @Test
   fun testSyncLocationsOfInterest_loaded() {
     fakeRemoteDataStore.streamLoiOnce(loaded("entityId", FakeData.LOCATION_OF_INTEREST))
-    Mockito.`when`(mockLocalDataStore.mergeLocationOfInterest(FakeData.LOCATION_OF_INTEREST))
-      .thenReturn(Completable.complete())
+    mockMergeLocationOfInterestChanges()
     locationOfInterestRepository
       .syncLocationsOfInterest(FakeData.SURVEY)
       .test()
       .assertNoErrors()
       .assertComplete()
     Mockito.verify(mockLocalDataStore, Mockito.times(1))
-      .mergeLocationOfInterest(FakeData.LOCATION_OF_INTEREST)
+      .mergeLocationOfInterestChanges(
+        LocationOfInterestChangeSet(modified = ImmutableList.of(FakeData.LOCATION_OF_INTEREST))
+      )
   }
 
   @Test
   fun testSyncLocationsOfInterest_modified() {
     fakeRemoteDataStore.streamLoiOnce(modified("entityId", FakeData.LOCATION_OF_INTEREST))
-    Mockito.`when`(mockLocalDataStore.mergeLocationOfInterest(FakeData.LOCATION_OF_INTEREST))
-      .thenReturn(Completable.complete())
+    mockMergeLocationOfInterestChanges()
     locationOfInterestRepository
       .syncLocationsOfInterest(FakeData.SURVEY)
       .test()
       .assertNoErrors()
       .assertComplete()
     Mockito.verify(mockLocalDataStore, Mockito.times(1))
-      .mergeLocationOfInterest(FakeData.LOCATION_OF_INTEREST)
+      .mergeLocationOfInterestChanges(
+        LocationOfInterestChangeSet(modified = ImmutableList.of(FakeData.LOCATION_OF_INTEREST))
+      )
   }
 
   @Test
   fun testSyncLocationsOfInterest_removed() {
     fakeRemoteDataStore.streamLoiOnce(removed("entityId"))
-    Mockito.`when`(mockLocalDataStore.deleteLocationOfInterest(ArgumentMatchers.anyString()))
-      .thenReturn(Completable.complete())
+    mockMergeLocationOfInterestChanges()
     locationOfInterestRepository.syncLocationsOfInterest(FakeData.SURVEY).test().assertComplete()
-    Mockito.verify(mockLocalDataStore, Mockito.times(1)).deleteLocationOfInterest("entityId")
+    Mockito.verify(mockLocalDataStore, Mockito.times(1))
+      .mergeLocationOfInterestChanges(
+        LocationOfInterestChangeSet(removedIds = ImmutableSet.of("entityId"))
+      )
+  }
+
+  @Test
+  fun testSyncLocationsOfInterest_batchesChanges() {
+    val loi1 = FakeData.LOCATION_OF_INTEREST.copy(id = "loi 1")
+    val loi2 = FakeData.LOCATION_OF_INTEREST.copy(id = "loi 2")
+    val modifiedLoi1 = loi1.copy(caption = "modified")
+    fakeRemoteDataStore.streamLoiOnce(
+      loaded(loi1.id, loi1),
+      loaded(loi2.id, loi2),
+      removed("loi 3"),
+      modified(loi1.id, modifiedLoi1),
+      removed(loi2.id)
+    )
+    mockMergeLocationOfInterestChanges()
+    locationOfInterestRepository
+      .syncLocationsOfInterest(FakeData.SURVEY, batchWindowMillis = 60_000, maxBatchSize = 3)
+      .test()
+      .assertNoErrors()
+      .assertComplete()
+    Mockito.verify(mockLocalDataStore, Mockito.times(1))
+      .mergeLocationOfInterestChanges(
+        LocationOfInterestChangeSet(
+          modified = ImmutableList.of(loi1, loi2),
+          removedIds = ImmutableSet.of("loi 3")
+        )
+      )
+    // Later changes to the same LOI within a batch supersede earlier ones.
+    Mockito.verify(mockLocalDataStore, Mockito.times(1))
+      .mergeLocationOfInterestChanges(
+        LocationOfInterestChangeSet(
+          modified = ImmutableList.of(modifiedLoi1),
+          removedIds = ImmutableSet.of(loi2.id)
+        )
+      )
+  }
+
+  @Test
+  fun testSyncLocationsOfInterest_slowWrites_queuesBatches() {
+    val events =
+      (1..10).map { loaded("loi $it", FakeData.LOCATION_OF_INTEREST.copy(id = "loi $it")) }
+    fakeRemoteDataStore.streamLoiOnce(*events.toTypedArray())
+    Mockito.`when`(mockLocalDataStore.mergeLocationOfInterestChanges(any()))
+      .thenReturn(Completable.complete().delay(10, TimeUnit.MILLISECONDS))
+    locationOfInterestRepository
+      .syncLocationsOfInterest(FakeData.SURVEY, batchWindowMillis = 60_000, maxBatchSize = 2)
+      .test()
+      .await()
+      .assertNoErrors()
+      .assertComplete()
+    Mockito.verify(mockLocalDataStore, Mockito.times(5)).mergeLocationOfInterestChanges(any())
   }
 
   @Test
@@ -20,6 +20,7 @@ import android.graphics.Bitmap
 import android.graphics.Color
 import androidx.appcompat.content.res.AppCompatResources
 import androidx.core.content.res.ResourcesCompat
+import com.google.android.gms.maps.model.BitmapDescriptor
 import com.google.android.ground.BaseHiltTest
 import com.google.android.ground.R
 import com.google.android.ground.ui.home.mapcontainer.HomeScreenMapContainerViewModel
@@ -30,6 +31,7 @@ import javax.inject.Inject
 import org.junit.Before
 import org.junit.Test
 import org.junit.runner.RunWith
+import org.mockito.kotlin.mock
 import org.robolectric.RobolectricTestRunner
 
 @HiltAndroidTest
@@ -40,6 +42,15 @@ class MarkerIconFactoryTest : BaseHiltTest() {
   @Inject lateinit var markerIconFactory: MarkerIconFactory
   private var markerUnscaledWidth = 0
   private var markerUnscaledHeight = 0
+  private var renderCount = 0
+
+  /** Counts rendered icons, since [BitmapDescriptor]s can't be created outside of Play services. */
+  private val countingIconFactory by lazy {
+    MarkerIconFactory(context) {
+      renderCount++
+      mock<BitmapDescriptor>()
+    }
+  }
 
   @Before
   override fun setUp() {
@@ -99,10 +110,54 @@ class MarkerIconFactoryTest : BaseHiltTest() {
     verifyBitmapScale(bitmap, scale)
   }
 
+  @Test
+  fun markerIcon_sameColorAndState_servedFromCache() {
+    val icon = countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_IN)
+    val cachedIcon = countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_IN + 1)
+
+    assertThat(cachedIcon).isSameInstanceAs(icon)
+    assertThat(renderCount).isEqualTo(1)
+  }
+
+  @Test
+  fun markerIcon_differentColorOrState_rendered() {
+    countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_IN)
+    countingIconFactory.getMarkerIcon(Color.RED, ZOOMED_IN)
+    countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_OUT)
+    countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_IN, true)
+
+    assertThat(renderCount).isEqualTo(4)
+  }
+
+  @Test
+  fun prewarm_rendersAllStatesOnce() {
+    countingIconFactory.prewarm(listOf(Color.BLUE, Color.RED))
+    countingIconFactory.prewarm(listOf(Color.BLUE))
+
+    assertThat(renderCount).isEqualTo(8)
+  }
+
+  @Test
+  fun prewarm_iconsServedFromCache() {
+    countingIconFactory.prewarm(listOf(Color.BLUE))
+
+    for (isSelected in listOf(false, true)) {
+      countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_OUT, isSelected)
+      countingIconFactory.getMarkerIcon(Color.BLUE, ZOOMED_IN, isSelected)
+    }
+
+    assertThat(renderCount).isEqualTo(4)
+  }
+
   private fun verifyBitmapScale(bitmap: Bitmap, scale: Float) {
     val expectedWidth = (markerUnscaledWidth * scale).toInt()
     val expectedHeight = (markerUnscaledHeight * scale).toInt()
     assertThat(bitmap.width).isEqualTo(expectedWidth)
     assertThat(bitmap.height).isEqualTo(expectedHeight)
   }
+
+  companion object {
+    private const val ZOOMED_IN = HomeScreenMapContainerViewModel.ZOOM_LEVEL_THRESHOLD
+    private const val ZOOMED_OUT = ZOOMED_IN - 1
+  }
 }
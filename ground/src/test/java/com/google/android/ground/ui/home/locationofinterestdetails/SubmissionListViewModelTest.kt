@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.home.locationofinterestdetails
+
+import com.google.android.ground.BaseHiltTest
+import com.google.android.ground.model.submission.Submission
+import com.google.android.ground.model.submission.SubmissionPage
+import com.google.android.ground.repository.SubmissionRepository
+import com.google.android.ground.ui.home.locationofinterestdetails.SubmissionListViewModel.PAGE_SIZE
+import com.google.android.ground.util.toImmutableList
+import com.google.common.collect.ImmutableList
+import com.google.common.truth.Truth.assertThat
+import com.jraska.livedata.TestObserver
+import com.sharedtest.FakeData.LOCATION_OF_INTEREST
+import com.sharedtest.FakeData.SUBMISSION
+import dagger.hilt.android.testing.HiltAndroidTest
+import io.reactivex.Single
+import org.junit.Before
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.mockito.kotlin.any
+import org.mockito.kotlin.anyOrNull
+import org.mockito.kotlin.eq
+import org.mockito.kotlin.isNull
+import org.mockito.kotlin.times
+import org.mockito.kotlin.verify
+import org.mockito.kotlin.whenever
+import org.robolectric.RobolectricTestRunner
+
+@HiltAndroidTest
+@RunWith(RobolectricTestRunner::class)
+class SubmissionListViewModelTest : BaseHiltTest() {
+  @Mock lateinit var submissionRepository: SubmissionRepository
+
+  private lateinit var viewModel: SubmissionListViewModel
+
+  @Before
+  override fun setUp() {
+    super.setUp()
+    viewModel = SubmissionListViewModel(submissionRepository)
+  }
+
+  @Test
+  fun testLoadSubmissionList_loadsFirstPage() {
+    stubSubmissions(PAGE_SIZE * 2)
+
+    val observer = loadSubmissionList()
+
+    observer.assertValue { it == submissions(0 until PAGE_SIZE) }
+    TestObserver.test(viewModel.isLoading).assertValue(false)
+    verify(submissionRepository).getSubmissionsPage(any(), any(), any(), isNull(), eq(PAGE_SIZE))
+  }
+
+  @Test
+  fun testLoadNextPage_appendsPageAfterLastSubmission() {
+    stubSubmissions(PAGE_SIZE * 2 + 5)
+    val observer = loadSubmissionList()
+
+    viewModel.loadNextPage(PAGE_SIZE)
+    viewModel.loadNextPage(PAGE_SIZE * 2)
+
+    assertThat(observer.valueHistory().map { it.size })
+      .containsExactly(PAGE_SIZE, PAGE_SIZE * 2, PAGE_SIZE * 2 + 5)
+      .inOrder()
+    observer.assertValue { it == submissions(0 until PAGE_SIZE * 2 + 5) }
+    verify(submissionRepository)
+      .getSubmissionsPage(any(), any(), any(), eq(cursor(PAGE_SIZE * 2 - 1)), eq(PAGE_SIZE))
+  }
+
+  @Test
+  fun testLoadNextPage_repeatedAndStaleRequestsIgnored() {
+    stubSubmissions(PAGE_SIZE * 3)
+    val observer = loadSubmissionList()
+
+    viewModel.loadNextPage(PAGE_SIZE)
+    viewModel.loadNextPage(PAGE_SIZE)
+    viewModel.loadNextPage(PAGE_SIZE / 2)
+
+    observer.assertValue { it.size == PAGE_SIZE * 2 }
+    verify(submissionRepository, times(2))
+      .getSubmissionsPage(any(), any(), any(), anyOrNull(), any())
+  }
+
+  @Test
+  fun testLoadNextPage_afterPartialPage_notLoaded() {
+    stubSubmissions(PAGE_SIZE - 1)
+    val observer = loadSubmissionList()
+
+    viewModel.loadNextPage(PAGE_SIZE - 1)
+
+    observer.assertHistorySize(1).assertValue { it.size == PAGE_SIZE - 1 }
+    verify(submissionRepository).getSubmissionsPage(any(), any(), any(), anyOrNull(), any())
+  }
+
+  @Test
+  fun testLoadNextPage_afterExactlyFullPages_loadsEmptyPageOnce() {
+    stubSubmissions(PAGE_SIZE)
+    val observer = loadSubmissionList()
+
+    viewModel.loadNextPage(PAGE_SIZE)
+    viewModel.loadNextPage(PAGE_SIZE)
+
+    observer.assertValue { it == submissions(0 until PAGE_SIZE) }
+    verify(submissionRepository, times(2))
+      .getSubmissionsPage(any(), any(), any(), anyOrNull(), any())
+  }
+
+  @Test
+  fun testLoadNextPage_afterPageWithSkippedSubmissions_loadsNextPage() {
+    stubSubmissions(PAGE_SIZE * 2, skipped = setOf(3))
+    val observer = loadSubmissionList()
+
+    viewModel.loadNextPage(PAGE_SIZE - 1)
+
+    observer.assertValue { it == submissions((0 until PAGE_SIZE * 2).filter { i -> i != 3 }) }
+    verify(submissionRepository)
+      .getSubmissionsPage(any(), any(), any(), eq(cursor(PAGE_SIZE - 1)), eq(PAGE_SIZE))
+  }
+
+  @Test
+  fun testLoadSubmissionList_pageWithOnlySkippedSubmissions_loadsNextPage() {
+    stubSubmissions(PAGE_SIZE * 2, skipped = (0 until PAGE_SIZE).toSet())
+
+    val observer = loadSubmissionList()
+
+    observer.assertValue { it == submissions(PAGE_SIZE until PAGE_SIZE * 2) }
+    verify(submissionRepository, times(2))
+      .getSubmissionsPage(any(), any(), any(), anyOrNull(), any())
+  }
+
+  @Test
+  fun testLoadSubmissionList_noSubmissions() {
+    stubSubmissions(0)
+    val observer = loadSubmissionList()
+
+    viewModel.loadNextPage(0)
+
+    observer.assertValue { it.isEmpty() }
+    verify(submissionRepository).getSubmissionsPage(any(), any(), any(), anyOrNull(), any())
+  }
+
+  private fun loadSubmissionList(): TestObserver<ImmutableList<Submission>> =
+    TestObserver.test(viewModel.submissions).also {
+      viewModel.loadSubmissionList(LOCATION_OF_INTEREST)
+    }
+
+  /**
+   * Serves [count] submissions from the repository, a page at a time, leaving out those in
+   * [skipped] as if they couldn't be read.
+   */
+  private fun stubSubmissions(count: Int, skipped: Set<Int> = setOf()) {
+    whenever(submissionRepository.getSubmissionsPage(any(), any(), any(), anyOrNull(), any()))
+      .thenAnswer {
+        val after = it.getArgument<SubmissionPage.Cursor?>(3)
+        val limit = it.getArgument<Int>(4)
+        val start = if (after == null) 0 else after.id.toInt() + 1
+        val end = minOf(start + limit, count)
+        val next = if (end - start < limit) null else cursor(end - 1)
+        val submissions = submissions((start until end).filter { i -> i !in skipped })
+        Single.just(SubmissionPage(submissions, next))
+      }
+  }
+
+  private fun submissions(indices: Iterable<Int>) = indices.map { submission(it) }.toImmutableList()
+
+  private fun submission(index: Int): Submission = SUBMISSION.copy(id = index.toString())
+
+  private fun cursor(index: Int) = SubmissionPage.Cursor(0, index.toString())
+}
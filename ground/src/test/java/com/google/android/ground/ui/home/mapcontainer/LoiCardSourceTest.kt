@@ -37,6 +37,8 @@ import org.junit.Test
 import org.junit.runner.RunWith
 import org.mockito.Mock
 import org.mockito.Mockito
+import org.mockito.kotlin.any
+import org.mockito.kotlin.eq
 import org.robolectric.RobolectricTestRunner
 
 // TODO: Add more test coverage
@@ -59,7 +61,13 @@ class LoiCardSourceTest : BaseHiltTest() {
     Mockito.`when`(surveyRepository.activeSurvey)
       .thenReturn(Flowable.just(Optional.of(TEST_SURVEY)))
 
-    Mockito.`when`(locationOfInterestRepository.getLocationsOfInterestOnceAndStream(TEST_SURVEY))
+    // Bounding box lookup is done in the local db; return all LOIs here to test refinement.
+    Mockito.`when`(
+        locationOfInterestRepository.getLocationsOfInterestWithinBoundsOnceAndStream(
+          eq(TEST_SURVEY),
+          any()
+        )
+      )
       .thenReturn(Flowable.just(TEST_LOCATIONS_OF_INTEREST))
 
     loiCardSource = LoiCardSource(surveyRepository, locationOfInterestRepository)
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map
+
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class WebMercatorTest {
+
+  @Test
+  fun testWorldPosition() {
+    assertThat(WebMercator.lngToWorldX(0.0)).isWithin(1e-9).of(0.5)
+    assertThat(WebMercator.lngToWorldX(-180.0)).isWithin(1e-9).of(0.0)
+    assertThat(WebMercator.latToWorldY(0.0)).isWithin(1e-9).of(0.5)
+    assertThat(WebMercator.latToWorldY(90.0)).isWithin(1e-9).of(0.0)
+    assertThat(WebMercator.latToWorldY(-90.0)).isWithin(1e-9).of(1.0)
+  }
+
+  @Test
+  fun testWorldPosition_roundTrip() {
+    assertThat(WebMercator.worldXToLng(WebMercator.lngToWorldX(-122.5))).isWithin(1e-9).of(-122.5)
+    assertThat(WebMercator.worldYToLat(WebMercator.latToWorldY(45.0))).isWithin(1e-9).of(45.0)
+  }
+
+  @Test
+  fun testTileXAndY() {
+    assertThat(WebMercator.tileX(-180.0, 1)).isEqualTo(0)
+    assertThat(WebMercator.tileX(10.0, 1)).isEqualTo(1)
+    assertThat(WebMercator.tileY(10.0, 1)).isEqualTo(0)
+    assertThat(WebMercator.tileY(-10.0, 1)).isEqualTo(1)
+  }
+
+  @Test
+  fun testTileXAndY_clampedToWorld() {
+    assertThat(WebMercator.tileX(180.0, 2)).isEqualTo(3)
+    assertThat(WebMercator.tileY(90.0, 2)).isEqualTo(0)
+    assertThat(WebMercator.tileY(-90.0, 2)).isEqualTo(3)
+  }
+
+  @Test
+  fun testTileBounds() {
+    val bounds = WebMercator.tileBounds(1, 0, 1)
+
+    assertThat(bounds.southwest.latitude).isWithin(1e-6).of(0.0)
+    assertThat(bounds.southwest.longitude).isWithin(1e-6).of(0.0)
+    assertThat(bounds.northeast.latitude).isWithin(1e-6).of(85.0511288)
+    assertThat(bounds.northeast.longitude).isWithin(1e-5).of(180.0)
+  }
+
+  @Test
+  fun testTileBounds_containsTile() {
+    val bounds = WebMercator.tileBounds(5, 9, 4)
+
+    assertThat(WebMercator.tileX(bounds.center.longitude, 4)).isEqualTo(5)
+    assertThat(WebMercator.tileY(bounds.center.latitude, 4)).isEqualTo(9)
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import android.database.sqlite.SQLiteDatabase
+import com.cocoahero.android.gmaps.addons.mapbox.CompositeMapBoxOfflineTileProvider
+import com.cocoahero.android.gmaps.addons.mapbox.MapBoxOfflineTileProvider
+import com.google.android.ground.measure
+import com.google.android.ground.perSecond
+import com.google.android.ground.reportBenchmark
+import com.google.common.truth.Truth.assertThat
+import java.io.File
+import java.util.Random
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Compares the tiles served per second under concurrent requests by a single
+ * [CompositeMapBoxOfflineTileProvider] against one uncached [MapBoxOfflineTileProvider] per file,
+ * as used to be done with one tile overlay per file.
+ */
+@RunWith(RobolectricTestRunner::class)
+class CompositeMapBoxOfflineTileProviderBenchmarkTest {
+  @get:Rule val tempFolder = TemporaryFolder()
+
+  private lateinit var files: List<File>
+
+  @Before
+  fun setUp() {
+    // The west and east halves of the world, split at the prime meridian.
+    files = listOf(createMbtilesFile(0, "-180,-85,0,85"), createMbtilesFile(1, "0,-85,180,85"))
+  }
+
+  @Test
+  fun benchmarkGetTile() {
+    val requests = createRequests()
+    val perFileProviders = files.map { MapBoxOfflineTileProvider(it.absolutePath, 0) }
+    val perFileTilesPerSecond =
+      tilesPerSecond(requests) { x, y, z ->
+        // The Maps SDK queries each overlay in turn.
+        perFileProviders.forEach { it.getTile(x, y, z) }
+      }
+    perFileProviders.forEach { it.close() }
+
+    val tilesPerSecond =
+      CompositeMapBoxOfflineTileProvider(files).use { provider ->
+        tilesPerSecond(requests) { x, y, z -> provider.getTile(x, y, z) }
+      }
+
+    // Each tile must still be served from the file containing it.
+    CompositeMapBoxOfflineTileProvider(files).use { provider ->
+      requests.forEach { (x, y, z) ->
+        val half = if (z == 0) 0 else x * 2 / (1 shl z)
+        assertThat(provider.getTile(x, y, z).data).isEqualTo(tileData(half, x, y, z))
+      }
+    }
+
+    reportBenchmark(
+      "CompositeMapBoxOfflineTileProvider.getTile",
+      mapOf(
+        "threads" to THREAD_COUNT,
+        "per-file tiles/s" to perFileTilesPerSecond,
+        "composite tiles/s" to tilesPerSecond
+      )
+    )
+  }
+
+  /** Requests tiles of the zoom levels in the files, favoring recently viewed tiles. */
+  private fun createRequests(): List<IntArray> {
+    val random = Random(0)
+    val recent = ArrayList<IntArray>()
+    return List(REQUEST_COUNT) {
+      if (recent.isNotEmpty() && random.nextInt(2) == 0) {
+        recent[random.nextInt(recent.size)]
+      } else {
+        val z = random.nextInt(MAX_ZOOM + 1)
+        intArrayOf(random.nextInt(1 shl z), random.nextInt(1 shl z), z).also { recent.add(it) }
+      }
+    }
+  }
+
+  private fun tilesPerSecond(requests: List<IntArray>, getTile: (Int, Int, Int) -> Unit): Long {
+    val executor = Executors.newFixedThreadPool(THREAD_COUNT)
+    val tasks =
+      requests.chunked(requests.size / THREAD_COUNT).map { chunk ->
+        Callable { chunk.forEach { (x, y, z) -> getTile(x, y, z) } }
+      }
+    val elapsed = measure { executor.invokeAll(tasks).forEach { it.get() } }
+    executor.shutdown()
+    executor.awaitTermination(1, TimeUnit.SECONDS)
+    return perSecond(requests.size, elapsed.millis)
+  }
+
+  /** Creates a file with the tiles of the specified half of the world at each zoom level. */
+  private fun createMbtilesFile(half: Int, bounds: String): File {
+    val file = tempFolder.newFile()
+    SQLiteDatabase.openOrCreateDatabase(file, null).use { db ->
+      db.execSQL("CREATE TABLE metadata (name TEXT, value TEXT)")
+      db.execSQL("INSERT INTO metadata VALUES ('bounds', ?)", arrayOf(bounds))
+      db.execSQL(
+        "CREATE TABLE tiles (zoom_level INTEGER, tile_column INTEGER, tile_row INTEGER, " +
+          "tile_data BLOB, PRIMARY KEY (zoom_level, tile_column, tile_row))"
+      )
+      db.beginTransaction()
+      for (z in 0..MAX_ZOOM) {
+        val tileCount = 1 shl z
+        val columns = if (z == 0) 0..0 else half * tileCount / 2 until (half + 1) * tileCount / 2
+        for (x in columns) {
+          for (y in 0 until tileCount) {
+            db.execSQL(
+              "INSERT INTO tiles VALUES (?, ?, ?, ?)",
+              arrayOf(z, x, tileCount - 1 - y, tileData(half, x, y, z))
+            )
+          }
+        }
+      }
+      db.setTransactionSuccessful()
+      db.endTransaction()
+    }
+    return file
+  }
+
+  companion object {
+    private const val MAX_ZOOM = 5
+    private const val THREAD_COUNT = 4
+    private const val REQUEST_COUNT = 20_000
+    private const val TILE_SIZE = 16 * 1024
+
+    private fun tileData(half: Int, x: Int, y: Int, z: Int): ByteArray =
+      ByteArray(TILE_SIZE).also { Random((half * 31L + z) * 31 * 31 + x * 31 + y).nextBytes(it) }
+  }
+}
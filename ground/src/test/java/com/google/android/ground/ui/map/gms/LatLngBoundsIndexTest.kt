@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.common.truth.Truth.assertThat
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LatLngBoundsIndexTest {
+  private val index = LatLngBoundsIndex<String>()
+
+  @Test
+  fun findContaining() {
+    index.put("small", bounds(0.0, 0.0, 0.001, 0.001))
+    index.put("large", bounds(-10.0, -10.0, 10.0, 10.0))
+    index.put("elsewhere", bounds(20.0, 20.0, 21.0, 21.0))
+
+    assertThat(index.findContaining(LatLng(0.0005, 0.0005))).containsExactly("small", "large")
+    assertThat(index.findContaining(LatLng(5.0, 5.0))).containsExactly("large")
+    assertThat(index.findContaining(LatLng(15.0, 15.0))).isEmpty()
+  }
+
+  @Test
+  fun findContaining_onCellBoundary() {
+    // Straddles the boundary between cells at every grid level.
+    index.put("item", bounds(-0.001, -0.001, 0.001, 0.001))
+
+    assertThat(index.findContaining(LatLng(-0.0005, -0.0005))).containsExactly("item")
+    assertThat(index.findContaining(LatLng(0.0005, 0.0005))).containsExactly("item")
+  }
+
+  @Test
+  fun findContaining_acrossAntimeridian() {
+    index.put("item", bounds(0.0, 179.0, 1.0, -179.0))
+
+    assertThat(index.findContaining(LatLng(0.5, 179.5))).containsExactly("item")
+    assertThat(index.findContaining(LatLng(0.5, -179.5))).containsExactly("item")
+    assertThat(index.findContaining(LatLng(0.5, 0.0))).isEmpty()
+  }
+
+  @Test
+  fun findIntersecting() {
+    index.put("a", bounds(0.0, 0.0, 1.0, 1.0))
+    index.put("b", bounds(5.0, 5.0, 6.0, 6.0))
+    index.put("point", bounds(2.0, 2.0, 2.0, 2.0))
+
+    assertThat(index.findIntersecting(bounds(0.5, 0.5, 2.5, 2.5))).containsExactly("a", "point")
+    assertThat(index.findIntersecting(bounds(-90.0, -180.0, 90.0, 180.0)))
+      .containsExactly("a", "b", "point")
+  }
+
+  @Test
+  fun put_replacesBounds() {
+    index.put("item", bounds(0.0, 0.0, 1.0, 1.0))
+    index.put("item", bounds(5.0, 5.0, 6.0, 6.0))
+
+    assertThat(index.findContaining(LatLng(0.5, 0.5))).isEmpty()
+    assertThat(index.findContaining(LatLng(5.5, 5.5))).containsExactly("item")
+    assertThat(index.size).isEqualTo(1)
+  }
+
+  @Test
+  fun remove() {
+    index.put("item", bounds(0.0, 0.0, 1.0, 1.0))
+    index.remove("item")
+
+    assertThat(index.findContaining(LatLng(0.5, 0.5))).isEmpty()
+    assertThat(index.size).isEqualTo(0)
+  }
+
+  @Test
+  fun intersects() {
+    val bounds = bounds(0.0, 0.0, 10.0, 10.0)
+
+    assertThat(LatLngBoundsIndex.intersects(bounds, bounds(5.0, 5.0, 20.0, 20.0))).isTrue()
+    assertThat(LatLngBoundsIndex.intersects(bounds, bounds(11.0, 0.0, 20.0, 10.0))).isFalse()
+  }
+
+  @Test
+  fun intersects_acrossAntimeridian() {
+    val bounds = bounds(0.0, 170.0, 10.0, -170.0)
+
+    assertThat(LatLngBoundsIndex.intersects(bounds, bounds(0.0, -175.0, 5.0, -172.0))).isTrue()
+    assertThat(LatLngBoundsIndex.intersects(bounds, bounds(0.0, 0.0, 5.0, 10.0))).isFalse()
+  }
+
+  private fun bounds(south: Double, west: Double, north: Double, east: Double) =
+    LatLngBounds(LatLng(south, west), LatLng(north, east))
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import android.os.Looper.getMainLooper
+import androidx.test.core.app.ApplicationProvider
+import com.google.android.gms.maps.GoogleMap
+import com.google.android.ground.BaseHiltTest
+import com.google.android.ground.measure
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.model.geometry.Point
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.reportBenchmark
+import com.google.common.truth.Truth.assertThat
+import com.sharedtest.FakeData
+import dagger.hilt.android.testing.HiltAndroidTest
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.Mock
+import org.robolectric.RobolectricTestRunner
+import org.robolectric.Shadows.shadowOf
+
+/**
+ * Measures the time taken to add, update and remove all LOIs of surveys of increasing size in
+ * [LocationOfInterestClusterManager], which should grow linearly with the number of LOIs.
+ */
+@HiltAndroidTest
+@RunWith(RobolectricTestRunner::class)
+class LocationOfInterestClusterManagerBenchmarkTest : BaseHiltTest() {
+  @Mock private lateinit var map: GoogleMap
+
+  @Test
+  fun benchmarkRender() {
+    for (count in LOI_COUNTS) {
+      val clusterManager =
+        LocationOfInterestClusterManager(ApplicationProvider.getApplicationContext(), map)
+      shadowOf(getMainLooper()).idle()
+      val lois = createLocationsOfInterest(count)
+      val updatedLois = lois.map { it.copy(caption = "updated") }
+
+      val add = measure { clusterManager.addOrUpdateLocationsOfInterest(lois) }
+      val update = measure { clusterManager.addOrUpdateLocationsOfInterest(updatedLois) }
+      assertThat(clusterManager.algorithm.items).hasSize(count)
+      val remove = measure {
+        clusterManager.removeLocationsOfInterestById(lois.map { it.id }.toSet())
+      }
+      assertThat(clusterManager.algorithm.items).isEmpty()
+
+      reportBenchmark(
+        "LocationOfInterestClusterManager.render.$count",
+        mapOf("add ms" to add.millis, "update ms" to update.millis, "remove ms" to remove.millis)
+      )
+    }
+  }
+
+  private fun createLocationsOfInterest(count: Int): List<LocationOfInterest> =
+    (0 until count).map {
+      FakeData.LOCATION_OF_INTEREST.copy(
+        id = "loi $it",
+        geometry = Point(Coordinate((it % 180) - 90.0, (it / 180 % 360) - 180.0))
+      )
+    }
+
+  companion object {
+    private val LOI_COUNTS = listOf(1_000, 5_000, 20_000)
+  }
+}
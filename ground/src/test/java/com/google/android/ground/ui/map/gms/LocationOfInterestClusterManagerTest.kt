@@ -53,6 +53,18 @@ class LocationOfInterestClusterManagerTest : BaseHiltTest() {
       .contains(FakeData.LOCATION_OF_INTEREST_CLUSTER_ITEM)
   }
 
+  @Test
+  fun addOrUpdateLocationOfInterest_replacesExistingItem() {
+    val updated = FakeData.LOCATION_OF_INTEREST.copy(caption = "new caption")
+
+    locationOfInterestClusterManager.addOrUpdateLocationOfInterest(FakeData.LOCATION_OF_INTEREST)
+    locationOfInterestClusterManager.addOrUpdateLocationOfInterest(updated)
+
+    assertThat(locationOfInterestClusterManager.algorithm.items.map { it.locationOfInterest })
+      .containsExactly(updated)
+    assertThat(locationOfInterestClusterManager.getLocationsOfInterest()).containsExactly(updated)
+  }
+
   @Test
   fun removeLocationsOfInterest_removesLOIsById() {
     locationOfInterestClusterManager.addOrUpdateLocationOfInterest(FakeData.LOCATION_OF_INTEREST)
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.model.geometry.LinearRing
+import com.google.android.ground.model.geometry.Point
+import com.google.android.ground.model.geometry.Polygon
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.android.ground.model.locationofinterest.LocationOfInterestChangeSet
+import com.google.common.collect.ImmutableList
+import com.google.common.collect.ImmutableSet
+import com.google.common.truth.Truth.assertThat
+import com.sharedtest.FakeData
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LocationOfInterestTileLayerTest {
+  private val tileLayer =
+    LocationOfInterestTileLayer(
+      LocationOfInterestTileProvider(
+        { listOf() },
+        PolygonLayerManager.Style(2f, 0xffff9131.toInt(), 0x55ffffff),
+        1f
+      )
+    )
+
+  @Test
+  fun findLocationsOfInterestAt() {
+    tileLayer.applyChanges(
+      LocationOfInterestChangeSet(added = ImmutableList.of(POINT_LOI, POLYGON_LOI))
+    )
+
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(45.1, -45.1), 0.5))
+      .containsExactly(POINT_LOI)
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(45.0, -44.0), 0.5))
+      .containsExactly(POLYGON_LOI)
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(0.0, 0.0), 0.5)).isEmpty()
+  }
+
+  @Test
+  fun findLocationsOfInterestAt_pointOutsideRadius() {
+    tileLayer.applyChanges(LocationOfInterestChangeSet(added = ImmutableList.of(POINT_LOI)))
+
+    // Within the radius on both axes, but not diagonally.
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(45.3, -45.4), 0.5)).isEmpty()
+  }
+
+  @Test
+  fun findLocationsOfInterestAt_pointAtHighLatitude() {
+    val loi = FakeData.LOCATION_OF_INTEREST.copy(geometry = Point(Coordinate(60.0, 0.0)))
+    tileLayer.applyChanges(LocationOfInterestChangeSet(added = ImmutableList.of(loi)))
+
+    // A degree of latitude is drawn about twice as long as a degree of longitude at 60°.
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(60.0, 0.9), 1.0)).containsExactly(loi)
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(60.4, 0.0), 1.0)).containsExactly(loi)
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(60.9, 0.0), 1.0)).isEmpty()
+  }
+
+  @Test
+  fun applyChanges_removesLocationsOfInterest() {
+    tileLayer.applyChanges(LocationOfInterestChangeSet(added = ImmutableList.of(POINT_LOI)))
+
+    tileLayer.applyChanges(LocationOfInterestChangeSet(removedIds = ImmutableSet.of(POINT_LOI.id)))
+
+    assertThat(tileLayer.size).isEqualTo(0)
+    assertThat(tileLayer.findLocationsOfInterestAt(LatLng(45.0, -45.0), 0.5)).isEmpty()
+  }
+
+  companion object {
+    private val POINT_LOI: LocationOfInterest =
+      FakeData.LOCATION_OF_INTEREST.copy(id = "point", geometry = Point(Coordinate(45.0, -45.0)))
+
+    private val POLYGON_LOI: LocationOfInterest =
+      FakeData.LOCATION_OF_INTEREST.copy(
+        id = "polygon",
+        geometry =
+          Polygon(
+            LinearRing(
+              listOf(
+                Coordinate(44.0, -44.5),
+                Coordinate(44.0, -43.0),
+                Coordinate(46.0, -43.0),
+                Coordinate(46.0, -44.5),
+                Coordinate(44.0, -44.5)
+              )
+            )
+          )
+      )
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.gms.maps.model.TileProvider
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.model.geometry.LinearRing
+import com.google.android.ground.model.geometry.Point
+import com.google.android.ground.model.geometry.Polygon
+import com.google.android.ground.model.locationofinterest.LocationOfInterest
+import com.google.common.truth.Truth.assertThat
+import com.sharedtest.FakeData
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class LocationOfInterestTileProviderTest {
+  private val queries = mutableListOf<LatLngBounds>()
+  private var locationsOfInterest = listOf(POINT_LOI, POLYGON_LOI)
+
+  private val tileProvider =
+    LocationOfInterestTileProvider(
+      { bounds ->
+        queries.add(bounds)
+        locationsOfInterest.filter { loi ->
+          loi.geometry.vertices.any { bounds.contains(it.toLatLng()) }
+        }
+      },
+      PolygonLayerManager.Style(2f, 0xffff9131.toInt(), 0x55ffffff),
+      1f
+    )
+
+  @Test
+  fun getTile_rendersLocationsOfInterest() {
+    val tile = tileProvider.getTile(0, 0, 0)!!
+
+    assertThat(tile).isNotSameInstanceAs(TileProvider.NO_TILE)
+    assertThat(tile.width).isEqualTo(256)
+    assertThat(tile.data).isNotEmpty()
+  }
+
+  @Test
+  fun getTile_noLocationsOfInterest() {
+    // The south east quadrant of the world contains neither LOI.
+    assertThat(tileProvider.getTile(1, 1, 1)).isSameInstanceAs(TileProvider.NO_TILE)
+  }
+
+  @Test
+  fun getTile_cached() {
+    tileProvider.getTile(0, 0, 0)
+    tileProvider.getTile(0, 0, 0)
+
+    assertThat(queries).hasSize(1)
+  }
+
+  @Test
+  fun invalidate_evictsOverlappingTiles() {
+    tileProvider.getTile(0, 0, 1)
+    tileProvider.getTile(1, 1, 1)
+
+    tileProvider.invalidate(listOf(LatLngBounds(LatLng(10.0, -20.0), LatLng(20.0, -10.0))))
+    tileProvider.getTile(0, 0, 1)
+    tileProvider.getTile(1, 1, 1)
+
+    // Only the north west tile overlaps the invalidated bounds.
+    assertThat(queries).hasSize(3)
+  }
+
+  companion object {
+    private val POINT_LOI: LocationOfInterest =
+      FakeData.LOCATION_OF_INTEREST.copy(id = "point", geometry = Point(Coordinate(45.0, -45.0)))
+
+    private val POLYGON_LOI: LocationOfInterest =
+      FakeData.LOCATION_OF_INTEREST.copy(
+        id = "polygon",
+        geometry =
+          Polygon(
+            LinearRing(
+              listOf(
+                Coordinate(44.0, -44.5),
+                Coordinate(44.0, -43.0),
+                Coordinate(46.0, -43.0),
+                Coordinate(46.0, -44.5),
+                Coordinate(44.0, -44.5)
+              )
+            )
+          )
+      )
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.GoogleMap
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.ground.measure
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.model.geometry.LinearRing
+import com.google.android.ground.model.geometry.Polygon
+import com.google.android.ground.reportBenchmark
+import com.google.android.ground.ui.map.MapLocationOfInterest
+import com.google.common.truth.Truth.assertThat
+import com.google.maps.android.PolyUtil
+import com.google.maps.android.collections.MarkerManager
+import com.sharedtest.FakeData
+import kotlin.random.Random
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.mockito.kotlin.mock
+import org.robolectric.RobolectricTestRunner
+
+/**
+ * Compares the time taken to hit test map taps against 20k polygons using the spatial index in
+ * [PolygonLayerManager] against testing every polygon.
+ */
+@RunWith(RobolectricTestRunner::class)
+class PolygonLayerManagerBenchmarkTest {
+
+  @Test
+  fun benchmarkFindLocationsOfInterestAt() {
+    val polygons = (0 until POLYGON_COUNT).associate { "loi $it" to createPolygon(it) }
+    val polygonLayer =
+      PolygonLayerManager(
+        mock<GoogleMap>(),
+        mock<MarkerManager.Collection>(),
+        PolygonLayerManager.Style(1f, 0, 0),
+        { mock() },
+        { false }
+      )
+    polygons.forEach { (id, polygon) ->
+      polygonLayer.addOrUpdate(
+        MapLocationOfInterest(FakeData.LOCATION_OF_INTEREST.copy(id = id, geometry = polygon)),
+        listOf(polygon)
+      )
+    }
+    val random = Random(0)
+    val taps = (1..TAP_COUNT).map { LatLng(random.nextDouble(), random.nextDouble()) }
+
+    var indexedHits = listOf<String>()
+    val indexed = measure {
+      indexedHits =
+        taps.flatMap { tap ->
+          polygonLayer.findLocationsOfInterestAt(tap).map { it.locationOfInterest.id }
+        }
+    }
+    var scannedHits = listOf<String>()
+    val scan = measure {
+      scannedHits =
+        taps.flatMap { tap ->
+          polygons.filterValues { PolyUtil.containsLocation(tap, it.toLatLngs(), false) }.keys
+        }
+    }
+
+    reportBenchmark(
+      "PolygonLayerManager.findLocationsOfInterestAt",
+      mapOf(
+        "taps" to TAP_COUNT,
+        "polygons" to POLYGON_COUNT,
+        "indexed ms" to indexed.millis,
+        "scan ms" to scan.millis
+      )
+    )
+    assertThat(indexedHits).containsExactlyElementsIn(scannedHits)
+  }
+
+  /** Returns one of a grid of small, overlapping squares covering lat/lng 0,0 to 1,1. */
+  private fun createPolygon(i: Int): Polygon {
+    val size = 1.0 / GRID_SIZE
+    val south = (i / GRID_SIZE) * size
+    val west = (i % GRID_SIZE) * size
+    val north = south + size * 1.5
+    val east = west + size * 1.5
+    return Polygon(
+      LinearRing(
+        listOf(
+          Coordinate(south, west),
+          Coordinate(south, east),
+          Coordinate(north, east),
+          Coordinate(north, west),
+          Coordinate(south, west)
+        )
+      )
+    )
+  }
+
+  private fun Polygon.toLatLngs() = shell.coordinates.map { it.toGoogleMapsObject() }
+
+  companion object {
+    private const val POLYGON_COUNT = 20_000
+    private const val GRID_SIZE = 142
+    private const val TAP_COUNT = 1_000
+  }
+}
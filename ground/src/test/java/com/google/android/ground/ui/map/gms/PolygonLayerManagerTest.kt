@@ -0,0 +1,109 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.gms.maps.model.LatLng
+import com.google.android.gms.maps.model.LatLngBounds
+import com.google.android.ground.model.geometry.Coordinate
+import com.google.android.ground.model.geometry.LinearRing
+import com.google.android.ground.model.geometry.Polygon
+import com.google.common.collect.ImmutableList
+import com.google.common.truth.Truth.assertThat
+import kotlin.math.cos
+import kotlin.math.sin
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.robolectric.RobolectricTestRunner
+
+@RunWith(RobolectricTestRunner::class)
+class PolygonLayerManagerTest {
+
+  @Test
+  fun simplify_lowZoom_dropsVertices() {
+    val rings = PolygonLayerManager.simplify(listOf(CIRCLE), 5)
+
+    assertThat(rings.single().single().size).isLessThan(CIRCLE.shell.coordinates.size)
+    assertThat(rings.single().single().size).isAtLeast(4)
+  }
+
+  @Test
+  fun simplify_highZoom_keepsVertices() {
+    val rings = PolygonLayerManager.simplify(listOf(CIRCLE), 20)
+
+    assertThat(rings.single().single()).hasSize(CIRCLE.shell.coordinates.size)
+  }
+
+  @Test
+  fun simplify_dropsHolesTooSmallToSee() {
+    val polygon = CIRCLE.copy(holes = ImmutableList.of(circle(radius = 0.001)))
+
+    assertThat(PolygonLayerManager.simplify(listOf(polygon), 5).single()).hasSize(1)
+    assertThat(PolygonLayerManager.simplify(listOf(polygon), 20).single()).hasSize(2)
+  }
+
+  @Test
+  fun expand() {
+    val bounds = bounds(0.0, 0.0, 10.0, 20.0)
+
+    assertThat(PolygonLayerManager.expand(bounds, 0.5))
+      .isEqualTo(bounds(-5.0, -10.0, 15.0, 30.0))
+  }
+
+  @Test
+  fun expand_acrossAntimeridian() {
+    val bounds = bounds(0.0, 160.0, 10.0, 170.0)
+
+    assertThat(PolygonLayerManager.expand(bounds, 1.0))
+      .isEqualTo(bounds(-10.0, 150.0, 20.0, -180.0))
+  }
+
+  @Test
+  fun centroidOf() {
+    val square =
+      polygon(
+        Coordinate(0.0, 0.0),
+        Coordinate(0.0, 2.0),
+        Coordinate(2.0, 2.0),
+        Coordinate(2.0, 0.0)
+      )
+    val triangle =
+      polygon(Coordinate(10.0, 10.0), Coordinate(10.0, 11.0), Coordinate(11.0, 10.0))
+
+    val centroid = PolygonLayerManager.centroidOf(listOf(triangle, square))!!
+
+    assertThat(centroid.latitude).isWithin(1e-9).of(1.0)
+    assertThat(centroid.longitude).isWithin(1e-9).of(1.0)
+  }
+
+  companion object {
+    private val CIRCLE = Polygon(circle(radius = 1.0))
+
+    /** Returns a ring with a vertex at every degree around a circle centered at 0,0. */
+    private fun circle(radius: Double): LinearRing {
+      val coordinates =
+        (0 until 360)
+          .map { Math.toRadians(it.toDouble()) }
+          .map { Coordinate(radius * sin(it), radius * cos(it)) }
+      return LinearRing(coordinates + coordinates.first())
+    }
+
+    private fun bounds(south: Double, west: Double, north: Double, east: Double) =
+      LatLngBounds(LatLng(south, west), LatLng(north, east))
+
+    private fun polygon(vararg coordinates: Coordinate) =
+      Polygon(LinearRing(coordinates.toList() + coordinates.first()))
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2022 Google LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.ground.ui.map.gms
+
+import com.google.android.ground.rx.Schedulers
+import com.google.common.truth.Truth.assertThat
+import com.sun.net.httpserver.HttpExchange
+import com.sun.net.httpserver.HttpServer
+import io.reactivex.Scheduler
+import io.reactivex.schedulers.Schedulers as RxSchedulers
+import java.io.IOException
+import java.net.InetSocketAddress
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import org.junit.After
+import org.junit.Assert.assertThrows
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+
+/** Tests [WebTileCache] against a local HTTP server serving tiles. */
+class WebTileCacheTest {
+  @get:Rule val tempFolder = TemporaryFolder()
+
+  private val requestCount = AtomicInteger()
+  private var cacheControl: String? = "max-age=3600"
+  private var eTag: String? = null
+  private var responseDelayMillis = 0L
+
+  private lateinit var server: HttpServer
+  private lateinit var cache: WebTileCache
+
+  @Before
+  fun setUp() {
+    server = HttpServer.create(InetSocketAddress("localhost", 0), 0)
+    server.createContext("/tiles") { serve(it) }
+    server.executor = Executors.newCachedThreadPool()
+    server.start()
+    cache = createCache(maxSizeBytes = 1024 * 1024)
+  }
+
+  @After
+  fun tearDown() {
+    server.stop(0)
+  }
+
+  @Test
+  fun testGetTile_freshTileServedFromCache() {
+    assertThat(cache.getTile(url(1))).isEqualTo(tile(1))
+    assertThat(cache.getTile(url(1))).isEqualTo(tile(1))
+
+    assertThat(requestCount.get()).isEqualTo(1)
+  }
+
+  @Test
+  fun testGetTile_noStoreNotCached() {
+    cacheControl = "no-store"
+
+    cache.getTile(url(1))
+    cache.getTile(url(1))
+
+    assertThat(requestCount.get()).isEqualTo(2)
+  }
+
+  @Test
+  fun testGetTile_noCacheHeadersCachedForDefaultTtl() {
+    cacheControl = null
+
+    cache.getTile(url(1))
+    cache.getTile(url(1))
+
+    assertThat(requestCount.get()).isEqualTo(1)
+  }
+
+  @Test
+  fun testGetTile_expiredTileRevalidated() {
+    cacheControl = "no-cache"
+    eTag = "\"v1\""
+
+    cache.getTile(url(1))
+    assertThat(cache.getTile(url(1))).isEqualTo(tile(1))
+
+    assertThat(requestCount.get()).isEqualTo(2)
+  }
+
+  @Test
+  fun testGetTile_missingTile() {
+    assertThat(cache.getTile(url(MISSING_TILE))).isNull()
+  }
+
+  @Test
+  fun testGetTile_expiredTileServedWhenOffline() {
+    cacheControl = "no-cache"
+    cache.getTile(url(1))
+    server.stop(0)
+
+    assertThat(cache.getTile(url(1))).isEqualTo(tile(1))
+    assertThrows(IOException::class.java) { cache.getTile(url(2)) }
+  }
+
+  @Test
+  fun testGetTile_concurrentRequestsShareDownload() {
+    responseDelayMillis = 200
+    val executor = Executors.newFixedThreadPool(4)
+    val start = CountDownLatch(1)
+
+    val results =
+      (1..4).map {
+        executor.submit<ByteArray?> {
+          start.await()
+          cache.getTile(url(1))
+        }
+      }
+    start.countDown()
+
+    results.forEach { assertThat(it.get(5, TimeUnit.SECONDS)).isEqualTo(tile(1)) }
+    assertThat(requestCount.get()).isEqualTo(1)
+    executor.shutdown()
+  }
+
+  @Test
+  fun testGetTile_evictsLeastRecentlyUsedTiles() {
+    cache = createCache(maxSizeBytes = tile(1).size * 2L)
+    cache.getTile(url(1))
+    cache.getTile(url(2))
+    cache.getTile(url(1))
+    cache.getTile(url(3))
+
+    cache.getTile(url(1))
+    cache.getTile(url(2))
+
+    // Tile 2 was least recently used when tile 3 was added.
+    assertThat(requestCount.get()).isEqualTo(4)
+  }
+
+  @Test
+  fun testGetTile_cachePersistedOnDisk() {
+    cache.getTile(url(1))
+
+    createCache(maxSizeBytes = 1024 * 1024).getTile(url(1))
+
+    assertThat(requestCount.get()).isEqualTo(1)
+  }
+
+  @Test
+  fun testGetTile_concurrentRequestsForDifferentTiles() {
+    val executor = Executors.newFixedThreadPool(4)
+
+    val results =
+      (0 until 20).map { i -> executor.submit<ByteArray?> { cache.getTile(url(i % 5 + 1)) } }
+
+    results.forEachIndexed { i, result ->
+      assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo(tile(i % 5 + 1))
+    }
+    executor.shutdown()
+  }
+
+  @Test
+  fun testGetTile_deletesTemporaryFiles() {
+    val tempFile = tempFolder.newFile("tile.tmp")
+
+    createCache(maxSizeBytes = 1024 * 1024).getTile(url(1))
+
+    assertThat(tempFile.exists()).isFalse()
+    assertThat(tempFolder.root.list()!!.filter { it.endsWith(".tmp") }).isEmpty()
+  }
+
+  @Test
+  fun testPrefetch() {
+    cache.prefetch(listOf(url(1), url(2)))
+    waitForRequests(2)
+
+    cache.getTile(url(1))
+    cache.getTile(url(2))
+
+    assertThat(requestCount.get()).isEqualTo(2)
+  }
+
+  @Test
+  fun testGetTile_corruptTileRefetched() {
+    cache.getTile(url(1))
+    val file = tempFolder.root.listFiles { file -> file.name.endsWith(".entry") }!!.single()
+    file.writeBytes(tile(1))
+
+    assertThat(cache.getTile(url(1))).isEqualTo(tile(1))
+    assertThat(requestCount.get()).isEqualTo(2)
+  }
+
+  @Test
+  fun testGetTile_legacyFilesDeleted() {
+    val legacyFile = tempFolder.newFile("tile.meta")
+
+    createCache(maxSizeBytes = 1024 * 1024).getTile(url(1))
+
+    assertThat(legacyFile.exists()).isFalse()
+  }
+
+  @Test
+  fun testPrefetch_notAllowed() {
+    cache = createCache(maxSizeBytes = 1024 * 1024, isPrefetchAllowed = false)
+
+    cache.prefetch(listOf(url(1), url(2)))
+
+    assertThat(requestCount.get()).isEqualTo(0)
+  }
+
+  private fun createCache(maxSizeBytes: Long, isPrefetchAllowed: Boolean = true) =
+    WebTileCache(tempFolder.root, maxSizeBytes, SCHEDULERS) { isPrefetchAllowed }
+
+  private fun waitForRequests(count: Int) {
+    val deadline = System.currentTimeMillis() + 5000
+    while (requestCount.get() < count && System.currentTimeMillis() < deadline) Thread.sleep(10)
+    // Give the cache time to store the last response.
+    Thread.sleep(100)
+  }
+
+  private fun url(tile: Int) = "http://localhost:${server.address.port}/tiles/$tile"
+
+  private fun serve(exchange: HttpExchange) {
+    requestCount.incrementAndGet()
+    Thread.sleep(responseDelayMillis)
+    val tile = exchange.requestURI.path.substringAfterLast('/').toInt()
+    cacheControl?.let { exchange.responseHeaders.add("Cache-Control", it) }
+    eTag?.let { exchange.responseHeaders.add("ETag", it) }
+    when {
+      tile == MISSING_TILE -> exchange.sendResponseHeaders(404, -1)
+      eTag != null && exchange.requestHeaders.getFirst("If-None-Match") == eTag ->
+        exchange.sendResponseHeaders(304, -1)
+      else -> {
+        exchange.sendResponseHeaders(200, tile(tile).size.toLong())
+        exchange.responseBody.write(tile(tile))
+      }
+    }
+    exchange.close()
+  }
+
+  companion object {
+    private const val MISSING_TILE = 404
+
+    private val SCHEDULERS =
+      object : Schedulers {
+        override fun io(): Scheduler = RxSchedulers.io()
+        override fun ui(): Scheduler = RxSchedulers.trampoline()
+      }
+
+    private fun tile(tile: Int) = ByteArray(100) { tile.toByte() }
+  }
+}
@@ -37,7 +37,7 @@ import javax.inject.Singleton
 
 @Singleton
 class FakeRemoteDataStore @Inject internal constructor() : RemoteDataStore {
-  private var loiEvent: RemoteDataEvent<LocationOfInterest>? = null
+  private var loiEvents: List<RemoteDataEvent<LocationOfInterest>> = listOf()
 
   // TODO(#1045): Allow default survey to be initialized by tests.
   private var testSurveys = listOf(FakeData.SURVEY)
@@ -84,7 +84,7 @@ class FakeRemoteDataStore @Inject internal constructor() : RemoteDataStore {
   override fun loadLocationsOfInterestOnceAndStreamChanges(
     survey: Survey
   ): Flowable<RemoteDataEvent<LocationOfInterest>> {
-    return if (loiEvent == null) Flowable.empty() else Flowable.just(loiEvent)
+    return Flowable.fromIterable(loiEvents)
   }
 
   override fun loadSubmissions(
@@ -97,7 +97,7 @@ class FakeRemoteDataStore @Inject internal constructor() : RemoteDataStore {
     TODO("Missing implementation")
   }
 
-  fun streamLoiOnce(loiEvent: RemoteDataEvent<LocationOfInterest>) {
-    this.loiEvent = loiEvent
+  fun streamLoiOnce(vararg loiEvents: RemoteDataEvent<LocationOfInterest>) {
+    this.loiEvents = loiEvents.toList()
   }
 }
@@ -0,0 +1,183 @@
+package com.cocoahero.android.gmaps.addons.mapbox;
+
+import android.database.sqlite.SQLiteException;
+import android.util.Log;
+import java.io.Closeable;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.Tile;
+import com.google.android.gms.maps.model.TileProvider;
+
+/**
+ * Serves tiles from several MBTiles files through a single provider, so that
+ * they can be rendered with a single tile overlay.
+ *
+ * <p>
+ * The bounds and zoom levels of each file are indexed when the provider is
+ * created, and only files which may contain a requested tile are queried, in
+ * the order they were given. Tiles are cached in a single LRU cache shared by
+ * all files and bounded by the size of the tile data.
+ * </p>
+ */
+public class CompositeMapBoxOfflineTileProvider implements TileProvider, Closeable {
+
+    // ------------------------------------------------------------------------
+    // Class Variables
+    // ------------------------------------------------------------------------
+
+    /** Default size of the shared tile cache. */
+    public static final int DEFAULT_CACHE_SIZE_BYTES = 16 * 1024 * 1024;
+
+    private static final String TAG = "CompositeMBTiles";
+
+    // ------------------------------------------------------------------------
+    // Instance Variables
+    // ------------------------------------------------------------------------
+
+    private final MapBoxOfflineTileProvider[] mProviders;
+
+    // Bounds index; files without bounds metadata cover the whole world.
+    private final double[] mSouth;
+
+    private final double[] mWest;
+
+    private final double[] mNorth;
+
+    private final double[] mEast;
+
+    private final TileCache mCache;
+
+    private volatile boolean mClosed;
+
+    // ------------------------------------------------------------------------
+    // Constructors
+    // ------------------------------------------------------------------------
+
+    public CompositeMapBoxOfflineTileProvider(Collection<File> files) {
+        this(files, DEFAULT_CACHE_SIZE_BYTES);
+    }
+
+    /**
+     * Creates a provider for the specified files, caching up to
+     * {@code cacheSizeBytes} of tile data. Files which can't be opened are
+     * skipped.
+     */
+    public CompositeMapBoxOfflineTileProvider(Collection<File> files, int cacheSizeBytes) {
+        List<MapBoxOfflineTileProvider> providers = new ArrayList<>(files.size());
+        for (File file : files) {
+            try {
+                // Tiles are cached by this provider rather than per file.
+                providers.add(new MapBoxOfflineTileProvider(file.getAbsolutePath(), 0));
+            } catch (SQLiteException e) {
+                Log.e(TAG, "Couldn't open mbtiles file " + file, e);
+            }
+        }
+        this.mProviders = providers.toArray(new MapBoxOfflineTileProvider[0]);
+        this.mSouth = new double[this.mProviders.length];
+        this.mWest = new double[this.mProviders.length];
+        this.mNorth = new double[this.mProviders.length];
+        this.mEast = new double[this.mProviders.length];
+        for (int i = 0; i < this.mProviders.length; i++) {
+            LatLngBounds bounds = this.mProviders[i].getBounds();
+            this.mSouth[i] = bounds == null ? -90 : bounds.southwest.latitude;
+            this.mWest[i] = bounds == null ? -180 : bounds.southwest.longitude;
+            this.mNorth[i] = bounds == null ? 90 : bounds.northeast.latitude;
+            this.mEast[i] = bounds == null ? 180 : bounds.northeast.longitude;
+        }
+        this.mCache = new TileCache(cacheSizeBytes);
+    }
+
+    // ------------------------------------------------------------------------
+    // TileProvider Interface
+    // ------------------------------------------------------------------------
+
+    @Override
+    public Tile getTile(int x, int y, int z) {
+        if (this.mClosed) {
+            return NO_TILE;
+        }
+        Tile tile = this.mCache.get(x, y, z);
+        if (tile != null) {
+            return tile;
+        }
+        tile = NO_TILE;
+        int tileCount = 1 << z;
+        double west = x * 360.0 / tileCount - 180;
+        double east = (x + 1) * 360.0 / tileCount - 180;
+        double north = tileLatitude(y, tileCount);
+        double south = tileLatitude(y + 1, tileCount);
+        for (int i = 0; i < this.mProviders.length; i++) {
+            if (!this.mProviders[i].isZoomLevelAvailable(z)
+                    || this.mSouth[i] > north || this.mNorth[i] < south
+                    || !longitudesIntersect(this.mWest[i], this.mEast[i], west, east)) {
+                continue;
+            }
+            byte[] data = this.mProviders[i].getTileData(x, y, z);
+            if (data != null) {
+                tile = new Tile(256, 256, data);
+                break;
+            }
+        }
+        this.mCache.put(x, y, z, tile);
+        return tile;
+    }
+
+    // ------------------------------------------------------------------------
+    // Public Methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Discards cached tiles and misses, so that tiles added to the files since
+     * they were last requested are served.
+     */
+    public void clearCache() {
+        this.mCache.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // Closeable Interface
+    // ------------------------------------------------------------------------
+
+    /**
+     * Closes the provider and the files it serves tiles from. Tiles requested
+     * after the provider is closed are reported as missing.
+     */
+    @Override
+    public void close() {
+        this.mClosed = true;
+        for (MapBoxOfflineTileProvider provider : this.mProviders) {
+            provider.close();
+        }
+        this.mCache.clear();
+    }
+
+    // ------------------------------------------------------------------------
+    // Private Methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Returns the latitude of the north edge of the XYZ tile row {@code y}.
+     * Kept in sync with the app's WebMercator, which this library can't use.
+     */
+    private static double tileLatitude(int y, int tileCount) {
+        double n = Math.PI - 2 * Math.PI * y / tileCount;
+        return Math.toDegrees(Math.atan(Math.sinh(n)));
+    }
+
+    /**
+     * Returns true if the longitude ranges intersect. The first range spans the
+     * antimeridian if its west edge is east of its east edge.
+     */
+    private static boolean longitudesIntersect(
+            double west, double east, double tileWest, double tileEast) {
+        if (west <= east) {
+            return west <= tileEast && east >= tileWest;
+        }
+        return west <= tileEast || east >= tileWest;
+    }
+
+}
@@ -5,6 +5,10 @@ import android.database.sqlite.SQLiteException;
 import android.util.Log;
 import java.io.Closeable;
 import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
@@ -14,20 +18,60 @@ import com.google.android.gms.maps.model.LatLngBounds;
 import com.google.android.gms.maps.model.Tile;
 import com.google.android.gms.maps.model.TileProvider;
 
+/**
+ * Serves tiles from an MBTiles file.
+ *
+ * <p>
+ * Each thread requesting tiles gets its own read-only connection, so that the
+ * Maps SDK tile threads don't wait on each other, and the tile query is
+ * prepared once per connection. Recently served tiles are kept in an LRU cache
+ * bounded by the size of the tile data.
+ * </p>
+ *
+ * <p>
+ * Reads hold a shared lock which {@link #close()} waits for, so connections
+ * aren't closed while tiles are being read from them.
+ * </p>
+ */
 public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
 
+    // ------------------------------------------------------------------------
+    // Class Variables
+    // ------------------------------------------------------------------------
+
+    /** Default size of the tile cache of each provider. */
+    public static final int DEFAULT_CACHE_SIZE_BYTES = 4 * 1024 * 1024;
+
+    private static final int OPEN_FLAGS =
+        SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS;
+
+    // The SQL is constant so that each connection's statement cache reuses the
+    // compiled statement.
+    private static final String TILE_QUERY =
+        "SELECT tile_data FROM tiles WHERE tile_row = ? AND tile_column = ? AND zoom_level = ?";
+
     // ------------------------------------------------------------------------
     // Instance Variables
     // ------------------------------------------------------------------------
 
+    private final String mPath;
+
+    private final TileCache mCache;
+
+    private final List<SQLiteDatabase> mConnections = new CopyOnWriteArrayList<>();
+
+    private final ThreadLocal<SQLiteDatabase> mThreadConnection = new ThreadLocal<>();
+
+    private final ReadWriteLock mLock = new ReentrantReadWriteLock();
+
+    private volatile boolean mClosed;
+
     private int mMinimumZoom = Integer.MIN_VALUE;
 
     private int mMaximumZoom = Integer.MAX_VALUE;
 
     private LatLngBounds mBounds;
 
-    private SQLiteDatabase mDatabase;
-
     // ------------------------------------------------------------------------
     // Constructors
     // ------------------------------------------------------------------------
@@ -37,10 +81,24 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
     }
 
     public MapBoxOfflineTileProvider(String pathToFile) {
-        int flags = SQLiteDatabase.OPEN_READONLY | SQLiteDatabase.NO_LOCALIZED_COLLATORS;
-        this.mDatabase = SQLiteDatabase.openDatabase(pathToFile, null, flags);
-        this.calculateZoomConstraints();
-        this.calculateBounds();
+        this(pathToFile, DEFAULT_CACHE_SIZE_BYTES);
+    }
+
+    /**
+     * Creates a provider caching up to {@code cacheSizeBytes} of tile data, or
+     * no tiles at all if {@code cacheSizeBytes} is 0.
+     */
+    public MapBoxOfflineTileProvider(String pathToFile, int cacheSizeBytes) {
+        this.mPath = pathToFile;
+        this.mCache = cacheSizeBytes > 0 ? new TileCache(cacheSizeBytes) : null;
+        // The metadata is only read once, so its connection isn't kept open.
+        SQLiteDatabase database = SQLiteDatabase.openDatabase(pathToFile, null, OPEN_FLAGS);
+        try {
+            this.calculateZoomConstraints(database);
+            this.calculateBounds(database);
+        } finally {
+            database.close();
+        }
     }
 
     // ------------------------------------------------------------------------
@@ -49,26 +107,26 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
 
     @Override
     public Tile getTile(int x, int y, int z) {
-        Tile tile = NO_TILE;
-        if (this.isZoomLevelAvailable(z) && this.isDatabaseAvailable()) {
-            String[] projection = {
-                "tile_data"
-            };
-            int row = ((int) (Math.pow(2, z) - y) - 1);
-            String predicate = "tile_row = ? AND tile_column = ? AND zoom_level = ?";
-            String[] values = {
-                    String.valueOf(row), String.valueOf(x), String.valueOf(z)
-            };
-            Cursor c = this.mDatabase.query("tiles", projection, predicate, values, null, null, null);
-            if (c != null) {
-                c.moveToFirst();
-                if (!c.isAfterLast()) {
-                    tile = new Tile(256, 256, c.getBlob(0));
+        if (!this.isZoomLevelAvailable(z)) {
+            return NO_TILE;
+        }
+        this.mLock.readLock().lock();
+        try {
+            if (this.mClosed) {
+                return NO_TILE;
+            }
+            Tile tile = this.mCache == null ? null : this.mCache.get(x, y, z);
+            if (tile == null) {
+                byte[] data = this.readTileData(x, y, z);
+                tile = data == null ? NO_TILE : new Tile(256, 256, data);
+                if (this.mCache != null) {
+                    this.mCache.put(x, y, z, tile);
                 }
-                c.close();
             }
+            return tile;
+        } finally {
+            this.mLock.readLock().unlock();
         }
-        return tile;
     }
 
     // ------------------------------------------------------------------------
@@ -76,7 +134,9 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
     // ------------------------------------------------------------------------
 
     /**
-     * Closes the provider, cleaning up any background resources.
+     * Closes the provider, cleaning up any background resources. Waits for
+     * tiles being read to be returned; tiles requested afterwards are reported
+     * as missing.
      * 
      * <p>
      * You must call {@link #close()} when you are finished using an instance of
@@ -86,9 +146,18 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
      */
     @Override
     public void close() {
-        if (this.mDatabase != null) {
-            this.mDatabase.close();
-            this.mDatabase = null;
+        this.mClosed = true;
+        this.mLock.writeLock().lock();
+        try {
+            for (SQLiteDatabase connection : this.mConnections) {
+                connection.close();
+            }
+            this.mConnections.clear();
+            if (this.mCache != null) {
+                this.mCache.clear();
+            }
+        } finally {
+            this.mLock.writeLock().unlock();
         }
     }
 
@@ -137,12 +206,47 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
         return (zoom >= this.mMinimumZoom) && (zoom <= this.mMaximumZoom);
     }
 
+    /**
+     * Reads the data of the specified tile, bypassing the tile cache.
+     *
+     * @return the tile data, or {@code null} if the tile isn't available or
+     *         the provider has been closed.
+     */
+    public byte[] getTileData(int x, int y, int z) {
+        this.mLock.readLock().lock();
+        try {
+            return this.mClosed ? null : this.readTileData(x, y, z);
+        } finally {
+            this.mLock.readLock().unlock();
+        }
+    }
+
     // ------------------------------------------------------------------------
     // Private Methods
     // ------------------------------------------------------------------------
 
-    private void calculateZoomConstraints() {
-        if (this.isDatabaseAvailable()) {
+    /**
+     * Reads the data of the specified tile with the calling thread's
+     * connection. Must be called with the read lock held while open.
+     */
+    private byte[] readTileData(int x, int y, int z) {
+        SQLiteDatabase connection = this.getThreadConnection();
+        // MBTiles rows are numbered from the south, whereas tile requests are
+        // numbered from the north.
+        int row = (1 << z) - 1 - y;
+        String[] values = {
+                String.valueOf(row), String.valueOf(x), String.valueOf(z)
+        };
+        Cursor c = connection.rawQuery(TILE_QUERY, values);
+        try {
+            return c.moveToFirst() ? c.getBlob(0) : null;
+        } finally {
+            c.close();
+        }
+    }
+
+    private void calculateZoomConstraints(SQLiteDatabase database) {
+        if (database.isOpen()) {
             String[] projection = new String[] {
                 "value"
             };
@@ -157,7 +261,7 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
 
             Cursor c;
             try {
-            c = this.mDatabase.query("metadata", projection, "name = ?", minArgs, null, null, null);
+            c = database.query("metadata", projection, "name = ?", minArgs, null, null, null);
 
             c.moveToFirst();
             if (!c.isAfterLast()) {
@@ -165,7 +269,7 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
             }
             c.close();
 
-            c = this.mDatabase.query("metadata", projection, "name = ?", maxArgs, null, null, null);
+            c = database.query("metadata", projection, "name = ?", maxArgs, null, null, null);
 
             c.moveToFirst();
             if (!c.isAfterLast()) {
@@ -178,8 +282,8 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
         }
     }
 
-    private void calculateBounds() {
-        if (this.isDatabaseAvailable()) {
+    private void calculateBounds(SQLiteDatabase database) {
+        if (database.isOpen()) {
             String[] projection = new String[] {
                 "value"
             };
@@ -189,7 +293,7 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
             };
 
             try {
-            Cursor c = this.mDatabase.query("metadata", projection, "name = ?", subArgs, null, null, null);
+            Cursor c = database.query("metadata", projection, "name = ?", subArgs, null, null, null);
 
             c.moveToFirst();
             if (!c.isAfterLast()) {
@@ -212,8 +316,19 @@ public class MapBoxOfflineTileProvider implements TileProvider, Closeable {
         }
     }
 
-    private boolean isDatabaseAvailable() {
-        return (this.mDatabase != null) && (this.mDatabase.isOpen());
+    /**
+     * Returns the calling thread's connection, opening it on first use. Must
+     * be called with the read lock held while open, so that connections
+     * aren't opened or closed concurrently with {@link #close()}.
+     */
+    private SQLiteDatabase getThreadConnection() {
+        SQLiteDatabase connection = this.mThreadConnection.get();
+        if (connection == null || !connection.isOpen()) {
+            connection = SQLiteDatabase.openDatabase(this.mPath, null, OPEN_FLAGS);
+            this.mConnections.add(connection);
+            this.mThreadConnection.set(connection);
+        }
+        return connection;
     }
 
 }
@@ -0,0 +1,69 @@
+package com.cocoahero.android.gmaps.addons.mapbox;
+
+import android.util.LruCache;
+
+import com.google.android.gms.maps.model.Tile;
+
+/**
+ * A thread safe LRU cache of tiles keyed by tile coordinates, bounded by the
+ * total size of the cached tile data. Misses may also be cached so that tiles
+ * absent from the underlying source aren't looked up repeatedly.
+ */
+class TileCache {
+
+    // ------------------------------------------------------------------------
+    // Class Variables
+    // ------------------------------------------------------------------------
+
+    /** Size attributed to cached misses, roughly the overhead of an entry. */
+    private static final int MISS_SIZE_BYTES = 64;
+
+    // ------------------------------------------------------------------------
+    // Instance Variables
+    // ------------------------------------------------------------------------
+
+    private final LruCache<Long, Tile> mCache;
+
+    // ------------------------------------------------------------------------
+    // Constructors
+    // ------------------------------------------------------------------------
+
+    TileCache(int maxSizeBytes) {
+        this.mCache = new LruCache<Long, Tile>(maxSizeBytes) {
+            @Override
+            protected int sizeOf(Long key, Tile tile) {
+                return tile.data == null ? MISS_SIZE_BYTES : tile.data.length;
+            }
+        };
+    }
+
+    // ------------------------------------------------------------------------
+    // Package Methods
+    // ------------------------------------------------------------------------
+
+    /**
+     * Returns the cached tile, {@link com.google.android.gms.maps.model.TileProvider#NO_TILE}
+     * for a cached miss, or {@code null} if the tile isn't cached.
+     */
+    Tile get(int x, int y, int z) {
+        return this.mCache.get(key(x, y, z));
+    }
+
+    void put(int x, int y, int z, Tile tile) {
+        this.mCache.put(key(x, y, z), tile);
+    }
+
+    void clear() {
+        this.mCache.evictAll();
+    }
+
+    // ------------------------------------------------------------------------
+    // Private Methods
+    // ------------------------------------------------------------------------
+
+    /** Packs tile coordinates up to zoom level 29 into a single key. */
+    private static long key(int x, int y, int z) {
+        return ((long) z << 58) | ((long) x << 29) | y;
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.cocoahero.android.gmaps.addons.mapbox;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.database.sqlite.SQLiteDatabase;
+import com.google.android.gms.maps.model.TileProvider;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+@RunWith(RobolectricTestRunner.class)
+public class CompositeMapBoxOfflineTileProviderTest {
+
+    private static final int MAX_ZOOM = 2;
+
+    @Rule
+    public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private File westFile;
+
+    private File eastFile;
+
+    @Before
+    public void setUp() throws IOException {
+        // The west and east halves of the world, split at the prime meridian.
+        this.westFile = createMbtilesFile(0, "-180,-85,0,85");
+        this.eastFile = createMbtilesFile(1, "0,-85,180,85");
+    }
+
+    @Test
+    public void getTile_servesTilesFromFileContainingTile() {
+        try (CompositeMapBoxOfflineTileProvider provider =
+                new CompositeMapBoxOfflineTileProvider(files())) {
+            assertThat(provider.getTile(0, 0, 1).data).isEqualTo(tileData(0, 0, 0, 1));
+            assertThat(provider.getTile(1, 0, 1).data).isEqualTo(tileData(1, 1, 0, 1));
+            assertThat(provider.getTile(0, 0, MAX_ZOOM + 1)).isEqualTo(TileProvider.NO_TILE);
+        }
+    }
+
+    @Test
+    public void getTile_cachedTile_returnsSameInstance() {
+        try (CompositeMapBoxOfflineTileProvider provider =
+                new CompositeMapBoxOfflineTileProvider(files())) {
+            assertThat(provider.getTile(3, 2, 2)).isSameInstanceAs(provider.getTile(3, 2, 2));
+        }
+    }
+
+    @Test
+    public void getTile_afterClearCache_servesTilesAddedSince() {
+        try (CompositeMapBoxOfflineTileProvider provider =
+                new CompositeMapBoxOfflineTileProvider(files())) {
+            assertThat(provider.getTile(0, 0, MAX_ZOOM + 1)).isEqualTo(TileProvider.NO_TILE);
+            byte[] data = tileData(0, 0, 0, MAX_ZOOM + 1);
+            int tileCount = 1 << (MAX_ZOOM + 1);
+            try (SQLiteDatabase db = SQLiteDatabase.openDatabase(westFile.getPath(), null, 0)) {
+                db.execSQL(
+                    "INSERT INTO tiles VALUES (?, ?, ?, ?)",
+                    new Object[] {MAX_ZOOM + 1, 0, tileCount - 1, data});
+            }
+
+            // Misses are cached until cleared.
+            assertThat(provider.getTile(0, 0, MAX_ZOOM + 1)).isEqualTo(TileProvider.NO_TILE);
+            provider.clearCache();
+
+            assertThat(provider.getTile(0, 0, MAX_ZOOM + 1).data).isEqualTo(data);
+        }
+    }
+
+    @Test
+    public void getTile_afterClose_returnsNoTile() {
+        CompositeMapBoxOfflineTileProvider provider =
+            new CompositeMapBoxOfflineTileProvider(files());
+
+        provider.close();
+
+        assertThat(provider.getTile(0, 0, 1)).isEqualTo(TileProvider.NO_TILE);
+    }
+
+    private List<File> files() {
+        return Arrays.asList(this.westFile, this.eastFile);
+    }
+
+    /**
+     * Creates a file with the tiles of the specified half of the world at
+     * each zoom level up to {@link #MAX_ZOOM}.
+     */
+    private File createMbtilesFile(int half, String bounds) throws IOException {
+        File file = this.tempFolder.newFile();
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null)) {
+            db.execSQL("CREATE TABLE metadata (name TEXT, value TEXT)");
+            db.execSQL("INSERT INTO metadata VALUES ('bounds', ?)", new Object[] {bounds});
+            db.execSQL(
+                "CREATE TABLE tiles (zoom_level INTEGER, tile_column INTEGER, "
+                    + "tile_row INTEGER, tile_data BLOB, "
+                    + "PRIMARY KEY (zoom_level, tile_column, tile_row))");
+            for (int z = 0; z <= MAX_ZOOM; z++) {
+                int tileCount = 1 << z;
+                int minColumn = z == 0 ? 0 : half * tileCount / 2;
+                int maxColumn = z == 0 ? 0 : (half + 1) * tileCount / 2 - 1;
+                for (int x = minColumn; x <= maxColumn; x++) {
+                    for (int y = 0; y < tileCount; y++) {
+                        db.execSQL(
+                            "INSERT INTO tiles VALUES (?, ?, ?, ?)",
+                            new Object[] {z, x, tileCount - 1 - y, tileData(half, x, y, z)});
+                    }
+                }
+            }
+        }
+        return file;
+    }
+
+    private static byte[] tileData(int half, int x, int y, int z) {
+        return new byte[] {(byte) half, (byte) x, (byte) y, (byte) z};
+    }
+
+}